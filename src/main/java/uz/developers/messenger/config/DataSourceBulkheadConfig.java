@@ -0,0 +1,46 @@
+package uz.developers.messenger.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Caps concurrent JDBC use with a {@link BoundedDataSource} in front of the pool.
+ * Enabled with {@code db.bulkhead.enabled=true}, as the virtual thread profile does.
+ */
+@Configuration
+@ConditionalOnProperty(name = "db.bulkhead.enabled", havingValue = "true")
+public class DataSourceBulkheadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceBulkheadConfig.class);
+
+    @Bean
+    public static BeanPostProcessor dataSourceBulkhead(Environment environment) {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        // By default two connections stay free below the pool size
+        int maxConcurrent = environment.getProperty("db.bulkhead.max-concurrent", Integer.class, Math.max(1, poolSize - 2));
+        long acquireTimeoutMillis = environment.getProperty("db.bulkhead.acquire-timeout-ms", Long.class, 5000L);
+        if (maxConcurrent > poolSize) {
+            throw new IllegalStateException("db.bulkhead.max-concurrent (" + maxConcurrent +
+                    ") must not exceed the connection pool size (" + poolSize + ")");
+        }
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof BoundedDataSource)) {
+                    log.info("Limiting {} to {} concurrent connections out of {}", beanName, maxConcurrent, poolSize);
+                    return new BoundedDataSource(dataSource, maxConcurrent, acquireTimeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,110 @@
+package uz.developers.messenger.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Routes read-only transactions to the replicas in {@code db.replicas.urls}.
+ * Enabled with {@code db.replicas.enabled=true}; see {@link ReplicaRoutingDataSource}.
+ *
+ * The pools are not beans of their own, so the bulkhead, when enabled, wraps only the
+ * routing proxy and limits connections across primary and replicas together.
+ */
+@Configuration
+@ConditionalOnProperty(name = "db.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingConfig.class);
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        pools.add(primary);
+
+        String username = environment.getProperty("db.replicas.username", properties.determineUsername());
+        String password = environment.getProperty("db.replicas.password", properties.determinePassword());
+        int poolSize = environment.getProperty("db.replicas.pool-size", Integer.class, 10);
+        long connectTimeoutMillis = environment.getProperty("db.replicas.connect-timeout-ms", Long.class, 1000L);
+        List<String> urls = Arrays.stream(environment.getProperty("db.replicas.urls", "").split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i));
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            // Fall back to the primary quickly instead of waiting on a replica that is down
+            replica.setConnectionTimeout(connectTimeoutMillis);
+            replica.setInitializationFailTimeout(-1);
+            pools.add(replica);
+            replicas.add(new ReplicaRoutingDataSource.Replica(replica.getPoolName(), replica));
+        }
+
+        long maxLagMillis = environment.getProperty("db.replicas.max-lag-ms", Long.class, 1000L);
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis);
+        routingDataSource.checkReplicas();
+        log.info("Routing read-only transactions to {} replicas lagging at most {} ms", replicas.size(), maxLagMillis);
+
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(routingDataSource);
+        // The pools' defaults, so the proxy need not open a connection to find them out
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return proxy;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(Environment environment) {
+        long stickyMillis = environment.getProperty("db.replicas.sticky-ms", Long.class, 5000L);
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(stickyMillis));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+
+    @Scheduled(fixedDelayString = "${db.replicas.check-interval-ms:1000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+}
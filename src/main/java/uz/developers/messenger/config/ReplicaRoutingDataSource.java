@@ -0,0 +1,277 @@
+package uz.developers.messenger.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that sends read-only transactions to streaming replicas and everything else
+ * to the primary.
+ *
+ * The choice is made when a connection is requested, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: only then is
+ * the transaction's read-only flag known by the time the connection is fetched.
+ * Replicas are used round robin among those that passed the last health check with a
+ * replay lag below the limit; with none left, reads go to the primary.
+ *
+ * Lag is judged by WAL position rather than by replay timestamps, which keep ageing on
+ * an idle primary. Each check records where the primary's WAL ends; a replica that has
+ * replayed up to some recorded position holds everything written before that check, so
+ * its lag is at most the time since then. A thread that
+ * has to read its own writes is kept on the primary until {@link #usePrimaryUntil} expires.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY_POSITION_QUERY = "select pg_current_wal_lsn()::text";
+
+    // Null on a server that is not in recovery, which has nothing to catch up on
+    private static final String REPLAY_POSITION_QUERY =
+            "select case when pg_is_in_recovery() then pg_last_wal_replay_lsn()::text end";
+
+    // Without the primary to compare with, a replica only counts as current while it streams, and
+    // is as far behind as the last message it received from the primary when it has yet to replay some;
+    // the receiver's status is only visible to roles with pg_read_all_stats
+    private static final String STANDALONE_LAG_QUERY =
+            "select case when not pg_is_in_recovery() then 0 " +
+            "when not exists (select from pg_stat_wal_receiver where status = 'streaming') then ? " +
+            "when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+            "else coalesce((select extract(epoch from now() - last_msg_receipt_time) * 1000 " +
+            "from pg_stat_wal_receiver), ?) end";
+
+    // Positions past this many are dropped even if still within the lag limit
+    private static final int MAX_POSITIONS = 1024;
+
+    // Inherited, so tasks forked by a request stay on the primary with it; an expired value is ignored
+    private static final ThreadLocal<Long> primaryUntil = new InheritableThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final long maxLagMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Where the primary's WAL ended at recent checks, oldest first; only touched by checkReplicas
+    private final ArrayDeque<WalPosition> positions = new ArrayDeque<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+
+    public static void usePrimaryUntil(long epochMillis) {
+        primaryUntil.set(epochMillis);
+    }
+
+    public static void clearPrimary() {
+        primaryUntil.remove();
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                return replica.dataSource().getConnection();
+            } catch (SQLException e) {
+                replica.down(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    // Measure each replica's replay lag; one that cannot be reached is left out until it answers again
+    public synchronized void checkReplicas() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String primaryPosition = primaryPosition();
+        if (primaryPosition != null) {
+            recordPosition(parseLsn(primaryPosition), System.currentTimeMillis());
+        }
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                         primaryPosition != null ? REPLAY_POSITION_QUERY : STANDALONE_LAG_QUERY)) {
+                statement.setQueryTimeout(1);
+                if (primaryPosition == null) {
+                    statement.setLong(1, Long.MAX_VALUE);
+                    statement.setLong(2, Long.MAX_VALUE);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    if (primaryPosition == null) {
+                        replica.up(rs.getLong(1));
+                    } else {
+                        String replayed = rs.getString(1);
+                        replica.up(replayed != null ? lagOf(parseLsn(replayed), System.currentTimeMillis()) : 0);
+                    }
+                }
+            } catch (SQLException e) {
+                replica.down(e);
+            }
+        }
+    }
+
+
+    // A position seen again keeps its latest sighting, the tighter bound for a replica that reached it
+    private void recordPosition(long lsn, long now) {
+        WalPosition last = positions.peekLast();
+        if (last != null && last.lsn() >= lsn) {
+            positions.removeLast();
+            lsn = Math.max(lsn, last.lsn());
+        }
+        positions.addLast(new WalPosition(lsn, now));
+        // The oldest position is kept once it is past the limit, to tell how far behind that a replica is
+        while (positions.size() > MAX_POSITIONS
+                || positions.size() > 1 && now - secondOldest().observedAt() > maxLagMillis) {
+            positions.removeFirst();
+        }
+    }
+
+    // Zero once the replica has replayed the latest position, otherwise the time since the newest one it has
+    private long lagOf(long replayedLsn, long now) {
+        WalPosition latest = positions.peekLast();
+        if (latest == null || replayedLsn >= latest.lsn()) {
+            return 0;
+        }
+        Iterator<WalPosition> newestFirst = positions.descendingIterator();
+        WalPosition oldest = latest;
+        while (newestFirst.hasNext()) {
+            WalPosition position = newestFirst.next();
+            if (replayedLsn >= position.lsn()) {
+                return now - position.observedAt();
+            }
+            oldest = position;
+        }
+        // Behind everything recorded, so at least as old as the oldest position
+        return now - oldest.observedAt();
+    }
+
+    private WalPosition secondOldest() {
+        Iterator<WalPosition> oldestFirst = positions.iterator();
+        oldestFirst.next();
+        return oldestFirst.next();
+    }
+
+    // An LSN as PostgreSQL prints it, two hexadecimal halves around a slash
+    private static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return Long.parseLong(lsn, 0, slash, 16) << 32 | Long.parseLong(lsn, slash + 1, lsn.length(), 16);
+    }
+
+
+    // Where the primary's WAL ends, or null when it cannot be asked
+    private String primaryPosition() {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(1);
+            try (ResultSet rs = statement.executeQuery(PRIMARY_POSITION_QUERY)) {
+                rs.next();
+                return rs.getString(1);
+            }
+        } catch (SQLException e) {
+            log.debug("Could not read the primary's WAL position, judging replicas on their own", e);
+            return null;
+        }
+    }
+
+
+    private Replica chooseReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || replicas.isEmpty()) {
+            return null;
+        }
+        Long until = primaryUntil.get();
+        if (until != null && until > System.currentTimeMillis()) {
+            return null;
+        }
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (replica.healthy && replica.lagMillis <= maxLagMillis) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+
+    private record WalPosition(long lsn, long observedAt) {
+    }
+
+
+    public static final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile boolean healthy;
+
+        private volatile long lagMillis;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        private void up(long lagMillis) {
+            if (!healthy) {
+                log.info("Replica {} is available, {} ms behind", name, lagMillis);
+            }
+            this.lagMillis = lagMillis;
+            this.healthy = true;
+        }
+
+        private void down(SQLException e) {
+            if (healthy) {
+                log.warn("Replica {} is unavailable, reading from the primary", name, e);
+            }
+            this.healthy = false;
+        }
+    }
+
+}
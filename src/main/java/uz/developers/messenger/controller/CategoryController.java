@@ -1,17 +1,22 @@
 package uz.developers.messenger.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.exceptions.CategoryException;
 import uz.developers.messenger.payload.CategoryDto;
 import uz.developers.messenger.payload.CustomApiResponse;
 import uz.developers.messenger.payload.UserDto;
 import uz.developers.messenger.service.CategoryService;
 import uz.developers.messenger.service.UserService;
+import uz.developers.messenger.util.MergePatch;
 
 import java.util.List;
 import java.util.Optional;
@@ -165,6 +170,38 @@ public class CategoryController {
     }
 
 
+    /**
+     * Apply a JSON merge patch (RFC 7396) to a category.
+     *
+     * Only the properties named in the patch change (title and description), in a single
+     * statement. With an If-Match header holding the version the client read, the patch only
+     * applies to that version; the new version comes back as ETag.
+     *
+     * @param id the ID of the category to patch
+     * @param ifMatch the expected version, or none to patch whatever version is current
+     * @param patch the merge patch
+     * @return a ResponseEntity containing a CustomApiResponse with the patched CategoryDto
+     */
+    @Operation(summary = "Patch category", description = "Change some properties of a category with a JSON merge patch.")
+    @ApiResponse(responseCode = "200", description = "Category patched successfully")
+    @ApiResponse(responseCode = "400", description = "The patch names a property that cannot be patched, or an invalid value")
+    @ApiResponse(responseCode = "404", description = "Category not found")
+    @ApiResponse(responseCode = "409", description = "The category was changed since the version in If-Match")
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CustomApiResponse<CategoryDto>> patchCategory(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        CategoryDto patched = categoryService.patchCategory(id, patch, MergePatch.parseVersion(ifMatch, CategoryException::new));
+        CustomApiResponse<CategoryDto> response = new CustomApiResponse<>(
+                "Category patched successfully",
+                true,
+                patched
+        );
+        return new ResponseEntity<>(response, MergePatch.etagHeaders(patched.getVersion()), HttpStatus.OK);
+    }
+
+
 
 
     /**
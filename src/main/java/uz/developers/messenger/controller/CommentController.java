@@ -1,16 +1,22 @@
 package uz.developers.messenger.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.exceptions.CommentException;
 import uz.developers.messenger.payload.CommentDto;
+import uz.developers.messenger.payload.CommentPageDto;
 import uz.developers.messenger.payload.CustomApiResponse;
 
 import uz.developers.messenger.service.CommentService;
+import uz.developers.messenger.util.MergePatch;
 
 
 import java.util.List;
@@ -42,22 +48,34 @@ public class CommentController {
 
 
     /**
-     * Retrieve a list of all comments for a specific post.
+     * Retrieve one page of comments for a specific post.
      *
-     * This method fetches all comments associated with a given post ID and returns them as a list of CommentDto.
+     * Comments are paged by a cursor over their IDs instead of an offset, so every page is read
+     * straight from the (post_id, id) index no matter how deep into the thread it is. Pass the
+     * {@code nextCursor} of a page as {@code cursor} to get the following page.
      *
      * @param postId the ID of the post for which comments are being retrieved
-     * @return a ResponseEntity containing a CustomApiResponse with the list of CommentDto representing all comments for the specified post
+     * @param cursor the cursor returned with the previous page, omitted for the first page
+     * @param limit the maximum number of comments in the page, capped at 100
+     * @param order {@code newest} for newest first, {@code oldest} for oldest first
+     * @return a ResponseEntity containing a CustomApiResponse with the page of comments and the next cursor
      */
-    @Operation(summary = "Get all Comments by Post ID", description = "Retrieve a list of all comments for specific post.")
-    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of comments for specific post.")
+    @Operation(summary = "Get Comments by Post ID", description = "Retrieve one page of comments for specific post.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the page of comments for specific post.")
+    @ApiResponse(responseCode = "404", description = "Post not found.")
     @GetMapping("/posts/{postId}")
-    public ResponseEntity<CustomApiResponse<List<CommentDto>>> getAllCommentsByPostId(@PathVariable Long postId) {
-        List<CommentDto> commentDtos = commentService.getAllCommentsByPostId(postId);
-        CustomApiResponse<List<CommentDto>> response = new CustomApiResponse<>(
-                "Successfully retrieved the list of comments for post ID: " + postId,
+    public ResponseEntity<CustomApiResponse<CommentPageDto>> getAllCommentsByPostId(@PathVariable Long postId,
+                                                                                    @RequestParam(required = false) Long cursor,
+                                                                                    @RequestParam(defaultValue = "20") int limit,
+                                                                                    @RequestParam(defaultValue = "newest") String order) {
+        if (!"newest".equalsIgnoreCase(order) && !"oldest".equalsIgnoreCase(order)) {
+            throw new CommentException("Order must be 'newest' or 'oldest'");
+        }
+        CommentPageDto page = commentService.getCommentsByPostId(postId, cursor, limit, "newest".equalsIgnoreCase(order));
+        CustomApiResponse<CommentPageDto> response = new CustomApiResponse<>(
+                "Successfully retrieved the comments for post ID: " + postId,
                 true,
-                commentDtos
+                page
         );
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
@@ -169,6 +187,38 @@ public class CommentController {
     }
 
 
+    /**
+     * Apply a JSON merge patch (RFC 7396) to a comment.
+     *
+     * Only the properties named in the patch change (content), in a single statement. With an
+     * If-Match header holding the version the client read, the patch only applies to that
+     * version; the new version comes back as ETag.
+     *
+     * @param id the ID of the comment to patch
+     * @param ifMatch the expected version, or none to patch whatever version is current
+     * @param patch the merge patch
+     * @return a ResponseEntity containing a CustomApiResponse with the patched CommentDto
+     */
+    @Operation(summary = "Patch comment", description = "Change some properties of a comment with a JSON merge patch.")
+    @ApiResponse(responseCode = "200", description = "Comment patched successfully")
+    @ApiResponse(responseCode = "400", description = "The patch names a property that cannot be patched, or an invalid value")
+    @ApiResponse(responseCode = "404", description = "Comment not found")
+    @ApiResponse(responseCode = "409", description = "The comment was changed since the version in If-Match")
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CustomApiResponse<CommentDto>> patchComment(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        CommentDto patched = commentService.patchComment(id, patch, MergePatch.parseVersion(ifMatch, CommentException::new));
+        CustomApiResponse<CommentDto> response = new CustomApiResponse<>(
+                "Comment patched successfully",
+                true,
+                patched
+        );
+        return new ResponseEntity<>(response, MergePatch.etagHeaders(patched.getVersion()), HttpStatus.OK);
+    }
+
+
 
 
     /**
@@ -203,6 +253,91 @@ public class CommentController {
     }
 
 
+    /**
+     * Reply to an existing comment.
+     *
+     * The reply is placed in the thread of the comment it answers. Replies to a comment
+     * at the deepest nesting level are attached next to it, so a thread never grows deeper
+     * than the comment path can hold.
+     *
+     * @param id the ID of the comment being answered
+     * @param commentDto the DTO containing the reply content and its author
+     * @return a ResponseEntity containing a CustomApiResponse with the saved reply
+     */
+    @Operation(summary = "Reply to Comment", description = "Create a reply to an existing comment.")
+    @ApiResponse(responseCode = "201", description = "Reply created successfully.")
+    @ApiResponse(responseCode = "404", description = "Comment not found.")
+    @PostMapping("/{id}/replies")
+    public ResponseEntity<CustomApiResponse<CommentDto>> replyToComment(@PathVariable Long id,
+                                                                        @Valid @RequestBody CommentDto commentDto) {
+        CommentDto savedReply = commentService.replyToComment(id, commentDto);
+        CustomApiResponse<CommentDto> response = new CustomApiResponse<>(
+                "Reply created successfully for comment ID: " + id,
+                true,
+                savedReply
+        );
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+
+
+
+
+    /**
+     * Retrieve a comment together with all of its replies.
+     *
+     * The whole subtree is read with a single range scan over the materialized path
+     * and returned nested, each comment carrying its replies in reading order.
+     *
+     * @param id the ID of the comment at the top of the subtree
+     * @return a ResponseEntity containing a CustomApiResponse with the comment and its nested replies
+     */
+    @Operation(summary = "Get Comment thread", description = "Retrieve a comment with all of its replies nested.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the comment thread.")
+    @ApiResponse(responseCode = "404", description = "Comment not found.")
+    @GetMapping("/{id}/thread")
+    public ResponseEntity<CustomApiResponse<CommentDto>> getCommentThread(@PathVariable Long id) {
+        CommentDto thread = commentService.getCommentThread(id);
+        CustomApiResponse<CommentDto> response = new CustomApiResponse<>(
+                "Successfully retrieved the thread of comment ID: " + id,
+                true,
+                thread
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
+
+    /**
+     * Retrieve the newest comment threads of a post.
+     *
+     * Returns up to {@code threads} top-level comments, newest first, each with up to
+     * {@code replies} of its replies in reading order. Everything is loaded in one query.
+     *
+     * @param postId the ID of the post
+     * @param threads the maximum number of top-level comments, capped at 100
+     * @param replies the maximum number of replies per thread, capped at 50
+     * @return a ResponseEntity containing a CustomApiResponse with the top-level comments and their nested replies
+     */
+    @Operation(summary = "Get Comment threads by Post ID", description = "Retrieve the newest threads of a post with their first replies.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the comment threads.")
+    @ApiResponse(responseCode = "404", description = "Post not found.")
+    @GetMapping("/posts/{postId}/threads")
+    public ResponseEntity<CustomApiResponse<List<CommentDto>>> getCommentThreads(@PathVariable Long postId,
+                                                                                @RequestParam(defaultValue = "20") int threads,
+                                                                                @RequestParam(defaultValue = "3") int replies) {
+        List<CommentDto> commentThreads = commentService.getCommentThreads(postId, threads, replies);
+        CustomApiResponse<List<CommentDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the comment threads for post ID: " + postId,
+                true,
+                commentThreads
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
 
 
 }
@@ -0,0 +1,86 @@
+package uz.developers.messenger.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.service.ExportService;
+
+/**
+ * Controller for bulk extracts of posts and comments.
+ * Rows are streamed to the client while they are read from the database,
+ * so memory use stays the same whatever the size of the tables.
+ */
+@RestController
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+@RequestMapping("/api/export")
+public class ExportController {
+
+
+    private final ExportService exportService;
+
+    /**
+     * Constructor for ExportController.
+     *
+     * @param exportService the service writing the exports
+     * @Autowired automatically injects the ExportService bean
+     */
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+
+
+    /**
+     * Export every post.
+     *
+     * Posts are read through a server-side cursor in a read-only transaction and written
+     * to the response as they arrive, ordered by ID.
+     *
+     * @param format NDJSON for one JSON object per line, CSV for comma separated values with a header row
+     * @return a ResponseEntity streaming the posts as an attachment
+     */
+    @Operation(summary = "Export Posts", description = "Stream every post as NDJSON or CSV.")
+    @ApiResponse(responseCode = "200", description = "Posts are streamed in the response body.")
+    @GetMapping("/posts")
+    public ResponseEntity<StreamingResponseBody> exportPosts(@RequestParam(defaultValue = "NDJSON") DataFormat format) {
+        return attachment("posts", format, out -> exportService.exportPosts(out, format));
+    }
+
+
+
+    /**
+     * Export every comment.
+     *
+     * Comments are read through a server-side cursor in a read-only transaction and written
+     * to the response as they arrive, ordered by ID.
+     *
+     * @param format NDJSON for one JSON object per line, CSV for comma separated values with a header row
+     * @return a ResponseEntity streaming the comments as an attachment
+     */
+    @Operation(summary = "Export Comments", description = "Stream every comment as NDJSON or CSV.")
+    @ApiResponse(responseCode = "200", description = "Comments are streamed in the response body.")
+    @GetMapping("/comments")
+    public ResponseEntity<StreamingResponseBody> exportComments(@RequestParam(defaultValue = "NDJSON") DataFormat format) {
+        return attachment("comments", format, out -> exportService.exportComments(out, format));
+    }
+
+
+
+    private ResponseEntity<StreamingResponseBody> attachment(String name, DataFormat format, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format.getExtension() + "\"")
+                .body(body);
+    }
+
+
+
+}
@@ -0,0 +1,221 @@
+package uz.developers.messenger.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.service.FollowService;
+import uz.developers.messenger.service.TimelineService;
+
+import java.util.List;
+
+/**
+ * Controller for handling requests related to the follow graph.
+ * This controller provides RESTful endpoints to follow and unfollow users,
+ * list followers and followees, and read a user's home timeline.
+ */
+@RestController
+@RequestMapping("/api/users")
+public class FollowController {
+
+
+    private final FollowService followService;
+
+    private final TimelineService timelineService;
+
+    /**
+     * Constructor for FollowController.
+     *
+     * @param followService the service to manage follow relations
+     * @param timelineService the service building home timelines
+     * @Autowired automatically injects the FollowService and TimelineService beans
+     */
+    @Autowired
+    public FollowController(FollowService followService, TimelineService timelineService) {
+        this.followService = followService;
+        this.timelineService = timelineService;
+    }
+
+
+
+    /**
+     * Makes one user follow another.
+     *
+     * @param userId the ID of the user who follows
+     * @param targetId the ID of the user to be followed
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Follow User", description = "Make a user follow another user.")
+    @ApiResponse(responseCode = "201", description = "User followed successfully.")
+    @ApiResponse(responseCode = "404", description = "User not found.")
+    @PostMapping("/{userId}/following/{targetId}")
+    public ResponseEntity<CustomApiResponse<Void>> follow(@PathVariable Long userId, @PathVariable Long targetId) {
+        followService.follow(userId, targetId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "User " + userId + " now follows user " + targetId,
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+
+
+    /**
+     * Makes one user stop following another.
+     *
+     * @param userId the ID of the user who follows
+     * @param targetId the ID of the user to be unfollowed
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Unfollow User", description = "Make a user stop following another user.")
+    @ApiResponse(responseCode = "200", description = "User unfollowed successfully.")
+    @DeleteMapping("/{userId}/following/{targetId}")
+    public ResponseEntity<CustomApiResponse<Void>> unfollow(@PathVariable Long userId, @PathVariable Long targetId) {
+        followService.unfollow(userId, targetId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "User " + userId + " no longer follows user " + targetId,
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the users following a user.
+     *
+     * @param userId the ID of the user
+     * @return a ResponseEntity containing a CustomApiResponse with the list of followers
+     */
+    @Operation(summary = "Get Followers", description = "Retrieve the users following a user.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of followers.")
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<CustomApiResponse<List<UserDto>>> getFollowers(@PathVariable Long userId) {
+        CustomApiResponse<List<UserDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the followers of user ID: " + userId,
+                true,
+                followService.getFollowers(userId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the users a user follows.
+     *
+     * @param userId the ID of the user
+     * @return a ResponseEntity containing a CustomApiResponse with the list of followed users
+     */
+    @Operation(summary = "Get Following", description = "Retrieve the users a user follows.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of followed users.")
+    @GetMapping("/{userId}/following")
+    public ResponseEntity<CustomApiResponse<List<UserDto>>> getFollowing(@PathVariable Long userId) {
+        CustomApiResponse<List<UserDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the users followed by user ID: " + userId,
+                true,
+                followService.getFollowing(userId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the users a user follows who follow them back.
+     *
+     * @param userId the ID of the user
+     * @return a ResponseEntity containing a CustomApiResponse with the list of mutual follows
+     */
+    @Operation(summary = "Get mutual Follows", description = "Retrieve the users a user follows who follow them back.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of mutual follows.")
+    @GetMapping("/{userId}/mutual-follows")
+    public ResponseEntity<CustomApiResponse<List<UserDto>>> getMutualFollows(@PathVariable Long userId) {
+        CustomApiResponse<List<UserDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the mutual follows of user ID: " + userId,
+                true,
+                followService.getMutualFollows(userId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the users followed by both users.
+     *
+     * @param userId the ID of the first user
+     * @param otherId the ID of the second user
+     * @return a ResponseEntity containing a CustomApiResponse with the list of commonly followed users
+     */
+    @Operation(summary = "Get common Following", description = "Retrieve the users followed by both users.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of commonly followed users.")
+    @GetMapping("/{userId}/following/common/{otherId}")
+    public ResponseEntity<CustomApiResponse<List<UserDto>>> getCommonFollowing(@PathVariable Long userId,
+                                                                              @PathVariable Long otherId) {
+        CustomApiResponse<List<UserDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the users followed by both user ID: " + userId + " and user ID: " + otherId,
+                true,
+                followService.getCommonFollowing(userId, otherId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the users a user follows who also follow the target user.
+     *
+     * @param userId the ID of the user
+     * @param targetId the ID of the target user
+     * @return a ResponseEntity containing a CustomApiResponse with the list of followed users following the target
+     */
+    @Operation(summary = "Get Followed by people you follow", description = "Retrieve the users a user follows who also follow the target user.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the list of followed users following the target.")
+    @GetMapping("/{userId}/following/followers-of/{targetId}")
+    public ResponseEntity<CustomApiResponse<List<UserDto>>> getFolloweesFollowing(@PathVariable Long userId,
+                                                                                 @PathVariable Long targetId) {
+        CustomApiResponse<List<UserDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the users followed by user ID: " + userId + " who follow user ID: " + targetId,
+                true,
+                followService.getFolloweesFollowing(userId, targetId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the home timeline of a user.
+     *
+     * The timeline contains the newest posts of everyone the user follows,
+     * newest first.
+     *
+     * @param userId the ID of the user
+     * @param limit the maximum number of posts to return
+     * @return a ResponseEntity containing a CustomApiResponse with the list of PostDto
+     */
+    @Operation(summary = "Get home Timeline", description = "Retrieve the newest posts of everyone a user follows.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the home timeline.")
+    @GetMapping("/{userId}/timeline")
+    public ResponseEntity<CustomApiResponse<List<PostDto>>> getHomeTimeline(@PathVariable Long userId,
+                                                                           @RequestParam(defaultValue = "50") int limit) {
+        CustomApiResponse<List<PostDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the home timeline of user ID: " + userId,
+                true,
+                timelineService.getHomeTimeline(userId, limit)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
+}
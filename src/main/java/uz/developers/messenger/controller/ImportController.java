@@ -0,0 +1,124 @@
+package uz.developers.messenger.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.payload.ImportResultDto;
+import uz.developers.messenger.service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Controller for bulk imports of users, posts and comments.
+ * The request body is the file itself, read as a stream and loaded in parallel
+ * chunks with PostgreSQL COPY. Every committed chunk is checkpointed, so sending
+ * the same file again with the same job ID resumes where the last run stopped.
+ */
+@RestController
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+@RequestMapping("/api/import")
+public class ImportController {
+
+
+    private final ImportService importService;
+
+    /**
+     * Constructor for ImportController.
+     *
+     * @param importService the service loading the files
+     * @Autowired automatically injects the ImportService bean
+     */
+    @Autowired
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+
+
+    /**
+     * Import users.
+     *
+     * Each record has the fields {@code name}, {@code email}, {@code password} and
+     * optionally {@code about}. Records are validated like a user created through the API;
+     * invalid records and emails that are already registered are rejected and reported.
+     *
+     * @param in the file, NDJSON or CSV with a header row
+     * @param format the format of the file
+     * @param jobId the ID of the job to resume, omitted to start a new job
+     * @return a ResponseEntity containing a CustomApiResponse with the import result
+     */
+    @Operation(summary = "Import Users", description = "Bulk load users from an NDJSON or CSV file.")
+    @ApiResponse(responseCode = "200", description = "Import finished; see the result for rejected records.")
+    @PostMapping("/users")
+    public ResponseEntity<CustomApiResponse<ImportResultDto>> importUsers(InputStream in,
+                                                                          @RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                                          @RequestParam(required = false) String jobId) throws IOException {
+        return result(importService.importUsers(in, format, jobId));
+    }
+
+
+
+    /**
+     * Import posts.
+     *
+     * Each record has the fields {@code title}, {@code content}, {@code category} (the category name),
+     * {@code userEmail} (the author) and optionally {@code image} and {@code date} (yyyy-MM-dd).
+     * Categories and authors are looked up once per chunk; records referring to unknown ones are rejected.
+     *
+     * @param in the file, NDJSON or CSV with a header row
+     * @param format the format of the file
+     * @param jobId the ID of the job to resume, omitted to start a new job
+     * @return a ResponseEntity containing a CustomApiResponse with the import result
+     */
+    @Operation(summary = "Import Posts", description = "Bulk load posts from an NDJSON or CSV file.")
+    @ApiResponse(responseCode = "200", description = "Import finished; see the result for rejected records.")
+    @PostMapping("/posts")
+    public ResponseEntity<CustomApiResponse<ImportResultDto>> importPosts(InputStream in,
+                                                                          @RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                                          @RequestParam(required = false) String jobId) throws IOException {
+        return result(importService.importPosts(in, format, jobId));
+    }
+
+
+
+    /**
+     * Import comments.
+     *
+     * Each record has the fields {@code postId}, {@code userEmail} (the author) and {@code content}.
+     * Imported comments start their own thread, and the comment counters of their posts are updated.
+     *
+     * @param in the file, NDJSON or CSV with a header row
+     * @param format the format of the file
+     * @param jobId the ID of the job to resume, omitted to start a new job
+     * @return a ResponseEntity containing a CustomApiResponse with the import result
+     */
+    @Operation(summary = "Import Comments", description = "Bulk load comments from an NDJSON or CSV file.")
+    @ApiResponse(responseCode = "200", description = "Import finished; see the result for rejected records.")
+    @PostMapping("/comments")
+    public ResponseEntity<CustomApiResponse<ImportResultDto>> importComments(InputStream in,
+                                                                             @RequestParam(defaultValue = "NDJSON") DataFormat format,
+                                                                             @RequestParam(required = false) String jobId) throws IOException {
+        return result(importService.importComments(in, format, jobId));
+    }
+
+
+
+    private ResponseEntity<CustomApiResponse<ImportResultDto>> result(ImportResultDto result) {
+        CustomApiResponse<ImportResultDto> response = new CustomApiResponse<>(
+                "Import " + result.getJobId() + " finished: " + result.getRowsImported() + " records imported.",
+                result.getChunksFailed() == 0,
+                result
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+}
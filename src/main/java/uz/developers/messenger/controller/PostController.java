@@ -1,16 +1,22 @@
 package uz.developers.messenger.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.exceptions.PostException;
 import uz.developers.messenger.payload.CustomApiResponse;
 import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.TrendingHashtagDto;
 
 import uz.developers.messenger.service.PostService;
+import uz.developers.messenger.util.MergePatch;
 
 
 import java.util.List;
@@ -125,6 +131,56 @@ public class PostController {
 
 
 
+    /**
+     * Retrieves the currently trending posts.
+     *
+     * Posts are ranked by recent views, comments and reactions, with older
+     * activity counting less. When a category ID is given, only posts of
+     * that category are ranked.
+     *
+     * @param categoryId optional ID of the category to rank within
+     * @param limit the maximum number of posts to return
+     * @return a ResponseEntity containing a CustomApiResponse with the list of trending PostDto
+     */
+    @Operation(summary = "Get trending Posts", description = "Retrieve the currently trending posts, globally or for a category.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the trending posts.")
+    @GetMapping("/trending")
+    public ResponseEntity<CustomApiResponse<List<PostDto>>> getTrendingPosts(@RequestParam(required = false) Long categoryId,
+                                                                            @RequestParam(defaultValue = "20") int limit) {
+        List<PostDto> postDtos = postService.getTrendingPosts(categoryId, limit);
+        CustomApiResponse<List<PostDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the trending posts.",
+                true,
+                postDtos
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
+    /**
+     * Retrieves the currently trending hashtags of posts and comments.
+     *
+     * @param limit the maximum number of hashtags to return
+     * @return a ResponseEntity containing a CustomApiResponse with the list of TrendingHashtagDto
+     */
+    @Operation(summary = "Get trending Hashtags", description = "Retrieve the currently trending hashtags.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the trending hashtags.")
+    @GetMapping("/trending/hashtags")
+    public ResponseEntity<CustomApiResponse<List<TrendingHashtagDto>>> getTrendingHashtags(@RequestParam(defaultValue = "20") int limit) {
+        List<TrendingHashtagDto> hashtags = postService.getTrendingHashtags(limit);
+        CustomApiResponse<List<TrendingHashtagDto>> response = new CustomApiResponse<>(
+                "Successfully retrieved the trending hashtags.",
+                true,
+                hashtags
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
     /**
      * Retrieve a list of all posts.
      *
@@ -163,6 +219,7 @@ public class PostController {
      * message indicating that the post was not found and a 404 Not Found status.
      *
      * @param id the ID of the post to retrieve
+     * @param viewerId optional ID of the user reading the post, counted towards unique readers
      * @return a ResponseEntity containing a CustomApiResponse with the PostDto and
      *         an HTTP status of OK, or a NOT FOUND status if the post does not exist.
      */
@@ -170,8 +227,9 @@ public class PostController {
     @ApiResponse(responseCode = "200", description = "Successfully retrieved the post.")
     @ApiResponse(responseCode = "404", description = "Post not found.")
     @GetMapping("/{id}")
-    public ResponseEntity<CustomApiResponse<PostDto>> getUserById(@PathVariable Long id) {
-        Optional<PostDto> postDto = postService.getPostById(id);
+    public ResponseEntity<CustomApiResponse<PostDto>> getUserById(@PathVariable Long id,
+                                                                  @RequestParam(required = false) Long viewerId) {
+        Optional<PostDto> postDto = postService.viewPost(id, viewerId);
         if (postDto.isPresent()){
             CustomApiResponse<PostDto> response = new CustomApiResponse<>(
                     "Successfully retrieved the post.",
@@ -254,6 +312,39 @@ public class PostController {
     }
 
 
+    /**
+     * Apply a JSON merge patch (RFC 7396) to a post.
+     *
+     * Only the properties named in the patch change (title, content, image and
+     * categoryDto.id), in a single statement. A property set to null is removed, where it is
+     * optional. With an If-Match header holding the version the client read, the patch only
+     * applies to that version; the new version comes back as ETag.
+     *
+     * @param id the ID of the post to patch
+     * @param ifMatch the expected version, or none to patch whatever version is current
+     * @param patch the merge patch
+     * @return a ResponseEntity containing a CustomApiResponse with the patched PostDto
+     */
+    @Operation(summary = "Patch post", description = "Change some properties of a post with a JSON merge patch.")
+    @ApiResponse(responseCode = "200", description = "Post patched successfully")
+    @ApiResponse(responseCode = "400", description = "The patch names a property that cannot be patched, or an invalid value")
+    @ApiResponse(responseCode = "404", description = "Post not found")
+    @ApiResponse(responseCode = "409", description = "The post was changed since the version in If-Match")
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CustomApiResponse<PostDto>> patchPost(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        PostDto patched = postService.patchPost(id, patch, MergePatch.parseVersion(ifMatch, PostException::new));
+        CustomApiResponse<PostDto> response = new CustomApiResponse<>(
+                "Post patched successfully",
+                true,
+                patched
+        );
+        return new ResponseEntity<>(response, MergePatch.etagHeaders(patched.getVersion()), HttpStatus.OK);
+    }
+
+
 
 
     /**
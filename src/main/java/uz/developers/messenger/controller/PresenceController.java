@@ -0,0 +1,167 @@
+package uz.developers.messenger.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.service.PresenceService;
+
+import java.util.List;
+
+/**
+ * Controller for handling requests related to online presence.
+ * This controller provides RESTful endpoints for heartbeats, online lookups
+ * and "typing..." indicators in post comment threads.
+ */
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+
+    private final PresenceService presenceService;
+
+    /**
+     * Constructor for PresenceController.
+     *
+     * @param presenceService the service tracking online users
+     * @Autowired automatically injects the PresenceService bean
+     */
+    @Autowired
+    public PresenceController(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+
+
+    /**
+     * Registers a heartbeat for a connected user.
+     *
+     * Clients call this periodically while connected; a user is considered
+     * offline once no heartbeat has arrived within the presence TTL.
+     *
+     * @param userId the ID of the user sending the heartbeat
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Heartbeat", description = "Mark a user as online for the presence TTL.")
+    @ApiResponse(responseCode = "200", description = "Heartbeat accepted.")
+    @PostMapping("/users/{userId}/heartbeat")
+    public ResponseEntity<CustomApiResponse<Void>> heartbeat(@PathVariable Long userId) {
+        presenceService.heartbeat(userId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "Heartbeat accepted.",
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Marks a user as offline immediately.
+     *
+     * @param userId the ID of the user that disconnected
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Disconnect", description = "Mark a user as offline.")
+    @ApiResponse(responseCode = "200", description = "User marked as offline.")
+    @DeleteMapping("/users/{userId}")
+    public ResponseEntity<CustomApiResponse<Void>> disconnect(@PathVariable Long userId) {
+        presenceService.disconnect(userId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "User marked as offline.",
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Checks whether a single user is online.
+     *
+     * @param userId the ID of the user to check
+     * @return a ResponseEntity containing a CustomApiResponse with the online flag
+     */
+    @Operation(summary = "Is User online", description = "Check whether a user is currently online.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the presence of the user.")
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<CustomApiResponse<Boolean>> isOnline(@PathVariable Long userId) {
+        CustomApiResponse<Boolean> response = new CustomApiResponse<>(
+                "Successfully retrieved the presence of user ID: " + userId,
+                true,
+                presenceService.isOnline(userId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Returns which of the given users are online.
+     *
+     * @param userIds the IDs of the users to check
+     * @return a ResponseEntity containing a CustomApiResponse with the IDs of the online users
+     */
+    @Operation(summary = "Get online Users", description = "Return which of the given users are currently online.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the online users.")
+    @PostMapping("/users/online")
+    public ResponseEntity<CustomApiResponse<List<Long>>> getOnlineUsers(@RequestBody List<Long> userIds) {
+        CustomApiResponse<List<Long>> response = new CustomApiResponse<>(
+                "Successfully retrieved the online users.",
+                true,
+                presenceService.getOnlineUsers(userIds)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Signals that a user is typing a comment on a post.
+     *
+     * @param postId the ID of the post whose comments are being written
+     * @param userId the ID of the user who is typing
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Typing", description = "Signal that a user is typing a comment on a post.")
+    @ApiResponse(responseCode = "200", description = "Typing signal accepted.")
+    @PostMapping("/posts/{postId}/typing/{userId}")
+    public ResponseEntity<CustomApiResponse<Void>> typing(@PathVariable Long postId, @PathVariable Long userId) {
+        presenceService.typing(postId, userId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "Typing signal accepted.",
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Returns the users currently typing a comment on a post.
+     *
+     * @param postId the ID of the post
+     * @return a ResponseEntity containing a CustomApiResponse with the IDs of the typing users
+     */
+    @Operation(summary = "Get typing Users", description = "Retrieve the users currently typing a comment on a post.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the typing users.")
+    @GetMapping("/posts/{postId}/typing")
+    public ResponseEntity<CustomApiResponse<List<Long>>> getTypingUsers(@PathVariable Long postId) {
+        CustomApiResponse<List<Long>> response = new CustomApiResponse<>(
+                "Successfully retrieved the typing users for post ID: " + postId,
+                true,
+                presenceService.getTypingUsers(postId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
+}
@@ -0,0 +1,146 @@
+package uz.developers.messenger.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.entity.ReactionTargetType;
+import uz.developers.messenger.entity.ReactionType;
+import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.payload.ReactionSummaryDto;
+import uz.developers.messenger.service.ReactionService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller for handling requests related to Reaction operations.
+ * This controller provides RESTful endpoints to react to posts and comments,
+ * remove reactions, read reaction counts and look up a user's own reactions.
+ * The target type in the path is either POST or COMMENT.
+ */
+@RestController
+@RequestMapping("/api/reactions")
+public class ReactionController {
+
+
+    private final ReactionService reactionService;
+
+    /**
+     * Constructor for ReactionController.
+     *
+     * @param reactionService the service to manage reactions
+     * @Autowired automatically injects the ReactionService bean
+     */
+    @Autowired
+    public ReactionController(ReactionService reactionService) {
+        this.reactionService = reactionService;
+    }
+
+
+
+    /**
+     * Adds or replaces a user's reaction on a post or comment.
+     *
+     * @param targetType POST or COMMENT
+     * @param targetId the ID of the post or comment
+     * @param userId the ID of the reacting user
+     * @param type the reaction to give
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "React", description = "Add or replace a user's reaction on a post or comment.")
+    @ApiResponse(responseCode = "200", description = "Reaction saved successfully.")
+    @ApiResponse(responseCode = "404", description = "Post or comment not found.")
+    @PutMapping("/{targetType}/{targetId}/users/{userId}")
+    public ResponseEntity<CustomApiResponse<Void>> react(@PathVariable ReactionTargetType targetType,
+                                                         @PathVariable Long targetId,
+                                                         @PathVariable Long userId,
+                                                         @RequestParam(defaultValue = "LIKE") ReactionType type) {
+        reactionService.react(targetType, targetId, userId, type);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "Reaction saved successfully.",
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Removes a user's reaction from a post or comment.
+     *
+     * @param targetType POST or COMMENT
+     * @param targetId the ID of the post or comment
+     * @param userId the ID of the user
+     * @return a ResponseEntity containing a CustomApiResponse with the status of the operation
+     */
+    @Operation(summary = "Remove Reaction", description = "Remove a user's reaction from a post or comment.")
+    @ApiResponse(responseCode = "200", description = "Reaction removed successfully.")
+    @DeleteMapping("/{targetType}/{targetId}/users/{userId}")
+    public ResponseEntity<CustomApiResponse<Void>> removeReaction(@PathVariable ReactionTargetType targetType,
+                                                                  @PathVariable Long targetId,
+                                                                  @PathVariable Long userId) {
+        reactionService.removeReaction(targetType, targetId, userId);
+        CustomApiResponse<Void> response = new CustomApiResponse<>(
+                "Reaction removed successfully.",
+                true,
+                null
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve the reaction counts of a post or comment.
+     *
+     * @param targetType POST or COMMENT
+     * @param targetId the ID of the post or comment
+     * @return a ResponseEntity containing a CustomApiResponse with the ReactionSummaryDto
+     */
+    @Operation(summary = "Get Reaction summary", description = "Retrieve the reaction counts of a post or comment.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the reaction counts.")
+    @GetMapping("/{targetType}/{targetId}")
+    public ResponseEntity<CustomApiResponse<ReactionSummaryDto>> getReactionSummary(@PathVariable ReactionTargetType targetType,
+                                                                                   @PathVariable Long targetId) {
+        CustomApiResponse<ReactionSummaryDto> response = new CustomApiResponse<>(
+                "Successfully retrieved the reaction counts.",
+                true,
+                reactionService.getReactionSummary(targetType, targetId)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+    /**
+     * Retrieve a user's reactions on a page of posts or comments.
+     *
+     * Targets the user has not reacted to are left out of the result.
+     *
+     * @param targetType POST or COMMENT
+     * @param userId the ID of the user
+     * @param targetIds the IDs of the posts or comments on the page
+     * @return a ResponseEntity containing a CustomApiResponse with the reaction per target ID
+     */
+    @Operation(summary = "Get User Reactions", description = "Retrieve a user's reactions on a page of posts or comments.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the user's reactions.")
+    @PostMapping("/{targetType}/users/{userId}")
+    public ResponseEntity<CustomApiResponse<Map<Long, ReactionType>>> getUserReactions(@PathVariable ReactionTargetType targetType,
+                                                                                      @PathVariable Long userId,
+                                                                                      @RequestBody List<Long> targetIds) {
+        CustomApiResponse<Map<Long, ReactionType>> response = new CustomApiResponse<>(
+                "Successfully retrieved the reactions of user ID: " + userId,
+                true,
+                reactionService.getUserReactions(targetType, userId, targetIds)
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
+
+}
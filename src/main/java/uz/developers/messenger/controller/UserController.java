@@ -1,15 +1,23 @@
 package uz.developers.messenger.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import uz.developers.messenger.exceptions.UserException;
 import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.payload.UserDeletionDto;
 import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.payload.UserProfileDto;
+import uz.developers.messenger.service.UserProfileService;
 import uz.developers.messenger.service.UserService;
+import uz.developers.messenger.util.MergePatch;
 
 import java.util.List;
 import java.util.Optional;
@@ -25,15 +33,19 @@ public class UserController {
 
     private final UserService userService;
 
+    private final UserProfileService userProfileService;
+
     /**
      * Constructor for RegionController.
      *
      * @param userService the service to manage user records
+     * @param userProfileService the service assembling user profiles
      * @Autowired automatically injects the RegionService bean
      */
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserProfileService userProfileService) {
         this.userService = userService;
+        this.userProfileService = userProfileService;
     }
 
 
@@ -99,6 +111,36 @@ public class UserController {
 
 
 
+    /**
+     * Retrieve everything the profile screen of a user shows in one request.
+     *
+     * The user, their posts, the number of comments they wrote and the categories
+     * are loaded concurrently, so the request takes as long as the slowest of them.
+     * Parts that fail or are not ready within the deadline are left out and listed
+     * under {@code missing}; the response is then marked as not successful but still
+     * carries every part that was loaded.
+     *
+     * @param id the ID of the user
+     * @return a ResponseEntity containing a CustomApiResponse with the UserProfileDto,
+     *         or a NOT FOUND status if the user does not exist.
+     */
+    @Operation(summary = "Get User profile", description = "Retrieve a user with their posts, comment count and the categories.")
+    @ApiResponse(responseCode = "200", description = "Retrieved the profile, possibly without parts that missed the deadline.")
+    @ApiResponse(responseCode = "404", description = "User not found.")
+    @GetMapping("/{id}/profile")
+    public ResponseEntity<CustomApiResponse<UserProfileDto>> getUserProfile(@PathVariable Long id) {
+        UserProfileDto profile = userProfileService.getProfile(id);
+        boolean complete = profile.getMissing().isEmpty();
+        CustomApiResponse<UserProfileDto> response = new CustomApiResponse<>(
+                complete ? "Successfully retrieved the profile." : "Retrieved the profile without: " + String.join(", ", profile.getMissing()),
+                complete,
+                profile
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+
+
     /**
      * Creates a new user.
      *
@@ -162,32 +204,75 @@ public class UserController {
     }
 
 
+    /**
+     * Apply a JSON merge patch (RFC 7396) to a user.
+     *
+     * Only the properties named in the patch change (name, email, password and about), in a
+     * single statement. A property set to null is removed, where it is optional. With an
+     * If-Match header holding the version the client read, the patch only applies to that
+     * version; the new version comes back as ETag.
+     *
+     * @param id the ID of the user to patch
+     * @param ifMatch the expected version, or none to patch whatever version is current
+     * @param patch the merge patch
+     * @return a ResponseEntity containing a CustomApiResponse with the patched UserDto
+     */
+    @Operation(summary = "Patch user", description = "Change some properties of a user with a JSON merge patch.")
+    @ApiResponse(responseCode = "200", description = "User patched successfully")
+    @ApiResponse(responseCode = "400", description = "The patch names a property that cannot be patched, or an invalid value")
+    @ApiResponse(responseCode = "404", description = "User not found")
+    @ApiResponse(responseCode = "409", description = "The user was changed since the version in If-Match")
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CustomApiResponse<UserDto>> patchUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        UserDto patched = userService.patchUser(id, patch, MergePatch.parseVersion(ifMatch, UserException::new));
+        CustomApiResponse<UserDto> response = new CustomApiResponse<>(
+                "User patched successfully",
+                true,
+                patched
+        );
+        return new ResponseEntity<>(response, MergePatch.etagHeaders(patched.getVersion()), HttpStatus.OK);
+    }
+
+
 
 
     /**
-     * Delete a user by their ID.
+     * Delete a user by their ID, together with their posts, comments and follows.
      *
-     * This method deletes the user record based on the given ID if it exists.
+     * A small account is deleted before the response is sent. A large one is deleted
+     * in the background; the response then carries the progress, which can be
+     * followed at {@code /api/users/{id}/deletion}.
      *
      * @param id the ID of the user to delete
      * @return a ResponseEntity containing a CustomApiResponse with the status of the operation,
-     *         or NOT FOUND if the user does not exist
+     *         ACCEPTED with the progress while the deletion runs, or NOT FOUND if the user does not exist
      */
-    @Operation(summary = "Delete User", description = "Delete a user by its ID.")
+    @Operation(summary = "Delete User", description = "Delete a user by its ID, with their posts, comments and follows.")
     @ApiResponse(responseCode = "204", description = "User deleted successfully.")
+    @ApiResponse(responseCode = "202", description = "User deletion started in the background.")
     @ApiResponse(responseCode = "404", description = "User not found.")
     @DeleteMapping("/{id}")
-    public ResponseEntity<CustomApiResponse<Void>> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<CustomApiResponse<UserDeletionDto>> deleteUser(@PathVariable Long id) {
         Optional<UserDto> userDto = userService.getUserById(id);
         if (userDto.isPresent()) {
-            userService.deleteUser(id);
-            CustomApiResponse<Void> customApiResponse = new CustomApiResponse<>(
+            UserDeletionDto deletion = userService.deleteUser(id);
+            if (!"DONE".equals(deletion.getState())) {
+                CustomApiResponse<UserDeletionDto> customApiResponse = new CustomApiResponse<>(
+                        "User deletion started.",
+                        true,
+                        deletion);
+                return new ResponseEntity<>(customApiResponse, HttpStatus.ACCEPTED);
+            }
+            CustomApiResponse<UserDeletionDto> customApiResponse = new CustomApiResponse<>(
                     "User deleted successfully.",
                     true,
                     null);
             return new ResponseEntity<>(customApiResponse, HttpStatus.NO_CONTENT);
         } else {
-            CustomApiResponse<Void> customApiResponse = new CustomApiResponse<>(
+            CustomApiResponse<UserDeletionDto> customApiResponse = new CustomApiResponse<>(
                     "User not found with ID: " + id,
                     false,
                     null);
@@ -196,6 +281,33 @@ public class UserController {
     }
 
 
+    /**
+     * Retrieve the progress of a user deletion.
+     *
+     * Deletions are tracked by the node that runs them and reported for an hour after
+     * they finish.
+     *
+     * @param id the ID of the user being deleted
+     * @return a ResponseEntity containing a CustomApiResponse with the progress,
+     *         or NOT FOUND if no deletion of the user is known
+     */
+    @Operation(summary = "Get User deletion", description = "Retrieve the progress of deleting a user.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved the deletion progress.")
+    @ApiResponse(responseCode = "404", description = "No deletion of the user is known.")
+    @GetMapping("/{id}/deletion")
+    public ResponseEntity<CustomApiResponse<UserDeletionDto>> getDeletion(@PathVariable Long id) {
+        return userService.getDeletion(id)
+                .map(deletion -> new ResponseEntity<>(new CustomApiResponse<>(
+                        "Successfully retrieved the deletion progress.",
+                        true,
+                        deletion), HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(new CustomApiResponse<>(
+                        "No deletion found for user with ID: " + id,
+                        false,
+                        null), HttpStatus.NOT_FOUND));
+    }
+
+
 
 
 }
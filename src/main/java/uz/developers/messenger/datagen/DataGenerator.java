@@ -0,0 +1,308 @@
+package uz.developers.messenger.datagen;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import uz.developers.messenger.util.CommentPaths;
+import uz.developers.messenger.util.ZipfSampler;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.SplittableRandom;
+
+/**
+ * Fills the database with a consistent synthetic data set for load and capacity tests.
+ *
+ * Rows are streamed with {@code COPY ... FROM STDIN} instead of going through JPA, and
+ * appended after the rows that already exist. Posts per category and per author, and
+ * comments per post, follow Zipf distributions whose exponents are the skew settings;
+ * 0 spreads them uniformly. The same seed always produces the same data.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.profiles=datagen \
+ *     -Dspring-boot.run.arguments="--datagen.users=1000000 --datagen.posts=10000000"
+ * </pre>
+ */
+@Component
+@Profile("datagen")
+public class DataGenerator implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataGenerator.class);
+
+    private static final String[] WORDS = {
+            "java", "spring", "postgres", "index", "query", "cache", "thread", "stream", "kotlin", "docker",
+            "cloud", "design", "review", "release", "bug", "feature", "test", "deploy", "scale", "latency",
+            "memory", "network", "security", "api", "json", "tutorial", "guide", "news", "travel", "music",
+            "food", "sport", "photo", "movie", "book", "coffee", "weekend", "startup", "career", "tashkent"
+    };
+
+    private static final int LOG_EVERY = 1_000_000;
+
+    private final DataSource dataSource;
+
+    private final ConfigurableApplicationContext context;
+
+    private final int users;
+
+    private final int categories;
+
+    private final int posts;
+
+    private final long comments;
+
+    private final double categorySkew;
+
+    private final double authorSkew;
+
+    private final double commentSkew;
+
+    private final double replyRatio;
+
+    private final int days;
+
+    private final long seed;
+
+    public DataGenerator(DataSource dataSource, ConfigurableApplicationContext context,
+                         @Value("${datagen.users:100000}") int users,
+                         @Value("${datagen.categories:50}") int categories,
+                         @Value("${datagen.posts:1000000}") int posts,
+                         @Value("${datagen.comments:5000000}") long comments,
+                         @Value("${datagen.category-skew:1.1}") double categorySkew,
+                         @Value("${datagen.author-skew:1.2}") double authorSkew,
+                         @Value("${datagen.comment-skew:1.0}") double commentSkew,
+                         @Value("${datagen.reply-ratio:0.6}") double replyRatio,
+                         @Value("${datagen.days:365}") int days,
+                         @Value("${datagen.seed:42}") long seed) {
+        this.dataSource = dataSource;
+        this.context = context;
+        this.users = users;
+        this.categories = categories;
+        this.posts = posts;
+        this.comments = comments;
+        this.categorySkew = categorySkew;
+        this.authorSkew = authorSkew;
+        this.commentSkew = commentSkew;
+        this.replyRatio = replyRatio;
+        this.days = days;
+        this.seed = seed;
+    }
+
+
+    @Override
+    public void run(String... args) throws Exception {
+        long started = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+            long firstUser = nextId(connection, "users");
+            long firstCategory = nextId(connection, "category");
+            long firstPost = nextId(connection, "posts");
+            long firstComment = nextId(connection, "comment");
+
+            copyUsers(pgConnection, firstUser);
+            copyCategories(pgConnection, firstCategory);
+            long[] postDates = copyPosts(pgConnection, firstPost, firstCategory, firstUser);
+            copyComments(pgConnection, firstComment, firstPost, firstUser, postDates);
+
+            try (Statement statement = connection.createStatement()) {
+                for (String table : new String[]{"users", "category", "posts", "comment"}) {
+                    statement.execute("select setval(pg_get_serial_sequence('" + table + "', 'id'), " +
+                            "(select max(id) from " + table + "))");
+                }
+                statement.execute("insert into post_stats (post_id, view_count, comment_count, reaction_count, updated_at) " +
+                        "select p.id, 0, count(c.id), 0, now() from posts p left join comment c on c.post_id = p.id " +
+                        "where p.id >= " + firstPost + " group by p.id " +
+                        "on conflict (post_id) do update set comment_count = excluded.comment_count");
+                statement.execute("analyze");
+            }
+        }
+        log.info("Generated {} users, {} categories, {} posts and {} comments in {} s",
+                users, categories, posts, comments, (System.currentTimeMillis() - started) / 1000);
+        System.exit(SpringApplication.exit(context));
+    }
+
+
+    private void copyUsers(PGConnection connection, long firstId) throws SQLException, IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Writer out = copy(connection, "users (id, user_name, user_email, user_password, about)")) {
+            for (long id = firstId; id < firstId + users; id++) {
+                row(out, id, "user" + id, "user" + id + "@example.com",
+                        Long.toHexString(random.nextLong()), sentence(random, 1 + random.nextInt(8), 100));
+            }
+        }
+        log.info("Copied {} users", users);
+    }
+
+    private void copyCategories(PGConnection connection, long firstId) throws SQLException, IOException {
+        try (Writer out = copy(connection, "category (id, name, description)")) {
+            for (int i = 0; i < categories; i++) {
+                long id = firstId + i;
+                row(out, id, truncate(WORDS[i % WORDS.length] + "-" + id, 20), "Posts about " + WORDS[i % WORDS.length]);
+            }
+        }
+        log.info("Copied {} categories", categories);
+    }
+
+    // Returns the date of every post, which its comments are partitioned by
+    private long[] copyPosts(PGConnection connection, long firstId, long firstCategory, long firstUser)
+            throws SQLException, IOException {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        ZipfSampler categorySampler = new ZipfSampler(categories, categorySkew);
+        ZipfSampler authorSampler = new ZipfSampler(users, authorSkew);
+        long now = System.currentTimeMillis();
+        long span = days * 86_400_000L;
+        long[] dates = new long[posts];
+
+        try (Writer out = copy(connection, "posts (id, post_title, content, image, date, category_id, user_id)")) {
+            for (int i = 0; i < posts; i++) {
+                // Dates grow with the ID, as they would in production, with some jitter; never
+                // after the post's first comment, which must not be older than its post
+                dates[i] = Math.min(now - span + span * i / posts - random.nextLong(60_000), now);
+                String title = sentence(random, 3 + random.nextInt(6), 90) + " #" + WORDS[random.nextInt(WORDS.length)];
+                row(out, firstId + i, title, sentence(random, 20 + random.nextInt(120), 1000), null,
+                        new Date(dates[i]),
+                        firstCategory + categorySampler.sample(random) - 1,
+                        firstUser + authorSampler.sample(random) - 1);
+                if ((i + 1) % LOG_EVERY == 0) {
+                    log.info("Copied {} posts", i + 1);
+                }
+            }
+        }
+        log.info("Copied {} posts", posts);
+        return dates;
+    }
+
+    private void copyComments(PGConnection connection, long firstId, long firstPost, long firstUser, long[] postDates)
+            throws SQLException, IOException {
+        SplittableRandom random = new SplittableRandom(seed + 2);
+
+        // Comments per post: Zipf over a popularity rank, spread over posts by a stride
+        // coprime with the post count so popular posts are not all the oldest ones
+        int[] counts = new int[posts];
+        ZipfSampler postSampler = new ZipfSampler(posts, commentSkew);
+        long stride = coprimeStride(posts);
+        for (long i = 0; i < comments; i++) {
+            long rank = postSampler.sample(random) - 1;
+            counts[(int) (rank * stride % posts)]++;
+        }
+
+        long now = System.currentTimeMillis();
+        long span = days * 86_400_000L;
+        long id = firstId;
+        long[] threadIds = new long[0];
+        String[] threadPaths = new String[0];
+        int[] threadDepths = new int[0];
+        try (Writer out = copy(connection,
+                "comment (id, user_name, user_id, post_id, post_date, parent_id, root_id, path, depth, created_at)")) {
+            for (int p = 0; p < posts; p++) {
+                int count = counts[p];
+                Date postDate = new Date(postDates[p]);
+                // Comments follow their post a few minutes apart
+                long createdAt = now - span + span * p / posts;
+                if (threadIds.length < count) {
+                    threadIds = new long[count];
+                    threadPaths = new String[count];
+                    threadDepths = new int[count];
+                }
+                // Every reply answers an earlier comment of the same post, which is already copied
+                for (int c = 0; c < count; c++, id++) {
+                    long userId = firstUser + random.nextInt(users);
+                    String content = sentence(random, 1 + random.nextInt(4), 20);
+                    int parent = c > 0 && random.nextDouble() < replyRatio ? random.nextInt(c) : -1;
+                    if (parent >= 0 && threadDepths[parent] >= CommentPaths.MAX_DEPTH) {
+                        parent = -1;
+                    }
+                    String segment = CommentPaths.segment(id);
+                    createdAt += random.nextLong(1_000, 600_000);
+                    Timestamp created = new Timestamp(Math.min(createdAt, now));
+                    if (parent < 0) {
+                        threadPaths[c] = segment;
+                        threadDepths[c] = 0;
+                        row(out, id, content, userId, firstPost + p, postDate, null, id, segment, 0, created);
+                    } else {
+                        threadPaths[c] = threadPaths[parent] + segment;
+                        threadDepths[c] = threadDepths[parent] + 1;
+                        long rootId = CommentPaths.rootId(threadPaths[parent]);
+                        row(out, id, content, userId, firstPost + p, postDate, threadIds[parent], rootId,
+                                threadPaths[c], threadDepths[c], created);
+                    }
+                    threadIds[c] = id;
+                }
+                if ((id - firstId) / LOG_EVERY != (id - firstId - count) / LOG_EVERY) {
+                    log.info("Copied {} comments", id - firstId);
+                }
+            }
+        }
+        log.info("Copied {} comments", id - firstId);
+    }
+
+
+    private static Writer copy(PGConnection connection, String target) throws SQLException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(connection, "copy " + target + " from stdin"), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    // One row in COPY text format; the generated values never contain tabs, newlines or backslashes
+    private static void row(Writer out, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write('\t');
+            }
+            out.write(values[i] == null ? "\\N" : values[i].toString());
+        }
+        out.write('\n');
+    }
+
+    private static long nextId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) + 1 from " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static String sentence(SplittableRandom random, int words, int maxLength) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return truncate(sentence.toString(), maxLength);
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    private static long coprimeStride(long n) {
+        long stride = (long) (n * 0.6180339887) | 1;
+        while (gcd(stride, n) != 1) {
+            stride += 2;
+        }
+        return stride;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+}
@@ -31,6 +31,11 @@ public class Category {
             required = true)
     private String description;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Version of the row, bumped by every update", example = "0")
+    private Long version;
+
 
 
 }
@@ -4,7 +4,13 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Date;
+import java.sql.Timestamp;
 
 @Data
 @AllArgsConstructor
@@ -39,4 +45,39 @@ public class Comment {
             required = true)
     private Post post;
 
+    @Column(name = "post_date", nullable = false, updatable = false)
+    @Schema(hidden = true)
+    private Date postDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "parent_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @Schema(description = "Comment this comment replies to, null for a top-level comment")
+    private Comment parent;
+
+    @Column(name = "root_id")
+    @Schema(description = "ID of the top-level comment of the thread", example = "1")
+    private Long rootId;
+
+    @Column(name = "path", length = 192)
+    @Schema(description = "Materialized path: the IDs from the thread root down to this comment, " +
+            "each as 12 lower-case hex digits, so sorting by path yields the thread in reading order",
+            example = "00000000000100000000002a")
+    private String path;
+
+    @Column(name = "depth", columnDefinition = "integer default 0 not null")
+    @Schema(description = "Nesting level, 0 for a top-level comment", example = "1")
+    private int depth;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Schema(description = "When the comment was written", example = "2024-10-10T12:00:00")
+    private Timestamp createdAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Version of the row, bumped by every update", example = "0")
+    private Long version;
+
 }
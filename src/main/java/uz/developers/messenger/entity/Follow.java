@@ -0,0 +1,37 @@
+package uz.developers.messenger.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "user_follows",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"follower_id", "followee_id"}))
+@Schema(description = "Follow entity represents one user following another user.")
+public class Follow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Schema(hidden = true)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "follower_id", nullable = false)
+    @Schema(description = "User who follows",
+            example = "User(id=1, name=Nizomiddin Mirzanazarov, email=nizomiddinmirzanazarov@example.com)",
+            required = true)
+    private User follower;
+
+    @ManyToOne
+    @JoinColumn(name = "followee_id", nullable = false)
+    @Schema(description = "User who is followed",
+            example = "User(id=2, name=John Doe, email=johndoe@example.com)",
+            required = true)
+    private User followee;
+
+}
@@ -59,6 +59,11 @@ public class Post {
             required = true)
     private User user;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Version of the row, bumped by every update", example = "0")
+    private Long version;
+
 
 
 
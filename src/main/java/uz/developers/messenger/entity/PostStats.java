@@ -0,0 +1,48 @@
+package uz.developers.messenger.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "post_stats")
+@Schema(description = "PostStats entity holds the persisted engagement counters of a post.")
+public class PostStats {
+
+    @Id
+    @Column(name = "post_id")
+    @Schema(description = "ID of the post", example = "1")
+    private Long postId;
+
+    @Column(name = "view_count", nullable = false)
+    @Schema(description = "Number of times the post was viewed", example = "1200")
+    private long viewCount;
+
+    @Column(name = "comment_count", nullable = false)
+    @Schema(description = "Number of comments on the post", example = "14")
+    private long commentCount;
+
+    @Column(name = "reaction_count", nullable = false)
+    @Schema(description = "Number of reactions on the post", example = "87")
+    private long reactionCount;
+
+    @Column(name = "unique_viewers")
+    @Schema(description = "Serialized HyperLogLog sketch of the IDs of the users who viewed the post")
+    private byte[] uniqueViewers;
+
+    @Column(name = "unique_commenters")
+    @Schema(description = "Serialized HyperLogLog sketch of the IDs of the users who commented on the post")
+    private byte[] uniqueCommenters;
+
+    @Column(name = "updated_at", nullable = false)
+    @Schema(description = "When the counters were last flushed")
+    private Timestamp updatedAt;
+
+}
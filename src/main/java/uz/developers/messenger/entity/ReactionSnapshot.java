@@ -0,0 +1,51 @@
+package uz.developers.messenger.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "reaction_snapshot",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"target_type", "target_id", "reaction_type"}))
+@Schema(description = "ReactionSnapshot entity stores the users who gave one reaction to a post or comment as a serialized bitmap.")
+public class ReactionSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Schema(hidden = true)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_type", length = 10, nullable = false)
+    @Schema(description = "Kind of object that was reacted to", example = "POST", required = true)
+    private ReactionTargetType targetType;
+
+    @Column(name = "target_id", nullable = false)
+    @Schema(description = "ID of the post or comment", example = "1", required = true)
+    private Long targetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reaction_type", length = 10, nullable = false)
+    @Schema(description = "Reaction given", example = "LIKE", required = true)
+    private ReactionType reactionType;
+
+    @Column(name = "user_bitmap", nullable = false)
+    @Schema(description = "Serialized Roaring bitmap of the IDs of the users who reacted")
+    private byte[] userBitmap;
+
+    @Column(name = "reaction_count", nullable = false)
+    @Schema(description = "Number of users in the bitmap", example = "42")
+    private long reactionCount;
+
+    @Column(name = "updated_at", nullable = false)
+    @Schema(description = "When the snapshot was last written")
+    private Timestamp updatedAt;
+
+}
@@ -0,0 +1,8 @@
+package uz.developers.messenger.entity;
+
+public enum ReactionTargetType {
+
+    POST,
+    COMMENT
+
+}
@@ -0,0 +1,12 @@
+package uz.developers.messenger.entity;
+
+public enum ReactionType {
+
+    LIKE,
+    LOVE,
+    HAHA,
+    WOW,
+    SAD,
+    ANGRY
+
+}
@@ -42,6 +42,11 @@ public class User {
             example = "A passionate blogger and tech enthusiast.")
     private String about;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Version of the row, bumped by every update", example = "0")
+    private Long version;
+
 
 
 
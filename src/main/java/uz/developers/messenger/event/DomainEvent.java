@@ -0,0 +1,85 @@
+package uz.developers.messenger.event;
+
+/**
+ * A change committed to the database, as seen by {@link DomainEventHandler}s.
+ *
+ * Instances are slots of the {@link DomainEventBus} ring and are reused for later
+ * events, so a handler must copy what it needs before returning. IDs that do not
+ * apply to an event type are 0.
+ */
+public class DomainEvent {
+
+    private DomainEventType type;
+
+    private long entityId;
+
+    private long postId;
+
+    private long userId;
+
+    private long categoryId;
+
+    private int count;
+
+    private String title;
+
+    private String content;
+
+
+    public DomainEventType getType() {
+        return type;
+    }
+
+    // ID of the post, comment or user the event is about
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public long getPostId() {
+        return postId;
+    }
+
+    // Author of the post or comment, or the user itself
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    void set(DomainEventType type, long entityId, long postId, long userId, long categoryId, int count,
+             String title, String content) {
+        this.type = type;
+        this.entityId = entityId;
+        this.postId = postId;
+        this.userId = userId;
+        this.categoryId = categoryId;
+        this.count = count;
+        this.title = title;
+        this.content = content;
+    }
+
+    void copyFrom(DomainEvent other) {
+        set(other.type, other.entityId, other.postId, other.userId, other.categoryId, other.count,
+                other.title, other.content);
+    }
+
+    @Override
+    public String toString() {
+        return type + "(entityId=" + entityId + ", postId=" + postId + ", userId=" + userId + ")";
+    }
+
+}
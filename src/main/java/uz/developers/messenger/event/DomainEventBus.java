@@ -0,0 +1,226 @@
+package uz.developers.messenger.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process event bus on a pre-allocated ring buffer, in the style of the LMAX Disruptor.
+ *
+ * Producers claim the next sequence number, copy the event into the ring slot it maps to
+ * and mark the slot published; no object is allocated per event. Every
+ * {@link DomainEventHandler} bean runs on its own thread, tracks its own sequence, and
+ * processes all events published since its last pass as one batch. A producer that
+ * would overwrite a slot some handler has not processed yet waits for it, so a slow
+ * handler slows down writers instead of losing events.
+ */
+@Component
+public class DomainEventBus implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventBus.class);
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 100;
+
+    private final ObjectProvider<DomainEventHandler> handlerProvider;
+
+    private final DomainEvent[] ring;
+
+    private final int mask;
+
+    // Sequence last written to each slot; a slot is readable once it equals the wanted sequence
+    private final AtomicLongArray published;
+
+    // Last claimed sequence
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    private final long idleParkNanos;
+
+    // Consumers' sequences; before start a placeholder holds producers back once the ring is full
+    private volatile AtomicLong[] gatingSequences = {new AtomicLong(-1)};
+
+    private volatile long gatingCache = -1;
+
+    private final List<Thread> consumers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    private volatile boolean stopped;
+
+    @Autowired
+    public DomainEventBus(ObjectProvider<DomainEventHandler> handlerProvider,
+                          @Value("${events.ring-size:8192}") int ringSize,
+                          @Value("${events.idle-park-us:100}") long idleParkMicros) {
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("events.ring-size must be a power of two: " + ringSize);
+        }
+        this.handlerProvider = handlerProvider;
+        this.ring = new DomainEvent[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new DomainEvent();
+        }
+        this.mask = ringSize - 1;
+        this.published = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            published.set(i, -1);
+        }
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(idleParkMicros);
+    }
+
+
+    public void publish(DomainEventType type, long entityId, long postId, long userId, long categoryId, int count,
+                        String title, String content) {
+        if (stopped) {
+            log.debug("Dropping {} of {} published during shutdown", type, entityId);
+            return;
+        }
+        long sequence = claim();
+        ring[(int) sequence & mask].set(type, entityId, postId, userId, categoryId, count, title, content);
+        published.set((int) sequence & mask, sequence);
+    }
+
+    void publish(DomainEvent event) {
+        if (stopped) {
+            log.debug("Dropping {} published during shutdown", event);
+            return;
+        }
+        long sequence = claim();
+        ring[(int) sequence & mask].copyFrom(event);
+        published.set((int) sequence & mask, sequence);
+    }
+
+    // Events published but not yet processed by the slowest handler
+    public long getBacklog() {
+        return cursor.get() - minimumGatingSequence();
+    }
+
+
+    @Override
+    public synchronized void start() {
+        List<DomainEventHandler> handlers = handlerProvider.orderedStream().toList();
+        AtomicLong[] sequences = new AtomicLong[handlers.size()];
+        long startAt = gatingSequences[0].get();
+        for (int i = 0; i < handlers.size(); i++) {
+            DomainEventHandler handler = handlers.get(i);
+            AtomicLong sequence = new AtomicLong(startAt);
+            sequences[i] = sequence;
+            Thread thread = Thread.ofPlatform()
+                    .name("events-" + handler.getClass().getSimpleName())
+                    .daemon(true)
+                    .unstarted(() -> consume(handler, sequence));
+            consumers.add(thread);
+        }
+        running = true;
+        gatingSequences = sequences.length > 0 ? sequences : new AtomicLong[]{new AtomicLong(Long.MAX_VALUE)};
+        consumers.forEach(Thread::start);
+        log.info("Domain event bus started with {} handlers and {} slots", handlers.size(), ring.length);
+    }
+
+    // Let the handlers catch up with what was published, then stop them
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        long last = cursor.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (minimumGatingSequence() < last && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        running = false;
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        consumers.clear();
+        if (minimumGatingSequence() < last) {
+            log.warn("Domain event bus stopped with {} events unprocessed", last - minimumGatingSequence());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop before the services the handlers feed are shut down
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1000;
+    }
+
+
+    private long claim() {
+        long sequence = cursor.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache) {
+            long minimum;
+            while (wrapPoint > (minimum = minimumGatingSequence())) {
+                LockSupport.parkNanos(1_000);
+            }
+            gatingCache = minimum;
+        }
+        return sequence;
+    }
+
+    private long minimumGatingSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (AtomicLong sequence : gatingSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+
+    private void consume(DomainEventHandler handler, AtomicLong sequence) {
+        long next = sequence.get() + 1;
+        int idle = 0;
+        while (running || published.get((int) next & mask) == next) {
+            // Everything published in order from next on forms the batch
+            long available = next - 1;
+            while (published.get((int) (available + 1) & mask) == available + 1) {
+                available++;
+            }
+            if (available < next) {
+                idle = backOff(idle);
+                continue;
+            }
+            idle = 0;
+            for (long current = next; current <= available; current++) {
+                DomainEvent event = ring[(int) current & mask];
+                try {
+                    handler.onEvent(event, current, current == available);
+                } catch (Throwable e) {
+                    // An Error as well: the handler skips the event rather than leaving the ring gated forever
+                    log.error("{} failed on event {} ({})", handler.getClass().getSimpleName(), current, event, e);
+                }
+            }
+            sequence.set(available);
+            next = available + 1;
+        }
+    }
+
+    private int backOff(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(idleParkNanos);
+        }
+        return idle + 1;
+    }
+
+}
@@ -0,0 +1,12 @@
+package uz.developers.messenger.event;
+
+/**
+ * Consumer of committed domain events. Every handler bean gets its own thread on the
+ * {@link DomainEventBus} and sees every event in publication order.
+ */
+public interface DomainEventHandler {
+
+    // endOfBatch is true for the last event currently available, a good point to flush buffered work
+    void onEvent(DomainEvent event, long sequence, boolean endOfBatch) throws Exception;
+
+}
@@ -0,0 +1,202 @@
+package uz.developers.messenger.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.entity.Comment;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.outbox.OutboxWriter;
+
+import java.util.Arrays;
+
+/**
+ * Publishes domain events on the {@link DomainEventBus} once the change they describe is committed.
+ *
+ * Outside a transaction the change is already committed and the event goes straight
+ * into the ring. Inside one, the event is held with the transaction and published
+ * after a successful commit; a rollback discards it. Held events are copied into a
+ * buffer of the thread, whose slots are reused by its later transactions, so a pooled
+ * thread allocates nothing per event or transaction once its buffer has grown. A
+ * transaction started while another is suspended, such as a write on a shard, holds
+ * its events in the buffer after those of the suspended one.
+ *
+ * Every event is also recorded in the outbox through the {@link OutboxWriter}, in the
+ * transaction of the change, so other nodes learn about it as well.
+ */
+@Component
+public class DomainEventPublisher {
+
+    private final DomainEventBus eventBus;
+
+    private final OutboxWriter outboxWriter;
+
+    private final ThreadLocal<PendingEvents> pendingEvents = ThreadLocal.withInitial(PendingEvents::new);
+
+    @Autowired
+    public DomainEventPublisher(DomainEventBus eventBus, OutboxWriter outboxWriter) {
+        this.eventBus = eventBus;
+        this.outboxWriter = outboxWriter;
+    }
+
+
+    public void postCreated(Post post) {
+        publish(DomainEventType.POST_CREATED, post.getId(), post.getId(), userId(post), categoryId(post), 0,
+                post.getTitle(), post.getContent());
+    }
+
+    public void postUpdated(Post post) {
+        publish(DomainEventType.POST_UPDATED, post.getId(), post.getId(), userId(post), categoryId(post), 0,
+                post.getTitle(), post.getContent());
+    }
+
+    public void postDeleted(Post post) {
+        publish(DomainEventType.POST_DELETED, post.getId(), post.getId(), userId(post), categoryId(post), 0, null, null);
+    }
+
+    public void commentCreated(Comment comment) {
+        Post post = comment.getPost();
+        publish(DomainEventType.COMMENT_CREATED, comment.getId(), post.getId(),
+                comment.getUser() != null ? id(comment.getUser().getId()) : 0, categoryId(post), 1,
+                null, comment.getContent());
+    }
+
+    // A comment removed together with its replies
+    public void commentsDeleted(Comment comment, int count) {
+        publish(DomainEventType.COMMENTS_DELETED, comment.getId(), comment.getPost().getId(), 0,
+                categoryId(comment.getPost()), count, null, null);
+    }
+
+    // Comments of one post removed in bulk, such as those of a deleted user
+    public void commentsDeleted(long postId, int count) {
+        publish(DomainEventType.COMMENTS_DELETED, postId, postId, 0, 0, count, null, null);
+    }
+
+    public void userUpdated(User user) {
+        publish(DomainEventType.USER_UPDATED, user.getId(), 0, user.getId(), 0, 0, null, null);
+    }
+
+    public void userDeleted(long userId) {
+        publish(DomainEventType.USER_DELETED, userId, 0, userId, 0, 0, null, null);
+    }
+
+    public void categoryUpdated(Category category) {
+        publish(DomainEventType.CATEGORY_UPDATED, category.getId(), 0, 0, category.getId(), 0, null, null);
+    }
+
+
+    private void publish(DomainEventType type, long entityId, long postId, long userId, long categoryId, int count,
+                         String title, String content) {
+        // Outside a transaction the row follows the committed change on its own
+        outboxWriter.record(type, entityId, userId);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventBus.publish(type, entityId, postId, userId, categoryId, count, title, content);
+            return;
+        }
+        PendingEvents pending = pendingEvents.get();
+        Frame frame = (Frame) TransactionSynchronizationManager.getResource(this);
+        if (frame == null) {
+            frame = pending.push();
+            TransactionSynchronizationManager.bindResource(this, frame);
+            TransactionSynchronizationManager.registerSynchronization(frame);
+        }
+        pending.add(type, entityId, postId, userId, categoryId, count, title, content);
+    }
+
+    private static long userId(Post post) {
+        return post.getUser() != null ? id(post.getUser().getId()) : 0;
+    }
+
+    private static long categoryId(Post post) {
+        return post.getCategory() != null ? id(post.getCategory().getId()) : 0;
+    }
+
+    private static long id(Long id) {
+        return id != null ? id : 0;
+    }
+
+
+    // Events held on one thread, those of each open transaction after those of the one it suspended
+    private final class PendingEvents {
+
+        private DomainEvent[] events = new DomainEvent[4];
+
+        private int size;
+
+        private Frame[] frames = new Frame[1];
+
+        private int depth;
+
+        private void add(DomainEventType type, long entityId, long postId, long userId, long categoryId, int count,
+                         String title, String content) {
+            if (size == events.length) {
+                events = Arrays.copyOf(events, size * 2);
+            }
+            if (events[size] == null) {
+                events[size] = new DomainEvent();
+            }
+            events[size++].set(type, entityId, postId, userId, categoryId, count, title, content);
+        }
+
+        private Frame push() {
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            if (frames[depth] == null) {
+                frames[depth] = new Frame(this);
+            }
+            Frame frame = frames[depth++];
+            frame.start = size;
+            return frame;
+        }
+
+        // Drop the events of the innermost transaction, letting go of their text
+        private void pop(int start) {
+            for (int i = start; i < size; i++) {
+                events[i].set(null, 0, 0, 0, 0, 0, null, null);
+            }
+            size = start;
+            depth--;
+        }
+    }
+
+    // The events of one transaction: those from start on, up to the end of the buffer
+    private final class Frame implements TransactionSynchronization {
+
+        private final PendingEvents pending;
+
+        private int start;
+
+        private Frame(PendingEvents pending) {
+            this.pending = pending;
+        }
+
+        // A transaction started meanwhile holds its events in a frame of its own
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(DomainEventPublisher.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(DomainEventPublisher.this, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            for (int i = start; i < pending.size; i++) {
+                eventBus.publish(pending.events[i]);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            pending.pop(start);
+            TransactionSynchronizationManager.unbindResourceIfPossible(DomainEventPublisher.this);
+        }
+    }
+
+}
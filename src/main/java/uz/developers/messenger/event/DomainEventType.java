@@ -0,0 +1,22 @@
+package uz.developers.messenger.event;
+
+public enum DomainEventType {
+
+    POST_CREATED,
+
+    POST_UPDATED,
+
+    POST_DELETED,
+
+    COMMENT_CREATED,
+
+    // count holds the number of comments removed together
+    COMMENTS_DELETED,
+
+    USER_UPDATED,
+
+    USER_DELETED,
+
+    CATEGORY_UPDATED
+
+}
@@ -0,0 +1,32 @@
+package uz.developers.messenger.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uz.developers.messenger.service.PostStatsService;
+
+/**
+ * Keeps the comment counters and distinct commenters of posts up to date.
+ */
+@Component
+public class PostStatsEventHandler implements DomainEventHandler {
+
+    private final PostStatsService postStatsService;
+
+    @Autowired
+    public PostStatsEventHandler(PostStatsService postStatsService) {
+        this.postStatsService = postStatsService;
+    }
+
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        switch (event.getType()) {
+            case COMMENT_CREATED -> postStatsService.recordComment(event.getPostId(),
+                    event.getUserId() != 0 ? event.getUserId() : null, event.getCount());
+            case COMMENTS_DELETED -> postStatsService.recordComment(event.getPostId(), null, -event.getCount());
+            default -> {
+            }
+        }
+    }
+
+}
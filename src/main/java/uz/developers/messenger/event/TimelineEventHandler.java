@@ -0,0 +1,28 @@
+package uz.developers.messenger.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uz.developers.messenger.service.TimelineService;
+
+/**
+ * Pushes new posts into follower timelines.
+ */
+@Component
+public class TimelineEventHandler implements DomainEventHandler {
+
+    private final TimelineService timelineService;
+
+    @Autowired
+    public TimelineEventHandler(TimelineService timelineService) {
+        this.timelineService = timelineService;
+    }
+
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        if (event.getType() == DomainEventType.POST_CREATED && event.getUserId() != 0) {
+            timelineService.onPostCreated(event.getPostId(), event.getUserId());
+        }
+    }
+
+}
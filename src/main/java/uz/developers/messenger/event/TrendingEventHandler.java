@@ -0,0 +1,32 @@
+package uz.developers.messenger.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uz.developers.messenger.service.TrendingService;
+
+/**
+ * Counts new posts and comments, and their hashtags, towards trending.
+ */
+@Component
+public class TrendingEventHandler implements DomainEventHandler {
+
+    private final TrendingService trendingService;
+
+    @Autowired
+    public TrendingEventHandler(TrendingService trendingService) {
+        this.trendingService = trendingService;
+    }
+
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        switch (event.getType()) {
+            case POST_CREATED -> trendingService.recordPostCreated(event.getTitle(), event.getContent());
+            case COMMENT_CREATED -> trendingService.recordComment(event.getPostId(),
+                    event.getCategoryId() != 0 ? event.getCategoryId() : null, event.getContent());
+            default -> {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package uz.developers.messenger.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+
+/**
+ * Exception thrown when an import file or job is invalid.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class ImportException extends RuntimeException{
+
+    public ImportException(String message) {
+        super(message);
+    }
+
+
+
+}
@@ -0,0 +1,19 @@
+package uz.developers.messenger.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+
+/**
+ * Exception thrown when a write hits a shard bucket that is being moved; retrying shortly succeeds.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ShardMovingException extends RuntimeException{
+
+    public ShardMovingException(int bucket) {
+        super("Bucket " + bucket + " is being moved to another shard, try again shortly");
+    }
+
+
+
+}
@@ -0,0 +1,19 @@
+package uz.developers.messenger.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+
+/**
+ * Exception thrown when a change was made against a version that is no longer current.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class VersionConflictException extends RuntimeException{
+
+    public VersionConflictException(String resource, long id, long expected, long current) {
+        super(resource + " " + id + " was changed meanwhile: its version is " + current + ", not " + expected);
+    }
+
+
+
+}
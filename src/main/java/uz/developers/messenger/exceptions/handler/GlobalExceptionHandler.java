@@ -3,6 +3,7 @@ package uz.developers.messenger.exceptions.handler;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -10,8 +11,8 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.CustomApiResponse;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 
 @RestControllerAdvice
@@ -26,23 +27,26 @@ public class GlobalExceptionHandler {
     }
 
 
+    // A full update that lost the race against another change of the same row
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<CustomApiResponse> optimisticLockingFailureHandler(ObjectOptimisticLockingFailureException ex){
+        CustomApiResponse apiResponse = new CustomApiResponse("The record was changed meanwhile, read it again and retry",false,null);
+        return new ResponseEntity<>(apiResponse, HttpStatus.CONFLICT);
 
-//    @ExceptionHandler(MethodArgumentNotValidException.class)
-//    public ResponseEntity<Map<String,String>> handleMethodArgsNotValidException(MethodArgumentNotValidException ex){
-//        Map<String,String > resp = new HashMap<>();
-//        ex.getBindingResult().getAllErrors().forEach((error -> {
-//            String fieldName = ((FieldError) error).getField();
-//            String message = error.getDefaultMessage();
-//            resp.put(fieldName,message);
-//        }));
-//        return new ResponseEntity<Map<String,String>>(resp, HttpStatus.BAD_REQUEST);
-//    }
-
-
-
-
+    }
 
 
 
+    // A request body that breaks the constraints of its DTO, with the message of each field
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<CustomApiResponse<Map<String,String>>> handleMethodArgsNotValidException(MethodArgumentNotValidException ex){
+        Map<String,String> resp = new TreeMap<>();
+        ex.getBindingResult().getAllErrors().forEach((error -> {
+            String fieldName = error instanceof FieldError fieldError ? fieldError.getField() : error.getObjectName();
+            resp.merge(fieldName, error.getDefaultMessage(), (first, second) -> first + ", " + second);
+        }));
+        CustomApiResponse<Map<String,String>> apiResponse = new CustomApiResponse<>("Invalid request body",false,resp);
+        return new ResponseEntity<>(apiResponse, HttpStatus.BAD_REQUEST);
+    }
 
 }
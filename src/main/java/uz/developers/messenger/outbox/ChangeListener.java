@@ -0,0 +1,16 @@
+package uz.developers.messenger.outbox;
+
+import uz.developers.messenger.event.DomainEventType;
+
+/**
+ * Receives every change committed on any node, as read from the outbox by the {@link OutboxRelay}.
+ *
+ * Called on the relay thread. A change may be delivered more than once, so handling it
+ * must be idempotent, as evicting a cache entry is.
+ */
+public interface ChangeListener {
+
+    // userId is 0 when the change has no user attached
+    void onChange(DomainEventType type, long aggregateId, long userId);
+
+}
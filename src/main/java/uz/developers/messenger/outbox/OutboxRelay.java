@@ -0,0 +1,262 @@
+package uz.developers.messenger.outbox;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uz.developers.messenger.event.DomainEventType;
+import uz.developers.messenger.sharding.Shard;
+import uz.developers.messenger.sharding.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands changes written to the outbox by any node to the local {@link ChangeListener}s.
+ *
+ * The relay keeps its own connection, outside the pool, listening on the outbox channel.
+ * A notification wakes it up within milliseconds of a commit; without one it still looks
+ * at the table every {@code outbox.poll-interval-ms}. The table, not the notification, is
+ * what counts, so nothing is missed while the connection is down or a notification is lost.
+ *
+ * Identity values are handed out before commit, so rows do not become visible in ID order
+ * and reading past the highest ID seen could skip a row committed late. Instead the relay
+ * remembers the oldest transaction still running when it last looked (the snapshot's xmin)
+ * and reads every row written by that transaction or a later one. Anything older has
+ * finished and was read before. Rows of recent transactions are therefore read more than
+ * once; the relay remembers the IDs it handed over among them, so a transaction that stays
+ * open for long and holds the horizon back does not have the same changes delivered on every
+ * look. Listeners still have to tolerate a repeat after the relay restarts.
+ *
+ * With sharding, the outbox of every shard database is read the same way, each by a
+ * thread and connection of its own, so listeners may be called from several threads at once.
+ */
+@Component
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String CHANGES_QUERY =
+            "select id, event_type, aggregate_id, user_id from outbox where tx >= ?::xid8 order by id";
+
+    private final ObjectProvider<ChangeListener> listenerProvider;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectProvider<ShardRouter> routerProvider;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final String shardUsername;
+
+    private final String shardPassword;
+
+    private final int pollMillis;
+
+    private final long reconnectMillis;
+
+    private final int retentionHours;
+
+    private volatile List<ChangeListener> listeners = List.of();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @Autowired
+    public OutboxRelay(ObjectProvider<ChangeListener> listenerProvider, JdbcTemplate jdbcTemplate,
+                       ObjectProvider<ShardRouter> routerProvider,
+                       @Value("${spring.datasource.url}") String url,
+                       @Value("${spring.datasource.username}") String username,
+                       @Value("${spring.datasource.password}") String password,
+                       @Value("${sharding.username:${spring.datasource.username}}") String shardUsername,
+                       @Value("${sharding.password:${spring.datasource.password}}") String shardPassword,
+                       @Value("${outbox.poll-interval-ms:1000}") int pollMillis,
+                       @Value("${outbox.reconnect-ms:2000}") long reconnectMillis,
+                       @Value("${outbox.retention-hours:24}") int retentionHours) {
+        this.listenerProvider = listenerProvider;
+        this.jdbcTemplate = jdbcTemplate;
+        this.routerProvider = routerProvider;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.shardUsername = shardUsername;
+        this.shardPassword = shardPassword;
+        this.pollMillis = pollMillis;
+        this.reconnectMillis = reconnectMillis;
+        this.retentionHours = retentionHours;
+    }
+
+
+    // Peers read rows for as long as they may have been disconnected; older ones can go
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        List<JdbcTemplate> outboxes = new ArrayList<>(List.of(jdbcTemplate));
+        ShardRouter router = routerProvider.getIfAvailable();
+        if (router != null) {
+            router.getShards().forEach(shard -> outboxes.add(shard.jdbcTemplate()));
+        }
+        int deleted = 0;
+        for (JdbcTemplate outbox : outboxes) {
+            deleted += outbox.update(
+                    "delete from outbox where created_at < now() - make_interval(hours => ?)", retentionHours);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} outbox rows older than {} hours", deleted, retentionHours);
+        }
+    }
+
+
+    @Override
+    public synchronized void start() {
+        listeners = listenerProvider.orderedStream().toList();
+        running = true;
+        List<Source> sources = new ArrayList<>(List.of(new Source("outbox-relay", url, username, password)));
+        ShardRouter router = routerProvider.getIfAvailable();
+        if (router != null) {
+            for (Shard shard : router.getShards()) {
+                sources.add(new Source("outbox-relay-shard-" + shard.index(), shard.url(), shardUsername, shardPassword));
+            }
+        }
+        for (Source source : sources) {
+            threads.add(Thread.ofPlatform().name(source.name).daemon(true).start(source::relay));
+        }
+        log.info("Outbox relay started with {} listeners on {} outboxes", listeners.size(), sources.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        try {
+            for (Thread thread : threads) {
+                thread.join(pollMillis + TimeUnit.SECONDS.toMillis(1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // One outbox database and what was read from it
+    private class Source {
+
+        private final String name;
+
+        private final String url;
+
+        private final String username;
+
+        private final String password;
+
+        // xmin of the last look at the table; null until the first one
+        private String horizon;
+
+        // Rows at or above the horizon that were delivered already
+        private Set<Long> delivered = new HashSet<>();
+
+        private Source(String name, String url, String username, String password) {
+            this.name = name;
+            this.url = url;
+            this.username = username;
+            this.password = password;
+        }
+
+        private void relay() {
+            while (running) {
+                try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("listen " + OutboxWriter.CHANNEL);
+                    }
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    // Catch up on what was written while there was no connection
+                    readChanges(connection);
+                    while (running) {
+                        pgConnection.getNotifications(pollMillis);
+                        readChanges(connection);
+                    }
+                } catch (SQLException e) {
+                    if (running) {
+                        log.warn("{} lost its connection, reconnecting in {} ms", name, reconnectMillis, e);
+                        sleep(reconnectMillis);
+                    }
+                }
+            }
+        }
+
+        private void readChanges(Connection connection) throws SQLException {
+            String xmin;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("select pg_snapshot_xmin(pg_current_snapshot())::text")) {
+                rs.next();
+                xmin = rs.getString(1);
+            }
+            if (horizon == null) {
+                // A node that just started has nothing cached that older changes could affect
+                horizon = xmin;
+                return;
+            }
+
+            // The next look starts at a horizon no older than this one, so only rows read now can come back
+            Set<Long> read = new HashSet<>();
+            try (PreparedStatement statement = connection.prepareStatement(CHANGES_QUERY)) {
+                statement.setString(1, horizon);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        read.add(id);
+                        if (delivered.contains(id)) {
+                            continue;
+                        }
+                        DomainEventType type = DomainEventType.valueOf(rs.getString(2));
+                        long aggregateId = rs.getLong(3);
+                        long userId = rs.getLong(4);
+                        for (ChangeListener listener : listeners) {
+                            try {
+                                listener.onChange(type, aggregateId, userId);
+                            } catch (RuntimeException e) {
+                                log.error("{} failed on {} of {}", listener.getClass().getSimpleName(), type, aggregateId, e);
+                            }
+                        }
+                    }
+                }
+            }
+            delivered = read;
+            horizon = xmin;
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package uz.developers.messenger.outbox;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.developers.messenger.event.DomainEventType;
+import uz.developers.messenger.sharding.Shard;
+import uz.developers.messenger.sharding.ShardRouter;
+
+/**
+ * Records changes in the outbox table within the caller's transaction.
+ *
+ * The row commits or rolls back together with the change it describes. The notification
+ * sent along is transactional too, so peers are woken up on commit. A transaction that
+ * records many changes, such as the deletion of a user, sends it once, just before it
+ * commits.
+ *
+ * With sharding, every shard database has an outbox of its own: a change written in a
+ * shard's transaction is recorded there, everything else in the main database.
+ */
+@Component
+public class OutboxWriter {
+
+    static final String CHANNEL = "outbox";
+
+    private static final String NOTIFY = "notify " + CHANNEL;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ObjectProvider<ShardRouter> routerProvider;
+
+    @Autowired
+    public OutboxWriter(JdbcTemplate jdbcTemplate, ObjectProvider<ShardRouter> routerProvider) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.routerProvider = routerProvider;
+    }
+
+
+    public void record(DomainEventType type, long aggregateId, long userId) {
+        JdbcTemplate target = target();
+        target.update("insert into outbox (event_type, aggregate_id, user_id) values (?, ?, ?)",
+                type.name(), aggregateId, userId != 0 ? userId : null);
+        notifyOnce(target);
+    }
+
+
+    // The database whose transaction is open on this thread: a shard while a change is written there
+    private JdbcTemplate target() {
+        ShardRouter router = routerProvider.getIfAvailable();
+        if (router != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (Shard shard : router.getShards()) {
+                if (TransactionSynchronizationManager.hasResource(shard.jdbcTemplate().getDataSource())) {
+                    return shard.jdbcTemplate();
+                }
+            }
+        }
+        return jdbcTemplate;
+    }
+
+    // The database's template marks a transaction that already has its notification coming
+    private void notifyOnce(JdbcTemplate target) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            target.execute(NOTIFY);
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(target)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(target, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                target.execute(NOTIFY);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(target);
+            }
+        });
+    }
+
+}
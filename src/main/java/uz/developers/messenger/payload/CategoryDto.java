@@ -1,5 +1,7 @@
 package uz.developers.messenger.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -30,6 +32,11 @@ public class CategoryDto {
             required = true)
     private String description;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(description = "Version of the category; send it in If-Match to patch only this version", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long version;
+
 
 
 
@@ -1,11 +1,16 @@
 package uz.developers.messenger.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.sql.Timestamp;
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -32,6 +37,24 @@ public class CommentDto {
             required = true)
     private PostDto postDto;
 
+    @Schema(description = "ID of the comment this comment replies to, null for a top-level comment",
+            example = "1", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long parentId;
+
+    @Schema(description = "Nesting level, 0 for a top-level comment", example = "1", accessMode = Schema.AccessMode.READ_ONLY)
+    private int depth;
+
+    @Schema(description = "When the comment was written", example = "2024-10-10T12:00:00", accessMode = Schema.AccessMode.READ_ONLY)
+    private Timestamp createdAt;
+
+    @Schema(description = "Replies loaded together with this comment, in reading order", accessMode = Schema.AccessMode.READ_ONLY)
+    private List<CommentDto> replies;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(description = "Version of the comment; send it in If-Match to patch only this version", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long version;
+
 
 
 
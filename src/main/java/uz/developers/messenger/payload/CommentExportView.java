@@ -0,0 +1,23 @@
+package uz.developers.messenger.payload;
+
+/**
+ * Flat projection of a comment row, used by exports so that no entity
+ * or association is loaded per row.
+ */
+public interface CommentExportView {
+
+    Long getId();
+
+    Long getPostId();
+
+    Long getUserId();
+
+    Long getParentId();
+
+    Long getRootId();
+
+    Integer getDepth();
+
+    String getContent();
+
+}
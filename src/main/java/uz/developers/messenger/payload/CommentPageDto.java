@@ -0,0 +1,25 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Comment page DTO carries one page of a post's comments and the cursor of the next page.")
+public class CommentPageDto {
+
+    @Schema(description = "Comments of this page")
+    private List<CommentDto> comments;
+
+    @Schema(description = "Cursor to pass to get the next page, null when this is the last page", example = "1042")
+    private Long nextCursor;
+
+    @Schema(description = "Whether more comments follow this page", example = "true")
+    private boolean hasMore;
+
+}
@@ -0,0 +1,31 @@
+package uz.developers.messenger.payload;
+
+/**
+ * Formats supported by the streaming exports and the bulk import.
+ */
+public enum DataFormat {
+
+    // One JSON object per line
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    // RFC 4180 CSV with a header row
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+
+    private final String extension;
+
+    DataFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+}
@@ -0,0 +1,37 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Import result DTO reports how a bulk import went.")
+public class ImportResultDto {
+
+    @Schema(description = "Job ID; send the same file again with it to resume the import", example = "legacy-users-2024-10")
+    private String jobId;
+
+    @Schema(description = "Records read from the file", example = "1000000")
+    private long rowsRead;
+
+    @Schema(description = "Records loaded by this run", example = "995000")
+    private long rowsImported;
+
+    @Schema(description = "Records skipped because a previous run of the same job already loaded them", example = "0")
+    private long rowsSkipped;
+
+    @Schema(description = "Records rejected by validation or unresolved references", example = "5000")
+    private long rowsRejected;
+
+    @Schema(description = "Chunks whose load failed; sending the file again retries them", example = "0")
+    private long chunksFailed;
+
+    @Schema(description = "First problems found, with their record numbers")
+    private List<String> errors;
+
+}
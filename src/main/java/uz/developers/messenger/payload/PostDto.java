@@ -1,5 +1,7 @@
 package uz.developers.messenger.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -49,4 +51,24 @@ public class PostDto {
             example = "UserDto(id=1, name=Nizomiddin Mirzanazarov, email=nizomiddinmirzanazarov@example.com)",
             required = true)
     private UserDto userDto;
+
+    @Schema(description = "Number of times the post was viewed", example = "1200", accessMode = Schema.AccessMode.READ_ONLY)
+    private long viewCount;
+
+    @Schema(description = "Number of comments on the post", example = "14", accessMode = Schema.AccessMode.READ_ONLY)
+    private long commentCount;
+
+    @Schema(description = "Number of reactions on the post", example = "87", accessMode = Schema.AccessMode.READ_ONLY)
+    private long reactionCount;
+
+    @Schema(description = "Approximate number of distinct users who viewed the post", example = "830", accessMode = Schema.AccessMode.READ_ONLY)
+    private long uniqueViewerCount;
+
+    @Schema(description = "Approximate number of distinct users who commented on the post", example = "9", accessMode = Schema.AccessMode.READ_ONLY)
+    private long uniqueCommenterCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(description = "Version of the post; send it in If-Match to patch only this version", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long version;
 }
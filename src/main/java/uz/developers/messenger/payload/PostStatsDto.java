@@ -0,0 +1,32 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Post stats DTO carries the engagement counters of a post.")
+public class PostStatsDto {
+
+    @Schema(description = "ID of the post", example = "1")
+    private Long postId;
+
+    @Schema(description = "Number of times the post was viewed", example = "1200")
+    private long viewCount;
+
+    @Schema(description = "Number of comments on the post", example = "14")
+    private long commentCount;
+
+    @Schema(description = "Number of reactions on the post", example = "87")
+    private long reactionCount;
+
+    @Schema(description = "Approximate number of distinct users who viewed the post", example = "830")
+    private long uniqueViewerCount;
+
+    @Schema(description = "Approximate number of distinct users who commented on the post", example = "9")
+    private long uniqueCommenterCount;
+
+}
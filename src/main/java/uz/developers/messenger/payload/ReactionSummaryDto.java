@@ -0,0 +1,30 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import uz.developers.messenger.entity.ReactionTargetType;
+import uz.developers.messenger.entity.ReactionType;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Reaction summary DTO carries the reaction counts of a post or comment.")
+public class ReactionSummaryDto {
+
+    @Schema(description = "Kind of object that was reacted to", example = "POST")
+    private ReactionTargetType targetType;
+
+    @Schema(description = "ID of the post or comment", example = "1")
+    private Long targetId;
+
+    @Schema(description = "Number of users per reaction", example = "{\"LIKE\": 12, \"LOVE\": 3}")
+    private Map<ReactionType, Long> counts;
+
+    @Schema(description = "Total number of reactions", example = "15")
+    private long total;
+
+}
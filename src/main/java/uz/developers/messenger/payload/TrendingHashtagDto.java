@@ -0,0 +1,20 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Trending hashtag DTO carries a hashtag and its decayed activity score.")
+public class TrendingHashtagDto {
+
+    @Schema(description = "Hashtag without the leading #, lower case", example = "springboot")
+    private String tag;
+
+    @Schema(description = "Decayed activity score over the trending window", example = "153.5")
+    private double score;
+
+}
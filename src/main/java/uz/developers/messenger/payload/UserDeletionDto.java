@@ -0,0 +1,40 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "User deletion DTO reports the progress of deleting a user and everything they wrote.")
+public class UserDeletionDto {
+
+    @Schema(description = "ID of the user being deleted", example = "1")
+    private Long userId;
+
+    @Schema(description = "RUNNING while rows are being deleted in the background, then DONE or FAILED", example = "RUNNING")
+    private String state;
+
+    @Schema(description = "Posts of the user deleted so far, with their comments", example = "12000")
+    private long postsDeleted;
+
+    @Schema(description = "Comments deleted so far, on the user's posts and by the user elsewhere, replies included", example = "480000")
+    private long commentsDeleted;
+
+    @Schema(description = "Follow edges from and to the user deleted so far", example = "250000")
+    private long followsDeleted;
+
+    @Schema(description = "When the deletion started")
+    private Timestamp startedAt;
+
+    @Schema(description = "When the deletion finished; empty while it runs")
+    private Timestamp finishedAt;
+
+    @Schema(description = "Why the deletion stopped; deleting the user again resumes it", example = "null")
+    private String error;
+
+}
@@ -1,5 +1,7 @@
 package uz.developers.messenger.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
@@ -41,5 +43,10 @@ public class UserDto {
             example = "A passionate blogger and tech enthusiast.")
     private String about;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Schema(description = "Version of the user; send it in If-Match to patch only this version", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long version;
+
 
 }
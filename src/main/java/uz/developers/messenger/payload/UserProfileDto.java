@@ -0,0 +1,32 @@
+package uz.developers.messenger.payload;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "User profile DTO carries everything the profile screen shows, gathered in one request.")
+public class UserProfileDto {
+
+    @Schema(description = "The user, null when it could not be loaded in time")
+    private UserDto user;
+
+    @Schema(description = "Posts written by the user, null when they could not be loaded in time")
+    private List<PostDto> posts;
+
+    @Schema(description = "Number of comments written by the user, null when it could not be loaded in time", example = "57")
+    private Long commentCount;
+
+    @Schema(description = "All categories, null when they could not be loaded in time")
+    private List<CategoryDto> categories;
+
+    @Schema(description = "Parts missing from this profile because they failed or missed the deadline",
+            example = "[\"posts\"]")
+    private List<String> missing;
+
+}
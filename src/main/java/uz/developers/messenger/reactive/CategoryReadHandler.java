@@ -0,0 +1,47 @@
+package uz.developers.messenger.reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.CategoryDto;
+import uz.developers.messenger.reactive.repository.CategoryReadRepository;
+import uz.developers.messenger.reactive.repository.CategoryRow;
+
+/**
+ * Reactive counterpart of the GET endpoints of the CategoryController.
+ */
+@Component
+@Profile("reactive")
+public class CategoryReadHandler {
+
+    private final CategoryReadRepository categoryReadRepository;
+
+    @Autowired
+    public CategoryReadHandler(CategoryReadRepository categoryReadRepository) {
+        this.categoryReadRepository = categoryReadRepository;
+    }
+
+
+    // GET /api/categories, streamed as NDJSON
+    public Mono<ServerResponse> getAllCategories(ServerRequest request) {
+        return ServerResponses.stream(categoryReadRepository.streamAll().map(CategoryReadHandler::rowToDto), CategoryDto.class);
+    }
+
+    // GET /api/categories/{id}
+    public Mono<ServerResponse> getCategoryById(ServerRequest request) {
+        Long id = ServerResponses.pathId(request, "id");
+        return categoryReadRepository.findCategory(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Category", " Id ", id)))
+                .flatMap(row -> ServerResponses.ok("Successfully retrieved the category.", rowToDto(row)));
+    }
+
+
+    static CategoryDto rowToDto(CategoryRow row) {
+        return new CategoryDto(row.getId(), row.getTitle(), row.getDescription(), null);
+    }
+
+}
@@ -0,0 +1,144 @@
+package uz.developers.messenger.reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.exceptions.CommentException;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.CommentDto;
+import uz.developers.messenger.payload.CommentPageDto;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.reactive.repository.CommentReadRepository;
+import uz.developers.messenger.reactive.repository.CommentRow;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive counterpart of the GET endpoints of the CommentController.
+ * Pages and threads are bounded, so they are answered as one document like the
+ * servlet API does; the post of each comment carries only its ID.
+ */
+@Component
+@Profile("reactive")
+public class CommentReadHandler {
+
+    // Same limits as CommentServiceImpl
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int MAX_THREADS = 100;
+
+    private static final int MAX_REPLIES = 50;
+
+    private final CommentReadRepository commentReadRepository;
+
+    @Autowired
+    public CommentReadHandler(CommentReadRepository commentReadRepository) {
+        this.commentReadRepository = commentReadRepository;
+    }
+
+
+    // GET /api/comments/posts/{postId}?cursor=&limit=&order=newest|oldest
+    public Mono<ServerResponse> getCommentsByPostId(ServerRequest request) {
+        Long postId = ServerResponses.pathId(request, "postId");
+        Long cursor = ServerResponses.queryLong(request, "cursor");
+        int pageSize = Math.max(1, Math.min(ServerResponses.queryInt(request, "limit", 20), MAX_PAGE_SIZE));
+        String order = request.queryParam("order").orElse("newest");
+        if (!"newest".equalsIgnoreCase(order) && !"oldest".equalsIgnoreCase(order)) {
+            throw new CommentException("Order must be 'newest' or 'oldest'");
+        }
+
+        // One extra row tells whether another page follows
+        Flux<CommentRow> rows = "newest".equalsIgnoreCase(order)
+                ? commentReadRepository.findPageBefore(postId, cursor != null ? cursor : Long.MAX_VALUE, pageSize + 1)
+                : commentReadRepository.findPageAfter(postId, cursor != null ? cursor : 0L, pageSize + 1);
+        return requirePost(postId)
+                .then(rows.map(CommentReadHandler::rowToDto).collectList())
+                .flatMap(comments -> {
+                    boolean hasMore = comments.size() > pageSize;
+                    if (hasMore) {
+                        comments = comments.subList(0, pageSize);
+                    }
+                    Long nextCursor = hasMore ? comments.get(comments.size() - 1).getId() : null;
+                    return ServerResponses.ok("Successfully retrieved the comments for post ID: " + postId,
+                            new CommentPageDto(comments, nextCursor, hasMore));
+                });
+    }
+
+    // GET /api/comments/{id}
+    public Mono<ServerResponse> getCommentById(ServerRequest request) {
+        Long id = ServerResponses.pathId(request, "id");
+        return findComment(id)
+                .flatMap(row -> ServerResponses.ok("Successfully retrieved the comment.", rowToDto(row)));
+    }
+
+    // GET /api/comments/{id}/thread
+    public Mono<ServerResponse> getCommentThread(ServerRequest request) {
+        Long id = ServerResponses.pathId(request, "id");
+        return findComment(id)
+                .flatMap(row -> commentReadRepository.findSubtree(row.getRootId(), row.getPath())
+                        .collectList()
+                        .map(subtree -> {
+                            List<CommentDto> tree = toTree(subtree);
+                            return tree.isEmpty() ? rowToDto(row) : tree.get(0);
+                        }))
+                .flatMap(thread -> ServerResponses.ok("Successfully retrieved the comment thread.", thread));
+    }
+
+    // GET /api/comments/posts/{postId}/threads?threads=&replies=
+    public Mono<ServerResponse> getCommentThreads(ServerRequest request) {
+        Long postId = ServerResponses.pathId(request, "postId");
+        int threadLimit = Math.max(1, Math.min(ServerResponses.queryInt(request, "threads", 20), MAX_THREADS));
+        int replyLimit = Math.max(0, Math.min(ServerResponses.queryInt(request, "replies", 3), MAX_REPLIES));
+        return requirePost(postId)
+                .then(commentReadRepository.findThreads(postId, threadLimit, replyLimit).collectList())
+                .flatMap(rows -> ServerResponses.ok("Successfully retrieved the comment threads for post ID: " + postId,
+                        toTree(rows)));
+    }
+
+
+    private Mono<CommentRow> findComment(Long id) {
+        return commentReadRepository.findComment(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Comment", "id", id)));
+    }
+
+    private Mono<Void> requirePost(Long postId) {
+        return commentReadRepository.existsPost(postId)
+                .flatMap(exists -> exists ? Mono.<Void>empty() : Mono.error(new ResourceNotFoundException("Post", "id", postId)));
+    }
+
+    // Rows arrive in path order, so every parent is seen before its replies
+    private static List<CommentDto> toTree(List<CommentRow> rows) {
+        Map<Long, CommentDto> byId = new HashMap<>();
+        List<CommentDto> roots = new ArrayList<>();
+        for (CommentRow row : rows) {
+            CommentDto dto = rowToDto(row);
+            dto.setReplies(new ArrayList<>());
+            CommentDto parent = dto.getParentId() != null ? byId.get(dto.getParentId()) : null;
+            if (parent != null) {
+                parent.getReplies().add(dto);
+            } else {
+                roots.add(dto);
+            }
+            byId.put(dto.getId(), dto);
+        }
+        return roots;
+    }
+
+    static CommentDto rowToDto(CommentRow row) {
+        PostDto postDto = new PostDto();
+        postDto.setId(row.getPostId());
+        UserDto userDto = new UserDto(row.getUserId(), row.getAuthorName(), row.getAuthorEmail(), null, row.getAuthorAbout(), null);
+        return new CommentDto(row.getId(), row.getContent(), userDto, postDto, row.getParentId(), row.getDepth(),
+                row.getCreatedAt() != null ? Timestamp.valueOf(row.getCreatedAt()) : null, null, null);
+    }
+
+}
@@ -0,0 +1,120 @@
+package uz.developers.messenger.reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.CategoryDto;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.reactive.repository.PostReadRepository;
+import uz.developers.messenger.reactive.repository.PostRow;
+import uz.developers.messenger.service.PostStatsService;
+import uz.developers.messenger.service.TrendingService;
+import uz.developers.messenger.util.HyperLogLog;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+
+/**
+ * Reactive counterpart of the GET endpoints of the PostController.
+ *
+ * Counters come from the persisted post_stats row, so they trail the servlet API by
+ * up to one stats flush. Views are still recorded, in memory as the servlet API does.
+ * Trending posts and hashtags are kept in memory by the servlet side and are not served here.
+ */
+@Component
+@Profile("reactive")
+public class PostReadHandler {
+
+    private final PostReadRepository postReadRepository;
+
+    private final PostStatsService postStatsService;
+
+    private final TrendingService trendingService;
+
+    @Autowired
+    public PostReadHandler(PostReadRepository postReadRepository, PostStatsService postStatsService,
+                           TrendingService trendingService) {
+        this.postReadRepository = postReadRepository;
+        this.postStatsService = postStatsService;
+        this.trendingService = trendingService;
+    }
+
+
+    // GET /api/posts, streamed as NDJSON
+    public Mono<ServerResponse> getAllPosts(ServerRequest request) {
+        return stream(postReadRepository.streamAll());
+    }
+
+    // GET /api/posts/categories/{categoryId}, streamed as NDJSON
+    public Mono<ServerResponse> getPostsByCategory(ServerRequest request) {
+        Long categoryId = ServerResponses.pathId(request, "categoryId");
+        return stream(postReadRepository.findByCategoryId(categoryId)
+                .switchIfEmpty(Flux.error(() -> new ResourceNotFoundException("Posts", "Category ID", categoryId))));
+    }
+
+    // GET /api/posts/users/{userId}, streamed as NDJSON
+    public Mono<ServerResponse> getPostsByUser(ServerRequest request) {
+        Long userId = ServerResponses.pathId(request, "userId");
+        return stream(postReadRepository.findByUserId(userId)
+                .switchIfEmpty(Flux.error(() -> new ResourceNotFoundException("Posts", "User ID", userId))));
+    }
+
+    // GET /api/posts/search?keyword=, streamed as NDJSON
+    public Mono<ServerResponse> searchPosts(ServerRequest request) {
+        String keyword = request.queryParam("keyword")
+                .orElseThrow(() -> new ServerWebInputException("'keyword' is required"));
+        return stream(postReadRepository.searchByTitleOrContent(keyword));
+    }
+
+    // GET /api/posts/{id}?viewerId=
+    public Mono<ServerResponse> getPostById(ServerRequest request) {
+        Long id = ServerResponses.pathId(request, "id");
+        Long viewerId = ServerResponses.queryLong(request, "viewerId");
+        return postReadRepository.findPost(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Post", "id", id)))
+                .flatMap(row -> {
+                    postStatsService.recordView(id, viewerId);
+                    trendingService.recordView(id, row.getCategoryId());
+                    return ServerResponses.ok("Successfully retrieved the post.", rowToDto(row));
+                });
+    }
+
+
+    private static Mono<ServerResponse> stream(Flux<PostRow> rows) {
+        return ServerResponses.stream(rows.map(PostReadHandler::rowToDto), PostDto.class);
+    }
+
+    static PostDto rowToDto(PostRow row) {
+        PostDto postDto = new PostDto();
+        postDto.setId(row.getId());
+        postDto.setTitle(row.getTitle());
+        postDto.setContent(row.getContent());
+        postDto.setImage(row.getImage());
+        postDto.setDate(row.getDate() != null ? Date.valueOf(row.getDate()) : null);
+        postDto.setCategoryDto(new CategoryDto(row.getCategoryId(), row.getCategoryName(), row.getCategoryDescription(), null));
+        postDto.setUserDto(new UserDto(row.getUserId(), row.getUserName(), row.getUserEmail(), null, row.getUserAbout(), null));
+        postDto.setViewCount(row.getViewCount());
+        postDto.setCommentCount(row.getCommentCount());
+        postDto.setReactionCount(row.getReactionCount());
+        postDto.setUniqueViewerCount(cardinality(row.getUniqueViewers()));
+        postDto.setUniqueCommenterCount(cardinality(row.getUniqueCommenters()));
+        return postDto;
+    }
+
+    private static long cardinality(ByteBuffer sketch) {
+        if (sketch == null) {
+            return 0;
+        }
+        byte[] bytes = new byte[sketch.remaining()];
+        sketch.duplicate().get(bytes);
+        return HyperLogLog.fromBytes(bytes).cardinality();
+    }
+
+}
@@ -0,0 +1,139 @@
+package uz.developers.messenger.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactoryProvider;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import uz.developers.messenger.reactive.repository.PostReadRepository;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking, read-only variant of the GET API, active with the {@code reactive} profile.
+ *
+ * The routes are served by a Reactor Netty server on {@code reactive.server.port} next to
+ * the regular servlet server, so both stacks run against the same database in one process
+ * and can be compared under load with the same paths. Reads go through R2DBC repositories
+ * over their own connection pool; Spring Boot's R2DBC auto-configuration stays excluded so
+ * that JPA keeps the only transaction manager.
+ */
+@Configuration
+@Profile("reactive")
+@EnableR2dbcRepositories(basePackageClasses = PostReadRepository.class)
+public class ReactiveApiConfig extends AbstractR2dbcConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveApiConfig.class);
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final int initialSize;
+
+    private final int maxSize;
+
+    private final int fetchSize;
+
+    public ReactiveApiConfig(@Value("${spring.r2dbc.url}") String url,
+                             @Value("${spring.r2dbc.username:}") String username,
+                             @Value("${spring.r2dbc.password:}") String password,
+                             @Value("${spring.r2dbc.pool.initial-size:10}") int initialSize,
+                             @Value("${spring.r2dbc.pool.max-size:10}") int maxSize,
+                             @Value("${reactive.r2dbc.fetch-size:1000}") int fetchSize) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.initialSize = initialSize;
+        this.maxSize = maxSize;
+        this.fetchSize = fetchSize;
+    }
+
+
+    @Override
+    @Bean(destroyMethod = "dispose")
+    public ConnectionFactory connectionFactory() {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (!password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        // Rows come from a portal in batches of this size as the subscriber asks for them, so a
+        // streamed collection is not read into memory whole before a slow client takes it
+        options.option(PostgresqlConnectionFactoryProvider.FETCH_SIZE, fetchSize);
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .initialSize(Math.min(initialSize, maxSize))
+                .maxSize(maxSize)
+                .maxIdleTime(Duration.ofMinutes(10))
+                .build());
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> readRoutes(PostReadHandler posts, CommentReadHandler comments,
+                                                     UserReadHandler users, CategoryReadHandler categories) {
+        return RouterFunctions.route()
+                .GET("/api/posts", posts::getAllPosts)
+                .GET("/api/posts/search", posts::searchPosts)
+                .GET("/api/posts/categories/{categoryId}", posts::getPostsByCategory)
+                .GET("/api/posts/users/{userId}", posts::getPostsByUser)
+                .GET("/api/posts/{id:\\d+}", posts::getPostById)
+                .GET("/api/comments/posts/{postId}", comments::getCommentsByPostId)
+                .GET("/api/comments/posts/{postId}/threads", comments::getCommentThreads)
+                .GET("/api/comments/{id:\\d+}", comments::getCommentById)
+                .GET("/api/comments/{id:\\d+}/thread", comments::getCommentThread)
+                .GET("/api/users", users::getAllUsers)
+                .GET("/api/users/{id:\\d+}", users::getUserById)
+                .GET("/api/categories", categories::getAllCategories)
+                .GET("/api/categories/{id:\\d+}", categories::getCategoryById)
+                .build();
+    }
+
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveServer(RouterFunction<ServerResponse> readRoutes, ObjectMapper objectMapper,
+                                           @Value("${reactive.server.port:8081}") int port) {
+        HandlerStrategies strategies = HandlerStrategies.empty()
+                .codecs(codecs -> {
+                    codecs.registerDefaults(true);
+                    // The application's mapper, so both stacks write identical JSON
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .exceptionHandler(new ReadApiExceptionHandler(objectMapper))
+                .localeContextResolver(new AcceptHeaderLocaleContextResolver())
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(readRoutes, strategies);
+
+        DisposableServer server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        log.info("Reactive read API listening on port {}", server.port());
+        return server;
+    }
+
+}
@@ -0,0 +1,76 @@
+package uz.developers.messenger.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.CustomApiResponse;
+
+/**
+ * Turns errors of the reactive read API into the same {@link CustomApiResponse}
+ * bodies and statuses the servlet API answers with. Errors raised after the
+ * first bytes of a streamed response went out can only abort the connection.
+ */
+class ReadApiExceptionHandler implements WebExceptionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadApiExceptionHandler.class);
+
+    private final ObjectMapper objectMapper;
+
+    ReadApiExceptionHandler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (response.isCommitted()) {
+            return Mono.error(ex);
+        }
+
+        HttpStatusCode status = status(ex);
+        String message = ex.getMessage();
+        if (ex instanceof ResponseStatusException statusException) {
+            message = statusException.getReason();
+        }
+        if (status.is5xxServerError()) {
+            log.error("Reactive request {} failed", exchange.getRequest().getPath(), ex);
+            message = "Internal server error";
+        }
+
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(new CustomApiResponse<>(message, false, null));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+
+    private static HttpStatusCode status(Throwable ex) {
+        if (ex instanceof ResourceNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (ex instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode();
+        }
+        ResponseStatus annotation = AnnotatedElementUtils.findMergedAnnotation(ex.getClass(), ResponseStatus.class);
+        return annotation != null ? annotation.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+}
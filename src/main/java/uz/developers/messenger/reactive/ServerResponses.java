@@ -0,0 +1,64 @@
+package uz.developers.messenger.reactive;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.payload.CustomApiResponse;
+
+/**
+ * Response helpers shared by the reactive read handlers.
+ */
+final class ServerResponses {
+
+    private ServerResponses() {
+    }
+
+
+    // A single result in the same envelope as the servlet API
+    static <T> Mono<ServerResponse> ok(String message, T data) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomApiResponse<>(message, true, data));
+    }
+
+    // One JSON document per line, written as the rows arrive and only as fast as the client reads
+    static <T> Mono<ServerResponse> stream(Flux<T> items, Class<T> type) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(items, type);
+    }
+
+    static Long pathId(ServerRequest request, String name) {
+        return parseLong(request.pathVariable(name), name);
+    }
+
+    static Long queryLong(ServerRequest request, String name) {
+        return request.queryParam(name).map(value -> parseLong(value, name)).orElse(null);
+    }
+
+    static int queryInt(ServerRequest request, String name, int defaultValue) {
+        return request.queryParam(name).map(value -> parseInt(value, name)).orElse(defaultValue);
+    }
+
+    // Out of the int range is as much a bad request as not a number
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("'" + name + "' must be a number between "
+                    + Integer.MIN_VALUE + " and " + Integer.MAX_VALUE);
+        }
+    }
+
+    private static Long parseLong(String value, String name) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("'" + name + "' must be a number");
+        }
+    }
+
+}
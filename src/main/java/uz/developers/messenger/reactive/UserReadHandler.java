@@ -0,0 +1,48 @@
+package uz.developers.messenger.reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.reactive.repository.UserReadRepository;
+import uz.developers.messenger.reactive.repository.UserRow;
+
+/**
+ * Reactive counterpart of the GET endpoints of the UserController.
+ * Passwords are never read, so the password field of every user is null.
+ */
+@Component
+@Profile("reactive")
+public class UserReadHandler {
+
+    private final UserReadRepository userReadRepository;
+
+    @Autowired
+    public UserReadHandler(UserReadRepository userReadRepository) {
+        this.userReadRepository = userReadRepository;
+    }
+
+
+    // GET /api/users, streamed as NDJSON
+    public Mono<ServerResponse> getAllUsers(ServerRequest request) {
+        return ServerResponses.stream(userReadRepository.streamAll().map(UserReadHandler::rowToDto), UserDto.class);
+    }
+
+    // GET /api/users/{id}
+    public Mono<ServerResponse> getUserById(ServerRequest request) {
+        Long id = ServerResponses.pathId(request, "id");
+        return userReadRepository.findUser(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User", " Id ", id)))
+                .flatMap(row -> ServerResponses.ok("Successfully retrieved the user.", rowToDto(row)));
+    }
+
+
+    static UserDto rowToDto(UserRow row) {
+        return new UserDto(row.getId(), row.getName(), row.getEmail(), null, row.getAbout(), null);
+    }
+
+}
@@ -0,0 +1,24 @@
+package uz.developers.messenger.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface CategoryReadRepository extends R2dbcRepository<CategoryRow, Long> {
+
+
+    // All categories in ID order
+    @Query("select c.id, c.name, c.description from category c order by c.id")
+    Flux<CategoryRow> streamAll();
+
+
+
+    // Category by ID
+    @Query("select c.id, c.name, c.description from category c where c.id = :id")
+    Mono<CategoryRow> findCategory(@Param("id") Long id);
+
+
+
+}
@@ -0,0 +1,24 @@
+package uz.developers.messenger.reactive.repository;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A category as read by the reactive API.
+ */
+@Data
+@NoArgsConstructor
+@Table("category")
+public class CategoryRow {
+
+    @Id
+    private Long id;
+
+    @Column("name")
+    private String title;
+
+    private String description;
+}
@@ -0,0 +1,69 @@
+package uz.developers.messenger.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface CommentReadRepository extends R2dbcRepository<CommentRow, Long> {
+
+    // Comment columns with the author; expects the comment aliased as c
+    String COMMENT_ROW = "select c.id, c.user_name, c.user_id, u.user_name as author_name, " +
+            "u.user_email as author_email, u.about as author_about, c.post_id, c.parent_id, c.root_id, " +
+            "c.path, c.depth, c.created_at ";
+
+
+    // Comment by ID
+    @Query(COMMENT_ROW + "from comment c join users u on u.id = c.user_id where c.id = :id")
+    Mono<CommentRow> findComment(@Param("id") Long id);
+
+
+
+    // Post exists check
+    @Query("select count(*) > 0 from posts p where p.id = :postId")
+    Mono<Boolean> existsPost(@Param("postId") Long postId);
+
+
+
+    // Page of a post's comments with IDs above the cursor, oldest first
+    @Query(COMMENT_ROW + "from comment c join users u on u.id = c.user_id " +
+            "where c.post_id = :postId and c.id > :cursor order by c.id limit :limit")
+    Flux<CommentRow> findPageAfter(@Param("postId") Long postId,
+                                   @Param("cursor") long cursor,
+                                   @Param("limit") int limit);
+
+
+
+    // Page of a post's comments with IDs below the cursor, newest first
+    @Query(COMMENT_ROW + "from comment c join users u on u.id = c.user_id " +
+            "where c.post_id = :postId and c.id < :cursor order by c.id desc limit :limit")
+    Flux<CommentRow> findPageBefore(@Param("postId") Long postId,
+                                    @Param("cursor") long cursor,
+                                    @Param("limit") int limit);
+
+
+
+    // A comment and all of its replies in reading order; paths compare byte by byte, as V12 indexes them
+    @Query(COMMENT_ROW + "from comment c join users u on u.id = c.user_id " +
+            "where c.root_id = :rootId and c.path collate \"C\" >= :path and c.path collate \"C\" < concat(:path, 'g') " +
+            "order by c.path collate \"C\"")
+    Flux<CommentRow> findSubtree(@Param("rootId") Long rootId, @Param("path") String path);
+
+
+
+    // Newest top-level comments of a post, each followed by up to :replies of its replies in reading order
+    @Query(COMMENT_ROW + "from (" +
+            "select r.id from comment r where r.post_id = :postId and r.depth = 0 " +
+            "order by r.id desc limit :threads) t " +
+            "cross join lateral (" +
+            "select * from comment x where x.root_id = t.id order by x.path collate \"C\" limit :replies + 1) c " +
+            "join users u on u.id = c.user_id " +
+            "order by c.root_id desc, c.path collate \"C\"")
+    Flux<CommentRow> findThreads(@Param("postId") Long postId,
+                                 @Param("threads") int threads,
+                                 @Param("replies") int replies);
+
+
+
+}
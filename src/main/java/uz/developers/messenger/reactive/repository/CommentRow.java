@@ -0,0 +1,45 @@
+package uz.developers.messenger.reactive.repository;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A comment joined with its author, read by the reactive API.
+ */
+@Data
+@NoArgsConstructor
+@Table("comment")
+public class CommentRow {
+
+    @Id
+    private Long id;
+
+    // The comment text lives in the user_name column
+    @Column("user_name")
+    private String content;
+
+    private Long userId;
+
+    private String authorName;
+
+    private String authorEmail;
+
+    private String authorAbout;
+
+    private Long postId;
+
+    private Long parentId;
+
+    private Long rootId;
+
+    private String path;
+
+    private int depth;
+
+    private LocalDateTime createdAt;
+}
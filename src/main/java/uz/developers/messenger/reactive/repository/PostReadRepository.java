@@ -0,0 +1,52 @@
+package uz.developers.messenger.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface PostReadRepository extends R2dbcRepository<PostRow, Long> {
+
+    // Post with category, author and counters; posts without stats yet count zero
+    String POST_ROW = "select p.id, p.post_title, p.content, p.image, p.date, " +
+            "p.category_id, c.name as category_name, c.description as category_description, " +
+            "p.user_id, u.user_name, u.user_email, u.about as user_about, " +
+            "coalesce(s.view_count, 0) as view_count, coalesce(s.comment_count, 0) as comment_count, " +
+            "coalesce(s.reaction_count, 0) as reaction_count, s.unique_viewers, s.unique_commenters " +
+            "from posts p join category c on c.id = p.category_id join users u on u.id = p.user_id " +
+            "left join post_stats s on s.post_id = p.id ";
+
+
+    // All posts in ID order, streamed as they are read
+    @Query(POST_ROW + "order by p.id")
+    Flux<PostRow> streamAll();
+
+
+
+    // Post by ID
+    @Query(POST_ROW + "where p.id = :id")
+    Mono<PostRow> findPost(@Param("id") Long id);
+
+
+
+    // Query to get posts by category ID
+    @Query(POST_ROW + "where p.category_id = :categoryId order by p.id")
+    Flux<PostRow> findByCategoryId(@Param("categoryId") Long categoryId);
+
+
+
+    // Query to get posts by user ID
+    @Query(POST_ROW + "where p.user_id = :userId order by p.id")
+    Flux<PostRow> findByUserId(@Param("userId") Long userId);
+
+
+
+    // Query to search posts by title or content
+    @Query(POST_ROW + "where p.post_title like '%' || :keyword || '%' or p.content like '%' || :keyword || '%' " +
+            "order by p.id")
+    Flux<PostRow> searchByTitleOrContent(@Param("keyword") String keyword);
+
+
+
+}
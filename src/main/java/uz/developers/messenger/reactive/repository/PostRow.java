@@ -0,0 +1,57 @@
+package uz.developers.messenger.reactive.repository;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * A post joined with its category, author and persisted engagement counters,
+ * read in one row by the reactive API.
+ */
+@Data
+@NoArgsConstructor
+@Table("posts")
+public class PostRow {
+
+    @Id
+    private Long id;
+
+    @Column("post_title")
+    private String title;
+
+    private String content;
+
+    private String image;
+
+    private LocalDate date;
+
+    private Long categoryId;
+
+    private String categoryName;
+
+    private String categoryDescription;
+
+    private Long userId;
+
+    private String userName;
+
+    private String userEmail;
+
+    private String userAbout;
+
+    private long viewCount;
+
+    private long commentCount;
+
+    private long reactionCount;
+
+    // Serialized HyperLogLog sketches, null until the first flush of the post's stats
+    private ByteBuffer uniqueViewers;
+
+    private ByteBuffer uniqueCommenters;
+}
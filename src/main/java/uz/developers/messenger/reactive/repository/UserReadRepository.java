@@ -0,0 +1,24 @@
+package uz.developers.messenger.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface UserReadRepository extends R2dbcRepository<UserRow, Long> {
+
+
+    // All users in ID order, streamed as they are read
+    @Query("select u.id, u.user_name, u.user_email, u.about from users u order by u.id")
+    Flux<UserRow> streamAll();
+
+
+
+    // User by ID
+    @Query("select u.id, u.user_name, u.user_email, u.about from users u where u.id = :id")
+    Mono<UserRow> findUser(@Param("id") Long id);
+
+
+
+}
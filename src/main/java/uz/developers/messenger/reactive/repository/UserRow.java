@@ -0,0 +1,27 @@
+package uz.developers.messenger.reactive.repository;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A user as read by the reactive API; the password column is never selected.
+ */
+@Data
+@NoArgsConstructor
+@Table("users")
+public class UserRow {
+
+    @Id
+    private Long id;
+
+    @Column("user_name")
+    private String name;
+
+    @Column("user_email")
+    private String email;
+
+    private String about;
+}
@@ -5,11 +5,18 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import uz.developers.messenger.entity.Category;
 
+import java.util.Optional;
+
 public interface CategoryRepository extends BaseRepository<Category, Long> {
 
 
     // Title exists check
-    @Query(value = "select count(*) > 0 from category c where c.content = :title", nativeQuery = true)
+    @Query(value = "select count(*) > 0 from category c where c.name = :title", nativeQuery = true)
     boolean existsByTitle(@Param("title") String title);
 
+
+    // Current version of a category; empty when it does not exist
+    @Query(value = "select c.version from category c where c.id = :categoryId", nativeQuery = true)
+    Optional<Long> findVersionById(@Param("categoryId") Long categoryId);
+
 }
@@ -1,23 +1,146 @@
 package uz.developers.messenger.repository;
 
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import uz.developers.messenger.entity.Comment;
+import uz.developers.messenger.payload.CommentExportView;
 
+import java.sql.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CommentRepository extends BaseRepository<Comment, Long> {
 
 
     // Content exists check
-    @Query(value = "select count(*) > 0 from comment c where c.post_title = :content", nativeQuery = true)
+    @Query(value = "select count(*) > 0 from comment c where c.user_name = :content", nativeQuery = true)
     boolean existsByContent(@Param("content") String content);
 
 
 
-    @Query(value = "select * from comment where post_id = :postId", nativeQuery = true)
-    List<Comment> findByPostId(@Param("postId") Long postId);
+    // Number of comments written by a user
+    @Query(value = "select count(*) from comment c where c.user_id = :userId", nativeQuery = true)
+    long countByUserId(@Param("userId") Long userId);
+
+
+    // A comment locked against new replies until the transaction ends; empty when it does not exist
+    @Query(value = "select * from comment c where c.id = :commentId for share", nativeQuery = true)
+    Optional<Comment> findByIdForShare(@Param("commentId") Long commentId);
+
+
+    // Current version of a comment; empty when the comment does not exist
+    @Query(value = "select c.version from comment c where c.id = :commentId", nativeQuery = true)
+    Optional<Long> findVersionById(@Param("commentId") Long commentId);
+
+
+
+    // All comments of a post, thread by thread in reading order. Here and below, :postDate is
+    // the date of the post, which is stored with its comments and prunes the plan to their partition.
+    // Paths compare byte by byte (COLLATE "C"), as the indexes of V12 sort them
+    @Query(value = "select * from comment where post_id = :postId and post_date = :postDate order by path collate \"C\"",
+            nativeQuery = true)
+    List<Comment> findByPostId(@Param("postId") Long postId, @Param("postDate") Date postDate);
+
+
+
+    // Page of a post's comments with IDs above the cursor, oldest first
+    @Query(value = "select * from comment c where c.post_id = :postId and c.post_date = :postDate and c.id > :cursor " +
+            "order by c.id limit :limit", nativeQuery = true)
+    List<Comment> findPageAfter(@Param("postId") Long postId,
+                                @Param("postDate") Date postDate,
+                                @Param("cursor") long cursor,
+                                @Param("limit") int limit);
+
+
+
+    // Page of a post's comments with IDs below the cursor, newest first
+    @Query(value = "select * from comment c where c.post_id = :postId and c.post_date = :postDate and c.id < :cursor " +
+            "order by c.id desc limit :limit", nativeQuery = true)
+    List<Comment> findPageBefore(@Param("postId") Long postId,
+                                 @Param("postDate") Date postDate,
+                                 @Param("cursor") long cursor,
+                                 @Param("limit") int limit);
+
+
+
+    // A comment and all of its replies in reading order; the path range covers every
+    // path that starts with the given one because 'g' sorts after every hex digit
+    @Query(value = "select * from comment c where c.root_id = :rootId and c.post_date = :postDate " +
+            "and c.path collate \"C\" >= :path and c.path collate \"C\" < concat(:path, 'g') " +
+            "order by c.path collate \"C\"", nativeQuery = true)
+    List<Comment> findSubtree(@Param("rootId") Long rootId, @Param("path") String path, @Param("postDate") Date postDate);
+
+
+
+    // Newest top-level comments of a post, each followed by up to :replies of its replies in reading order
+    @Query(value = "select c.* from (" +
+            "select r.id from comment r where r.post_id = :postId and r.post_date = :postDate and r.depth = 0 " +
+            "order by r.id desc limit :threads) t " +
+            "cross join lateral (" +
+            "select * from comment c where c.root_id = t.id and c.post_date = :postDate " +
+            "order by c.path collate \"C\" limit :replies + 1) c " +
+            "order by c.root_id desc, c.path collate \"C\"", nativeQuery = true)
+    List<Comment> findThreads(@Param("postId") Long postId,
+                              @Param("postDate") Date postDate,
+                              @Param("threads") int threads,
+                              @Param("replies") int replies);
+
+
+
+    // Lock a comment and all of its replies, so no reply can be added below them until the transaction ends
+    @Query(value = "select c.id from comment c where c.root_id = :rootId and c.post_date = :postDate " +
+            "and c.path collate \"C\" >= :path and c.path collate \"C\" < concat(:path, 'g') for update",
+            nativeQuery = true)
+    List<Long> lockSubtree(@Param("rootId") Long rootId, @Param("path") String path, @Param("postDate") Date postDate);
+
+
+
+    // Delete a comment together with all of its replies
+    @Modifying
+    @Transactional
+    @Query(value = "delete from comment c where c.root_id = :rootId and c.post_date = :postDate " +
+            "and c.path collate \"C\" >= :path and c.path collate \"C\" < concat(:path, 'g')",
+            nativeQuery = true)
+    int deleteSubtree(@Param("rootId") Long rootId, @Param("path") String path, @Param("postDate") Date postDate);
+
+
+
+    // Lock a comment without a path and the replies below it, followed through parent_id
+    @Query(value = "with recursive subtree as (" +
+            "select c.id from comment c where c.id = :commentId and c.post_date = :postDate " +
+            "union all " +
+            "select c.id from comment c join subtree s on c.parent_id = s.id where c.post_date = :postDate) " +
+            "select c.id from comment c join subtree s on s.id = c.id where c.post_date = :postDate for update of c",
+            nativeQuery = true)
+    List<Long> lockSubtreeByParent(@Param("commentId") Long commentId, @Param("postDate") Date postDate);
+
+
+
+    // Delete a comment without a path together with the replies below it, followed through parent_id
+    @Modifying
+    @Transactional
+    @Query(value = "with recursive subtree as (" +
+            "select c.id from comment c where c.id = :commentId and c.post_date = :postDate " +
+            "union all " +
+            "select c.id from comment c join subtree s on c.parent_id = s.id where c.post_date = :postDate) " +
+            "delete from comment c using subtree s where c.id = s.id and c.post_date = :postDate",
+            nativeQuery = true)
+    int deleteSubtreeByParent(@Param("commentId") Long commentId, @Param("postDate") Date postDate);
+
+
+
+    // Every comment as flat columns, read through a server-side cursor for exports
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select c.id as id, c.post_id as postId, c.user_id as userId, c.parent_id as parentId, " +
+            "c.root_id as rootId, c.depth as depth, c.user_name as content from comment c order by c.id", nativeQuery = true)
+    Stream<CommentExportView> streamAllForExport();
 
 
 
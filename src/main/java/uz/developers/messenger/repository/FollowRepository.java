@@ -0,0 +1,24 @@
+package uz.developers.messenger.repository;
+
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import uz.developers.messenger.entity.Follow;
+
+public interface FollowRepository extends BaseRepository<Follow, Long> {
+
+
+    // Follow exists check
+    @Query(value = "select count(*) > 0 from user_follows f where f.follower_id = :followerId and f.followee_id = :followeeId", nativeQuery = true)
+    boolean existsByFollowerIdAndFolloweeId(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from user_follows f where f.follower_id = :followerId and f.followee_id = :followeeId", nativeQuery = true)
+    int deleteByFollowerIdAndFolloweeId(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+
+}
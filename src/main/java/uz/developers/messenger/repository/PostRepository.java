@@ -1,10 +1,17 @@
 package uz.developers.messenger.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import uz.developers.messenger.entity.Post;
 
+import java.sql.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PostRepository extends BaseRepository<Post,Long> {
 
@@ -15,13 +22,15 @@ public interface PostRepository extends BaseRepository<Post,Long> {
     boolean existsByTitle(@Param("title") String title);
 
 
-    // Content exists check
-    @Query(value = "select count(*) > 0 from posts p where p.content = :content", nativeQuery = true)
+    // Content exists check, through the index on the content's MD5
+    @Query(value = "select count(*) > 0 from posts p where md5(p.content) = md5(:content) and p.content = :content",
+            nativeQuery = true)
     boolean existsByContent(@Param("content") String content);
 
 
     // Check both column
-    @Query(value = "select count(*) > 0 from posts p where p.post_title = :title or p.content = :content", nativeQuery = true)
+    @Query(value = "select count(*) > 0 from posts p " +
+            "where p.post_title = :title or (md5(p.content) = md5(:content) and p.content = :content)", nativeQuery = true)
     boolean existsByTitleOrContent(@Param("title") String title, @Param("content") String content);
 
 
@@ -42,4 +51,55 @@ public interface PostRepository extends BaseRepository<Post,Long> {
     List<Post> searchByTitleOrContent(@Param("keyword") String keyword);
 
 
+    // Newest post IDs of an author since a date, used to pull posts into home timelines;
+    // the date bound keeps older partitions out of the plan
+    @Query(value = "select p.id from posts p where p.user_id = :userId and p.date >= :since " +
+            "order by p.id desc limit :limit", nativeQuery = true)
+    List<Long> findRecentIdsByUserId(@Param("userId") Long userId, @Param("since") Date since, @Param("limit") int limit);
+
+
+    // Newest post IDs since a date of everyone the user follows, used to rebuild a home timeline
+    @Query(value = "select p.id from posts p join user_follows f on f.followee_id = p.user_id " +
+            "where f.follower_id = :userId and p.date >= :since order by p.id desc limit :limit", nativeQuery = true)
+    List<Long> findRecentIdsFollowedBy(@Param("userId") Long userId, @Param("since") Date since, @Param("limit") int limit);
+
+
+    // Date of a post, which its comments are partitioned by; empty when the post does not exist
+    @Query(value = "select p.date from posts p where p.id = :postId", nativeQuery = true)
+    Optional<Date> findDateById(@Param("postId") Long postId);
+
+
+    // Category of a post without loading it; empty when the post does not exist
+    @Query(value = "select p.category_id from posts p where p.id = :postId", nativeQuery = true)
+    Optional<Long> findCategoryIdById(@Param("postId") Long postId);
+
+
+    // Current version of a post; empty when the post does not exist
+    @Query(value = "select p.version from posts p where p.id = :postId", nativeQuery = true)
+    Optional<Long> findVersionById(@Param("postId") Long postId);
+
+
+    // A post with its comments, their reactions and its stats in one statement; the date prunes to the post's month
+    @Modifying
+    @Query(value = "with deleted_comments as (" +
+            "delete from comment c where c.post_id = :postId and c.post_date = :date returning c.id), " +
+            "deleted_reactions as (delete from reaction_snapshot r " +
+            "where (r.target_type = 'POST' and r.target_id = :postId) " +
+            "or (r.target_type = 'COMMENT' and r.target_id in (select id from deleted_comments))), " +
+            "deleted_stats as (delete from post_stats s where s.post_id = :postId) " +
+            "delete from posts p where p.id = :postId and p.date = :date", nativeQuery = true)
+    int deleteWithComments(@Param("postId") Long postId, @Param("date") Date date);
+
+
+
+    // Every post with its category and author, read through a server-side cursor for exports
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Post p join fetch p.category join fetch p.user order by p.id")
+    Stream<Post> streamAll();
+
+
+
 }
@@ -0,0 +1,9 @@
+package uz.developers.messenger.repository;
+
+
+import uz.developers.messenger.entity.PostStats;
+
+public interface PostStatsRepository extends BaseRepository<PostStats, Long> {
+
+
+}
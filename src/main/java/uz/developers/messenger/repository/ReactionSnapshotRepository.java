@@ -0,0 +1,19 @@
+package uz.developers.messenger.repository;
+
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import uz.developers.messenger.entity.ReactionSnapshot;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReactionSnapshotRepository extends BaseRepository<ReactionSnapshot, Long> {
+
+
+    // All reaction bitmaps of a batch of targets
+    @Query(value = "select * from reaction_snapshot r where r.target_type = :targetType and r.target_id in (:targetIds)", nativeQuery = true)
+    List<ReactionSnapshot> findByTargets(@Param("targetType") String targetType, @Param("targetIds") Collection<Long> targetIds);
+
+
+}
@@ -5,17 +5,24 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import uz.developers.messenger.entity.User;
 
+import java.util.Optional;
+
 public interface UserRepository extends BaseRepository<User, Long> {
 
 
     // Name exists check
-    @Query(value = "select count(*) > 0 from users u where u.name = :name", nativeQuery = true)
+    @Query(value = "select count(*) > 0 from users u where u.user_name = :name", nativeQuery = true)
     boolean existsByName(@Param("name") String name);
 
     // Email exists check
-    @Query(value = "select count(*) > 0 from users u where u.email = :email", nativeQuery = true)
+    @Query(value = "select count(*) > 0 from users u where u.user_email = :email", nativeQuery = true)
     boolean existsByEmail(@Param("email") String email);
 
 
+    // Current version of a user; empty when the user does not exist
+    @Query(value = "select u.version from users u where u.id = :userId", nativeQuery = true)
+    Optional<Long> findVersionById(@Param("userId") Long userId);
+
+
 
 }
@@ -0,0 +1,12 @@
+package uz.developers.messenger.service;
+
+public interface AnalyticsExportService {
+
+
+
+    // write the days changed since the last export to parquet, return how many days of posts and comments were written
+    int exportIncrement();
+
+
+
+}
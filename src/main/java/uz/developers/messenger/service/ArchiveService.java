@@ -0,0 +1,24 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.entity.Post;
+
+import java.util.Optional;
+
+public interface ArchiveService {
+
+
+
+    // create the monthly partitions of the coming months, return how many were missing
+    int createPartitions();
+
+
+    // move the partitions of old months to the archive, return how many were moved
+    int archivePartitions();
+
+
+    // an archived post, with only the IDs of its category and author
+    Optional<Post> findArchivedPost(long id);
+
+
+
+}
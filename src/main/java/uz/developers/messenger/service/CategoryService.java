@@ -1,5 +1,6 @@
 package uz.developers.messenger.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import uz.developers.messenger.exceptions.CategoryException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.CategoryDto;
@@ -21,6 +22,9 @@ public interface CategoryService {
     //update
     CategoryDto updateCategory(Long id, CategoryDto categoryDto) throws ResourceNotFoundException;
 
+    //merge patch (RFC 7396) applied in one statement; with a version, only to that version
+    CategoryDto patchCategory(Long id, JsonNode patch, Long version) throws ResourceNotFoundException;
+
     //delete
     void deleteCategory(Long id) throws ResourceNotFoundException;
 
@@ -1,8 +1,10 @@
 package uz.developers.messenger.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import uz.developers.messenger.exceptions.CommentException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.CommentDto;
+import uz.developers.messenger.payload.CommentPageDto;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +16,12 @@ public interface CommentService {
     // get all
     List<CommentDto> getAllCommentsByPostId(Long postId);
 
+    // get one page, newest or oldest first
+    CommentPageDto getCommentsByPostId(Long postId, Long cursor, int limit, boolean newestFirst) throws ResourceNotFoundException;
+
+    // number of comments written by a user
+    long countCommentsByUser(Long userId);
+
     // get by ID
     Optional<CommentDto> getCommentById(Long commentId) throws ResourceNotFoundException;
 
@@ -23,9 +31,21 @@ public interface CommentService {
     // update
     CommentDto updateComment(Long commentId, CommentDto commentDto) throws ResourceNotFoundException;
 
+    // merge patch (RFC 7396) applied in one statement; with a version, only to that version
+    CommentDto patchComment(Long commentId, JsonNode patch, Long version) throws ResourceNotFoundException;
+
     // delete
     void deleteComment(Long commentId) throws ResourceNotFoundException;
 
+    // reply
+    CommentDto replyToComment(Long parentId, CommentDto commentDto) throws CommentException;
+
+    // comment with all of its replies
+    CommentDto getCommentThread(Long commentId) throws ResourceNotFoundException;
+
+    // newest threads of a post with their first replies
+    List<CommentDto> getCommentThreads(Long postId, int threads, int replies) throws ResourceNotFoundException;
+
 
 
 
@@ -0,0 +1,20 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.payload.DataFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ExportService {
+
+
+
+    // write every post to the stream
+    void exportPosts(OutputStream out, DataFormat format) throws IOException;
+
+    // write every comment to the stream
+    void exportComments(OutputStream out, DataFormat format) throws IOException;
+
+
+
+}
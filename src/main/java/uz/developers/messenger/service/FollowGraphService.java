@@ -0,0 +1,33 @@
+package uz.developers.messenger.service;
+
+public interface FollowGraphService {
+
+    // record a new follow edge
+    void addFollow(Long followerId, Long followeeId);
+
+    // drop a follow edge
+    void removeFollow(Long followerId, Long followeeId);
+
+    // drop every edge of a deleted user
+    void removeUser(Long userId);
+
+    // IDs of users following the user, ascending
+    long[] getFollowerIds(Long userId);
+
+    // IDs of users the user follows, ascending
+    long[] getFolloweeIds(Long userId);
+
+    int countFollowers(Long userId);
+
+    boolean isFollowing(Long followerId, Long followeeId);
+
+    // users the user follows who follow back
+    long[] getMutualFollowIds(Long userId);
+
+    // users both users follow
+    long[] getCommonFolloweeIds(Long userId, Long otherUserId);
+
+    // users the user follows who also follow the target
+    long[] getFolloweesFollowing(Long userId, Long targetId);
+
+}
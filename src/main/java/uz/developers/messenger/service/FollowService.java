@@ -0,0 +1,32 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.exceptions.UserException;
+import uz.developers.messenger.payload.UserDto;
+
+import java.util.List;
+
+public interface FollowService {
+
+    // follow
+    void follow(Long followerId, Long followeeId) throws UserException, ResourceNotFoundException;
+
+    // unfollow
+    void unfollow(Long followerId, Long followeeId);
+
+    // users following the given user
+    List<UserDto> getFollowers(Long userId);
+
+    // users the given user follows
+    List<UserDto> getFollowing(Long userId);
+
+    // users the given user follows who follow back
+    List<UserDto> getMutualFollows(Long userId);
+
+    // users both users follow
+    List<UserDto> getCommonFollowing(Long userId, Long otherUserId);
+
+    // users the given user follows who also follow the target
+    List<UserDto> getFolloweesFollowing(Long userId, Long targetId);
+
+}
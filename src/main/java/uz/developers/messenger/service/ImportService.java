@@ -0,0 +1,24 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.payload.ImportResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ImportService {
+
+
+
+    // load users (name, email, password, about)
+    ImportResultDto importUsers(InputStream in, DataFormat format, String jobId) throws IOException;
+
+    // load posts (title, content, image, date, category, userEmail)
+    ImportResultDto importPosts(InputStream in, DataFormat format, String jobId) throws IOException;
+
+    // load top-level comments (postId, userEmail, content)
+    ImportResultDto importComments(InputStream in, DataFormat format, String jobId) throws IOException;
+
+
+
+}
@@ -1,8 +1,10 @@
 package uz.developers.messenger.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import uz.developers.messenger.exceptions.PostException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.TrendingHashtagDto;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,6 +17,9 @@ public interface PostService {
     //get single post
     Optional<PostDto> getPostById(Long postId) throws ResourceNotFoundException;
 
+    //get single post and count it as a view, viewerId may be null
+    Optional<PostDto> viewPost(Long postId, Long viewerId) throws ResourceNotFoundException;
+
     //get all posts by category
     List<PostDto> getPostsByCategory(Long categoryId);
 
@@ -24,12 +29,21 @@ public interface PostService {
     //search posts
     List<PostDto> searchPosts(String keyword);
 
+    //trending posts, globally when categoryId is null
+    List<PostDto> getTrendingPosts(Long categoryId, int limit);
+
+    //trending hashtags
+    List<TrendingHashtagDto> getTrendingHashtags(int limit);
+
     //create
     PostDto createPost(PostDto postDto) throws PostException;
 
     //update
     PostDto updatePost(Long postId, PostDto postDto) throws ResourceNotFoundException;
 
+    // merge patch (RFC 7396) applied in one statement; with a version, only to that version
+    PostDto patchPost(Long postId, JsonNode patch, Long version) throws ResourceNotFoundException;
+
     //delete
     void deletePost(Long postId) throws ResourceNotFoundException;
 
@@ -0,0 +1,21 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.payload.PostStatsDto;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface PostStatsService {
+
+    // viewerId may be null for anonymous views
+    void recordView(Long postId, Long viewerId);
+
+    // commenterId may be null, e.g. for deletions
+    void recordComment(Long postId, Long commenterId, int delta);
+
+    void recordReaction(Long postId, int delta);
+
+    // persisted counters plus deltas not yet flushed
+    Map<Long, PostStatsDto> getStats(Collection<Long> postIds);
+
+}
@@ -0,0 +1,26 @@
+package uz.developers.messenger.service;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PresenceService {
+
+    // heartbeat from a connected user
+    void heartbeat(Long userId);
+
+    // explicit disconnect
+    void disconnect(Long userId);
+
+    // is single user online
+    boolean isOnline(Long userId);
+
+    // who is online among these user ids
+    List<Long> getOnlineUsers(Collection<Long> userIds);
+
+    // user is typing in the comments of a post
+    void typing(Long postId, Long userId);
+
+    // users currently typing in the comments of a post
+    List<Long> getTypingUsers(Long postId);
+
+}
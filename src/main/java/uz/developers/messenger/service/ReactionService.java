@@ -0,0 +1,25 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.entity.ReactionTargetType;
+import uz.developers.messenger.entity.ReactionType;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.ReactionSummaryDto;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ReactionService {
+
+    // react, replacing any earlier reaction of the user on the same target
+    void react(ReactionTargetType targetType, Long targetId, Long userId, ReactionType reactionType) throws ResourceNotFoundException;
+
+    // remove the user's reaction
+    void removeReaction(ReactionTargetType targetType, Long targetId, Long userId);
+
+    // counts per reaction
+    ReactionSummaryDto getReactionSummary(ReactionTargetType targetType, Long targetId);
+
+    // the user's reaction on each of the targets, targets without one are left out
+    Map<Long, ReactionType> getUserReactions(ReactionTargetType targetType, Long userId, Collection<Long> targetIds);
+
+}
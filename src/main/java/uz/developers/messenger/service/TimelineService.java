@@ -0,0 +1,18 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.payload.PostDto;
+
+import java.util.List;
+
+public interface TimelineService {
+
+    // push a new post into follower timelines
+    void onPostCreated(long postId, long authorId);
+
+    // follow graph of a user changed, drop the cached timeline
+    void onFollowChanged(Long followerId);
+
+    // home feed of a user, newest first
+    List<PostDto> getHomeTimeline(Long userId, int limit);
+
+}
@@ -0,0 +1,24 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.payload.TrendingHashtagDto;
+
+import java.util.List;
+
+public interface TrendingService {
+
+    // new post, counts its hashtags
+    void recordPostCreated(String title, String content);
+
+    void recordView(Long postId, Long categoryId);
+
+    // new comment, counts the post and the comment's hashtags
+    void recordComment(Long postId, Long categoryId, String content);
+
+    void recordReaction(Long postId, Long categoryId);
+
+    // IDs of trending posts, globally when categoryId is null
+    List<Long> getTrendingPostIds(Long categoryId, int limit);
+
+    List<TrendingHashtagDto> getTrendingHashtags(int limit);
+
+}
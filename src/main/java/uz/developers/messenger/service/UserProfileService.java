@@ -0,0 +1,11 @@
+package uz.developers.messenger.service;
+
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.UserProfileDto;
+
+public interface UserProfileService {
+
+    // user, posts, comment count and categories, loaded concurrently within the deadline
+    UserProfileDto getProfile(Long userId) throws ResourceNotFoundException;
+
+}
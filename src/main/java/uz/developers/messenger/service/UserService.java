@@ -1,7 +1,9 @@
 package uz.developers.messenger.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.exceptions.UserException;
+import uz.developers.messenger.payload.UserDeletionDto;
 import uz.developers.messenger.payload.UserDto;
 
 import java.util.List;
@@ -21,8 +23,14 @@ public interface UserService {
     // update
     UserDto updateUser(Long userId, UserDto userDto) throws ResourceNotFoundException;
 
-    // delete
-    void deleteUser(Long userId) throws ResourceNotFoundException;
+    // merge patch (RFC 7396) applied in one statement; with a version, only to that version
+    UserDto patchUser(Long userId, JsonNode patch, Long version) throws ResourceNotFoundException;
+
+    // delete with posts, comments and follows; large accounts are deleted in the background
+    UserDeletionDto deleteUser(Long userId) throws ResourceNotFoundException;
+
+    // progress of a deletion started on this node
+    Optional<UserDeletionDto> getDeletion(Long userId);
 
 
 
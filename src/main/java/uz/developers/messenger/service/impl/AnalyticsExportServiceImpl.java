@@ -0,0 +1,306 @@
+package uz.developers.messenger.service.impl;
+
+import org.duckdb.DuckDBConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.developers.messenger.service.AnalyticsExportService;
+import uz.developers.messenger.util.DuckDb;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Incremental analytics export to partitioned Parquet files on local disk.
+ *
+ * Rows are streamed from PostgreSQL into an in-memory DuckDB table and written out
+ * with DuckDB's Parquet writer (ZSTD compression, dictionary encoding where it pays off).
+ * Layout under {@code analytics.export.dir}:
+ * <pre>
+ * posts/date=2024-10-10/part-0.parquet        posts by post date
+ * comments/date=2024-10-10/part-0.parquet     comments by creation date
+ * post_stats/date=2024-10-10/part-0.parquet   engagement rows changed since the previous export
+ * users/part-0.parquet                        full snapshot, without credentials
+ * </pre>
+ * Rows without a date go to {@code date=__HIVE_DEFAULT_PARTITION__}, which Hive-style
+ * readers take for NULL.
+ *
+ * Each run rewrites the days holding posts or comments written since the previous run,
+ * found through their {@code changed_xid}: the watermark is the oldest transaction still
+ * running when the previous run took its snapshot, so a row committed after that snapshot
+ * is found by the next run even when it was written before. Days that lost rows are
+ * found the same way in {@code deleted_days}, filled by triggers and by the archive, and
+ * rewritten without them; entries older than the new watermark are cleared after a
+ * successful run. The first run writes every day. Everything is read in one read-only snapshot, which the replica routing serves from
+ * a replica when one is up to date. Files are renamed into place, so readers never see a
+ * partially written file.
+ *
+ * The export reads the main database only and is switched off together with sharding.
+ */
+@Service
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class AnalyticsExportServiceImpl implements AnalyticsExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsExportServiceImpl.class);
+
+    private static final String WATERMARK_FILE = "_watermark";
+
+    private static final String NULL_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+    // Transactions from this one on may not be visible in the snapshot yet
+    private static final String SNAPSHOT_XMIN = "select pg_snapshot_xmin(pg_current_snapshot())::text";
+
+    private static final String CHANGED_SINCE = " where changed_xid >= ?::xid8";
+
+    private static final String POST_DAYS = "select distinct date from posts";
+
+    private static final String COMMENT_DAYS = "select distinct created_at::date from comment";
+
+    private static final String DELETED_DAYS =
+            "select distinct day from deleted_days where table_name = ? and deleted_xid >= ?::xid8";
+
+    private static final String POSTS_TABLE =
+            "create table posts (id bigint, title varchar, content varchar, image varchar, date date, " +
+            "category_id bigint, user_id bigint)";
+
+    private static final String POSTS_QUERY =
+            "select id, post_title, content, image, date, category_id, user_id from posts where date = ? order by id";
+
+    private static final String UNDATED_POSTS_QUERY =
+            "select id, post_title, content, image, date, category_id, user_id from posts where date is null order by id";
+
+    private static final String COMMENTS_TABLE =
+            "create table comments (id bigint, post_id bigint, user_id bigint, parent_id bigint, root_id bigint, " +
+            "depth integer, content varchar, created_at timestamp)";
+
+    private static final String COMMENTS_QUERY =
+            "select id, post_id, user_id, parent_id, root_id, depth, user_name, created_at from comment " +
+            "where created_at >= ? and created_at < ? order by id";
+
+    private static final String UNDATED_COMMENTS_QUERY =
+            "select id, post_id, user_id, parent_id, root_id, depth, user_name, created_at from comment " +
+            "where created_at is null order by id";
+
+    private static final String POST_STATS_TABLE =
+            "create table post_stats (post_id bigint, view_count bigint, comment_count bigint, reaction_count bigint, " +
+            "updated_at timestamp)";
+
+    private static final String POST_STATS_QUERY =
+            "select post_id, view_count, comment_count, reaction_count, updated_at from post_stats " +
+            "where updated_at >= ? order by post_id";
+
+    private static final String USERS_TABLE = "create table users (id bigint, name varchar, about varchar)";
+
+    private static final String USERS_QUERY = "select id, user_name, about from users order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Path directory;
+
+    private final int fetchSize;
+
+    // Held for the whole export; a monitor would pin a virtual thread to its carrier meanwhile
+    private final ReentrantLock exportLock = new ReentrantLock();
+
+    @Autowired
+    public AnalyticsExportServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                      @Value("${analytics.export.dir:analytics}") String directory,
+                                      @Value("${analytics.export.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.directory = Paths.get(directory);
+        this.fetchSize = fetchSize;
+    }
+
+
+    @Scheduled(cron = "${analytics.export.cron:-}")
+    public void scheduledExport() {
+        try {
+            exportIncrement();
+        } catch (RuntimeException e) {
+            log.error("Analytics export failed", e);
+        }
+    }
+
+    @Override
+    public int exportIncrement() {
+        exportLock.lock();
+        try {
+            return exportIncrementLocked();
+        } finally {
+            exportLock.unlock();
+        }
+    }
+
+
+    private int exportIncrementLocked() {
+        Properties previous = readWatermark();
+        String since = previous.getProperty("xmin");
+        LocalDate today = LocalDate.now();
+        LocalDate statsSince = previous.containsKey("day") ? LocalDate.parse(previous.getProperty("day")) : LocalDate.EPOCH;
+
+        long started = System.currentTimeMillis();
+        Properties watermark = new Properties();
+        int days;
+        try (DuckDBConnection duck = DuckDb.open()) {
+            DuckDb.execute(duck, POSTS_TABLE);
+            DuckDb.execute(duck, COMMENTS_TABLE);
+            DuckDb.execute(duck, POST_STATS_TABLE);
+            DuckDb.execute(duck, USERS_TABLE);
+
+            days = transactionTemplate.execute(status -> {
+                try {
+                    watermark.setProperty("xmin", jdbcTemplate.queryForObject(SNAPSHOT_XMIN, String.class));
+                    int exported = 0;
+                    for (LocalDate day : changedDays(POST_DAYS, "posts", since)) {
+                        if (day == null) {
+                            export(duck, "posts", UNDATED_POSTS_QUERY, partition(null));
+                        } else {
+                            export(duck, "posts", POSTS_QUERY, partition(day), Date.valueOf(day));
+                        }
+                        exported++;
+                    }
+                    for (LocalDate day : changedDays(COMMENT_DAYS, "comment", since)) {
+                        if (day == null) {
+                            export(duck, "comments", UNDATED_COMMENTS_QUERY, partition(null));
+                        } else {
+                            export(duck, "comments", COMMENTS_QUERY, partition(day),
+                                    Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+                        }
+                        exported++;
+                    }
+                    export(duck, "post_stats", POST_STATS_QUERY, partition(today), Timestamp.valueOf(statsSince.atStartOfDay()));
+                    export(duck, "users", USERS_QUERY, Paths.get(""));
+                    return exported;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Analytics export failed", e);
+                }
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException("Analytics export failed", e);
+        }
+
+        watermark.setProperty("day", today.toString());
+        writeWatermark(watermark);
+        // Every deletion before the new watermark was visible to this run
+        jdbcTemplate.update("delete from deleted_days where deleted_xid < ?::xid8", watermark.getProperty("xmin"));
+        log.info("Exported {} days of analytics data changed since {} in {} ms", days,
+                since != null ? "transaction " + since : "the start", System.currentTimeMillis() - started);
+        return days;
+    }
+
+    // Days with rows written or deleted from the watermark on, NULL among them, or every day on the first run
+    private List<LocalDate> changedDays(String query, String table, String since) {
+        if (since == null) {
+            List<LocalDate> days = jdbcTemplate.queryForList(query, LocalDate.class);
+            days.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+            return days;
+        }
+        Set<LocalDate> days = new HashSet<>(jdbcTemplate.queryForList(query + CHANGED_SINCE, LocalDate.class, since));
+        days.addAll(jdbcTemplate.queryForList(DELETED_DAYS, LocalDate.class, table, since));
+        List<LocalDate> sorted = new ArrayList<>(days);
+        sorted.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        return sorted;
+    }
+
+    private static Path partition(LocalDate day) {
+        return Paths.get("date=" + (day != null ? day : NULL_PARTITION));
+    }
+
+
+    // Stream the query result into the DuckDB table, then replace the partition with one Parquet file
+    private void export(DuckDBConnection duck, String table, String query, Path partition, Object... parameters)
+            throws SQLException {
+        DuckDb.execute(duck, "delete from " + table);
+        long rows = DuckDb.copyRows(jdbcTemplate, duck, table, query, fetchSize, parameters);
+
+        Path target = directory.resolve(table).resolve(partition);
+        Path file = target.resolve("part-0.parquet");
+        try {
+            if (rows == 0) {
+                deleteRecursively(target);
+                return;
+            }
+            Files.createDirectories(target);
+            Path temporary = target.resolve("part-0.parquet.tmp");
+            DuckDb.writeParquet(duck, table, temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A watermark without a transaction, such as the bare date earlier versions wrote, starts over
+    private Properties readWatermark() {
+        Path file = directory.resolve(WATERMARK_FILE);
+        Properties watermark = new Properties();
+        if (!Files.exists(file)) {
+            return watermark;
+        }
+        try (Reader reader = Files.newBufferedReader(file)) {
+            watermark.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!watermark.containsKey("xmin")) {
+            watermark.clear();
+        }
+        return watermark;
+    }
+
+    private void writeWatermark(Properties watermark) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = directory.resolve(WATERMARK_FILE + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                watermark.store(writer, null);
+            }
+            Files.move(temporary, directory.resolve(WATERMARK_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
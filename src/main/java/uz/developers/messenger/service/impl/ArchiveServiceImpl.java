@@ -0,0 +1,441 @@
+package uz.developers.messenger.service.impl;
+
+import org.duckdb.DuckDBConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.service.ArchiveService;
+import uz.developers.messenger.util.DuckDb;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Monthly partitions of posts and comments: created ahead of time, and archived once old.
+ *
+ * Comments are partitioned by the date of their post, so a month of posts and the month
+ * of their comments go together. A month older than {@code archive.after-months} is
+ * detached from its table, written to {@code archive.dir} as one ZSTD-compressed Parquet
+ * file, checked, and dropped, the comments first since they reference the posts:
+ * <pre>
+ * comment/2022-01.parquet    comments on posts dated January 2022
+ * posts/2022-01.parquet      posts dated January 2022
+ * </pre>
+ * Months from before the tables were partitioned are in the legacy partitions, which
+ * are never detached. Such a month is written the same way and then deleted from them in
+ * batches; when a run stops in between, the next one writes the rest to a further file
+ * such as {@code posts/2022-01.1.parquet}. A partition that was detached but not yet
+ * dropped when the process stopped is picked up again by the next run. Archived posts
+ * stay readable through {@link #findArchivedPost}; the ID range of every file is read
+ * once, and again when the file changes, so a lookup opens only files that may hold it.
+ *
+ * All nodes share {@code archive.dir}, a volume each of them mounts at the same path, so
+ * every node finds what any of them archived. Maintenance runs on one node at a time: it
+ * holds a Postgres advisory lock, and a node that does not get it skips the run.
+ *
+ * Only the main database's posts are partitioned by month; with sharding there is nothing to archive.
+ */
+@Service
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveServiceImpl.class);
+
+    private static final String[] TABLES = {"comment", "posts"};
+
+    private static final Map<String, String> ARCHIVE_TABLES = Map.of(
+            "posts", "create table posts (id bigint, post_title varchar, content varchar, image varchar, date date, " +
+                    "category_id bigint, user_id bigint)",
+            "comment", "create table comment (id bigint, user_name varchar, user_id bigint, post_id bigint, " +
+                    "post_date date, parent_id bigint, root_id bigint, path varchar, depth integer, created_at timestamp)");
+
+    // Name of the advisory lock held while partitions are created or archived
+    private static final String MAINTENANCE_LOCK = "partition-maintenance";
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "posts", "id, post_title, content, image, date, category_id, user_id",
+            "comment", "id, user_name, user_id, post_id, post_date, parent_id, root_id, path, depth, created_at");
+
+    // Day each row is exported under by the analytics export
+    private static final Map<String, String> EXPORT_DAYS = Map.of(
+            "posts", "date",
+            "comment", "created_at::date");
+
+    // Partition of each table holding everything from before it was partitioned
+    private static final Map<String, String> LEGACY_PARTITIONS = Map.of(
+            "posts", "posts_legacy",
+            "comment", "comment_legacy");
+
+    // Monthly partitions of a table, attached or left detached by an interrupted run
+    private static final String PARTITIONS_QUERY =
+            "select c.relname, i.inhrelid is not null, coalesce(i.inhdetachpending, false) from pg_class c " +
+            "left join pg_inherits i on i.inhrelid = c.oid " +
+            "where c.relkind = 'r' and c.relname ~ ('^' || ? || '_y[0-9]{4}m[0-9]{2}$') order by c.relname";
+
+    // A batch of a legacy month's posts with their comments, limited to the rows that were archived
+    private static final String DELETE_LEGACY_POSTS =
+            "with doomed as (select id, date from posts_legacy where date >= ? and date < ? and id <= ? " +
+            "order by id limit ?), " +
+            "deleted_comments as (delete from comment_legacy c using doomed d " +
+            "where c.post_id = d.id and c.post_date = d.date and c.id <= ?) " +
+            "delete from posts_legacy p using doomed d where p.id = d.id and p.date = d.date";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    private final Path directory;
+
+    private final int afterMonths;
+
+    private final int premakeMonths;
+
+    private final int deleteBatchSize;
+
+    // First and last post ID of each archive file, as of its modification time
+    private final Map<Path, IdRange> idRanges = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ArchiveServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              @Value("${archive.dir:archive}") String directory,
+                              @Value("${archive.after-months:24}") int afterMonths,
+                              @Value("${archive.premake-months:3}") int premakeMonths,
+                              @Value("${archive.delete-batch-size:1000}") int deleteBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Not read-only: the rows must come from the primary, not from a replica that may lag
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Posts and their comments are read from one snapshot, so the two files agree
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.directory = Paths.get(directory);
+        this.afterMonths = afterMonths;
+        this.premakeMonths = premakeMonths;
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+
+    @Scheduled(cron = "${archive.cron:-}")
+    public void scheduledMaintenance() {
+        try {
+            createPartitions();
+            archivePartitions();
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    @Override
+    public int createPartitions() {
+        return whileLocked(this::createMissingPartitions);
+    }
+
+    @Override
+    public int archivePartitions() {
+        return whileLocked(this::archiveOldPartitions);
+    }
+
+    @Override
+    public Optional<Post> findArchivedPost(long id) {
+        Path posts = directory.resolve("posts");
+        if (!Files.isDirectory(posts)) {
+            return Optional.empty();
+        }
+        try (DuckDBConnection duck = DuckDb.open();
+             Stream<Path> files = Files.list(posts)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".parquet")).sorted().toList()) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                IdRange range = idRanges.get(file);
+                if (range == null || range.modifiedMillis() != modified) {
+                    range = idRange(duck, file, modified);
+                    idRanges.put(file, range);
+                }
+                if (id < range.first() || id > range.last()) {
+                    continue;
+                }
+                try (PreparedStatement statement = duck.prepareStatement(
+                        "select " + COLUMNS.get("posts") + " from read_parquet(" + DuckDb.literal(file) + ") where id = ?")) {
+                    statement.setLong(1, id);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        if (rs.next()) {
+                            return Optional.of(toPost(rs));
+                        }
+                    }
+                }
+            }
+            return Optional.empty();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading archived post " + id + " failed", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    // Session-level, so the lock is held on a connection of its own while the work uses others
+    private int whileLocked(IntSupplier work) {
+        Integer result = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            if (!callLockFunction(connection, "pg_try_advisory_lock")) {
+                log.info("Partition maintenance is running on another node, skipped");
+                return 0;
+            }
+            try {
+                return work.getAsInt();
+            } finally {
+                callLockFunction(connection, "pg_advisory_unlock");
+            }
+        });
+        return result != null ? result : 0;
+    }
+
+    private static boolean callLockFunction(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("select " + function + "(hashtext(?))")) {
+            statement.setString(1, MAINTENANCE_LOCK);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private int createMissingPartitions() {
+        int created = 0;
+        YearMonth current = YearMonth.now();
+        for (String table : TABLES) {
+            for (int i = 0; i <= premakeMonths; i++) {
+                YearMonth month = current.plusMonths(i);
+                Boolean missing = jdbcTemplate.queryForObject("select to_regclass(?) is null", Boolean.class,
+                        partitionName(table, month));
+                // No name back means the month is still covered by the legacy partition
+                if (Boolean.TRUE.equals(missing) && jdbcTemplate.queryForObject(
+                        "select create_monthly_partition(?::regclass, ?)", String.class,
+                        table, java.sql.Date.valueOf(month.atDay(1))) != null) {
+                    created++;
+                }
+            }
+        }
+        if (created > 0) {
+            log.info("Created {} monthly partitions", created);
+        }
+        return created;
+    }
+
+    private int archiveOldPartitions() {
+        YearMonth cutoff = YearMonth.from(LocalDate.now().minusMonths(afterMonths));
+        int archived = archiveLegacyMonths(cutoff);
+        for (String table : TABLES) {
+            List<Object[]> partitions = jdbcTemplate.query(PARTITIONS_QUERY,
+                    (rs, rowNum) -> new Object[]{rs.getString(1), rs.getBoolean(2), rs.getBoolean(3)}, table);
+            for (Object[] partition : partitions) {
+                String name = (String) partition[0];
+                YearMonth month = YearMonth.of(Integer.parseInt(name.substring(name.length() - 7, name.length() - 3)),
+                        Integer.parseInt(name.substring(name.length() - 2)));
+                if (month.isBefore(cutoff)) {
+                    archive(table, name, month, (Boolean) partition[1], (Boolean) partition[2]);
+                    archived++;
+                }
+            }
+        }
+        return archived;
+    }
+
+
+    private void archive(String table, String partition, YearMonth month, boolean attached, boolean detachPending) {
+        long started = System.currentTimeMillis();
+        if (attached) {
+            // Concurrently, so reads and writes of the other months go on meanwhile
+            jdbcTemplate.execute("alter table " + table + " detach partition " + partition +
+                    (detachPending ? " finalize" : " concurrently"));
+        }
+
+        Path file = directory.resolve(table).resolve(month + ".parquet");
+        try (DuckDBConnection duck = DuckDb.open()) {
+            long rows = transactionTemplate.execute(status ->
+                    copyRows(duck, table, "select " + COLUMNS.get(table) + " from " + partition + " order by id"));
+            writeParquet(duck, table, rows, file);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                recordDeletedDays(table, "from " + partition);
+                jdbcTemplate.execute("drop table " + partition);
+            });
+            log.info("Archived {} rows of {} to {} in {} ms", rows, partition, file, System.currentTimeMillis() - started);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Archiving " + partition + " failed", e);
+        }
+    }
+
+    // Legacy months older than the cutoff, oldest first, each carved out of the legacy partitions
+    private int archiveLegacyMonths(YearMonth cutoff) {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is null", Boolean.class,
+                LEGACY_PARTITIONS.get("posts")))) {
+            return 0;
+        }
+        int archived = 0;
+        java.sql.Date oldest;
+        while ((oldest = jdbcTemplate.queryForObject("select min(date) from " + LEGACY_PARTITIONS.get("posts"),
+                java.sql.Date.class)) != null) {
+            YearMonth month = YearMonth.from(oldest.toLocalDate());
+            if (!month.isBefore(cutoff)) {
+                break;
+            }
+            archiveLegacyMonth(month);
+            archived++;
+        }
+        return archived;
+    }
+
+    private void archiveLegacyMonth(YearMonth month) {
+        long started = System.currentTimeMillis();
+        java.sql.Date from = java.sql.Date.valueOf(month.atDay(1));
+        java.sql.Date to = java.sql.Date.valueOf(month.plusMonths(1).atDay(1));
+        try (DuckDBConnection duck = DuckDb.open()) {
+            LegacyRows rows = snapshotTemplate.execute(status -> new LegacyRows(
+                    copyRows(duck, "posts", "select " + COLUMNS.get("posts") + " from " + LEGACY_PARTITIONS.get("posts") +
+                            " where date >= ? and date < ? order by id", from, to),
+                    lastId(duck, "posts"),
+                    copyRows(duck, "comment", "select " + COLUMNS.get("comment") + " from " +
+                            LEGACY_PARTITIONS.get("comment") + " where post_date >= ? and post_date < ? order by id", from, to),
+                    lastId(duck, "comment")));
+            writeParquet(duck, "comment", rows.comments(), freeFile("comment", month));
+            writeParquet(duck, "posts", rows.posts(), freeFile("posts", month));
+
+            // Only rows up to the highest IDs written are deleted; later ones wait for the next run
+            recordDeletedDays("posts", "from " + LEGACY_PARTITIONS.get("posts") + " where date >= ? and date < ? and id <= ?",
+                    from, to, rows.lastPostId());
+            recordDeletedDays("comment", "from " + LEGACY_PARTITIONS.get("comment") +
+                    " where post_date >= ? and post_date < ? and id <= ?", from, to, rows.lastCommentId());
+            long deleted = 0;
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> jdbcTemplate.update(DELETE_LEGACY_POSTS,
+                        from, to, rows.lastPostId(), deleteBatchSize, rows.lastCommentId()));
+                deleted += batch;
+            } while (batch > 0);
+            log.info("Archived {} legacy posts of {} with {} comments in {} ms", deleted, month, rows.comments(),
+                    System.currentTimeMillis() - started);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Archiving legacy month " + month + " failed", e);
+        }
+    }
+
+    // Partitions are dropped or emptied directly, which the delete triggers on the tables do not see
+    private void recordDeletedDays(String table, String rows, Object... arguments) {
+        Object[] parameters = new Object[arguments.length + 1];
+        parameters[0] = table;
+        System.arraycopy(arguments, 0, parameters, 1, arguments.length);
+        jdbcTemplate.update("insert into deleted_days (table_name, day) select distinct ?, " + EXPORT_DAYS.get(table) +
+                " " + rows, parameters);
+    }
+
+    private record IdRange(long modifiedMillis, long first, long last) {
+    }
+
+    // Rows of a legacy month written to Parquet, and the highest IDs among them
+    private record LegacyRows(long posts, long lastPostId, long comments, long lastCommentId) {
+    }
+
+    // Copies the rows of a query into the DuckDB table of the same name, returns how many
+    private long copyRows(DuckDBConnection duck, String table, String sql, Object... arguments) {
+        try {
+            DuckDb.execute(duck, ARCHIVE_TABLES.get(table));
+            return DuckDb.copyRows(jdbcTemplate, duck, table, sql, 10_000, arguments);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Copying rows of " + table + " failed", e);
+        }
+    }
+
+    // Writes a DuckDB table to a Parquet file, checked to hold every row before it takes the file's name
+    private void writeParquet(DuckDBConnection duck, String table, long rows, Path file) throws SQLException {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            DuckDb.writeParquet(duck, table, temporary);
+            long written;
+            try (Statement statement = duck.createStatement();
+                 ResultSet rs = statement.executeQuery("select count(*) from read_parquet(" + DuckDb.literal(temporary) + ")")) {
+                rs.next();
+                written = rs.getLong(1);
+            }
+            if (written != rows) {
+                throw new IllegalStateException("Archive " + file + " holds " + written + " of " + rows + " rows");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            idRanges.remove(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The month's file, or the first numbered one not taken yet
+    private Path freeFile(String table, YearMonth month) {
+        Path file = directory.resolve(table).resolve(month + ".parquet");
+        for (int i = 1; Files.exists(file); i++) {
+            file = directory.resolve(table).resolve(month + "." + i + ".parquet");
+        }
+        return file;
+    }
+
+    private static long lastId(DuckDBConnection duck, String table) {
+        try (Statement statement = duck.createStatement();
+             ResultSet rs = statement.executeQuery("select coalesce(max(id), 0) from " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading " + table + " failed", e);
+        }
+    }
+
+    private static IdRange idRange(DuckDBConnection duck, Path file, long modifiedMillis) {
+        try (Statement statement = duck.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "select coalesce(min(id), 0), coalesce(max(id), -1) from read_parquet(" + DuckDb.literal(file) + ")")) {
+            rs.next();
+            return new IdRange(modifiedMillis, rs.getLong(1), rs.getLong(2));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading " + file + " failed", e);
+        }
+    }
+
+    private static Post toPost(ResultSet rs) throws SQLException {
+        Category category = new Category();
+        category.setId(rs.getLong("category_id"));
+        User user = new User();
+        user.setId(rs.getLong("user_id"));
+        return new Post(rs.getLong("id"), rs.getString("post_title"), rs.getString("content"), rs.getString("image"),
+                java.sql.Date.valueOf(rs.getObject("date", LocalDate.class)), category, user, null);
+    }
+
+    private static String partitionName(String table, YearMonth month) {
+        return String.format("%s_y%04dm%02d", table, month.getYear(), month.getMonthValue());
+    }
+
+}
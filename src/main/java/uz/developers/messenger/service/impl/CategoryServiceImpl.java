@@ -1,16 +1,23 @@
 package uz.developers.messenger.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.Validator;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.event.DomainEventPublisher;
 import uz.developers.messenger.exceptions.CategoryException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.CategoryDto;
 import uz.developers.messenger.repository.CategoryRepository;
 import uz.developers.messenger.service.CategoryService;
+import uz.developers.messenger.util.MergePatch;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -18,20 +25,39 @@ import java.util.stream.Collectors;
 public class CategoryServiceImpl implements CategoryService {
 
 
+    private static final Map<String, MergePatch.Field> PATCHABLE = Map.of(
+            "title", MergePatch.Field.text("name", 20),
+            "description", MergePatch.Field.text("description", 40));
+
+
     private final ModelMapper modelMapper;
 
 
     private final CategoryRepository categoryRepository;
 
 
+    private final DomainEventPublisher eventPublisher;
+
+
+    private final JdbcTemplate jdbcTemplate;
+
+
+    private final Validator validator;
+
+
     @Autowired
-    public CategoryServiceImpl(ModelMapper modelMapper, CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(ModelMapper modelMapper, CategoryRepository categoryRepository, DomainEventPublisher eventPublisher,
+                               JdbcTemplate jdbcTemplate, Validator validator) {
         this.modelMapper = modelMapper;
         this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public List<CategoryDto> getCategories() {
         List<Category> categories = categoryRepository.findAll();
         return categories.stream()
@@ -40,6 +66,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<CategoryDto> getCategoryById(Long categoryId) {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", " Id ", categoryId));
@@ -73,6 +100,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
+    @Transactional
     public CategoryDto updateCategory(Long categoryId, CategoryDto categoryDto) {
         Category existingCategory = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", " Id ", categoryId));
@@ -86,11 +114,37 @@ public class CategoryServiceImpl implements CategoryService {
 
         // Save updated category
         Category updatedCategory = categoryRepository.save(existingCategory);
+        eventPublisher.categoryUpdated(updatedCategory);
 
         // Convert updated category entity to DTO and return
         return categoryToDto(updatedCategory);
     }
 
+    @Override
+    @Transactional
+    public CategoryDto patchCategory(Long categoryId, JsonNode patch, Long version) {
+        MergePatch mergePatch = MergePatch.of(patch, PATCHABLE, CategoryException::new);
+        mergePatch.validate(validator, CategoryDto.class, CategoryException::new);
+        if (mergePatch.isEmpty()) {
+            MergePatch.checkVersion("Category", categoryId, version, () -> categoryRepository.findVersionById(categoryId));
+            return getCategoryById(categoryId).orElseThrow();
+        }
+
+        // One round trip: only the named columns change, and only if the version still matches
+        List<Category> patched = jdbcTemplate.query(
+                mergePatch.updateSql("category", version != null, "id, name, description, version"),
+                (rs, rowNum) -> new Category(rs.getLong("id"), rs.getString("name"), rs.getString("description"),
+                        rs.getLong("version")),
+                mergePatch.arguments(categoryId, version));
+        if (patched.isEmpty()) {
+            throw MergePatch.failure("Category", categoryId, version, categoryRepository.findVersionById(categoryId));
+        }
+
+        Category category = patched.get(0);
+        eventPublisher.categoryUpdated(category);
+        return categoryToDto(category);
+    }
+
     @Override
     public void deleteCategory(Long categoryId) {
         Category category = categoryRepository.findById(categoryId)
@@ -1,46 +1,110 @@
 package uz.developers.messenger.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.Validator;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import uz.developers.messenger.entity.Comment;
 import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.event.DomainEventPublisher;
 import uz.developers.messenger.exceptions.CommentException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.payload.CommentDto;
+import uz.developers.messenger.payload.CommentPageDto;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
 import uz.developers.messenger.repository.CommentRepository;
 import uz.developers.messenger.repository.PostRepository;
+import uz.developers.messenger.repository.UserRepository;
 import uz.developers.messenger.service.CommentService;
-
+import uz.developers.messenger.sharding.ShardedCommentRepository;
+import uz.developers.messenger.sharding.ShardedPostRepository;
+import uz.developers.messenger.util.CommentPaths;
+import uz.developers.messenger.util.MergePatch;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Comments, threaded by materialized path.
+ *
+ * With {@code sharding.enabled} the comments live on the shard of their post, while
+ * their authors stay in the main database and are filled in from there.
+ */
 @Service
 public class CommentServiceImpl implements CommentService {
 
+    private static final int MAX_THREADS = 100;
+
+    private static final int MAX_REPLIES = 50;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final Map<String, MergePatch.Field> PATCHABLE = Map.of(
+            "content", MergePatch.Field.text("user_name", 20));
+
+    // The patched row with its author, read by the statement that patches it
+    private static final String PATCHED_COMMENT = "select c.id, c.user_name, c.post_id, c.parent_id, c.depth, " +
+            "c.created_at, c.version, u.id as author_id, u.user_name as author_name, u.user_email as author_email, " +
+            "u.about as author_about, u.version as author_version from patched c join users u on u.id = c.user_id";
+
     private final ModelMapper modelMapper;
 
     private final CommentRepository commentRepository;
 
     private final PostRepository postRepository;
 
+    private final UserRepository userRepository;
+
+    private final DomainEventPublisher eventPublisher;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Validator validator;
+
+    // Both null unless sharding is enabled
+    private final ShardedPostRepository shardedPostRepository;
+
+    private final ShardedCommentRepository shardedCommentRepository;
+
     @Autowired
-    public CommentServiceImpl(ModelMapper modelMapper, CommentRepository commentRepository, PostRepository postRepository) {
+    public CommentServiceImpl(ModelMapper modelMapper, CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository, DomainEventPublisher eventPublisher,
+                              JdbcTemplate jdbcTemplate, Validator validator,
+                              ObjectProvider<ShardedPostRepository> shardedPostRepository,
+                              ObjectProvider<ShardedCommentRepository> shardedCommentRepository) {
         this.modelMapper = modelMapper;
         this.commentRepository = commentRepository;
         this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.shardedPostRepository = shardedPostRepository.getIfAvailable();
+        this.shardedCommentRepository = shardedCommentRepository.getIfAvailable();
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public List<CommentDto> getAllCommentsByPostId(Long postId) {
-        // 1. Postni bazadan olish
-        Post post = postRepository.findById(postId).orElseThrow(() ->
-                new ResourceNotFoundException("Post", "id", postId));
+        // 1. Post borligini tekshirish
+        Date postDate = postDate(postId);
 
         // 2. Postga tegishli barcha kommentlarni olish
-        List<Comment> comments = commentRepository.findByPostId(postId);
+        List<Comment> comments = shardedCommentRepository != null
+                ? withAuthors(shardedCommentRepository.findByPostId(postId))
+                : commentRepository.findByPostId(postId, postDate);
 
         // 3. Kommentlarni DTO ga o'zgartirish va qaytarish
         return comments.stream()
@@ -50,8 +114,46 @@ public class CommentServiceImpl implements CommentService {
 
 
     @Override
+    @Transactional(readOnly = true)
+    public CommentPageDto getCommentsByPostId(Long postId, Long cursor, int limit, boolean newestFirst) {
+        Date postDate = postDate(postId);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // One extra row tells whether another page follows
+        long from = cursor != null ? cursor : newestFirst ? Long.MAX_VALUE : 0L;
+        List<Comment> comments;
+        if (shardedCommentRepository != null) {
+            comments = withAuthors(shardedCommentRepository.findPage(postId, from, pageSize + 1, newestFirst));
+        } else {
+            comments = newestFirst
+                    ? commentRepository.findPageBefore(postId, postDate, from, pageSize + 1)
+                    : commentRepository.findPageAfter(postId, postDate, from, pageSize + 1);
+        }
+        boolean hasMore = comments.size() > pageSize;
+        if (hasMore) {
+            comments = comments.subList(0, pageSize);
+        }
+
+        List<CommentDto> commentDtos = comments.stream()
+                .map(this::commentToDto)
+                .collect(Collectors.toList());
+        Long nextCursor = hasMore ? comments.get(comments.size() - 1).getId() : null;
+        return new CommentPageDto(commentDtos, nextCursor, hasMore);
+    }
+
+
+    @Override
+    public long countCommentsByUser(Long userId) {
+        return shardedCommentRepository != null
+                ? shardedCommentRepository.countByUserId(userId)
+                : commentRepository.countByUserId(userId);
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<CommentDto> getCommentById(Long id) {
-        Comment comment = commentRepository.findById(id)
+        Comment comment = findComment(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", id));
 
         // Convert Comment entity to CommentDto
@@ -60,9 +162,10 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
+    @Transactional
     public CommentDto createComment(Long postId, CommentDto commentDto) {
         // 1. Find post by ID
-        Post post = postRepository.findById(postId)
+        Post post = (shardedPostRepository != null ? shardedPostRepository.findById(postId) : postRepository.findById(postId))
                 .orElseThrow(() -> new ResourceNotFoundException("Post", "id", postId));
 
         // 2. Convert DTO to entity
@@ -70,14 +173,31 @@ public class CommentServiceImpl implements CommentService {
 
         // 3. Save Post to Comment
              comment.setPost(post);
+             comment.setPostDate(post.getDate());
 
         // 4. Perform business checks on the entity
         if (comment.getContent() == null || comment.getContent().trim().isEmpty()) {
             throw new CommentException("Comment content must not be null or empty");
         }
 
-        // 5. Save Comment
-        Comment savedComment = commentRepository.save(comment);
+        // 5. Save Comment, then fill in its path now that the ID is known
+        comment.setParent(null);
+        comment.setDepth(0);
+        Comment savedComment;
+        if (shardedCommentRepository != null) {
+            // The event is recorded in the shard's outbox, in the transaction that writes the comment
+            User author = author(comment);
+            savedComment = shardedCommentRepository.save(comment, saved -> {
+                saved.setUser(author);
+                saved.setPost(post);
+                eventPublisher.commentCreated(saved);
+            });
+        } else {
+            savedComment = commentRepository.save(comment);
+            savedComment.setRootId(savedComment.getId());
+            savedComment.setPath(CommentPaths.segment(savedComment.getId()));
+            eventPublisher.commentCreated(savedComment);
+        }
 
         // 6. Convert the saved Comment to DTO and return
         return commentToDto(savedComment);
@@ -85,6 +205,11 @@ public class CommentServiceImpl implements CommentService {
 
     @Override
     public CommentDto updateComment(Long id, CommentDto commentDto) {
+        if (shardedCommentRepository != null) {
+            return shardedCommentRepository.updateContent(id, dtoToComment(commentDto).getContent())
+                    .map(comment -> commentToDto(withAuthors(List.of(comment)).get(0)))
+                    .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", id));
+        }
         Comment existingComment = commentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", id));
 
@@ -102,20 +227,230 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
+    @Transactional
+    public CommentDto patchComment(Long id, JsonNode patch, Long version) {
+        MergePatch mergePatch = MergePatch.of(patch, PATCHABLE, CommentException::new);
+        mergePatch.validate(validator, CommentDto.class, CommentException::new);
+        if (mergePatch.isEmpty()) {
+            MergePatch.checkVersion("Comment", id, version, () -> shardedCommentRepository != null
+                    ? shardedCommentRepository.findVersionById(id)
+                    : commentRepository.findVersionById(id));
+            return getCommentById(id).orElseThrow();
+        }
+        if (shardedCommentRepository != null) {
+            return shardedCommentRepository.patch(id, mergePatch, version)
+                    .map(comment -> commentToDto(withAuthors(List.of(comment)).get(0)))
+                    .orElseThrow(() -> MergePatch.failure("Comment", id, version, shardedCommentRepository.findVersionById(id)));
+        }
+
+        // Only the named columns change, and only if the version still matches; comments are partitioned by post date
+        mergePatch.partition("post_date", "select post_date from comment where id = ?");
+        List<CommentDto> patched = jdbcTemplate.query(
+                "with patched as (" + mergePatch.updateSql("comment", version != null, "*") + ") " + PATCHED_COMMENT,
+                (rs, rowNum) -> {
+                    UserDto author = new UserDto(rs.getLong("author_id"), rs.getString("author_name"),
+                            rs.getString("author_email"), null, rs.getString("author_about"), rs.getLong("author_version"));
+                    PostDto post = new PostDto();
+                    post.setId(rs.getLong("post_id"));
+                    Long parentId = rs.getObject("parent_id", Long.class);
+                    return new CommentDto(rs.getLong("id"), rs.getString("user_name"), author, post,
+                            parentId, rs.getInt("depth"), rs.getTimestamp("created_at"), null, rs.getLong("version"));
+                },
+                mergePatch.arguments(id, version));
+        if (patched.isEmpty()) {
+            throw MergePatch.failure("Comment", id, version, commentRepository.findVersionById(id));
+        }
+        return patched.get(0);
+    }
+
+    @Override
+    @Transactional
     public void deleteComment(Long id) {
-        Comment comment = commentRepository.findById(id)
+        Comment comment = findComment(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", id));
-        commentRepository.delete(comment);
+        // Replies go together with the comment they answer. Locking them first waits for replies
+        // being written below them and keeps new ones out; the delete then sees all of them.
+        // A comment from before threading has no path and its replies are found by parent
+        int deleted;
+        if (shardedCommentRepository != null) {
+            deleted = shardedCommentRepository.deleteSubtree(id, count -> eventPublisher.commentsDeleted(comment, count));
+        } else if (comment.getPath() == null) {
+            commentRepository.lockSubtreeByParent(id, comment.getPostDate());
+            deleted = commentRepository.deleteSubtreeByParent(id, comment.getPostDate());
+        } else {
+            commentRepository.lockSubtree(comment.getRootId(), comment.getPath(), comment.getPostDate());
+            deleted = commentRepository.deleteSubtree(comment.getRootId(), comment.getPath(), comment.getPostDate());
+        }
+        if (deleted == 0) {
+            throw new ResourceNotFoundException("Comment", "id", id);
+        }
+        if (shardedCommentRepository == null) {
+            eventPublisher.commentsDeleted(comment, deleted);
+        }
+    }
+
+    @Override
+    @Transactional
+    public CommentDto replyToComment(Long parentId, CommentDto commentDto) {
+        if (shardedCommentRepository != null) {
+            return replyOnShard(parentId, commentDto);
+        }
+        // Shared lock: the parent cannot be deleted before the reply is written below it
+        Comment parent = commentRepository.findByIdForShare(parentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", parentId));
+        if (parent.getPath() == null) {
+            throw new CommentException("Comment " + parentId + " is not part of a thread yet");
+        }
+        // Replies below the deepest level continue the thread next to their parent
+        if (parent.getDepth() >= CommentPaths.MAX_DEPTH) {
+            parent = parent.getParent();
+        }
+
+        Comment comment = dtoToComment(commentDto);
+        if (comment.getContent() == null || comment.getContent().trim().isEmpty()) {
+            throw new CommentException("Comment content must not be null or empty");
+        }
+        Post post = parent.getPost();
+        comment.setPost(post);
+        comment.setPostDate(parent.getPostDate());
+        comment.setParent(parent);
+        comment.setRootId(parent.getRootId());
+        comment.setDepth(parent.getDepth() + 1);
+
+        Comment savedComment = commentRepository.save(comment);
+        savedComment.setPath(parent.getPath() + CommentPaths.segment(savedComment.getId()));
+        eventPublisher.commentCreated(savedComment);
+        return commentToDto(savedComment);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CommentDto getCommentThread(Long commentId) {
+        if (shardedCommentRepository != null) {
+            List<CommentDto> tree = toTree(withAuthors(shardedCommentRepository.findSubtree(commentId)));
+            if (tree.isEmpty()) {
+                throw new ResourceNotFoundException("Comment", "id", commentId);
+            }
+            return tree.get(0);
+        }
+        Comment comment = commentRepository.findById(commentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", commentId));
+        if (comment.getPath() == null) {
+            return commentToDto(comment);
+        }
+        List<CommentDto> tree = toTree(commentRepository.findSubtree(comment.getRootId(), comment.getPath(), comment.getPostDate()));
+        return tree.isEmpty() ? commentToDto(comment) : tree.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommentDto> getCommentThreads(Long postId, int threads, int replies) {
+        Date postDate = postDate(postId);
+        int threadLimit = Math.max(1, Math.min(threads, MAX_THREADS));
+        int replyLimit = Math.max(0, Math.min(replies, MAX_REPLIES));
+        return toTree(shardedCommentRepository != null
+                ? withAuthors(shardedCommentRepository.findThreads(postId, threadLimit, replyLimit))
+                : commentRepository.findThreads(postId, postDate, threadLimit, replyLimit));
+    }
+
+    // Comments are stored with the date of their post, which picks their partition; the shards are not partitioned
+    private Date postDate(Long postId) {
+        if (shardedPostRepository != null) {
+            return shardedPostRepository.findById(postId)
+                    .map(Post::getDate)
+                    .orElseThrow(() -> new ResourceNotFoundException("Post", "id", postId));
+        }
+        return postRepository.findDateById(postId)
+                .orElseThrow(() -> new ResourceNotFoundException("Post", "id", postId));
+    }
+
+    private Optional<Comment> findComment(Long id) {
+        if (shardedCommentRepository == null) {
+            return commentRepository.findById(id);
+        }
+        return shardedCommentRepository.findById(id).map(comment -> withAuthors(List.of(comment)).get(0));
+    }
+
+    // The shard writes the reply below its parent, in one transaction on the shard
+    private CommentDto replyOnShard(Long parentId, CommentDto commentDto) {
+        Comment parent = shardedCommentRepository.findById(parentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", parentId));
+        if (parent.getDepth() >= CommentPaths.MAX_DEPTH) {
+            parent = shardedCommentRepository.findById(parent.getParent().getId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", parentId));
+        }
+
+        Comment comment = dtoToComment(commentDto);
+        if (comment.getContent() == null || comment.getContent().trim().isEmpty()) {
+            throw new CommentException("Comment content must not be null or empty");
+        }
+        User author = author(comment);
+        comment.setPost(parent.getPost());
+        comment.setParent(parent);
+
+        Comment savedComment = shardedCommentRepository.save(comment, saved -> {
+            saved.setUser(author);
+            eventPublisher.commentCreated(saved);
+        });
+        return commentToDto(savedComment);
+    }
+
+    // The shards have no foreign key to the users of the main database
+    private User author(Comment comment) {
+        Long userId = comment.getUser() != null ? comment.getUser().getId() : null;
+        if (userId == null) {
+            throw new CommentException("Comment user must be given");
+        }
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    }
+
+    // Comments from the shards carry only the IDs of their authors; one lookup fills them in
+    private List<Comment> withAuthors(List<Comment> comments) {
+        Map<Long, User> users = userRepository.findAllById(comments.stream()
+                        .map(comment -> comment.getUser().getId())
+                        .collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        for (Comment comment : comments) {
+            Optional.ofNullable(users.get(comment.getUser().getId())).ifPresent(comment::setUser);
+        }
+        return comments;
+    }
+
+    // Comments arrive in path order, so every parent is seen before its replies
+    private List<CommentDto> toTree(List<Comment> comments) {
+        Map<Long, CommentDto> byId = new HashMap<>();
+        List<CommentDto> roots = new ArrayList<>();
+        for (Comment comment : comments) {
+            CommentDto dto = commentToDto(comment);
+            dto.setReplies(new ArrayList<>());
+            CommentDto parent = dto.getParentId() != null ? byId.get(dto.getParentId()) : null;
+            if (parent != null) {
+                parent.getReplies().add(dto);
+            } else {
+                roots.add(dto);
+            }
+            byId.put(dto.getId(), dto);
+        }
+        return roots;
     }
 
     // DTO ---> Entity
     private Comment dtoToComment(CommentDto commentDto){
-        return modelMapper.map(commentDto, Comment.class);
+        Comment comment = modelMapper.map(commentDto, Comment.class);
+        // The thread position is decided by the service, never by the client
+        comment.setParent(null);
+        comment.setRootId(null);
+        comment.setPath(null);
+        comment.setDepth(0);
+        return comment;
     }
 
     // Entity ---> DTO
     public CommentDto commentToDto(Comment comment){
-        return modelMapper.map(comment, CommentDto.class);
+        CommentDto commentDto = modelMapper.map(comment, CommentDto.class);
+        commentDto.setParentId(comment.getParent() != null ? comment.getParent().getId() : null);
+        return commentDto;
     }
 
 
@@ -0,0 +1,192 @@
+package uz.developers.messenger.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.payload.CommentExportView;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.repository.CommentRepository;
+import uz.developers.messenger.repository.PostRepository;
+import uz.developers.messenger.service.ExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Streams from the main database only; with sharding there is no export yet
+@Service
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ExportServiceImpl implements ExportService {
+
+    private static final String[] POST_COLUMNS = {"id", "title", "content", "image", "date", "categoryId", "userId"};
+
+    private static final String[] COMMENT_COLUMNS = {"id", "postId", "userId", "parentId", "rootId", "depth", "content"};
+
+    // Rows between flushes to the client and, for posts, between persistence context clears
+    private static final int BATCH_SIZE = 1000;
+
+    private final PostRepository postRepository;
+
+    private final CommentRepository commentRepository;
+
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ExportServiceImpl(PostRepository postRepository, CommentRepository commentRepository, ObjectMapper objectMapper) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.objectMapper = objectMapper;
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportPosts(OutputStream out, DataFormat format) throws IOException {
+        try (Stream<Post> posts = postRepository.streamAll();
+             RowWriter writer = rowWriter(out, format, POST_COLUMNS)) {
+            long rows = 0;
+            for (Iterator<Post> iterator = posts.iterator(); iterator.hasNext(); ) {
+                Post post = iterator.next();
+                writer.row(post.getId(), post.getTitle(), post.getContent(), post.getImage(),
+                        post.getDate() != null ? post.getDate().toString() : null,
+                        post.getCategory().getId(), post.getUser().getId());
+                // Exported posts are not needed anymore; keep the persistence context from growing
+                if (++rows % BATCH_SIZE == 0) {
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportComments(OutputStream out, DataFormat format) throws IOException {
+        try (Stream<CommentExportView> comments = commentRepository.streamAllForExport();
+             RowWriter writer = rowWriter(out, format, COMMENT_COLUMNS)) {
+            long rows = 0;
+            for (Iterator<CommentExportView> iterator = comments.iterator(); iterator.hasNext(); ) {
+                CommentExportView comment = iterator.next();
+                writer.row(comment.getId(), comment.getPostId(), comment.getUserId(), comment.getParentId(),
+                        comment.getRootId(), comment.getDepth(), comment.getContent());
+                if (++rows % BATCH_SIZE == 0) {
+                    writer.flush();
+                }
+            }
+        }
+    }
+
+
+    private RowWriter rowWriter(OutputStream out, DataFormat format, String[] columns) throws IOException {
+        return format == DataFormat.CSV ? new CsvRowWriter(out, columns) : new NdjsonRowWriter(out, columns);
+    }
+
+
+    private interface RowWriter extends AutoCloseable {
+
+        void row(Object... values) throws IOException;
+
+        void flush() throws IOException;
+
+        // Flushes but leaves the response stream open for the container to close
+        @Override
+        void close() throws IOException;
+    }
+
+
+    private class NdjsonRowWriter implements RowWriter {
+
+        private final String[] columns;
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out, String[] columns) throws IOException {
+            this.columns = columns;
+            this.generator = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                generator.writeObject(values[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+
+    private static class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out, String[] columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            row((Object[]) columns);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeField(values[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+}
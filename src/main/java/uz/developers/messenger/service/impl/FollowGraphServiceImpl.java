@@ -0,0 +1,179 @@
+package uz.developers.messenger.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.developers.messenger.service.FollowGraphService;
+import uz.developers.messenger.util.LongSortedSet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory follow graph with primitive adjacency.
+ *
+ * Each user maps to two immutable {@link LongSortedSet}s, one per direction.
+ * Reads never lock; updates replace a user's set atomically. The graph is
+ * loaded from {@code user_follows} at startup and kept current by
+ * {@link FollowServiceImpl} on every follow and unfollow.
+ */
+@Service
+public class FollowGraphServiceImpl implements FollowGraphService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int fetchSize;
+
+    // user ID -> IDs of users following them
+    private final Map<Long, LongSortedSet> followers = new ConcurrentHashMap<>();
+
+    // user ID -> IDs of users they follow
+    private final Map<Long, LongSortedSet> following = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FollowGraphServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  @Value("${follow-graph.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+
+    @PostConstruct
+    public void load() {
+        // A cursor only streams inside a transaction, so both scans run in one
+        transactionTemplate.executeWithoutResult(status -> {
+            loadDirection("select follower_id, followee_id from user_follows order by follower_id, followee_id", following);
+            loadDirection("select followee_id, follower_id from user_follows order by followee_id, follower_id", followers);
+        });
+    }
+
+
+    // Rows arrive grouped by key and sorted by value, so each group becomes one set
+    private void loadDirection(String sql, Map<Long, LongSortedSet> target) {
+        AdjacencyBuilder builder = new AdjacencyBuilder(target);
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            builder.accept(rs.getLong(1), rs.getLong(2));
+        });
+        builder.flush();
+    }
+
+
+    @Override
+    public void addFollow(Long followerId, Long followeeId) {
+        following.compute(followerId, (id, set) -> (set == null ? LongSortedSet.EMPTY : set).with(followeeId));
+        followers.compute(followeeId, (id, set) -> (set == null ? LongSortedSet.EMPTY : set).with(followerId));
+    }
+
+    @Override
+    public void removeFollow(Long followerId, Long followeeId) {
+        following.computeIfPresent(followerId, (id, set) -> emptyToNull(set.without(followeeId)));
+        followers.computeIfPresent(followeeId, (id, set) -> emptyToNull(set.without(followerId)));
+    }
+
+    @Override
+    public void removeUser(Long userId) {
+        LongSortedSet followerIds = followers.remove(userId);
+        LongSortedSet followeeIds = following.remove(userId);
+        if (followerIds != null) {
+            for (long followerId : followerIds.toArray()) {
+                following.computeIfPresent(followerId, (id, set) -> emptyToNull(set.without(userId)));
+            }
+        }
+        if (followeeIds != null) {
+            for (long followeeId : followeeIds.toArray()) {
+                followers.computeIfPresent(followeeId, (id, set) -> emptyToNull(set.without(userId)));
+            }
+        }
+    }
+
+    @Override
+    public long[] getFollowerIds(Long userId) {
+        return followers.getOrDefault(userId, LongSortedSet.EMPTY).toArray();
+    }
+
+    @Override
+    public long[] getFolloweeIds(Long userId) {
+        return following.getOrDefault(userId, LongSortedSet.EMPTY).toArray();
+    }
+
+    @Override
+    public int countFollowers(Long userId) {
+        return followers.getOrDefault(userId, LongSortedSet.EMPTY).size();
+    }
+
+    @Override
+    public boolean isFollowing(Long followerId, Long followeeId) {
+        return following.getOrDefault(followerId, LongSortedSet.EMPTY).contains(followeeId);
+    }
+
+    @Override
+    public long[] getMutualFollowIds(Long userId) {
+        return following.getOrDefault(userId, LongSortedSet.EMPTY)
+                .intersect(followers.getOrDefault(userId, LongSortedSet.EMPTY));
+    }
+
+    @Override
+    public long[] getCommonFolloweeIds(Long userId, Long otherUserId) {
+        return following.getOrDefault(userId, LongSortedSet.EMPTY)
+                .intersect(following.getOrDefault(otherUserId, LongSortedSet.EMPTY));
+    }
+
+    @Override
+    public long[] getFolloweesFollowing(Long userId, Long targetId) {
+        return following.getOrDefault(userId, LongSortedSet.EMPTY)
+                .intersect(followers.getOrDefault(targetId, LongSortedSet.EMPTY));
+    }
+
+
+    private static LongSortedSet emptyToNull(LongSortedSet set) {
+        return set.isEmpty() ? null : set;
+    }
+
+
+    private static final class AdjacencyBuilder {
+
+        private final Map<Long, LongSortedSet> target;
+
+        private long currentKey;
+
+        private long[] values = new long[64];
+
+        private int length;
+
+        private AdjacencyBuilder(Map<Long, LongSortedSet> target) {
+            this.target = target;
+        }
+
+        private void accept(long key, long value) {
+            if (length > 0 && key != currentKey) {
+                flush();
+            }
+            currentKey = key;
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length++] = value;
+        }
+
+        private void flush() {
+            if (length > 0) {
+                target.put(currentKey, LongSortedSet.ofSorted(values, length));
+                length = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package uz.developers.messenger.service.impl;
+
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.entity.Follow;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.exceptions.UserException;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.repository.FollowRepository;
+import uz.developers.messenger.repository.UserRepository;
+import uz.developers.messenger.service.FollowGraphService;
+import uz.developers.messenger.service.FollowService;
+import uz.developers.messenger.service.TimelineService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class FollowServiceImpl implements FollowService {
+
+    private final ModelMapper modelMapper;
+
+    private final FollowRepository followRepository;
+
+    private final UserRepository userRepository;
+
+    private final FollowGraphService followGraphService;
+
+    private final TimelineService timelineService;
+
+    @Autowired
+    public FollowServiceImpl(ModelMapper modelMapper, FollowRepository followRepository, UserRepository userRepository, FollowGraphService followGraphService, TimelineService timelineService) {
+        this.modelMapper = modelMapper;
+        this.followRepository = followRepository;
+        this.userRepository = userRepository;
+        this.followGraphService = followGraphService;
+        this.timelineService = timelineService;
+    }
+
+
+    @Override
+    public void follow(Long followerId, Long followeeId) {
+        // 1. Perform business checks
+        if (followerId.equals(followeeId)) {
+            throw new UserException("User cannot follow themselves");
+        }
+        if (followGraphService.isFollowing(followerId, followeeId)
+                || followRepository.existsByFollowerIdAndFolloweeId(followerId, followeeId)) {
+            throw new UserException("User already follows this user");
+        }
+
+        // 2. Find both users by ID
+        User follower = userRepository.findById(followerId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", " Id ", followerId));
+        User followee = userRepository.findById(followeeId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", " Id ", followeeId));
+
+        // 3. Save Follow and update the in-memory graph; a concurrent follow of the same pair wins the unique key
+        try {
+            followRepository.save(new Follow(null, follower, followee));
+        } catch (DataIntegrityViolationException e) {
+            throw new UserException("User already follows this user");
+        }
+        followGraphService.addFollow(followerId, followeeId);
+
+        // 4. Cached home timeline no longer matches the follow graph
+        timelineService.onFollowChanged(followerId);
+    }
+
+    @Override
+    public void unfollow(Long followerId, Long followeeId) {
+        if (followRepository.deleteByFollowerIdAndFolloweeId(followerId, followeeId) > 0) {
+            followGraphService.removeFollow(followerId, followeeId);
+            timelineService.onFollowChanged(followerId);
+        }
+    }
+
+    @Override
+    public List<UserDto> getFollowers(Long userId) {
+        return usersToDto(followGraphService.getFollowerIds(userId));
+    }
+
+    @Override
+    public List<UserDto> getFollowing(Long userId) {
+        return usersToDto(followGraphService.getFolloweeIds(userId));
+    }
+
+    @Override
+    public List<UserDto> getMutualFollows(Long userId) {
+        return usersToDto(followGraphService.getMutualFollowIds(userId));
+    }
+
+    @Override
+    public List<UserDto> getCommonFollowing(Long userId, Long otherUserId) {
+        return usersToDto(followGraphService.getCommonFolloweeIds(userId, otherUserId));
+    }
+
+    @Override
+    public List<UserDto> getFolloweesFollowing(Long userId, Long targetId) {
+        return usersToDto(followGraphService.getFolloweesFollowing(userId, targetId));
+    }
+
+
+    // IDs ---> DTOs
+    private List<UserDto> usersToDto(long[] userIds) {
+        List<Long> ids = Arrays.stream(userIds).boxed().collect(Collectors.toList());
+        return userRepository.findAllById(ids).stream()
+                .map(user -> modelMapper.map(user, UserDto.class))
+                .collect(Collectors.toList());
+    }
+
+}
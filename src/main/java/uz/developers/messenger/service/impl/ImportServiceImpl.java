@@ -0,0 +1,620 @@
+package uz.developers.messenger.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.exceptions.ImportException;
+import uz.developers.messenger.payload.CommentDto;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.payload.ImportResultDto;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.service.ImportService;
+import uz.developers.messenger.util.CommentPaths;
+import uz.developers.messenger.util.CsvReader;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Loads into the main database only, so it is left out while posts and comments live on shards
+@Service
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "false", matchIfMissing = true)
+public class ImportServiceImpl implements ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+    private static final int MAX_ERRORS = 100;
+
+    private static final int MAX_JOB_ID_LENGTH = 100;
+
+    private static final String INSERT_CHECKPOINT =
+            "insert into import_checkpoint (job_id, target, chunk_no, rows_imported) values (?, ?, ?, ?)";
+
+    private static final String SELECT_CHECKPOINTS =
+            "select chunk_no from import_checkpoint where job_id = ? and target = ?";
+
+    private static final String ADD_COMMENT_COUNTS =
+            "insert into post_stats (post_id, view_count, comment_count, reaction_count, updated_at) " +
+            "select t.post_id, 0, t.comments, 0, now() from unnest(?::bigint[], ?::bigint[]) as t(post_id, comments) " +
+            "on conflict (post_id) do update set " +
+            "comment_count = post_stats.comment_count + excluded.comment_count, " +
+            "updated_at = excluded.updated_at";
+
+    // COPY cannot skip conflicting rows, so users go through a staging table first
+    private static final String CREATE_USER_STAGING =
+            "create temp table import_users (user_name varchar(20), user_email varchar(30), " +
+            "user_password varchar(50), about varchar(100)) on commit drop";
+
+    // The unique email decides against users registered meanwhile, by the API or another chunk
+    private static final String INSERT_STAGED_USERS =
+            "insert into users (user_name, user_email, user_password, about) " +
+            "select user_name, user_email, user_password, about from import_users " +
+            "on conflict (user_email) do nothing returning user_email";
+
+    private final DataSource dataSource;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    @Autowired
+    public ImportServiceImpl(DataSource dataSource, ObjectMapper objectMapper, Validator validator,
+                             @Value("${import.chunk-size:5000}") int chunkSize,
+                             @Value("${import.parallelism:4}") int parallelism) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+
+    @Override
+    public ImportResultDto importUsers(InputStream in, DataFormat format, String jobId) throws IOException {
+        return run("users", in, format, jobId, this::loadUsers);
+    }
+
+    @Override
+    public ImportResultDto importPosts(InputStream in, DataFormat format, String jobId) throws IOException {
+        return run("posts", in, format, jobId, this::loadPosts);
+    }
+
+    @Override
+    public ImportResultDto importComments(InputStream in, DataFormat format, String jobId) throws IOException {
+        return run("comments", in, format, jobId, this::loadComments);
+    }
+
+
+    // The file is read on the calling thread and cut into numbered chunks of the same size,
+    // so a resumed run sees the same chunks; each chunk is loaded in its own transaction
+    private ImportResultDto run(String target, InputStream in, DataFormat format, String jobId, ChunkLoader loader)
+            throws IOException {
+        String job = jobId != null && !jobId.isBlank() ? jobId : UUID.randomUUID().toString();
+        if (job.length() > MAX_JOB_ID_LENGTH) {
+            throw new ImportException("Job ID must be at most " + MAX_JOB_ID_LENGTH + " characters");
+        }
+        Set<Integer> committed = committedChunks(job, target);
+        ImportProgress progress = new ImportProgress();
+
+        // A full queue makes the reader load the next chunk itself, which bounds memory
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism), new ThreadPoolExecutor.CallerRunsPolicy());
+        try (RecordReader reader = recordReader(in, format)) {
+            List<Map<String, String>> chunk = new ArrayList<>(chunkSize);
+            int chunkNo = 0;
+            Map<String, String> record;
+            while ((record = reader.next()) != null) {
+                progress.rowsRead.incrementAndGet();
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    submit(executor, job, target, chunkNo++, chunk, committed, loader, progress);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submit(executor, job, target, chunkNo, chunk, committed, loader, progress);
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Import {} of {}: {} read, {} imported, {} skipped, {} rejected, {} chunks failed", job, target,
+                progress.rowsRead, progress.rowsImported, progress.rowsSkipped, progress.rowsRejected, progress.chunksFailed);
+        return progress.toResult(job);
+    }
+
+    private void submit(ThreadPoolExecutor executor, String job, String target, int chunkNo,
+                        List<Map<String, String>> chunk, Set<Integer> committed, ChunkLoader loader,
+                        ImportProgress progress) {
+        if (committed.contains(chunkNo)) {
+            progress.rowsSkipped.addAndGet(chunk.size());
+            return;
+        }
+        long firstRow = (long) chunkNo * chunkSize + 1;
+        executor.execute(() -> loadChunk(job, target, chunkNo, firstRow, chunk, loader, progress));
+    }
+
+    private void loadChunk(String job, String target, int chunkNo, long firstRow,
+                           List<Map<String, String>> chunk, ChunkLoader loader, ImportProgress progress) {
+        List<String> rejected = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int imported = loader.load(connection, chunk, firstRow, rejected);
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_CHECKPOINT)) {
+                    statement.setString(1, job);
+                    statement.setString(2, target);
+                    statement.setInt(3, chunkNo);
+                    statement.setInt(4, imported);
+                    statement.executeUpdate();
+                }
+                connection.commit();
+                progress.rowsImported.addAndGet(imported);
+                progress.reject(rejected);
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            log.warn("Import {} of {} failed at chunk {}", job, target, chunkNo, e);
+            progress.fail("records " + firstRow + "-" + (firstRow + chunk.size() - 1) + ": " + e.getMessage());
+        }
+    }
+
+
+    private int loadUsers(Connection connection, List<Map<String, String>> chunk, long firstRow, List<String> rejected)
+            throws SQLException, IOException {
+        Map<String, UserDto> users = new LinkedHashMap<>();
+        Map<String, Long> rows = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Map<String, String> record = chunk.get(i);
+            long row = firstRow + i;
+            UserDto user = new UserDto();
+            user.setName(record.get("name"));
+            user.setEmail(record.get("email"));
+            user.setPassword(record.get("password"));
+            user.setAbout(record.get("about"));
+            if (!valid(user, row, rejected) || !fits(user.getEmail(), 30, "email", row, rejected)
+                    || !fits(user.getAbout(), 100, "about", row, rejected)) {
+                continue;
+            }
+            if (users.putIfAbsent(user.getEmail(), user) != null) {
+                rejected.add("record " + row + ": email " + user.getEmail() + " appears twice");
+                continue;
+            }
+            rows.put(user.getEmail(), row);
+        }
+
+        if (users.isEmpty()) {
+            return 0;
+        }
+        StringBuilder copy = new StringBuilder();
+        for (UserDto user : users.values()) {
+            copyRow(copy, user.getName(), user.getEmail(), user.getPassword(), user.getAbout());
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_USER_STAGING);
+        }
+        copy(connection, "import_users (user_name, user_email, user_password, about)", copy);
+
+        Set<String> inserted = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_STAGED_USERS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                inserted.add(resultSet.getString(1));
+            }
+        }
+        for (UserDto user : users.values()) {
+            if (!inserted.contains(user.getEmail())) {
+                rejected.add("record " + rows.get(user.getEmail()) + ": email " + user.getEmail() + " is already registered");
+            }
+        }
+        return inserted.size();
+    }
+
+    private int loadPosts(Connection connection, List<Map<String, String>> chunk, long firstRow, List<String> rejected)
+            throws SQLException, IOException {
+        List<Map<String, String>> records = new ArrayList<>();
+        List<Long> rows = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> categories = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Map<String, String> record = chunk.get(i);
+            long row = firstRow + i;
+            PostDto post = new PostDto();
+            post.setTitle(record.get("title"));
+            post.setContent(record.get("content"));
+            post.setImage(record.get("image"));
+            if (!valid(post, row, rejected) || !fits(post.getContent(), 1000, "content", row, rejected)
+                    || !fits(post.getImage(), 255, "image", row, rejected)
+                    || !present(record, "category", row, rejected) || !present(record, "userEmail", row, rejected)) {
+                continue;
+            }
+            if (record.get("date") != null && parseDate(record.get("date")) == null) {
+                rejected.add("record " + row + ": date " + record.get("date") + " is not yyyy-MM-dd");
+                continue;
+            }
+            records.add(record);
+            rows.add(row);
+            emails.add(record.get("userEmail"));
+            categories.add(record.get("category"));
+        }
+
+        // References are resolved with one query per chunk, not one per record
+        Map<String, Long> userIds = lookup(connection,
+                "select user_email, id from users where user_email = any(?)", "varchar", emails);
+        Map<String, Long> categoryIds = lookup(connection,
+                "select name, min(id) from category where name = any(?) group by name", "varchar", categories);
+
+        // A post is never dated after today: there are no partitions for far-off months, and
+        // comments written today must not be older than their post
+        Date today = Date.valueOf(LocalDate.now());
+        StringBuilder copy = new StringBuilder();
+        int imported = 0;
+        for (int i = 0; i < records.size(); i++) {
+            Map<String, String> record = records.get(i);
+            Long userId = userIds.get(record.get("userEmail"));
+            Long categoryId = categoryIds.get(record.get("category"));
+            if (userId == null || categoryId == null) {
+                rejected.add("record " + rows.get(i) + ": " + (userId == null
+                        ? "no user with email " + record.get("userEmail")
+                        : "no category named " + record.get("category")));
+                continue;
+            }
+            Date date = record.get("date") != null ? parseDate(record.get("date")) : today;
+            if (date.after(today)) {
+                date = today;
+            }
+            copyRow(copy, record.get("title"), record.get("content"), record.get("image"), date, categoryId, userId);
+            imported++;
+        }
+        copy(connection, "posts (post_title, content, image, date, category_id, user_id)", copy);
+        return imported;
+    }
+
+    private int loadComments(Connection connection, List<Map<String, String>> chunk, long firstRow, List<String> rejected)
+            throws SQLException, IOException {
+        List<Map<String, String>> records = new ArrayList<>();
+        List<Long> rows = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        Set<Long> postIds = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Map<String, String> record = chunk.get(i);
+            long row = firstRow + i;
+            CommentDto comment = new CommentDto();
+            comment.setContent(record.get("content"));
+            if (!valid(comment, row, rejected) || !fits(comment.getContent(), 20, "content", row, rejected)
+                    || !present(record, "postId", row, rejected) || !present(record, "userEmail", row, rejected)) {
+                continue;
+            }
+            try {
+                postIds.add(Long.parseLong(record.get("postId")));
+            } catch (NumberFormatException e) {
+                rejected.add("record " + row + ": postId " + record.get("postId") + " is not a number");
+                continue;
+            }
+            records.add(record);
+            rows.add(row);
+            emails.add(record.get("userEmail"));
+        }
+
+        Map<String, Long> userIds = lookup(connection,
+                "select user_email, id from users where user_email = any(?)", "varchar", emails);
+        // The date of each post, as days since 1970, goes with its comments as their partition key
+        Map<String, Long> postDays = lookup(connection,
+                "select id::text, date - date '1970-01-01' from posts where id = any(?)", "bigint", postIds);
+
+        List<Object[]> valid = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            Map<String, String> record = records.get(i);
+            Long userId = userIds.get(record.get("userEmail"));
+            long postId = Long.parseLong(record.get("postId"));
+            Long postDay = postDays.get(Long.toString(postId));
+            if (userId == null || postDay == null) {
+                rejected.add("record " + rows.get(i) + ": " + (userId == null
+                        ? "no user with email " + record.get("userEmail")
+                        : "no post with ID " + postId));
+                continue;
+            }
+            valid.add(new Object[]{record.get("content"), userId, postId, Date.valueOf(LocalDate.ofEpochDay(postDay))});
+        }
+
+        // IDs are taken from the sequence up front so the thread path can be written in the same COPY
+        List<Long> ids = new ArrayList<>(valid.size());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select nextval(pg_get_serial_sequence('comment', 'id')) from generate_series(1, ?)")) {
+            statement.setInt(1, valid.size());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+
+        StringBuilder copy = new StringBuilder();
+        Map<Long, Long> commentsPerPost = new HashMap<>();
+        for (int i = 0; i < valid.size(); i++) {
+            Object[] comment = valid.get(i);
+            long id = ids.get(i);
+            copyRow(copy, id, comment[0], comment[1], comment[2], comment[3], id, CommentPaths.segment(id), 0);
+            commentsPerPost.merge((Long) comment[2], 1L, Long::sum);
+        }
+        copy(connection, "comment (id, user_name, user_id, post_id, post_date, root_id, path, depth)", copy);
+
+        try (PreparedStatement statement = connection.prepareStatement(ADD_COMMENT_COUNTS)) {
+            statement.setArray(1, connection.createArrayOf("bigint", commentsPerPost.keySet().toArray()));
+            statement.setArray(2, connection.createArrayOf("bigint", commentsPerPost.values().toArray()));
+            statement.executeUpdate();
+        }
+        return valid.size();
+    }
+
+
+    // Same constraints as the REST endpoints, checked on the DTOs
+    private boolean valid(Object dto, long row, List<String> rejected) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return true;
+        }
+        rejected.add("record " + row + ": " + violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+        return false;
+    }
+
+    // Limits of the database columns that the DTOs do not declare
+    private static boolean fits(String value, int maxLength, String field, long row, List<String> rejected) {
+        if (value == null || value.length() <= maxLength) {
+            return true;
+        }
+        rejected.add("record " + row + ": " + field + " must be at most " + maxLength + " characters");
+        return false;
+    }
+
+    private static boolean present(Map<String, String> record, String field, long row, List<String> rejected) {
+        if (record.get(field) != null && !record.get(field).isBlank()) {
+            return true;
+        }
+        rejected.add("record " + row + ": " + field + " is required");
+        return false;
+    }
+
+    private static Date parseDate(String value) {
+        try {
+            return Date.valueOf(LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Long> lookup(Connection connection, String sql, String arrayType, Collection<?> keys)
+            throws SQLException {
+        Map<String, Long> ids = new HashMap<>();
+        if (keys.isEmpty()) {
+            return ids;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf(arrayType, keys.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.put(resultSet.getString(1), resultSet.getLong(2));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Set<Integer> committedChunks(String job, String target) {
+        Set<Integer> chunks = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_CHECKPOINTS)) {
+            statement.setString(1, job);
+            statement.setString(2, target);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    chunks.add(resultSet.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read checkpoints of import " + job, e);
+        }
+        return chunks;
+    }
+
+    private static void copy(Connection connection, String target, StringBuilder rows) throws SQLException, IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("copy " + target + " from stdin", new StringReader(rows.toString()));
+    }
+
+    // One row in COPY text format
+    private static void copyRow(StringBuilder out, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append('\t');
+            }
+            if (values[i] == null) {
+                out.append("\\N");
+                continue;
+            }
+            String value = values[i].toString();
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '\t' -> out.append("\\t");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    default -> out.append(c);
+                }
+            }
+        }
+        out.append('\n');
+    }
+
+
+    private RecordReader recordReader(InputStream in, DataFormat format) throws IOException {
+        if (format == DataFormat.CSV) {
+            CsvReader csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            List<String> header = csv.next();
+            if (header == null) {
+                throw new ImportException("CSV file has no header row");
+            }
+            return new RecordReader() {
+                @Override
+                public Map<String, String> next() throws IOException {
+                    List<String> fields;
+                    do {
+                        fields = csv.next();
+                    } while (fields != null && fields.size() == 1 && fields.get(0).isEmpty());
+                    if (fields == null) {
+                        return null;
+                    }
+                    Map<String, String> record = new HashMap<>();
+                    for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                        record.put(header.get(i), fields.get(i).isEmpty() ? null : fields.get(i));
+                    }
+                    return record;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    csv.close();
+                }
+            };
+        }
+
+        MappingIterator<Map<String, Object>> values = objectMapper
+                .readerFor(new TypeReference<Map<String, Object>>() { })
+                .readValues(in);
+        return new RecordReader() {
+            private long row;
+
+            @Override
+            public Map<String, String> next() throws IOException {
+                row++;
+                try {
+                    if (!values.hasNextValue()) {
+                        return null;
+                    }
+                    Map<String, String> record = new HashMap<>();
+                    values.nextValue().forEach((key, value) -> record.put(key, value != null ? value.toString() : null));
+                    return record;
+                } catch (JsonProcessingException e) {
+                    throw new ImportException("Record " + row + " is not a JSON object: " + e.getOriginalMessage());
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                values.close();
+            }
+        };
+    }
+
+
+    private interface RecordReader extends Closeable {
+
+        Map<String, String> next() throws IOException;
+    }
+
+
+    @FunctionalInterface
+    private interface ChunkLoader {
+
+        // Load the valid records of the chunk, add the rejected ones, return how many were loaded
+        int load(Connection connection, List<Map<String, String>> chunk, long firstRow, List<String> rejected)
+                throws SQLException, IOException;
+    }
+
+
+    private static class ImportProgress {
+
+        private final AtomicLong rowsRead = new AtomicLong();
+
+        private final AtomicLong rowsImported = new AtomicLong();
+
+        private final AtomicLong rowsSkipped = new AtomicLong();
+
+        private final AtomicLong rowsRejected = new AtomicLong();
+
+        private final AtomicLong chunksFailed = new AtomicLong();
+
+        private final List<String> errors = new ArrayList<>();
+
+        void reject(List<String> rejected) {
+            rowsRejected.addAndGet(rejected.size());
+            addErrors(rejected);
+        }
+
+        void fail(String error) {
+            chunksFailed.incrementAndGet();
+            addErrors(List.of(error));
+        }
+
+        private synchronized void addErrors(List<String> newErrors) {
+            for (String error : newErrors) {
+                if (errors.size() >= MAX_ERRORS) {
+                    return;
+                }
+                errors.add(error);
+            }
+        }
+
+        synchronized ImportResultDto toResult(String job) {
+            return new ImportResultDto(job, rowsRead.get(), rowsImported.get(), rowsSkipped.get(),
+                    rowsRejected.get(), chunksFailed.get(), new ArrayList<>(errors));
+        }
+    }
+
+}
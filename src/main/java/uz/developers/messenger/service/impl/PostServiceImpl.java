@@ -1,23 +1,84 @@
 package uz.developers.messenger.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.Validator;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.developers.messenger.entity.Category;
 import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.event.DomainEventPublisher;
+import uz.developers.messenger.event.DomainEventType;
 import uz.developers.messenger.exceptions.PostException;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.outbox.ChangeListener;
 import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.PostStatsDto;
+import uz.developers.messenger.payload.TrendingHashtagDto;
 import uz.developers.messenger.repository.CategoryRepository;
 import uz.developers.messenger.repository.PostRepository;
 import uz.developers.messenger.repository.UserRepository;
+import uz.developers.messenger.service.ArchiveService;
 import uz.developers.messenger.service.PostService;
-
+import uz.developers.messenger.service.PostStatsService;
+import uz.developers.messenger.service.TrendingService;
+import uz.developers.messenger.sharding.ShardedPostRepository;
+import uz.developers.messenger.util.MergePatch;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * Posts, with a local cache of converted posts for single-post reads.
+ *
+ * The cache holds posts without their engagement counters, which are filled in on every
+ * read. Entries are evicted on changes to the post, its author or its category, made on
+ * this node or, through the outbox, on any other.
+ *
+ * With {@code sharding.enabled} the posts live on the shard databases, while their
+ * authors and categories stay in the main database and are filled in from there.
+ * Listings that span shards return the newest {@code sharding.list-limit} posts.
+ */
 @Service
-public class PostServiceImpl implements PostService {
+public class PostServiceImpl implements PostService, ChangeListener {
+
+    private static final Map<String, MergePatch.Field> PATCHABLE = Map.of(
+            "title", MergePatch.Field.text("post_title", 100),
+            "content", MergePatch.Field.text("content", 1000),
+            "image", MergePatch.Field.optionalText("image", 255),
+            "categoryDto.id", MergePatch.Field.id("category_id"));
+
+    // The patched row with its category and author, read by the statement that patches it
+    private static final String PATCHED_POST = "select p.id, p.post_title, p.content, p.image, p.date, p.version, " +
+            "c.id as category_id, c.name as category_name, c.description as category_description, " +
+            "c.version as category_version, u.id as user_id, u.user_name, u.user_email, u.user_password, " +
+            "u.about as user_about, u.version as user_version " +
+            "from patched p join category c on c.id = p.category_id join users u on u.id = p.user_id";
+
+    private static final RowMapper<Post> PATCHED_POST_MAPPER = (rs, rowNum) -> {
+        Category category = new Category(rs.getLong("category_id"), rs.getString("category_name"),
+                rs.getString("category_description"), rs.getLong("category_version"));
+        User user = new User(rs.getLong("user_id"), rs.getString("user_name"), rs.getString("user_email"),
+                rs.getString("user_password"), rs.getString("user_about"), rs.getLong("user_version"));
+        return new Post(rs.getLong("id"), rs.getString("post_title"), rs.getString("content"), rs.getString("image"),
+                rs.getDate("date"), category, user, rs.getLong("version"));
+    };
 
     private final ModelMapper modelMapper;
 
@@ -27,12 +88,57 @@ public class PostServiceImpl implements PostService {
 
     private final CategoryRepository categoryRepository;
 
+    private final PostStatsService postStatsService;
+
+    private final TrendingService trendingService;
+
+    private final DomainEventPublisher eventPublisher;
+
+    // Null with sharding, whose posts are never archived
+    private final ArchiveService archiveService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Validator validator;
+
+    // Null unless sharding is enabled
+    private final ShardedPostRepository shardedPostRepository;
+
+    private final int shardedListLimit;
+
+    private final Map<Long, CachedPost> postCache = new ConcurrentHashMap<>();
+
+    // Bumped on every eviction; a load that overlaps one is not cached, it may be stale
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    // Reads may come from a replica that has not replayed the last change yet
+    private volatile long lastEvictionMillis;
+
+    private final int cacheCapacity;
+
+    private final long replicaLagMillis;
+
     @Autowired
-    public PostServiceImpl(ModelMapper modelMapper, PostRepository postRepository, UserRepository userRepository, CategoryRepository categoryRepository) {
+    public PostServiceImpl(ModelMapper modelMapper, PostRepository postRepository, UserRepository userRepository, CategoryRepository categoryRepository, PostStatsService postStatsService, TrendingService trendingService, DomainEventPublisher eventPublisher, ObjectProvider<ArchiveService> archiveService,
+                           JdbcTemplate jdbcTemplate, Validator validator,
+                           ObjectProvider<ShardedPostRepository> shardedPostRepository,
+                           @Value("${sharding.list-limit:1000}") int shardedListLimit,
+                           @Value("${post-cache.capacity:10000}") int cacheCapacity,
+                           @Value("${post-cache.replica-lag-ms:2000}") long replicaLagMillis) {
         this.modelMapper = modelMapper;
         this.postRepository = postRepository;
         this.userRepository = userRepository;
         this.categoryRepository = categoryRepository;
+        this.postStatsService = postStatsService;
+        this.trendingService = trendingService;
+        this.eventPublisher = eventPublisher;
+        this.archiveService = archiveService.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.shardedPostRepository = shardedPostRepository.getIfAvailable();
+        this.shardedListLimit = shardedListLimit;
+        this.cacheCapacity = cacheCapacity;
+        this.replicaLagMillis = replicaLagMillis;
     }
 
 
@@ -42,65 +148,112 @@ public class PostServiceImpl implements PostService {
 
     //get all posts by category
     @Override
+    @Transactional(readOnly = true)
     public List<PostDto> getPostsByCategory(Long categoryId) {
-        List<Post> posts = postRepository.findByCategoryId(categoryId);
+        List<Post> posts = shardedPostRepository != null
+                ? withAuthorsAndCategories(shardedPostRepository.findByCategoryId(categoryId, shardedListLimit))
+                : postRepository.findByCategoryId(categoryId);
         if (posts.isEmpty()) {
             throw new ResourceNotFoundException("Posts", "Category ID", categoryId);
         }
         // Post -> PostDto conversion
-        return posts.stream()
+        return withStats(posts.stream()
                 .map(this::postToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
 
     //get all posts by user
     @Override
+    @Transactional(readOnly = true)
     public List<PostDto> getPostsByUser(Long userId) {
-        List<Post> posts = postRepository.findByUserId(userId);
+        List<Post> posts = shardedPostRepository != null
+                ? withAuthorsAndCategories(shardedPostRepository.findByUserId(userId))
+                : postRepository.findByUserId(userId);
         if (posts.isEmpty()) {
             throw new ResourceNotFoundException("Posts", "User ID", userId);
         }
         // Post -> PostDto conversion
-        return posts.stream()
+        return withStats(posts.stream()
                 .map(this::postToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     //search posts
     @Override
+    @Transactional(readOnly = true)
     public List<PostDto> searchPosts(String keyword) {
-        List<Post> posts = postRepository.searchByTitleOrContent(keyword);
+        List<Post> posts = shardedPostRepository != null
+                ? withAuthorsAndCategories(shardedPostRepository.searchByTitleOrContent(keyword, shardedListLimit))
+                : postRepository.searchByTitleOrContent(keyword);
         if (posts.isEmpty()) {
             throw new ResourceNotFoundException("Posts", "Keyword", keyword.hashCode());
         }
         // Post -> PostDto conversion
-        return posts.stream()
+        return withStats(posts.stream()
                 .map(this::postToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    //trending posts
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostDto> getTrendingPosts(Long categoryId, int limit) {
+        List<Long> ids = trendingService.getTrendingPostIds(categoryId, limit);
+        List<Post> found = shardedPostRepository != null
+                ? withAuthorsAndCategories(ids.stream().map(shardedPostRepository::findById).flatMap(Optional::stream).toList())
+                : postRepository.findAllById(ids);
+        Map<Long, Post> posts = found.stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        // Keep the trending order, skipping posts deleted since
+        return withStats(ids.stream()
+                .map(posts::get)
+                .filter(post -> post != null)
+                .map(this::postToDto)
+                .collect(Collectors.toList()));
+    }
+
+    //trending hashtags
+    @Override
+    public List<TrendingHashtagDto> getTrendingHashtags(int limit) {
+        return trendingService.getTrendingHashtags(limit);
     }
 
     //crud
 
     @Override
+    @Transactional(readOnly = true)
     public List<PostDto> getAllPosts() {
-        List<Post> posts = postRepository.findAll();
-        return posts.stream()
+        List<Post> posts = shardedPostRepository != null
+                ? withAuthorsAndCategories(shardedPostRepository.findAll(shardedListLimit))
+                : postRepository.findAll();
+        return withStats(posts.stream()
                 .map(this::postToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<PostDto> getPostById(Long id) {
-        Post post = postRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Post", "id", id));
-
-        // Convert Post entity to PostDto
-        PostDto postDto = postToDto(post);
+        PostDto postDto = cachedPost(id).copy();
+        withStats(List.of(postDto));
         return Optional.ofNullable(postDto);
     }
 
     @Override
+    public Optional<PostDto> viewPost(Long id, Long viewerId) {
+        CachedPost post = cachedPost(id);
+
+        // Count the view, then fill in the stats with the view included
+        postStatsService.recordView(id, viewerId);
+        trendingService.recordView(id, post.categoryId());
+        PostDto postDto = post.copy();
+        withStats(List.of(postDto));
+        return Optional.of(postDto);
+    }
+
+    @Override
+    @Transactional
     public PostDto createPost(PostDto postDto) {
         // 1. Convert DTO to entity
         Post post = dtoToPost(postDto);
@@ -109,23 +262,49 @@ public class PostServiceImpl implements PostService {
         if (post.getTitle() == null || post.getContent() == null) {
             throw new PostException("Post title content must not be null");
         }
+        // The date is when the post was created; it decides the partition the post lives in
+        Date today = Date.valueOf(LocalDate.now());
+        if (post.getDate() == null || post.getDate().after(today)) {
+            post.setDate(today);
+        }
 
         // 3. Checking that the title and content columns do not exist
-        boolean exists = postRepository.existsByTitleOrContent(post.getTitle(), post.getContent());
+        boolean exists = shardedPostRepository != null
+                ? shardedPostRepository.existsByTitleOrContent(post.getTitle(), post.getContent())
+                : postRepository.existsByTitleOrContent(post.getTitle(), post.getContent());
         if (exists) {
             throw new PostException("Post with this title name and content already exists");
         }
 
-        // 4. Save Post
-        Post savedPost = postRepository.save(post);
+        // 4. Save Post; the shards have no foreign keys to the main database, so author and category are checked here
+        Post savedPost;
+        if (shardedPostRepository != null) {
+            if (post.getCategory() == null || post.getCategory().getId() == null
+                    || post.getUser() == null || post.getUser().getId() == null) {
+                throw new PostException("Post category and user must be given");
+            }
+            Long categoryId = post.getCategory().getId();
+            Long userId = post.getUser().getId();
+            post.setCategory(categoryRepository.findById(categoryId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId)));
+            post.setUser(userRepository.findById(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId)));
+            // 5. The event is recorded in the shard's outbox, in the transaction that writes the post
+            savedPost = shardedPostRepository.save(post, eventPublisher::postCreated);
+        } else {
+            savedPost = postRepository.save(post);
+            // 5. Timelines, trending and the like pick the new post up from the event bus
+            eventPublisher.postCreated(savedPost);
+        }
 
-        // 4. Convert the saved Post to DTO and return
+        // 6. Convert the saved Post to DTO and return
         return postToDto(savedPost);
     }
 
     @Override
+    @Transactional
     public PostDto updatePost(Long id, PostDto postDto) {
-        Post existingPost = postRepository.findById(id)
+        Post existingPost = findPost(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Post", "id", id));
 
         // Use ModelMapper to map DTO to entity
@@ -134,24 +313,189 @@ public class PostServiceImpl implements PostService {
         existingPost.setTitle(postDetails.getTitle());
         existingPost.setContent(postDetails.getContent());
         existingPost.setImage(postDetails.getImage());
-        existingPost.setDate(postDetails.getDate());
+        // The creation date stays as it is
 
         // Save updated post
-        Post updatedPost = postRepository.save(existingPost);
+        Post updatedPost;
+        if (shardedPostRepository != null) {
+            updatedPost = shardedPostRepository.save(existingPost, eventPublisher::postUpdated);
+        } else {
+            updatedPost = postRepository.save(existingPost);
+            eventPublisher.postUpdated(updatedPost);
+        }
+        // The outbox evicts it again after commit, in case a read cached the old version meanwhile
+        evict(id);
 
         // Convert updated post entity to DTO and return
         return postToDto(updatedPost);
     }
 
     @Override
+    @Transactional
+    public PostDto patchPost(Long id, JsonNode patch, Long version) {
+        MergePatch mergePatch = MergePatch.of(patch, PATCHABLE, PostException::new);
+        mergePatch.validate(validator, PostDto.class, PostException::new);
+        if (mergePatch.isEmpty()) {
+            MergePatch.checkVersion("Post", id, version, () -> findVersion(id));
+            return cachedPost(id).copy();
+        }
+
+        // Only the named columns change, and only if the version still matches
+        List<Post> patched;
+        if (shardedPostRepository != null) {
+            JsonNode categoryId = patch.path("categoryDto").path("id");
+            if (categoryId.isIntegralNumber() && !categoryRepository.existsById(categoryId.longValue())) {
+                throw new PostException("Category " + categoryId.asText() + " does not exist");
+            }
+            patched = withAuthorsAndCategories(shardedPostRepository
+                    .patch(id, mergePatch, version, eventPublisher::postUpdated).stream().toList());
+        } else {
+            // Posts are partitioned by date
+            mergePatch.partition("date", "select date from posts where id = ?");
+            try {
+                patched = jdbcTemplate.query("with patched as (" + mergePatch.updateSql("posts", version != null, "*") + ") " +
+                        PATCHED_POST, PATCHED_POST_MAPPER, mergePatch.arguments(id, version));
+            } catch (DataIntegrityViolationException e) {
+                throw new PostException("Category " + patch.path("categoryDto").path("id").asText() + " does not exist");
+            }
+        }
+        if (patched.isEmpty()) {
+            throw MergePatch.failure("Post", id, version, findVersion(id));
+        }
+
+        Post post = patched.get(0);
+        if (shardedPostRepository == null) {
+            // A patch on a shard has recorded its event there already
+            eventPublisher.postUpdated(post);
+        }
+        evict(id);
+        return postToDto(post);
+    }
+
+    @Override
+    @Transactional
     public void deletePost(Long id) {
-        Post post = postRepository.findById(id)
+        Post post = findPost(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Post", "id", id));
-        postRepository.delete(post);
+        // Comments go with the post, however many there are, without being loaded
+        if (shardedPostRepository != null) {
+            shardedPostRepository.deleteById(id, () -> eventPublisher.postDeleted(post));
+        } else {
+            postRepository.deleteWithComments(id, post.getDate());
+            eventPublisher.postDeleted(post);
+        }
+        evict(id);
+    }
+
+
+    // Changes from the outbox, including this node's own
+    @Override
+    public void onChange(DomainEventType type, long aggregateId, long userId) {
+        switch (type) {
+            case POST_UPDATED, POST_DELETED -> evict(aggregateId);
+            case USER_UPDATED, USER_DELETED -> evictIf(post -> post.userId() == aggregateId);
+            case CATEGORY_UPDATED -> evictIf(post -> post.categoryId() == aggregateId);
+            default -> {
+            }
+        }
+    }
+
+
+
+
+
+    private CachedPost cachedPost(Long id) {
+        CachedPost cached = postCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cacheGeneration.get();
+        Post post = findPost(id)
+                .or(() -> findArchivedPost(id))
+                .orElseThrow(() -> new ResourceNotFoundException("Post", "id", id));
+        cached = new CachedPost(postToDto(post), post.getCategory().getId(),
+                post.getUser() != null ? post.getUser().getId() : 0);
+        if (postCache.size() >= cacheCapacity) {
+            // Make room by dropping an arbitrary entry
+            postCache.keySet().stream().findAny().ifPresent(postCache::remove);
+        }
+        postCache.put(id, cached);
+        if (cacheGeneration.get() != generation
+                || System.currentTimeMillis() - lastEvictionMillis < replicaLagMillis) {
+            postCache.remove(id, cached);
+        }
+        return cached;
+    }
+
+    private Optional<Long> findVersion(Long id) {
+        return shardedPostRepository != null
+                ? shardedPostRepository.findVersionById(id)
+                : postRepository.findVersionById(id);
+    }
+
+    private Optional<Post> findPost(Long id) {
+        if (shardedPostRepository == null) {
+            return postRepository.findById(id);
+        }
+        return shardedPostRepository.findById(id).map(post -> withAuthorsAndCategories(List.of(post)).get(0));
+    }
+
+    // Posts from the shards carry only the IDs of their authors and categories; one lookup each fills them in
+    private List<Post> withAuthorsAndCategories(List<Post> posts) {
+        Map<Long, Category> categories = categoryRepository.findAllById(ids(posts, post -> post.getCategory().getId()))
+                .stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+        Map<Long, User> users = userRepository.findAllById(ids(posts, post -> post.getUser().getId()))
+                .stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        for (Post post : posts) {
+            Optional.ofNullable(categories.get(post.getCategory().getId())).ifPresent(post::setCategory);
+            Optional.ofNullable(users.get(post.getUser().getId())).ifPresent(post::setUser);
+        }
+        return posts;
     }
 
+    private static Collection<Long> ids(List<Post> posts, Function<Post, Long> id) {
+        return posts.stream().map(id).collect(Collectors.toSet());
+    }
 
+    // Posts whose month was archived; author and category still live in the database
+    private Optional<Post> findArchivedPost(Long id) {
+        if (archiveService == null) {
+            return Optional.empty();
+        }
+        return archiveService.findArchivedPost(id).map(post -> {
+            categoryRepository.findById(post.getCategory().getId()).ifPresent(post::setCategory);
+            userRepository.findById(post.getUser().getId()).ifPresent(post::setUser);
+            return post;
+        });
+    }
 
+    private void evict(long postId) {
+        lastEvictionMillis = System.currentTimeMillis();
+        cacheGeneration.incrementAndGet();
+        postCache.remove(postId);
+    }
+
+    private void evictIf(Predicate<CachedPost> condition) {
+        lastEvictionMillis = System.currentTimeMillis();
+        cacheGeneration.incrementAndGet();
+        postCache.values().removeIf(condition);
+    }
+
+    // Fill engagement counters of DTOs with a single stats lookup
+    private List<PostDto> withStats(List<PostDto> postDtos) {
+        Map<Long, PostStatsDto> stats = postStatsService.getStats(postDtos.stream()
+                .map(PostDto::getId)
+                .collect(Collectors.toList()));
+        for (PostDto postDto : postDtos) {
+            PostStatsDto postStats = stats.get(postDto.getId());
+            postDto.setViewCount(postStats.getViewCount());
+            postDto.setCommentCount(postStats.getCommentCount());
+            postDto.setReactionCount(postStats.getReactionCount());
+            postDto.setUniqueViewerCount(postStats.getUniqueViewerCount());
+            postDto.setUniqueCommenterCount(postStats.getUniqueCommenterCount());
+        }
+        return postDtos;
+    }
 
 
     // DTO ---> Entity
@@ -166,6 +510,16 @@ public class PostServiceImpl implements PostService {
     }
 
 
+    // A converted post without engagement counters; copied before the counters are filled in
+    private record CachedPost(PostDto post, long categoryId, long userId) {
+
+        PostDto copy() {
+            return new PostDto(post.getId(), post.getTitle(), post.getContent(), post.getDate(), post.getImage(),
+                    post.getCategoryDto(), post.getUserDto(), 0, 0, 0, 0, 0, post.getVersion());
+        }
+    }
+
+
 
 
 
@@ -0,0 +1,347 @@
+package uz.developers.messenger.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.developers.messenger.entity.PostStats;
+import uz.developers.messenger.payload.PostStatsDto;
+import uz.developers.messenger.repository.PostStatsRepository;
+import uz.developers.messenger.service.PostStatsService;
+import uz.developers.messenger.util.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Engagement counters that never lock a post row per event.
+ *
+ * Increments land in per-post {@link LongAdder} cells, which stripe
+ * contended updates over several internal slots. Distinct viewers and
+ * commenters go into per-post {@link HyperLogLog} sketches. A scheduled
+ * flush swaps in a fresh cell map, adds the accumulated deltas to
+ * {@code post_stats} with one batched upsert and merges the sketches into
+ * the stored ones. The swapped-out map is drained once more on the
+ * following flush to catch updates that raced the swap, then dropped.
+ */
+@Service
+public class PostStatsServiceImpl implements PostStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostStatsServiceImpl.class);
+
+    private static final String UPSERT_STATS =
+            "insert into post_stats (post_id, view_count, comment_count, reaction_count, updated_at) " +
+            "values (?, ?, ?, ?, ?) " +
+            "on conflict (post_id) do update set " +
+            "view_count = post_stats.view_count + excluded.view_count, " +
+            "comment_count = post_stats.comment_count + excluded.comment_count, " +
+            "reaction_count = post_stats.reaction_count + excluded.reaction_count, " +
+            "updated_at = excluded.updated_at";
+
+    // Row locks keep concurrent flushes from other nodes from losing each other's registers; taken in
+    // post ID order, like the upsert before it, so two flushes of overlapping posts cannot deadlock
+    private static final String LOCK_SKETCHES =
+            "select post_id, unique_viewers, unique_commenters from post_stats where post_id in (:postIds) " +
+            "order by post_id for update";
+
+    private static final String UPDATE_SKETCHES =
+            "update post_stats set unique_viewers = ?, unique_commenters = ? where post_id = ?";
+
+    private static final int VIEWS = 0;
+
+    private static final int COMMENTS = 1;
+
+    private static final int REACTIONS = 2;
+
+    private final PostStatsRepository postStatsRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile ConcurrentHashMap<Long, Cells> current = new ConcurrentHashMap<>();
+
+    private volatile ConcurrentHashMap<Long, Cells> previous = new ConcurrentHashMap<>();
+
+    // Deltas taken out of the cells but not yet committed
+    private volatile Map<Long, Delta> flushing = Map.of();
+
+    // A lock rather than a monitor, so a virtual thread waiting on the database is not pinned
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Autowired
+    public PostStatsServiceImpl(PostStatsRepository postStatsRepository, JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.postStatsRepository = postStatsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+
+    @Override
+    public void recordView(Long postId, Long viewerId) {
+        Cells cells = cells(postId);
+        cells.counters[VIEWS].increment();
+        if (viewerId != null) {
+            Cells.sketch(cells.viewers).add(viewerId);
+        }
+    }
+
+    @Override
+    public void recordComment(Long postId, Long commenterId, int delta) {
+        Cells cells = cells(postId);
+        cells.counters[COMMENTS].add(delta);
+        if (commenterId != null) {
+            Cells.sketch(cells.commenters).add(commenterId);
+        }
+    }
+
+    @Override
+    public void recordReaction(Long postId, int delta) {
+        cells(postId).counters[REACTIONS].add(delta);
+    }
+
+    @Override
+    public Map<Long, PostStatsDto> getStats(Collection<Long> postIds) {
+        Map<Long, PostStats> persisted = new HashMap<>();
+        for (PostStats postStats : postStatsRepository.findAllById(postIds)) {
+            persisted.put(postStats.getPostId(), postStats);
+        }
+
+        Map<Long, Delta> inFlight = flushing;
+        Map<Long, PostStatsDto> stats = new HashMap<>();
+        for (Long postId : postIds) {
+            Delta delta = new Delta();
+            delta.add(current.get(postId));
+            delta.add(previous.get(postId));
+            delta.add(inFlight.get(postId));
+
+            PostStats stored = persisted.get(postId);
+            if (stored != null) {
+                delta.counts[VIEWS] += stored.getViewCount();
+                delta.counts[COMMENTS] += stored.getCommentCount();
+                delta.counts[REACTIONS] += stored.getReactionCount();
+                delta.viewers = merge(delta.viewers, stored.getUniqueViewers());
+                delta.commenters = merge(delta.commenters, stored.getUniqueCommenters());
+            }
+            stats.put(postId, new PostStatsDto(postId,
+                    delta.counts[VIEWS], delta.counts[COMMENTS], delta.counts[REACTIONS],
+                    delta.viewers == null ? 0 : delta.viewers.cardinality(),
+                    delta.commenters == null ? 0 : delta.commenters.cardinality()));
+        }
+        return stats;
+    }
+
+
+    @Scheduled(fixedDelayString = "${post-stats.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+
+    private void flushLocked() {
+        // 1. Swap maps and drain both the retiring and the previously retired one
+        ConcurrentHashMap<Long, Cells> retired = current;
+        current = new ConcurrentHashMap<>();
+        Map<Long, Delta> totals = new HashMap<>();
+        drain(previous, totals);
+        drain(retired, totals);
+        previous = retired;
+        if (totals.isEmpty()) {
+            return;
+        }
+        flushing = totals;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                writeCounts(totals);
+                writeSketches(totals);
+            });
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            for (Map.Entry<Long, Delta> entry : totals.entrySet()) {
+                cells(entry.getKey()).absorb(entry.getValue());
+            }
+            log.warn("Flushing stats of {} posts failed, will retry", totals.size(), e);
+        } finally {
+            flushing = Map.of();
+        }
+    }
+
+    // Second round drains the map retired by the first
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        flush();
+    }
+
+
+    // One batched upsert adding the deltas to the persisted counters, locking the rows in post ID order
+    private void writeCounts(Map<Long, Delta> totals) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(totals.size());
+        for (Map.Entry<Long, Delta> entry : new TreeMap<>(totals).entrySet()) {
+            long[] counts = entry.getValue().counts;
+            rows.add(new Object[]{entry.getKey(), counts[VIEWS], counts[COMMENTS], counts[REACTIONS], now});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_STATS, rows);
+    }
+
+    // Sketches merge register-wise, so read the stored ones under lock and write back the union
+    private void writeSketches(Map<Long, Delta> totals) {
+        List<Long> postIds = new ArrayList<>();
+        for (Map.Entry<Long, Delta> entry : totals.entrySet()) {
+            if (entry.getValue().viewers != null || entry.getValue().commenters != null) {
+                postIds.add(entry.getKey());
+            }
+        }
+        if (postIds.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(postIds.size());
+        namedJdbcTemplate.query(LOCK_SKETCHES, Map.of("postIds", postIds), rs -> {
+            long postId = rs.getLong("post_id");
+            Delta delta = totals.get(postId);
+            HyperLogLog viewers = merge(copy(delta.viewers), rs.getBytes("unique_viewers"));
+            HyperLogLog commenters = merge(copy(delta.commenters), rs.getBytes("unique_commenters"));
+            rows.add(new Object[]{
+                    viewers == null ? null : viewers.toBytes(),
+                    commenters == null ? null : commenters.toBytes(),
+                    postId});
+        });
+        jdbcTemplate.batchUpdate(UPDATE_SKETCHES, rows);
+    }
+
+
+    private Cells cells(Long postId) {
+        return current.computeIfAbsent(postId, id -> new Cells());
+    }
+
+    private static void drain(Map<Long, Cells> cellMap, Map<Long, Delta> totals) {
+        for (Map.Entry<Long, Cells> entry : cellMap.entrySet()) {
+            Cells cells = entry.getValue();
+            Delta delta = totals.computeIfAbsent(entry.getKey(), id -> new Delta());
+            // Subtract what was read instead of resetting so concurrent increments survive
+            for (int i = 0; i < delta.counts.length; i++) {
+                long value = cells.counters[i].sum();
+                if (value != 0) {
+                    cells.counters[i].add(-value);
+                    delta.counts[i] += value;
+                }
+            }
+            // Sketches are idempotent, merging one twice is harmless
+            delta.viewers = merge(delta.viewers, cells.viewers.get());
+            delta.commenters = merge(delta.commenters, cells.commenters.get());
+        }
+        totals.values().removeIf(Delta::isEmpty);
+    }
+
+    private static HyperLogLog merge(HyperLogLog target, HyperLogLog source) {
+        if (source == null) {
+            return target;
+        }
+        HyperLogLog result = target != null ? target : new HyperLogLog();
+        result.merge(source);
+        return result;
+    }
+
+    private static HyperLogLog merge(HyperLogLog target, byte[] stored) {
+        return stored == null ? target : merge(target, HyperLogLog.fromBytes(stored));
+    }
+
+    private static HyperLogLog copy(HyperLogLog sketch) {
+        return sketch == null ? null : sketch.copy();
+    }
+
+
+    private static final class Cells {
+
+        private final LongAdder[] counters = {new LongAdder(), new LongAdder(), new LongAdder()};
+
+        // Allocated on first use, most cells only ever count
+        private final AtomicReference<HyperLogLog> viewers = new AtomicReference<>();
+
+        private final AtomicReference<HyperLogLog> commenters = new AtomicReference<>();
+
+        private static HyperLogLog sketch(AtomicReference<HyperLogLog> reference) {
+            HyperLogLog sketch = reference.get();
+            if (sketch == null) {
+                reference.compareAndSet(null, new HyperLogLog());
+                sketch = reference.get();
+            }
+            return sketch;
+        }
+
+        private void absorb(Delta delta) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i].add(delta.counts[i]);
+            }
+            if (delta.viewers != null) {
+                sketch(viewers).merge(delta.viewers);
+            }
+            if (delta.commenters != null) {
+                sketch(commenters).merge(delta.commenters);
+            }
+        }
+    }
+
+
+    private static final class Delta {
+
+        private final long[] counts = new long[3];
+
+        private HyperLogLog viewers;
+
+        private HyperLogLog commenters;
+
+        private void add(Cells cells) {
+            if (cells != null) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += cells.counters[i].sum();
+                }
+                viewers = merge(viewers, cells.viewers.get());
+                commenters = merge(commenters, cells.commenters.get());
+            }
+        }
+
+        private void add(Delta other) {
+            if (other != null) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += other.counts[i];
+                }
+                viewers = merge(viewers, other.viewers);
+                commenters = merge(commenters, other.commenters);
+            }
+        }
+
+        private boolean isEmpty() {
+            return counts[VIEWS] == 0 && counts[COMMENTS] == 0 && counts[REACTIONS] == 0
+                    && viewers == null && commenters == null;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package uz.developers.messenger.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.service.PresenceService;
+import uz.developers.messenger.util.HashedTimingWheel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory presence and typing indicators.
+ *
+ * Users are spread over a fixed number of map shards so no single map has to
+ * resize under hundreds of thousands of entries. Expiry is driven by one
+ * shared {@link HashedTimingWheel}, so a heartbeat only updates a deadline
+ * and never creates a scheduled task.
+ */
+@Service
+public class PresenceServiceImpl implements PresenceService {
+
+    private final long presenceTtlMillis;
+
+    private final long typingTtlMillis;
+
+    private final ConcurrentHashMap<Long, PresenceEntry>[] shards;
+
+    private final int shardMask;
+
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, TypingEntry>> typingByPost = new ConcurrentHashMap<>();
+
+    private final HashedTimingWheel wheel;
+
+    @SuppressWarnings("unchecked")
+    public PresenceServiceImpl(@Value("${presence.ttl-ms:30000}") long presenceTtlMillis,
+                               @Value("${presence.typing-ttl-ms:6000}") long typingTtlMillis,
+                               @Value("${presence.shards:64}") int shardCount,
+                               @Value("${presence.wheel.size:512}") int wheelSize,
+                               @Value("${presence.wheel.tick-ms:250}") long tickMillis) {
+        if (Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("presence.shards must be a power of two");
+        }
+        this.presenceTtlMillis = presenceTtlMillis;
+        this.typingTtlMillis = typingTtlMillis;
+        this.shards = new ConcurrentHashMap[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.shardMask = shardCount - 1;
+        this.wheel = new HashedTimingWheel(wheelSize, tickMillis, System.currentTimeMillis());
+    }
+
+
+    @Override
+    public void heartbeat(Long userId) {
+        long deadline = System.currentTimeMillis() + presenceTtlMillis;
+        // Refreshed under the same key lock that expiry takes, so a refresh never lands on a removed entry
+        shardFor(userId).compute(userId, (id, entry) -> {
+            PresenceEntry refreshed = entry != null ? entry : new PresenceEntry(id);
+            wheel.schedule(refreshed, deadline);
+            return refreshed;
+        });
+    }
+
+    @Override
+    public void disconnect(Long userId) {
+        shardFor(userId).remove(userId);
+    }
+
+    @Override
+    public boolean isOnline(Long userId) {
+        PresenceEntry entry = shardFor(userId).get(userId);
+        return entry != null && entry.getDeadline() > System.currentTimeMillis();
+    }
+
+    @Override
+    public List<Long> getOnlineUsers(Collection<Long> userIds) {
+        long now = System.currentTimeMillis();
+        List<Long> online = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            PresenceEntry entry = shardFor(userId).get(userId);
+            if (entry != null && entry.getDeadline() > now) {
+                online.add(userId);
+            }
+        }
+        return online;
+    }
+
+    @Override
+    public void typing(Long postId, Long userId) {
+        long deadline = System.currentTimeMillis() + typingTtlMillis;
+        typingByPost.compute(postId, (id, typing) -> {
+            ConcurrentHashMap<Long, TypingEntry> users = typing != null ? typing : new ConcurrentHashMap<>();
+            wheel.schedule(users.computeIfAbsent(userId, user -> new TypingEntry(postId, user)), deadline);
+            return users;
+        });
+        // Typing implies presence
+        heartbeat(userId);
+    }
+
+    @Override
+    public List<Long> getTypingUsers(Long postId) {
+        Map<Long, TypingEntry> typing = typingByPost.get(postId);
+        if (typing == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        List<Long> users = new ArrayList<>();
+        for (TypingEntry entry : typing.values()) {
+            if (entry.getDeadline() > now) {
+                users.add(entry.userId);
+            }
+        }
+        return users;
+    }
+
+
+    @Scheduled(fixedRateString = "${presence.wheel.tick-ms:250}")
+    public void tick() {
+        wheel.advance(System.currentTimeMillis());
+    }
+
+
+    private ConcurrentHashMap<Long, PresenceEntry> shardFor(Long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 32) & shardMask];
+    }
+
+
+    private final class PresenceEntry extends HashedTimingWheel.Entry {
+
+        private final Long userId;
+
+        private PresenceEntry(Long userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        protected void expire() {
+            shardFor(userId).computeIfPresent(userId,
+                    (id, entry) -> entry == this && getDeadline() <= System.currentTimeMillis() ? null : entry);
+        }
+    }
+
+
+    private final class TypingEntry extends HashedTimingWheel.Entry {
+
+        private final Long postId;
+
+        private final Long userId;
+
+        private TypingEntry(Long postId, Long userId) {
+            this.postId = postId;
+            this.userId = userId;
+        }
+
+        @Override
+        protected void expire() {
+            // The same key lock as typing(), so a refresh either comes first and keeps the entry or recreates it
+            typingByPost.computeIfPresent(postId, (id, typing) -> {
+                if (getDeadline() <= System.currentTimeMillis()) {
+                    typing.remove(userId, this);
+                }
+                return typing.isEmpty() ? null : typing;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,334 @@
+package uz.developers.messenger.service.impl;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.entity.ReactionSnapshot;
+import uz.developers.messenger.entity.ReactionTargetType;
+import uz.developers.messenger.entity.ReactionType;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.ReactionSummaryDto;
+import uz.developers.messenger.repository.CommentRepository;
+import uz.developers.messenger.repository.PostRepository;
+import uz.developers.messenger.repository.ReactionSnapshotRepository;
+import uz.developers.messenger.service.PostStatsService;
+import uz.developers.messenger.service.ReactionService;
+import uz.developers.messenger.service.TrendingService;
+import uz.developers.messenger.sharding.ShardedCommentRepository;
+import uz.developers.messenger.sharding.ShardedPostRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reactions kept as one compressed 64-bit Roaring bitmap of user IDs per target and
+ * reaction. Counts are bitmap cardinalities and "did I react" is a bitmap
+ * lookup, so neither touches the database once a target is loaded.
+ *
+ * Changed targets are snapshotted to {@code reaction_snapshot} on a fixed
+ * delay; targets that stayed clean and idle are dropped from memory and
+ * reloaded from their snapshot on next use. Targets nobody reacted to are kept
+ * too, empty, so reading them again does not query the snapshots. A snapshot replaces the stored bitmap, so writes for one target
+ * should be served by a single node.
+ */
+@Service
+public class ReactionServiceImpl implements ReactionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactionServiceImpl.class);
+
+    private static final String UPSERT_SNAPSHOT =
+            "insert into reaction_snapshot (target_type, target_id, reaction_type, user_bitmap, reaction_count, updated_at) " +
+            "values (?, ?, ?, ?, ?, ?) " +
+            "on conflict (target_type, target_id, reaction_type) do update set " +
+            "user_bitmap = excluded.user_bitmap, reaction_count = excluded.reaction_count, updated_at = excluded.updated_at";
+
+    private final ReactionSnapshotRepository snapshotRepository;
+
+    private final PostRepository postRepository;
+
+    private final CommentRepository commentRepository;
+
+    // Both null unless sharding is enabled
+    private final ShardedPostRepository shardedPostRepository;
+
+    private final ShardedCommentRepository shardedCommentRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PostStatsService postStatsService;
+
+    private final TrendingService trendingService;
+
+    private final long idleMillis;
+
+    private final Map<TargetKey, TargetReactions> targets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReactionServiceImpl(ReactionSnapshotRepository snapshotRepository, PostRepository postRepository,
+                               CommentRepository commentRepository, JdbcTemplate jdbcTemplate,
+                               ObjectProvider<ShardedPostRepository> shardedPostRepository,
+                               ObjectProvider<ShardedCommentRepository> shardedCommentRepository,
+                               PostStatsService postStatsService, TrendingService trendingService,
+                               @Value("${reactions.idle-ms:600000}") long idleMillis) {
+        this.snapshotRepository = snapshotRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.shardedPostRepository = shardedPostRepository.getIfAvailable();
+        this.shardedCommentRepository = shardedCommentRepository.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
+        this.postStatsService = postStatsService;
+        this.trendingService = trendingService;
+        this.idleMillis = idleMillis;
+    }
+
+
+    @Override
+    public void react(ReactionTargetType targetType, Long targetId, Long userId, ReactionType reactionType) {
+        // 1. Target must exist; a post's category is needed for trending
+        Long categoryId = null;
+        if (targetType == ReactionTargetType.POST) {
+            categoryId = (shardedPostRepository != null
+                    ? shardedPostRepository.findById(targetId).map(post -> post.getCategory().getId())
+                    : postRepository.findCategoryIdById(targetId))
+                    .orElseThrow(() -> new ResourceNotFoundException("Post", "id", targetId));
+        } else if (shardedCommentRepository != null
+                ? shardedCommentRepository.findById(targetId).isEmpty() : !commentRepository.existsById(targetId)) {
+            throw new ResourceNotFoundException("Comment", "id", targetId);
+        }
+
+        // 2. A user holds at most one reaction per target
+        long user = userId;
+        int delta = update(targetType, targetId, reactions -> {
+            boolean had = false;
+            for (Map.Entry<ReactionType, Roaring64NavigableMap> entry : reactions.bitmaps.entrySet()) {
+                if (entry.getKey() != reactionType) {
+                    had |= checkedRemove(entry.getValue(), user);
+                }
+            }
+            Roaring64NavigableMap bitmap = reactions.bitmaps.computeIfAbsent(reactionType, type -> new Roaring64NavigableMap());
+            if (bitmap.contains(user)) {
+                had = true;
+            } else {
+                bitmap.addLong(user);
+            }
+            return had ? 0 : 1;
+        });
+        if (delta > 0 && categoryId != null) {
+            trendingService.recordReaction(targetId, categoryId);
+        }
+    }
+
+    @Override
+    public void removeReaction(ReactionTargetType targetType, Long targetId, Long userId) {
+        update(targetType, targetId, reactions -> {
+            boolean had = false;
+            for (Roaring64NavigableMap bitmap : reactions.bitmaps.values()) {
+                had |= checkedRemove(bitmap, userId);
+            }
+            return had ? -1 : 0;
+        });
+    }
+
+    @Override
+    public ReactionSummaryDto getReactionSummary(ReactionTargetType targetType, Long targetId) {
+        TargetReactions reactions = load(targetType, List.of(targetId)).get(targetId);
+        Map<ReactionType, Long> counts = new EnumMap<>(ReactionType.class);
+        long total = 0;
+        synchronized (reactions) {
+            for (Map.Entry<ReactionType, Roaring64NavigableMap> entry : reactions.bitmaps.entrySet()) {
+                long count = entry.getValue().getLongCardinality();
+                if (count > 0) {
+                    counts.put(entry.getKey(), count);
+                    total += count;
+                }
+            }
+        }
+        return new ReactionSummaryDto(targetType, targetId, counts, total);
+    }
+
+    @Override
+    public Map<Long, ReactionType> getUserReactions(ReactionTargetType targetType, Long userId, Collection<Long> targetIds) {
+        Map<Long, ReactionType> result = new HashMap<>();
+        for (Map.Entry<Long, TargetReactions> target : load(targetType, targetIds).entrySet()) {
+            TargetReactions reactions = target.getValue();
+            synchronized (reactions) {
+                for (Map.Entry<ReactionType, Roaring64NavigableMap> entry : reactions.bitmaps.entrySet()) {
+                    if (entry.getValue().contains(userId)) {
+                        result.put(target.getKey(), entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+    // Write changed bitmaps back and drop idle clean targets
+    @Scheduled(fixedDelayString = "${reactions.snapshot-interval-ms:10000}")
+    public void snapshot() {
+        long now = System.currentTimeMillis();
+        Timestamp updatedAt = new Timestamp(now);
+        List<Object[]> rows = new ArrayList<>();
+        List<TargetReactions> written = new ArrayList<>();
+
+        for (Map.Entry<TargetKey, TargetReactions> entry : targets.entrySet()) {
+            TargetKey key = entry.getKey();
+            TargetReactions reactions = entry.getValue();
+            synchronized (reactions) {
+                if (reactions.dirty) {
+                    for (Map.Entry<ReactionType, Roaring64NavigableMap> bitmap : reactions.bitmaps.entrySet()) {
+                        rows.add(new Object[]{key.type().name(), key.id(), bitmap.getKey().name(),
+                                serialize(bitmap.getValue()), bitmap.getValue().getLongCardinality(), updatedAt});
+                    }
+                    reactions.dirty = false;
+                    written.add(reactions);
+                } else if (now - reactions.lastAccess > idleMillis) {
+                    reactions.evicted = true;
+                    targets.remove(key, reactions);
+                }
+            }
+        }
+
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SNAPSHOT, rows);
+        } catch (RuntimeException e) {
+            // Keep the changes for the next round
+            for (TargetReactions reactions : written) {
+                synchronized (reactions) {
+                    reactions.dirty = true;
+                }
+            }
+            log.warn("Reaction snapshot of {} targets failed, will retry", written.size(), e);
+        }
+    }
+
+
+    // Apply a change returning the change in reaction count, and feed that into post stats
+    private int update(ReactionTargetType targetType, Long targetId, ToIntFunction<TargetReactions> change) {
+        int delta;
+        while (true) {
+            TargetReactions reactions = load(targetType, List.of(targetId)).get(targetId);
+            synchronized (reactions) {
+                // Lost a race with eviction, load again
+                if (reactions.evicted) {
+                    continue;
+                }
+                delta = change.applyAsInt(reactions);
+                reactions.dirty = true;
+                break;
+            }
+        }
+        if (delta != 0 && targetType == ReactionTargetType.POST) {
+            postStatsService.recordReaction(targetId, delta);
+        }
+        return delta;
+    }
+
+
+    // Targets from memory, loading the missing ones with a single query
+    private Map<Long, TargetReactions> load(ReactionTargetType targetType, Collection<Long> targetIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, TargetReactions> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long targetId : targetIds) {
+            TargetReactions reactions = targets.get(new TargetKey(targetType, targetId));
+            if (reactions != null) {
+                reactions.lastAccess = now;
+                result.put(targetId, reactions);
+            } else {
+                missing.add(targetId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, TargetReactions> loaded = new HashMap<>();
+        for (Long targetId : missing) {
+            loaded.put(targetId, new TargetReactions(now));
+        }
+        for (ReactionSnapshot snapshot : snapshotRepository.findByTargets(targetType.name(), missing)) {
+            loaded.get(snapshot.getTargetId()).bitmaps.put(snapshot.getReactionType(), deserialize(snapshot.getUserBitmap()));
+        }
+        for (Map.Entry<Long, TargetReactions> entry : loaded.entrySet()) {
+            // Another request may have loaded the same target meanwhile
+            TargetReactions existing = targets.putIfAbsent(new TargetKey(targetType, entry.getKey()), entry.getValue());
+            result.put(entry.getKey(), existing != null ? existing : entry.getValue());
+        }
+        return result;
+    }
+
+
+    private static boolean checkedRemove(Roaring64NavigableMap bitmap, long user) {
+        if (!bitmap.contains(user)) {
+            return false;
+        }
+        bitmap.removeLong(user);
+        return true;
+    }
+
+    private static byte[] serialize(Roaring64NavigableMap bitmap) {
+        bitmap.runOptimize();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) bitmap.serializedSizeInBytes());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.serializePortable(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Roaring64NavigableMap deserialize(byte[] bytes) {
+        Roaring64NavigableMap bitmap = new Roaring64NavigableMap();
+        try {
+            bitmap.deserializePortable(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt reaction bitmap", e);
+        }
+        return bitmap;
+    }
+
+
+    private record TargetKey(ReactionTargetType type, long id) {
+    }
+
+
+    private static final class TargetReactions {
+
+        private final Map<ReactionType, Roaring64NavigableMap> bitmaps = new EnumMap<>(ReactionType.class);
+
+        private boolean dirty;
+
+        private boolean evicted;
+
+        private volatile long lastAccess;
+
+        private TargetReactions(long lastAccess) {
+            this.lastAccess = lastAccess;
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package uz.developers.messenger.service.impl;
+
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.repository.CategoryRepository;
+import uz.developers.messenger.repository.PostRepository;
+import uz.developers.messenger.repository.UserRepository;
+import uz.developers.messenger.service.FollowGraphService;
+import uz.developers.messenger.service.TimelineService;
+import uz.developers.messenger.sharding.ShardedPostRepository;
+import uz.developers.messenger.util.LongArrays;
+import uz.developers.messenger.util.LongRingBuffer;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Home timelines built by a hybrid of push and pull.
+ *
+ * New posts are pushed as IDs into the bounded timeline of every follower
+ * whose timeline is cached. Authors with at least {@code timeline.fanout-threshold}
+ * followers are not pushed; their recent post IDs are kept once per author
+ * and merged into the feed when it is read. A feed read is therefore a
+ * k-way merge of in-memory ID lists followed by a single multi-get.
+ * Timelines are built from the posts of the last {@code timeline.max-age-days} only, and
+ * at most {@code timeline.cache-size} of them are kept; an evicted one is rebuilt on its next read.
+ */
+@Service
+public class TimelineServiceImpl implements TimelineService {
+
+    private final ModelMapper modelMapper;
+
+    private final PostRepository postRepository;
+
+    // Null unless sharding is enabled
+    private final ShardedPostRepository shardedPostRepository;
+
+    private final UserRepository userRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final FollowGraphService followGraphService;
+
+    private final int capacity;
+
+    private final long fanoutThreshold;
+
+    private final int maxAgeDays;
+
+    private final int cacheSize;
+
+    // follower ID -> pushed post IDs
+    private final Map<Long, LongRingBuffer> timelines = new ConcurrentHashMap<>();
+
+    // high-follower author ID -> own recent post IDs
+    private final Map<Long, LongRingBuffer> pulledAuthors = new ConcurrentHashMap<>();
+
+    public TimelineServiceImpl(ModelMapper modelMapper, PostRepository postRepository, FollowGraphService followGraphService,
+                               ObjectProvider<ShardedPostRepository> shardedPostRepository,
+                               UserRepository userRepository, CategoryRepository categoryRepository,
+                               @Value("${timeline.capacity:500}") int capacity,
+                               @Value("${timeline.fanout-threshold:10000}") long fanoutThreshold,
+                               @Value("${timeline.max-age-days:180}") int maxAgeDays,
+                               @Value("${timeline.cache-size:100000}") int cacheSize) {
+        this.modelMapper = modelMapper;
+        this.postRepository = postRepository;
+        this.shardedPostRepository = shardedPostRepository.getIfAvailable();
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.followGraphService = followGraphService;
+        this.capacity = capacity;
+        this.fanoutThreshold = fanoutThreshold;
+        this.maxAgeDays = maxAgeDays;
+        this.cacheSize = cacheSize;
+    }
+
+
+    @Override
+    public void onPostCreated(long postId, long authorId) {
+
+        // 1. High-follower authors are merged at read time
+        LongRingBuffer authorPosts = pulledAuthors.get(authorId);
+        if (authorPosts != null) {
+            authorPosts.add(postId);
+            return;
+        }
+        if (followGraphService.countFollowers(authorId) >= fanoutThreshold) {
+            // Loaded after the post was saved, so it already contains the new ID
+            pulledAuthors.computeIfAbsent(authorId, loader(shardedPostRepository != null
+                    ? shardedPostRepository::findRecentIdsByUserId : postRepository::findRecentIdsByUserId));
+            return;
+        }
+
+        // 2. Everyone else is pushed into cached follower timelines
+        for (long followerId : followGraphService.getFollowerIds(authorId)) {
+            LongRingBuffer timeline = timelines.get(followerId);
+            if (timeline != null) {
+                timeline.add(postId);
+            }
+        }
+    }
+
+    @Override
+    public void onFollowChanged(Long followerId) {
+        timelines.remove(followerId);
+    }
+
+    @Override
+    public List<PostDto> getHomeTimeline(Long userId, int limit) {
+        int size = Math.max(0, Math.min(limit, capacity));
+
+        // 1. Pushed IDs plus recent IDs of followed high-follower authors
+        if (!timelines.containsKey(userId) && timelines.size() >= cacheSize) {
+            // No LRU bookkeeping on the read path, any timeline will do
+            timelines.keySet().stream().findAny().ifPresent(timelines::remove);
+        }
+        List<long[]> runs = new ArrayList<>();
+        runs.add(timelines.computeIfAbsent(userId, loader(shardedPostRepository != null
+                ? this::findRecentIdsFollowedOnShards : postRepository::findRecentIdsFollowedBy)).newestFirst(size));
+        for (long followeeId : followGraphService.getFolloweeIds(userId)) {
+            LongRingBuffer authorPosts = pulledAuthors.get(followeeId);
+            if (authorPosts != null) {
+                runs.add(authorPosts.newestFirst(size));
+            }
+        }
+        long[] ids = LongArrays.mergeDescending(runs, size);
+
+        // 2. One multi-get, then restore the merged order
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+        Map<Long, Post> posts = (shardedPostRepository != null ? withAuthorsAndCategories(shardedPostRepository.findAllById(idList))
+                : postRepository.findAllById(idList)).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<PostDto> feed = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            Post post = posts.get(id);
+            // Entries of unfollowed authors may linger in a buffer until it is rebuilt
+            if (post != null && followGraphService.isFollowing(userId, post.getUser().getId())) {
+                feed.add(modelMapper.map(post, PostDto.class));
+            }
+        }
+        return feed;
+    }
+
+
+    private Function<Long, LongRingBuffer> loader(RecentIdQuery query) {
+        return id -> {
+            List<Long> recent = query.find(id, Date.valueOf(LocalDate.now().minusDays(maxAgeDays)), capacity);
+            LongRingBuffer buffer = new LongRingBuffer(capacity);
+            // Oldest first so the newest ends up at the head
+            for (int i = recent.size() - 1; i >= 0; i--) {
+                buffer.add(recent.get(i));
+            }
+            return buffer;
+        };
+    }
+
+
+    // The follow graph is in memory; the shards are asked for the posts of the followees they hold
+    private List<Long> findRecentIdsFollowedOnShards(Long userId, Date since, int limit) {
+        return shardedPostRepository.findRecentIdsByUserIds(followGraphService.getFolloweeIds(userId), since, limit);
+    }
+
+    // Posts from the shards carry only the IDs of their authors and categories
+    private List<Post> withAuthorsAndCategories(List<Post> posts) {
+        Map<Long, User> users = userRepository.findAllById(posts.stream().map(post -> post.getUser().getId())
+                .collect(Collectors.toSet())).stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, Category> categories = categoryRepository.findAllById(posts.stream().map(post -> post.getCategory().getId())
+                .collect(Collectors.toSet())).stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+        for (Post post : posts) {
+            Optional.ofNullable(users.get(post.getUser().getId())).ifPresent(post::setUser);
+            Optional.ofNullable(categories.get(post.getCategory().getId())).ifPresent(post::setCategory);
+        }
+        return posts;
+    }
+
+
+    private interface RecentIdQuery {
+        List<Long> find(Long userId, Date since, int limit);
+    }
+
+}
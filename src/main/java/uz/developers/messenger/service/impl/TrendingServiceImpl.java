@@ -0,0 +1,145 @@
+package uz.developers.messenger.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.payload.TrendingHashtagDto;
+import uz.developers.messenger.service.TrendingService;
+import uz.developers.messenger.util.CountMinSketch;
+import uz.developers.messenger.util.SlidingWindowHeavyHitters;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Trending posts and hashtags computed in memory from the activity stream.
+ *
+ * Views, comments and reactions are weighted and fed into sliding-window
+ * heavy-hitter sketches, one global and one per category for posts, plus
+ * one for hashtags found in new posts and comments. Rankings decay with
+ * age so yesterday's hits fade out without any database aggregation.
+ */
+@Service
+public class TrendingServiceImpl implements TrendingService {
+
+    private static final Pattern HASHTAG = Pattern.compile("#(\\w{1,50})", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private final int bucketCount;
+
+    private final long bucketMillis;
+
+    private final int sketchWidth;
+
+    private final int sketchDepth;
+
+    private final int capacity;
+
+    private final long halfLifeMillis;
+
+    private final long viewWeight;
+
+    private final long commentWeight;
+
+    private final long reactionWeight;
+
+    private final SlidingWindowHeavyHitters<Long> globalPosts;
+
+    private final Map<Long, SlidingWindowHeavyHitters<Long>> categoryPosts = new ConcurrentHashMap<>();
+
+    private final SlidingWindowHeavyHitters<String> hashtags;
+
+    public TrendingServiceImpl(@Value("${trending.buckets:12}") int bucketCount,
+                               @Value("${trending.bucket-ms:300000}") long bucketMillis,
+                               @Value("${trending.sketch.epsilon:0.01}") double sketchEpsilon,
+                               @Value("${trending.sketch.delta:0.02}") double sketchDelta,
+                               @Value("${trending.capacity:200}") int capacity,
+                               @Value("${trending.half-life-ms:1800000}") long halfLifeMillis,
+                               @Value("${trending.weight.view:1}") long viewWeight,
+                               @Value("${trending.weight.comment:5}") long commentWeight,
+                               @Value("${trending.weight.reaction:3}") long reactionWeight) {
+        this.bucketCount = bucketCount;
+        this.bucketMillis = bucketMillis;
+        // Overcounts within epsilon of a bucket's total weight, except with probability delta
+        this.sketchWidth = CountMinSketch.widthFor(sketchEpsilon);
+        this.sketchDepth = CountMinSketch.depthFor(sketchDelta);
+        this.capacity = capacity;
+        this.halfLifeMillis = halfLifeMillis;
+        this.viewWeight = viewWeight;
+        this.commentWeight = commentWeight;
+        this.reactionWeight = reactionWeight;
+        this.globalPosts = newPostWindow();
+        this.hashtags = new SlidingWindowHeavyHitters<>(bucketCount, bucketMillis, sketchWidth, sketchDepth,
+                capacity, halfLifeMillis, CountMinSketch::hash);
+    }
+
+
+    @Override
+    public void recordPostCreated(String title, String content) {
+        countHashtags(title);
+        countHashtags(content);
+    }
+
+    @Override
+    public void recordView(Long postId, Long categoryId) {
+        recordPost(postId, categoryId, viewWeight);
+    }
+
+    @Override
+    public void recordComment(Long postId, Long categoryId, String content) {
+        recordPost(postId, categoryId, commentWeight);
+        countHashtags(content);
+    }
+
+    @Override
+    public void recordReaction(Long postId, Long categoryId) {
+        recordPost(postId, categoryId, reactionWeight);
+    }
+
+    @Override
+    public List<Long> getTrendingPostIds(Long categoryId, int limit) {
+        SlidingWindowHeavyHitters<Long> window = categoryId == null ? globalPosts : categoryPosts.get(categoryId);
+        if (window == null) {
+            return List.of();
+        }
+        return window.top(limit, System.currentTimeMillis()).stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TrendingHashtagDto> getTrendingHashtags(int limit) {
+        return hashtags.top(limit, System.currentTimeMillis()).stream()
+                .map(entry -> new TrendingHashtagDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+
+    private void recordPost(Long postId, Long categoryId, long weight) {
+        long now = System.currentTimeMillis();
+        globalPosts.add(postId, weight, now);
+        if (categoryId != null) {
+            categoryPosts.computeIfAbsent(categoryId, id -> newPostWindow()).add(postId, weight, now);
+        }
+    }
+
+    private void countHashtags(String text) {
+        if (text == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Matcher matcher = HASHTAG.matcher(text);
+        while (matcher.find()) {
+            hashtags.add(matcher.group(1).toLowerCase(Locale.ROOT), 1, now);
+        }
+    }
+
+    private SlidingWindowHeavyHitters<Long> newPostWindow() {
+        return new SlidingWindowHeavyHitters<>(bucketCount, bucketMillis, sketchWidth, sketchDepth,
+                capacity, halfLifeMillis, Long::longValue);
+    }
+
+}
@@ -0,0 +1,125 @@
+package uz.developers.messenger.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.payload.CategoryDto;
+import uz.developers.messenger.payload.PostDto;
+import uz.developers.messenger.payload.UserDto;
+import uz.developers.messenger.payload.UserProfileDto;
+import uz.developers.messenger.service.CategoryService;
+import uz.developers.messenger.service.CommentService;
+import uz.developers.messenger.service.PostService;
+import uz.developers.messenger.service.UserProfileService;
+import uz.developers.messenger.service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the parts of a profile at the same time, each on its own virtual thread,
+ * so the request takes as long as the slowest part instead of the sum of all.
+ *
+ * The parts are scoped to the request: they share one deadline
+ * ({@code profile.deadline-ms}), and whatever has not finished by then is
+ * cancelled and reported in {@link UserProfileDto#getMissing()}, as is a part
+ * that failed. Only a missing user fails the whole request.
+ */
+@Service
+public class UserProfileServiceImpl implements UserProfileService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProfileServiceImpl.class);
+
+    private static final ThreadFactory PROFILE_THREADS = Thread.ofVirtual().name("profile-", 0).factory();
+
+    private final UserService userService;
+
+    private final PostService postService;
+
+    private final CommentService commentService;
+
+    private final CategoryService categoryService;
+
+    private final long deadlineMillis;
+
+    @Autowired
+    public UserProfileServiceImpl(UserService userService, PostService postService, CommentService commentService,
+                                  CategoryService categoryService,
+                                  @Value("${profile.deadline-ms:300}") long deadlineMillis) {
+        this.userService = userService;
+        this.postService = postService;
+        this.commentService = commentService;
+        this.categoryService = categoryService;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+
+    @Override
+    public UserProfileDto getProfile(Long userId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        ExecutorService scope = Executors.newThreadPerTaskExecutor(PROFILE_THREADS);
+        try {
+            Future<Optional<UserDto>> user = scope.submit(() -> userService.getUserById(userId));
+            Future<List<PostDto>> posts = scope.submit(() -> postsOf(userId));
+            Future<Long> commentCount = scope.submit(() -> commentService.countCommentsByUser(userId));
+            Future<List<CategoryDto>> categories = scope.submit(categoryService::getCategories);
+
+            List<String> missing = new ArrayList<>();
+            Optional<UserDto> userDto = join(user, "user", deadline, missing);
+            return new UserProfileDto(
+                    userDto != null ? userDto.orElse(null) : null,
+                    join(posts, "posts", deadline, missing),
+                    join(commentCount, "commentCount", deadline, missing),
+                    join(categories, "categories", deadline, missing),
+                    missing);
+        } finally {
+            // Interrupt stragglers and return without waiting for them
+            scope.shutdownNow();
+        }
+    }
+
+
+    // Result of a part, or null when it failed or missed the deadline
+    private <T> T join(Future<T> part, String name, long deadline, List<String> missing) {
+        try {
+            return part.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            part.cancel(true);
+            log.warn("Profile part {} missed the {} ms deadline", name, deadlineMillis);
+        } catch (ExecutionException e) {
+            // An unknown user is an answer, not a partial result
+            if (e.getCause() instanceof ResourceNotFoundException notFound) {
+                throw notFound;
+            }
+            log.warn("Profile part {} failed", name, e.getCause());
+        } catch (CancellationException e) {
+            log.warn("Profile part {} was cancelled", name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        missing.add(name);
+        return null;
+    }
+
+    private List<PostDto> postsOf(Long userId) {
+        try {
+            return postService.getPostsByUser(userId);
+        } catch (ResourceNotFoundException e) {
+            // The post lookup reports a user without posts as not found
+            return List.of();
+        }
+    }
+
+}
@@ -1,21 +1,114 @@
 package uz.developers.messenger.service.impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.Validator;
 import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import uz.developers.messenger.entity.User;
+import uz.developers.messenger.event.DomainEventPublisher;
 import uz.developers.messenger.exceptions.ResourceNotFoundException;
 import uz.developers.messenger.exceptions.UserException;
+import uz.developers.messenger.payload.UserDeletionDto;
 import uz.developers.messenger.payload.UserDto;
 import uz.developers.messenger.repository.UserRepository;
+import uz.developers.messenger.service.FollowGraphService;
 import uz.developers.messenger.service.UserService;
+import uz.developers.messenger.sharding.ShardedCommentRepository;
+import uz.developers.messenger.sharding.ShardedPostRepository;
+import uz.developers.messenger.util.MergePatch;
+
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Users, deleted together with everything they wrote by set-based statements.
+ *
+ * Nothing is loaded to be deleted. Each step removes a chunk of rows in one statement
+ * with data-modifying CTEs: a chunk of the user's posts with all their comments,
+ * reactions and stats; a chunk of the user's comments elsewhere with the replies below
+ * them; a chunk of follow edges; and finally the user. An account with at most
+ * {@code user-deletion.sync-limit} rows goes in one transaction before the request
+ * returns. A larger one is deleted chunk by chunk, one transaction each, on a virtual
+ * thread, and {@link #getDeletion} reports how far it got. Deleting a user again
+ * after a failure resumes where the failed run stopped. With sharding, posts and comments
+ * are deleted chunk by chunk on their shards instead, and their reactions and stats here.
+ */
 @Service
 public class UserServiceImpl implements UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
+
+    // Rows the deletion has to go through, counted up to a limit so the check stays cheap for any account
+    private static final String COUNT_ROWS =
+            "select (select count(*) from (select 1 from posts where user_id = ? limit ?) p) " +
+            "+ (select count(*) from (select 1 from comment c join posts p on p.id = c.post_id and p.date = c.post_date " +
+            "where p.user_id = ? limit ?) pc) " +
+            "+ (select count(*) from (select 1 from comment where user_id = ? limit ?) c) " +
+            "+ (select count(*) from (select 1 from user_follows where follower_id = ? or followee_id = ? limit ?) f)";
+
+    // The user's oldest posts with their comments, reactions and stats; returns the posts and comments deleted
+    private static final String DELETE_POSTS =
+            "with doomed as (select id, date from posts where user_id = ? order by id limit ?), " +
+            "deleted_posts as (delete from posts p using doomed d where p.id = d.id and p.date = d.date " +
+            "returning p.id, p.date), " +
+            "deleted_comments as (delete from comment c using deleted_posts p " +
+            "where c.post_id = p.id and c.post_date = p.date returning c.id), " +
+            "deleted_reactions as (delete from reaction_snapshot r " +
+            "where (r.target_type = 'POST' and r.target_id in (select id from deleted_posts)) " +
+            "or (r.target_type = 'COMMENT' and r.target_id in (select id from deleted_comments))), " +
+            "deleted_stats as (delete from post_stats s where s.post_id in (select id from deleted_posts)) " +
+            "select (select count(*) from deleted_posts), (select count(*) from deleted_comments)";
+
+    // The user's oldest comments on other posts with the replies below them; returns the count per post.
+    // Replies are followed through parent_id: comments from before threading have no path, and a path
+    // range would leave them behind to fail the final delete of the user on their foreign key
+    private static final String DELETE_COMMENTS =
+            "with recursive doomed as (select id, post_date from comment where user_id = ? order by id limit ?), " +
+            "subtree as (select id, post_date from doomed " +
+            "union select c.id, c.post_date from comment c join subtree s on c.parent_id = s.id and c.post_date = s.post_date), " +
+            "deleted as (delete from comment c using subtree s where c.id = s.id and c.post_date = s.post_date " +
+            "returning c.id, c.post_id), " +
+            "deleted_reactions as (delete from reaction_snapshot r " +
+            "where r.target_type = 'COMMENT' and r.target_id in (select id from deleted)) " +
+            "select post_id, count(*) from deleted group by post_id";
+
+    private static final String COUNT_FOLLOWS =
+            "select count(*) from (select 1 from user_follows where follower_id = ? or followee_id = ? limit ?) f";
+
+    // What stays in the main database of posts and comments deleted on the shards
+    private static final String DELETE_REACTIONS_AND_STATS =
+            "with deleted_reactions as (delete from reaction_snapshot r " +
+            "where (r.target_type = 'POST' and r.target_id = any(?)) or (r.target_type = 'COMMENT' and r.target_id = any(?))) " +
+            "delete from post_stats s where s.post_id = any(?)";
+
+    private static final String DELETE_FOLLOWS =
+            "delete from user_follows where id in " +
+            "(select id from user_follows where follower_id = ? or followee_id = ? limit ?)";
+
+    // Finished deletions are reported for an hour
+    private static final long KEEP_FINISHED_MILLIS = 3_600_000;
+
+    private static final Map<String, MergePatch.Field> PATCHABLE = Map.of(
+            "name", MergePatch.Field.text("user_name", 20),
+            "email", MergePatch.Field.text("user_email", 30),
+            "password", MergePatch.Field.text("user_password", 50),
+            "about", MergePatch.Field.optionalText("about", 100));
+
 
     private final ModelMapper modelMapper;
 
@@ -23,14 +116,61 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
 
 
+    private final DomainEventPublisher eventPublisher;
+
+
+    private final FollowGraphService followGraphService;
+
+
+    private final JdbcTemplate jdbcTemplate;
+
+
+    private final TransactionTemplate transactionTemplate;
+
+
+    private final Validator validator;
+
+
+    // Both null unless sharding is enabled
+    private final ShardedPostRepository shardedPostRepository;
+
+
+    private final ShardedCommentRepository shardedCommentRepository;
+
+
+    private final Map<Long, Deletion> deletions = new ConcurrentHashMap<>();
+
+
+    private final int syncLimit;
+
+
+    private final int chunkSize;
+
+
     @Autowired
-    public UserServiceImpl(ModelMapper modelMapper, UserRepository userRepository) {
+    public UserServiceImpl(ModelMapper modelMapper, UserRepository userRepository, DomainEventPublisher eventPublisher,
+                           FollowGraphService followGraphService, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager, Validator validator,
+                           ObjectProvider<ShardedPostRepository> shardedPostRepository,
+                           ObjectProvider<ShardedCommentRepository> shardedCommentRepository,
+                           @Value("${user-deletion.sync-limit:1000}") int syncLimit,
+                           @Value("${user-deletion.chunk-size:1000}") int chunkSize) {
         this.modelMapper = modelMapper;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.followGraphService = followGraphService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.shardedPostRepository = shardedPostRepository.getIfAvailable();
+        this.shardedCommentRepository = shardedCommentRepository.getIfAvailable();
+        this.syncLimit = syncLimit;
+        this.chunkSize = chunkSize;
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public List<UserDto> getAllUsers() {
         List<User> users = userRepository.findAll();
         return users.stream()
@@ -39,6 +179,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<UserDto> getUserById(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", " Id ", userId));
@@ -72,6 +213,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public UserDto updateUser(Long userId, UserDto userDto) {
         User existingUser = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", " Id ", userId));
@@ -87,6 +229,7 @@ public class UserServiceImpl implements UserService {
 
         // Save updated user
         User updatedUser = userRepository.save(existingUser);
+        eventPublisher.userUpdated(updatedUser);
 
         // Convert updated user entity to DTO and return
         return userToDto(updatedUser);
@@ -94,10 +237,164 @@ public class UserServiceImpl implements UserService {
 
 
     @Override
-    public void deleteUser(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", " Id ", userId));
-        userRepository.delete(user);
+    @Transactional
+    public UserDto patchUser(Long userId, JsonNode patch, Long version) {
+        MergePatch mergePatch = MergePatch.of(patch, PATCHABLE, UserException::new);
+        mergePatch.validate(validator, UserDto.class, UserException::new);
+        if (mergePatch.isEmpty()) {
+            MergePatch.checkVersion("User", userId, version, () -> userRepository.findVersionById(userId));
+            return getUserById(userId).orElseThrow();
+        }
+
+        // One round trip: only the named columns change, and only if the version still matches
+        List<User> patched;
+        try {
+            patched = jdbcTemplate.query(mergePatch.updateSql("users", version != null,
+                            "id, user_name, user_email, user_password, about, version"),
+                    (rs, rowNum) -> new User(rs.getLong("id"), rs.getString("user_name"), rs.getString("user_email"),
+                            rs.getString("user_password"), rs.getString("about"), rs.getLong("version")),
+                    mergePatch.arguments(userId, version));
+        } catch (DuplicateKeyException e) {
+            throw new UserException("User with this email already exists");
+        }
+        if (patched.isEmpty()) {
+            throw MergePatch.failure("User", userId, version, userRepository.findVersionById(userId));
+        }
+
+        User user = patched.get(0);
+        eventPublisher.userUpdated(user);
+        return userToDto(user);
+    }
+
+    @Override
+    public UserDeletionDto deleteUser(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User", " Id ", userId);
+        }
+        long now = System.currentTimeMillis();
+        deletions.values().removeIf(deletion -> deletion.finishedAt != null
+                && now - deletion.finishedAt.getTime() > KEEP_FINISHED_MILLIS);
+
+        Deletion deletion = new Deletion(userId);
+        Deletion running = deletions.putIfAbsent(userId, deletion);
+        if (running != null) {
+            if (running.finishedAt == null) {
+                return running.toDto();
+            }
+            deletions.put(userId, deletion);
+        }
+
+        Long rows = shardedPostRepository != null
+                ? jdbcTemplate.queryForObject(COUNT_FOLLOWS, Long.class, userId, userId, syncLimit + 1)
+                        + shardedPostRepository.countRowsOfUser(userId, syncLimit + 1)
+                        + shardedCommentRepository.countByUserId(userId)
+                : jdbcTemplate.queryForObject(COUNT_ROWS, Long.class,
+                        userId, syncLimit + 1, userId, syncLimit + 1, userId, syncLimit + 1, userId, userId, syncLimit + 1);
+        if (rows != null && rows <= syncLimit) {
+            // Small enough for one transaction: every step runs once, with room for all rows
+            try {
+                transactionTemplate.executeWithoutResult(status -> runDeletion(deletion, syncLimit + 1));
+            } catch (RuntimeException e) {
+                deletion.finish(e.getMessage());
+                throw e;
+            }
+            followGraphService.removeUser(userId);
+            deletion.finish(null);
+        } else {
+            Thread.ofVirtual().name("user-deletion-" + userId).start(() -> {
+                try {
+                    runDeletion(deletion, chunkSize);
+                    followGraphService.removeUser(userId);
+                    deletion.finish(null);
+                    log.info("Deleted user {} with {} posts, {} comments and {} follows", userId,
+                            deletion.posts.get(), deletion.comments.get(), deletion.follows.get());
+                } catch (RuntimeException e) {
+                    deletion.finish(e.getMessage());
+                    log.error("Deleting user {} failed", userId, e);
+                }
+            });
+        }
+        return deletion.toDto();
+    }
+
+    @Override
+    public Optional<UserDeletionDto> getDeletion(Long userId) {
+        return Optional.ofNullable(deletions.get(userId)).map(Deletion::toDto);
+    }
+
+
+    // Every step in chunks of the given size, each chunk in its own transaction unless one is already open
+    private void runDeletion(Deletion deletion, int chunk) {
+        long userId = deletion.userId;
+        if (shardedPostRepository != null) {
+            deleteOnShards(deletion, chunk);
+        } else {
+            deletePostsAndComments(deletion, chunk);
+        }
+
+        int follows;
+        do {
+            follows = transactionTemplate.execute(status -> jdbcTemplate.update(DELETE_FOLLOWS, userId, userId, chunk));
+            deletion.follows.addAndGet(follows);
+        } while (follows > 0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from users where id = ?", userId);
+            eventPublisher.userDeleted(userId);
+        });
+    }
+
+
+    private void deletePostsAndComments(Deletion deletion, int chunk) {
+        long userId = deletion.userId;
+        long[] deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(DELETE_POSTS,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, userId, chunk));
+            deletion.posts.addAndGet(deleted[0]);
+            deletion.comments.addAndGet(deleted[1]);
+        } while (deleted[0] > 0);
+
+        long comments;
+        do {
+            comments = transactionTemplate.execute(status -> {
+                long count = 0;
+                for (long[] perPost : jdbcTemplate.query(DELETE_COMMENTS,
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)}, userId, chunk)) {
+                    eventPublisher.commentsDeleted(perPost[0], (int) perPost[1]);
+                    count += perPost[1];
+                }
+                return count;
+            });
+            deletion.comments.addAndGet(comments);
+        } while (comments > 0);
+    }
+
+    // Reactions and stats go first, in the main database: a chunk that then fails on its shard is
+    // deleted again by the next run, while reactions deleted after it could be left behind for good
+    private void deleteOnShards(Deletion deletion, int chunk) {
+        long userId = deletion.userId;
+        long[] deleted;
+        do {
+            deleted = shardedPostRepository.deleteOldestByUserId(userId, chunk,
+                    (postIds, commentIds) -> deleteReactionsAndStats(postIds, commentIds));
+            deletion.posts.addAndGet(deleted[0]);
+            deletion.comments.addAndGet(deleted[1]);
+        } while (deleted[0] > 0);
+
+        long comments;
+        do {
+            // The events are published in each shard's transaction, so they go to its outbox
+            comments = shardedCommentRepository.deleteOldestByUserId(userId, chunk,
+                    commentIds -> deleteReactionsAndStats(List.of(), commentIds), eventPublisher::commentsDeleted);
+            deletion.comments.addAndGet(comments);
+        } while (comments > 0);
+    }
+
+    private void deleteReactionsAndStats(List<Long> postIds, List<Long> commentIds) {
+        Long[] posts = postIds.toArray(Long[]::new);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(DELETE_REACTIONS_AND_STATS,
+                posts, commentIds.toArray(Long[]::new), posts));
     }
 
 
@@ -111,4 +408,40 @@ public class UserServiceImpl implements UserService {
     public UserDto userToDto(User user) {
         return modelMapper.map(user, UserDto.class);
     }
+
+
+
+    // Progress of one deletion, updated by the thread running it
+    private static final class Deletion {
+
+        private final long userId;
+
+        private final Timestamp startedAt = new Timestamp(System.currentTimeMillis());
+
+        private final AtomicLong posts = new AtomicLong();
+
+        private final AtomicLong comments = new AtomicLong();
+
+        private final AtomicLong follows = new AtomicLong();
+
+        private volatile Timestamp finishedAt;
+
+        private volatile String error;
+
+        private Deletion(long userId) {
+            this.userId = userId;
+        }
+
+        private void finish(String error) {
+            this.error = error;
+            this.finishedAt = new Timestamp(System.currentTimeMillis());
+        }
+
+        private UserDeletionDto toDto() {
+            String state = finishedAt == null ? "RUNNING" : error == null ? "DONE" : "FAILED";
+            return new UserDeletionDto(userId, state, posts.get(), comments.get(), follows.get(),
+                    startedAt, finishedAt, error);
+        }
+    }
+
 }
@@ -0,0 +1,11 @@
+package uz.developers.messenger.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One shard database, with the template for statements and one for transactions on it.
+ */
+public record Shard(int index, String url, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+
+}
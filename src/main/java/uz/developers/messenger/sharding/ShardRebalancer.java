@@ -0,0 +1,186 @@
+package uz.developers.messenger.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Moves buckets between shards until every shard holds the same number of buckets,
+ * for instance after a database was added to {@code sharding.urls}.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.profiles=sharded,rebalance
+ * </pre>
+ * A bucket moves in four steps: it is marked as moving, which makes every node refuse
+ * writes to it once it has re-read the shard map; its rows are copied to the new shard;
+ * the map points to the new shard; and after the other nodes have re-read the map the
+ * rows are deleted from the old one. Reads keep working throughout. The tool waits two
+ * map refresh intervals at each hand-over, and a bucket left moving by an interrupted
+ * run is simply moved again.
+ */
+@Component
+@Profile("rebalance")
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardRebalancer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String POST_COLUMNS = "id, bucket, post_title, content, image, date, category_id, user_id, version";
+
+    private static final String COMMENT_COLUMNS =
+            "id, bucket, user_name, user_id, post_id, parent_id, root_id, path, depth, created_at, version";
+
+    private final ShardRouter router;
+
+    private final JdbcTemplate mainJdbcTemplate;
+
+    private final ConfigurableApplicationContext context;
+
+    private final long mapRefreshMillis;
+
+    private final int chunkSize;
+
+    private final boolean dryRun;
+
+    @Autowired
+    public ShardRebalancer(ShardRouter router, JdbcTemplate mainJdbcTemplate, ConfigurableApplicationContext context,
+                           @Value("${sharding.map-refresh-ms:5000}") long mapRefreshMillis,
+                           @Value("${sharding.rebalance.chunk-size:5000}") int chunkSize,
+                           @Value("${sharding.rebalance.dry-run:false}") boolean dryRun) {
+        this.router = router;
+        this.mainJdbcTemplate = mainJdbcTemplate;
+        this.context = context;
+        this.mapRefreshMillis = mapRefreshMillis;
+        this.chunkSize = chunkSize;
+        this.dryRun = dryRun;
+    }
+
+
+    @Override
+    public void run(String... args) throws Exception {
+        List<int[]> moves = plan(router.getShardMap(), router.getShards().size());
+        log.info("Rebalancing needs {} bucket moves{}", moves.size(), dryRun ? " (dry run)" : "");
+        for (int[] move : moves) {
+            log.info("Bucket {}: shard {} -> shard {}", move[0], move[1], move[2]);
+            if (!dryRun) {
+                moveBucket(move[0], move[1], move[2]);
+            }
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+
+
+    // Fewest moves that leave every shard with buckets / shards buckets, give or take one
+    static List<int[]> plan(int[] shardOfBucket, int shards) {
+        List<Deque<Integer>> owned = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            owned.add(new ArrayDeque<>());
+        }
+        for (int bucket = 0; bucket < shardOfBucket.length; bucket++) {
+            owned.get(shardOfBucket[bucket]).add(bucket);
+        }
+        int base = shardOfBucket.length / shards;
+        int extra = shardOfBucket.length % shards;
+
+        // The first shards by current size keep one bucket more when they do not divide evenly
+        List<Integer> bySize = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            bySize.add(i);
+        }
+        bySize.sort((a, b) -> owned.get(b).size() - owned.get(a).size());
+        int[] target = new int[shards];
+        for (int rank = 0; rank < shards; rank++) {
+            target[bySize.get(rank)] = base + (rank < extra ? 1 : 0);
+        }
+
+        List<int[]> moves = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            while (owned.get(shard).size() > target[shard]) {
+                int bucket = owned.get(shard).pollLast();
+                moves.add(new int[]{bucket, shard, -1});
+            }
+        }
+        int next = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int missing = target[shard] - owned.get(shard).size(); missing > 0; missing--) {
+                moves.get(next++)[2] = shard;
+            }
+        }
+        return moves;
+    }
+
+    private void moveBucket(int bucket, int from, int to) throws InterruptedException {
+        Shard source = router.getShards().get(from);
+        Shard target = router.getShards().get(to);
+
+        mainJdbcTemplate.update("update shard_map set moving = true where bucket = ?", bucket);
+        waitForNodes();
+
+        // Left over from an interrupted move of the same bucket
+        target.jdbcTemplate().update("delete from posts where bucket = ?", bucket);
+        long posts = copy(source, target, "posts", POST_COLUMNS, bucket, "id");
+        long comments = copy(source, target, "comment", COMMENT_COLUMNS, bucket, "depth, id");
+
+        mainJdbcTemplate.update("update shard_map set shard = ?, moving = false where bucket = ?", to, bucket);
+        waitForNodes();
+
+        int deleted;
+        do {
+            deleted = source.jdbcTemplate().update(
+                    "delete from posts where id in (select id from posts where bucket = ? limit ?)", bucket, chunkSize);
+        } while (deleted > 0);
+        log.info("Moved bucket {} with {} posts and {} comments to shard {}", bucket, posts, comments, to);
+    }
+
+    // Copy a bucket's rows in chunks; comments by depth, so parents are there before their replies
+    private long copy(Shard source, Shard target, String table, String columns, int bucket, String order) {
+        String placeholders = "?" + ", ?".repeat(columns.split(",").length - 1);
+        String insert = "insert into " + table + " (" + columns + ") values (" + placeholders + ")";
+        long[] copied = {0};
+        List<Object[]> chunk = new ArrayList<>(chunkSize);
+        // Inside a transaction, so the driver streams the rows with a cursor
+        source.transactionTemplate().executeWithoutResult(status -> source.jdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "select " + columns + " from " + table + " where bucket = ? order by " + order);
+            statement.setFetchSize(chunkSize);
+            statement.setInt(1, bucket);
+            return statement;
+        }, rs -> {
+            Object[] row = new Object[rs.getMetaData().getColumnCount()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                target.jdbcTemplate().batchUpdate(insert, chunk);
+                copied[0] += chunk.size();
+                chunk.clear();
+            }
+        }));
+        if (!chunk.isEmpty()) {
+            target.jdbcTemplate().batchUpdate(insert, chunk);
+            copied[0] += chunk.size();
+        }
+        return copied[0];
+    }
+
+    private void waitForNodes() throws InterruptedException {
+        Thread.sleep(2 * mapRefreshMillis);
+        router.refreshMap();
+    }
+
+}
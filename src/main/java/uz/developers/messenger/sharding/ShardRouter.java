@@ -0,0 +1,175 @@
+package uz.developers.messenger.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import uz.developers.messenger.exceptions.ShardMovingException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Maps posts and comments to shard databases.
+ *
+ * Rows are grouped into a fixed number of buckets, many more than there are shards.
+ * A post belongs to the bucket of its author, so one author's posts sit together, and
+ * its ID carries the bucket ({@code id % buckets}); a comment takes the bucket of its
+ * post. Which shard holds a bucket is kept in the {@code shard_map} table of the main
+ * database, so buckets can move between shards without changing any ID. Every node
+ * re-reads the map every {@code sharding.map-refresh-ms}.
+ */
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final List<Shard> shards;
+
+    private final int buckets;
+
+    private final JdbcTemplate mainJdbcTemplate;
+
+    // Shard of each bucket, and whether the bucket is moving; replaced as a whole on refresh
+    private volatile int[] shardOfBucket;
+
+    private volatile boolean[] moving;
+
+    public ShardRouter(List<Shard> shards, int buckets, JdbcTemplate mainJdbcTemplate) {
+        this.shards = List.copyOf(shards);
+        this.buckets = buckets;
+        this.mainJdbcTemplate = mainJdbcTemplate;
+        initializeMap();
+        refreshMap();
+    }
+
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public int bucketOfUser(long userId) {
+        // Spread consecutive user IDs over all buckets
+        return Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), buckets);
+    }
+
+    public int bucketOfId(long id) {
+        return (int) Math.floorMod(id, (long) buckets);
+    }
+
+    public long composeId(long sequence, int bucket) {
+        return sequence * buckets + bucket;
+    }
+
+    public Shard shardOfBucket(int bucket) {
+        return shards.get(shardOfBucket[bucket]);
+    }
+
+    // The shard to write a bucket's rows to; refused while the bucket moves
+    public Shard shardForWrite(int bucket) {
+        if (moving[bucket]) {
+            throw new ShardMovingException(bucket);
+        }
+        return shardOfBucket(bucket);
+    }
+
+    public int[] getShardMap() {
+        return shardOfBucket.clone();
+    }
+
+    @Scheduled(fixedDelayString = "${sharding.map-refresh-ms:5000}")
+    public void refreshMap() {
+        int[] shardMap = new int[buckets];
+        boolean[] movingMap = new boolean[buckets];
+        mainJdbcTemplate.query("select bucket, shard, moving from shard_map where bucket < ?", rs -> {
+            int bucket = rs.getInt(1);
+            shardMap[bucket] = rs.getInt(2);
+            movingMap[bucket] = rs.getBoolean(3);
+        }, buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (shardMap[bucket] >= shards.size()) {
+                throw new IllegalStateException("Bucket " + bucket + " is mapped to shard " + shardMap[bucket] +
+                        ", but only " + shards.size() + " shards are configured");
+            }
+        }
+        shardOfBucket = shardMap;
+        moving = movingMap;
+    }
+
+
+    /**
+     * Runs the query on every shard in parallel and merges the results, each sorted by
+     * the comparator, into the first {@code limit} rows overall.
+     */
+    public <T> List<T> scatterGather(Function<Shard, List<T>> query, Comparator<? super T> order, int limit) {
+        List<List<T>> results = new ArrayList<>(shards.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+            for (Shard shard : shards) {
+                futures.add(executor.submit(() -> query.apply(shard)));
+            }
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        }
+        return mergeSorted(results, order, limit);
+    }
+
+    static <T> List<T> mergeSorted(List<List<T>> lists, Comparator<? super T> order, int limit) {
+        // Heads of the lists, as {list, position}, smallest row first
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+                (a, b) -> order.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1])));
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<T> list = lists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+
+    // Spread buckets that have no shard yet round robin over the shards
+    private void initializeMap() {
+        List<Object[]> rows = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            rows.add(new Object[]{bucket, bucket % shards.size()});
+        }
+        int[] inserted = mainJdbcTemplate.batchUpdate(
+                "insert into shard_map (bucket, shard) values (?, ?) on conflict (bucket) do nothing", rows);
+        int count = 0;
+        for (int rowCount : inserted) {
+            count += Math.max(rowCount, 0);
+        }
+        if (count > 0) {
+            log.info("Assigned {} buckets to {} shards", count, shards.size());
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package uz.developers.messenger.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import uz.developers.messenger.entity.Comment;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.util.CommentPaths;
+import uz.developers.messenger.util.MergePatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Comments on the shard databases, stored next to their post.
+ *
+ * A comment takes the bucket of its post, so a post's comments, replies included, are
+ * read from one shard; only the comments of one author are gathered from all of them.
+ * Comments come back with only the IDs of their author, post and parent. Writes take a
+ * callback that runs in their shard transaction, as in {@link ShardedPostRepository}.
+ */
+@Repository
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardedCommentRepository {
+
+    private static final String COLUMNS = "id, user_name, user_id, post_id, parent_id, root_id, path, depth, created_at, version";
+
+    private static final RowMapper<Comment> COMMENT_MAPPER = (rs, rowNum) -> {
+        Comment comment = new Comment();
+        comment.setId(rs.getLong("id"));
+        comment.setContent(rs.getString("user_name"));
+        User user = new User();
+        user.setId(rs.getLong("user_id"));
+        comment.setUser(user);
+        Post post = new Post();
+        post.setId(rs.getLong("post_id"));
+        comment.setPost(post);
+        long parentId = rs.getLong("parent_id");
+        if (!rs.wasNull()) {
+            Comment parent = new Comment();
+            parent.setId(parentId);
+            comment.setParent(parent);
+        }
+        comment.setRootId(rs.getLong("root_id"));
+        comment.setPath(rs.getString("path"));
+        comment.setDepth(rs.getInt("depth"));
+        comment.setCreatedAt(rs.getTimestamp("created_at"));
+        comment.setVersion(rs.getLong("version"));
+        return comment;
+    };
+
+    private static final Comparator<Comment> NEWEST_FIRST = Comparator
+            .comparing(Comment::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(Comment::getId, Comparator.reverseOrder());
+
+    private final ShardRouter router;
+
+    @Autowired
+    public ShardedCommentRepository(ShardRouter router) {
+        this.router = router;
+    }
+
+
+    // A new comment, or a reply when the parent is set; the parent must be on the same post
+    public Comment save(Comment comment, Consumer<Comment> onSaved) {
+        long postId = comment.getPost().getId();
+        int bucket = router.bucketOfId(postId);
+        Shard shard = router.shardForWrite(bucket);
+        return shard.transactionTemplate().execute(status -> {
+            long id = router.composeId(
+                    shard.jdbcTemplate().queryForObject("select nextval('comment_seq')", Long.class), bucket);
+            Long parentId = null;
+            long rootId = id;
+            String path = CommentPaths.segment(id);
+            int depth = 0;
+            if (comment.getParent() != null) {
+                Comment parent = findById(comment.getParent().getId())
+                        .filter(candidate -> candidate.getPost().getId() == postId)
+                        .orElseThrow(() -> new IllegalArgumentException("Parent comment is not on post " + postId));
+                parentId = parent.getId();
+                rootId = parent.getRootId();
+                path = parent.getPath() + path;
+                depth = parent.getDepth() + 1;
+            }
+            shard.jdbcTemplate().update("insert into comment (id, bucket, user_name, user_id, post_id, parent_id, " +
+                            "root_id, path, depth) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    id, bucket, comment.getContent(), comment.getUser().getId(), postId, parentId, rootId, path, depth);
+            Comment saved = findById(id).orElseThrow();
+            onSaved.accept(saved);
+            return saved;
+        });
+    }
+
+    public Optional<Comment> findById(long id) {
+        return router.shardOfBucket(router.bucketOfId(id)).jdbcTemplate()
+                .query("select " + COLUMNS + " from comment where id = ?", COMMENT_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    public Optional<Long> findVersionById(long id) {
+        return router.shardOfBucket(router.bucketOfId(id)).jdbcTemplate()
+                .queryForList("select version from comment where id = ?", Long.class, id)
+                .stream().findFirst();
+    }
+
+    // Every comment of a post in thread order
+    public List<Comment> findByPostId(long postId) {
+        return router.shardOfBucket(router.bucketOfId(postId)).jdbcTemplate()
+                .query("select " + COLUMNS + " from comment where post_id = ? order by path", COMMENT_MAPPER, postId);
+    }
+
+    // A page of a post's comments after the cursor, or before it when newest come first
+    public List<Comment> findPage(long postId, long cursor, int limit, boolean newestFirst) {
+        String sql = newestFirst
+                ? "select " + COLUMNS + " from comment where post_id = ? and id < ? order by id desc limit ?"
+                : "select " + COLUMNS + " from comment where post_id = ? and id > ? order by id limit ?";
+        return router.shardOfBucket(router.bucketOfId(postId)).jdbcTemplate()
+                .query(sql, COMMENT_MAPPER, postId, cursor, limit);
+    }
+
+    // A comment and all replies below it in thread order
+    public List<Comment> findSubtree(long id) {
+        Shard shard = router.shardOfBucket(router.bucketOfId(id));
+        return findById(id)
+                .map(comment -> shard.jdbcTemplate().query("select " + COLUMNS + " from comment " +
+                                "where root_id = ? and path >= ? and path < concat(?, 'g') order by path",
+                        COMMENT_MAPPER, comment.getRootId(), comment.getPath(), comment.getPath()))
+                .orElse(List.of());
+    }
+
+    // Newest top-level comments of a post, each followed by up to the given number of its replies
+    public List<Comment> findThreads(long postId, int threads, int replies) {
+        return router.shardOfBucket(router.bucketOfId(postId)).jdbcTemplate().query("select c.* from (" +
+                        "select r.id from comment r where r.post_id = ? and r.depth = 0 order by r.id desc limit ?) t " +
+                        "cross join lateral (select " + COLUMNS + " from comment c where c.root_id = t.id " +
+                        "order by c.path limit ?) c " +
+                        "order by c.root_id desc, c.path",
+                COMMENT_MAPPER, postId, threads, replies + 1);
+    }
+
+    public long countByUserId(long userId) {
+        List<Long> counts = router.scatterGather(shard -> shard.jdbcTemplate()
+                        .queryForList("select count(*) from comment where user_id = ?", Long.class, userId),
+                Comparator.<Long>naturalOrder(), router.getShards().size());
+        return counts.stream().mapToLong(Long::longValue).sum();
+    }
+
+    public List<Comment> findByUserId(long userId, int limit) {
+        return router.scatterGather(shard -> shard.jdbcTemplate()
+                        .query("select " + COLUMNS + " from comment where user_id = ? order by created_at desc, id desc limit ?",
+                                COMMENT_MAPPER, userId, limit),
+                NEWEST_FIRST, limit);
+    }
+
+    public Optional<Comment> updateContent(long id, String content) {
+        return router.shardForWrite(router.bucketOfId(id)).jdbcTemplate()
+                .query("update comment set user_name = ?, version = version + 1 where id = ? returning " + COLUMNS,
+                        COMMENT_MAPPER, content, id)
+                .stream().findFirst();
+    }
+
+    // Only the columns the patch names change; empty when the comment is gone or its version moved on
+    public Optional<Comment> patch(long id, MergePatch mergePatch, Long version) {
+        return router.shardForWrite(router.bucketOfId(id)).jdbcTemplate()
+                .query(mergePatch.updateSql("comment", version != null, COLUMNS), COMMENT_MAPPER,
+                        mergePatch.arguments(id, version))
+                .stream().findFirst();
+    }
+
+    // A comment and all replies below it
+    public int deleteSubtree(long id, IntConsumer onDeleted) {
+        Shard shard = router.shardForWrite(router.bucketOfId(id));
+        return shard.transactionTemplate().execute(status -> {
+            int deleted = findById(id)
+                    .map(comment -> shard.jdbcTemplate().update(
+                            "delete from comment where root_id = ? and path >= ? and path < concat(?, 'g')",
+                            comment.getRootId(), comment.getPath(), comment.getPath()))
+                    .orElse(0);
+            if (deleted > 0) {
+                onDeleted.accept(deleted);
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Deletes the user's oldest comments, up to the limit on each shard, with the replies below
+     * them, and returns how many went. Every shard is one transaction: the IDs go to the first
+     * callback while the comments are locked, and the count per post to the second once they
+     * are deleted. A comment in a bucket that is moving fails the shard's chunk.
+     */
+    public long deleteOldestByUserId(long userId, int limit, Consumer<List<Long>> beforeDelete,
+                                     ObjIntConsumer<Long> onDeleted) {
+        long deleted = 0;
+        for (Shard shard : router.getShards()) {
+            deleted += shard.transactionTemplate().execute(status -> {
+                List<long[]> subtree = shard.jdbcTemplate().query("with recursive doomed as (" +
+                                "select id from comment where user_id = ? order by id limit ?), " +
+                                "subtree as (select id from doomed " +
+                                "union select c.id from comment c join subtree s on c.parent_id = s.id) " +
+                                "select c.id, c.post_id, c.bucket from comment c join subtree s on s.id = c.id for update of c",
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, userId, limit);
+                if (subtree.isEmpty()) {
+                    return 0;
+                }
+                List<Long> ids = new ArrayList<>(subtree.size());
+                Map<Long, Integer> perPost = new HashMap<>();
+                for (long[] row : subtree) {
+                    router.shardForWrite((int) row[2]);
+                    ids.add(row[0]);
+                    perPost.merge(row[1], 1, Integer::sum);
+                }
+                beforeDelete.accept(ids);
+                shard.jdbcTemplate().update("delete from comment where id = any(?)", (Object) ids.toArray(Long[]::new));
+                perPost.forEach(onDeleted::accept);
+                return subtree.size();
+            });
+        }
+        return deleted;
+    }
+
+}
@@ -0,0 +1,224 @@
+package uz.developers.messenger.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.util.MergePatch;
+
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Posts on the shard databases.
+ *
+ * Lookups by ID or author go to one shard. Listings that span authors ask every shard
+ * for its first rows in the same order and merge them, newest first. Posts come back
+ * with only the IDs of their author and category, which live in the main database.
+ *
+ * Every write runs in a transaction of its own on the shard, and so does the callback it
+ * takes: events published there go to the shard's outbox (see OutboxWriter) and commit
+ * together with the change.
+ */
+@Repository
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardedPostRepository {
+
+    private static final String COLUMNS = "id, post_title, content, image, date, category_id, user_id, version";
+
+    private static final RowMapper<Post> POST_MAPPER = (rs, rowNum) -> {
+        Category category = new Category();
+        category.setId(rs.getLong("category_id"));
+        User user = new User();
+        user.setId(rs.getLong("user_id"));
+        return new Post(rs.getLong("id"), rs.getString("post_title"), rs.getString("content"),
+                rs.getString("image"), rs.getDate("date"), category, user, rs.getLong("version"));
+    };
+
+    // The order of every listing: newest first, ties broken by ID
+    static final Comparator<Post> NEWEST_FIRST = Comparator
+            .comparing(Post::getDate, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Post::getId, Comparator.reverseOrder());
+
+    private static final String ORDER = " order by date desc nulls last, id desc limit ?";
+
+    private final ShardRouter router;
+
+    @Autowired
+    public ShardedPostRepository(ShardRouter router) {
+        this.router = router;
+    }
+
+
+    // Insert a new post on its author's shard, or update an existing one where it lives
+    public Post save(Post post, Consumer<Post> onSaved) {
+        if (post.getId() != null) {
+            Shard shard = router.shardForWrite(router.bucketOfId(post.getId()));
+            return shard.transactionTemplate().execute(status -> {
+                shard.jdbcTemplate().update(
+                        "update posts set post_title = ?, content = ?, image = ?, date = ?, category_id = ?, " +
+                                "version = version + 1 where id = ?",
+                        post.getTitle(), post.getContent(), post.getImage(), post.getDate(), post.getCategory().getId(),
+                        post.getId());
+                onSaved.accept(post);
+                return post;
+            });
+        }
+        int bucket = router.bucketOfUser(post.getUser().getId());
+        Shard shard = router.shardForWrite(bucket);
+        return shard.transactionTemplate().execute(status -> {
+            long id = router.composeId(shard.jdbcTemplate().queryForObject("select nextval('post_seq')", Long.class), bucket);
+            shard.jdbcTemplate().update("insert into posts (id, bucket, post_title, content, image, date, category_id, user_id) " +
+                            "values (?, ?, ?, ?, ?, ?, ?, ?)",
+                    id, bucket, post.getTitle(), post.getContent(), post.getImage(), post.getDate(),
+                    post.getCategory().getId(), post.getUser().getId());
+            post.setId(id);
+            onSaved.accept(post);
+            return post;
+        });
+    }
+
+    public Optional<Post> findById(long id) {
+        return router.shardOfBucket(router.bucketOfId(id)).jdbcTemplate()
+                .query("select " + COLUMNS + " from posts where id = ?", POST_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    // Posts of any shards by ID, newest first; IDs that do not exist are left out
+    public List<Post> findAllById(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = ids.stream()
+                .collect(Collectors.groupingBy(id -> router.shardOfBucket(router.bucketOfId(id)).index()));
+        return router.scatterGather(shard -> {
+            List<Long> shardIds = idsByShard.get(shard.index());
+            return shardIds == null ? List.of() : shard.jdbcTemplate().query(
+                    "select " + COLUMNS + " from posts where id = any(?)" + ORDER, POST_MAPPER,
+                    shardIds.toArray(Long[]::new), shardIds.size());
+        }, NEWEST_FIRST, ids.size());
+    }
+
+    public Optional<Long> findVersionById(long id) {
+        return router.shardOfBucket(router.bucketOfId(id)).jdbcTemplate()
+                .queryForList("select version from posts where id = ?", Long.class, id)
+                .stream().findFirst();
+    }
+
+    // All posts of an author sit on one shard
+    public List<Post> findByUserId(long userId) {
+        return router.shardOfBucket(router.bucketOfUser(userId)).jdbcTemplate()
+                .query("select " + COLUMNS + " from posts where user_id = ? order by id", POST_MAPPER, userId);
+    }
+
+    // Newest post IDs of an author since a date
+    public List<Long> findRecentIdsByUserId(long userId, Date since, int limit) {
+        return router.shardOfBucket(router.bucketOfUser(userId)).jdbcTemplate()
+                .queryForList("select id from posts where user_id = ? and date >= ? order by id desc limit ?",
+                        Long.class, userId, since, limit);
+    }
+
+    // Newest post IDs since a date of any of the authors, each shard asked for its authors only
+    public List<Long> findRecentIdsByUserIds(long[] userIds, Date since, int limit) {
+        Map<Integer, List<Long>> usersByShard = Arrays.stream(userIds).boxed()
+                .collect(Collectors.groupingBy(userId -> router.shardOfBucket(router.bucketOfUser(userId)).index()));
+        return router.scatterGather(shard -> {
+            List<Long> shardUsers = usersByShard.get(shard.index());
+            return shardUsers == null ? List.of() : shard.jdbcTemplate().queryForList(
+                    "select id from posts where user_id = any(?) and date >= ? order by id desc limit ?",
+                    Long.class, shardUsers.toArray(Long[]::new), since, limit);
+        }, Comparator.<Long>reverseOrder(), limit);
+    }
+
+    // Posts of the user and the comments on them, counted up to a limit each
+    public long countRowsOfUser(long userId, int limit) {
+        Long rows = router.shardOfBucket(router.bucketOfUser(userId)).jdbcTemplate().queryForObject(
+                "select (select count(*) from (select 1 from posts where user_id = ? limit ?) p) " +
+                        "+ (select count(*) from (select 1 from comment c join posts p on p.id = c.post_id " +
+                        "where p.user_id = ? limit ?) pc)",
+                Long.class, userId, limit, userId, limit);
+        return rows != null ? rows : 0;
+    }
+
+    public List<Post> findAll(int limit) {
+        return router.scatterGather(shard -> shard.jdbcTemplate()
+                .query("select " + COLUMNS + " from posts" + ORDER, POST_MAPPER, limit), NEWEST_FIRST, limit);
+    }
+
+    public List<Post> findByCategoryId(long categoryId, int limit) {
+        return router.scatterGather(shard -> shard.jdbcTemplate()
+                        .query("select " + COLUMNS + " from posts where category_id = ?" + ORDER, POST_MAPPER, categoryId, limit),
+                NEWEST_FIRST, limit);
+    }
+
+    public List<Post> searchByTitleOrContent(String keyword, int limit) {
+        String pattern = "%" + keyword + "%";
+        return router.scatterGather(shard -> shard.jdbcTemplate()
+                        .query("select " + COLUMNS + " from posts where post_title like ? or content like ?" + ORDER,
+                                POST_MAPPER, pattern, pattern, limit),
+                NEWEST_FIRST, limit);
+    }
+
+    // Whether any shard has a post with this title or this content
+    public boolean existsByTitleOrContent(String title, String content) {
+        return !router.scatterGather(shard -> shard.jdbcTemplate()
+                        .queryForList("select id from posts where post_title = ? or content = ? limit 1", Long.class,
+                                title, content),
+                Comparator.<Long>naturalOrder(), 1).isEmpty();
+    }
+
+    // Only the columns the patch names change; empty when the post is gone or its version moved on
+    public Optional<Post> patch(long id, MergePatch mergePatch, Long version, Consumer<Post> onPatched) {
+        Shard shard = router.shardForWrite(router.bucketOfId(id));
+        return shard.transactionTemplate().execute(status -> {
+            Optional<Post> patched = shard.jdbcTemplate()
+                    .query(mergePatch.updateSql("posts", version != null, COLUMNS), POST_MAPPER, mergePatch.arguments(id, version))
+                    .stream().findFirst();
+            patched.ifPresent(onPatched);
+            return patched;
+        });
+    }
+
+    // Comments of the post go with it
+    public boolean deleteById(long id, Runnable onDeleted) {
+        Shard shard = router.shardForWrite(router.bucketOfId(id));
+        return shard.transactionTemplate().execute(status -> {
+            boolean deleted = shard.jdbcTemplate().update("delete from posts where id = ?", id) > 0;
+            if (deleted) {
+                onDeleted.run();
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Deletes the user's oldest posts, up to the limit, with all comments on them, and returns
+     * how many of each went. The callback gets their IDs first, inside the shard's transaction
+     * with the posts locked, so no comment can be added to them in between.
+     */
+    public long[] deleteOldestByUserId(long userId, int limit, BiConsumer<List<Long>, List<Long>> beforeDelete) {
+        Shard shard = router.shardForWrite(router.bucketOfUser(userId));
+        return shard.transactionTemplate().execute(status -> {
+            List<Long> postIds = shard.jdbcTemplate().queryForList(
+                    "select id from posts where user_id = ? order by id limit ? for update", Long.class, userId, limit);
+            if (postIds.isEmpty()) {
+                return new long[2];
+            }
+            Long[] ids = postIds.toArray(Long[]::new);
+            List<Long> commentIds = shard.jdbcTemplate()
+                    .queryForList("select id from comment where post_id = any(?)", Long.class, (Object) ids);
+            beforeDelete.accept(postIds, commentIds);
+            shard.jdbcTemplate().update("delete from posts where id = any(?)", (Object) ids);
+            return new long[]{postIds.size(), commentIds.size()};
+        });
+    }
+
+}
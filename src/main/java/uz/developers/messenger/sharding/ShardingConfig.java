@@ -0,0 +1,98 @@
+package uz.developers.messenger.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connects to the shard databases in {@code sharding.urls} and brings their schema up to
+ * date from {@code db/shard}. Enabled with {@code sharding.enabled=true}, as the sharded
+ * profile does.
+ *
+ * The shard pools are not DataSource beans, so nothing else picks them up by accident;
+ * the main database keeps users, categories and the shard map.
+ *
+ * Import, export, analytics export and archiving work on the main database's posts and
+ * comments and are not created with sharding on. The reactive API and the data generator
+ * do the same, so their profiles refuse to start with it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfig.class);
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public ShardRouter shardRouter(Environment environment, JdbcTemplate jdbcTemplate) {
+        if (environment.acceptsProfiles(Profiles.of("reactive | datagen"))) {
+            throw new IllegalStateException("The reactive and datagen profiles read and write posts and comments " +
+                    "in the main database and cannot run with sharding.enabled=true");
+        }
+        List<String> urls = Arrays.stream(environment.getProperty("sharding.urls", "").split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        int buckets = environment.getProperty("sharding.buckets", Integer.class, 256);
+        // Fixed for the life of the data: the sequences of all shards step by it
+        int maxShards = environment.getProperty("sharding.max-shards", Integer.class, 64);
+        if (urls.isEmpty() || urls.size() > maxShards || urls.size() > buckets) {
+            throw new IllegalStateException("sharding.urls must list between 1 and " + Math.min(maxShards, buckets) +
+                    " databases, found " + urls.size());
+        }
+        String username = environment.getProperty("sharding.username", environment.getProperty("spring.datasource.username"));
+        String password = environment.getProperty("sharding.password", environment.getProperty("spring.datasource.password"));
+        int poolSize = environment.getProperty("sharding.pool-size", Integer.class, 10);
+
+        List<Shard> shards = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("shard-" + i);
+            pool.setJdbcUrl(urls.get(i));
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(poolSize);
+            pools.add(pool);
+
+            Flyway.configure()
+                    .dataSource(pool)
+                    .locations("classpath:db/shard")
+                    .placeholders(Map.of(
+                            "sequence_start", Integer.toString(maxShards + i),
+                            "sequence_step", Integer.toString(maxShards)))
+                    .load()
+                    .migrate();
+
+            // Always a transaction of its own: a write on the shard never joins the main database's
+            // transaction, and what it registers to run after commit follows the shard's commit
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(pool));
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            shards.add(new Shard(i, urls.get(i), new JdbcTemplate(pool), transactionTemplate));
+        }
+        log.info("Sharding posts and comments over {} databases in {} buckets", shards.size(), buckets);
+        return new ShardRouter(shards, buckets, jdbcTemplate);
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+}
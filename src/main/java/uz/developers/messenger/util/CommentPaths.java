@@ -0,0 +1,30 @@
+package uz.developers.messenger.util;
+
+/**
+ * The materialized path of a comment: the IDs from the thread root down to the comment,
+ * each written as {@link #SEGMENT_LENGTH} lower-case hex digits, so sorting by path
+ * yields the thread in reading order.
+ */
+public final class CommentPaths {
+
+    // Fits the 192-character path column 16 levels deep
+    public static final int SEGMENT_LENGTH = 12;
+
+    // Depth of the deepest reply, a top-level comment being at depth 0
+    public static final int MAX_DEPTH = 15;
+
+    private CommentPaths() {
+    }
+
+
+    public static String segment(long id) {
+        String hex = Long.toHexString(id);
+        return "0".repeat(SEGMENT_LENGTH - hex.length()) + hex;
+    }
+
+    // ID of the top-level comment a path starts with
+    public static long rootId(String path) {
+        return Long.parseLong(path, 0, SEGMENT_LENGTH, 16);
+    }
+
+}
@@ -0,0 +1,90 @@
+package uz.developers.messenger.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch over 64-bit keys with lock-free updates.
+ *
+ * Estimates never undercount; they overcount by at most
+ * {@code e / width * total} with probability {@code 1 - e^-depth}.
+ */
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    private final int width;
+
+    private final int depth;
+
+    private final AtomicLongArray counts;
+
+    public CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two");
+        }
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + SEEDS.length);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counts = new AtomicLongArray(width * depth);
+    }
+
+
+    // Narrowest width, a power of two, that overcounts by at most epsilon * total
+    public static int widthFor(double epsilon) {
+        if (epsilon <= 0 || epsilon >= 1) {
+            throw new IllegalArgumentException("Epsilon must be between 0 and 1");
+        }
+        return Integer.highestOneBit((int) Math.ceil(Math.E / epsilon) - 1) << 1;
+    }
+
+    // Fewest rows that keep the overcount within bound with probability 1 - delta
+    public static int depthFor(double delta) {
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        if (delta <= 0 || delta >= 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("Delta must be between " + Math.exp(-SEEDS.length) + " and 1");
+        }
+        return Math.max(1, depth);
+    }
+
+
+    // Add and return the new estimate for the key
+    public long add(long key, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.addAndGet(index(row, key), count));
+        }
+        return estimate;
+    }
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+
+    // 64-bit FNV-1a, for string keys such as hashtags
+    public static long hash(CharSequence value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+
+    private int index(int row, long key) {
+        long h = (key ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        return row * width + (int) (h & (width - 1));
+    }
+
+}
@@ -0,0 +1,87 @@
+package uz.developers.messenger.util;
+
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Helpers for the in-memory DuckDB databases that turn PostgreSQL rows into Parquet files.
+ */
+public final class DuckDb {
+
+    private DuckDb() {
+    }
+
+
+    // A new in-memory database, gone once the connection is closed
+    public static DuckDBConnection open() throws SQLException {
+        return (DuckDBConnection) DriverManager.getConnection("jdbc:duckdb:");
+    }
+
+    /**
+     * Streams the rows of a PostgreSQL query into the DuckDB table of the given name, whose
+     * columns match the query's in order, and returns how many were copied.
+     */
+    public static long copyRows(JdbcTemplate jdbcTemplate, DuckDBConnection duck, String table, String sql,
+                                int fetchSize, Object... arguments) throws SQLException {
+        long[] count = {0};
+        try (DuckDBAppender appender = duck.createAppender(DuckDBConnection.DEFAULT_SCHEMA, table)) {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < arguments.length; i++) {
+                    statement.setObject(i + 1, arguments[i]);
+                }
+                return statement;
+            }, rs -> {
+                append(appender, rs);
+                count[0]++;
+            });
+        }
+        return count[0];
+    }
+
+    // One ZSTD-compressed Parquet file with every row of the table
+    public static void writeParquet(DuckDBConnection duck, String table, Path file) throws SQLException {
+        execute(duck, "copy " + table + " to " + literal(file) + " (format parquet, compression zstd)");
+    }
+
+    public static void execute(DuckDBConnection duck, String sql) throws SQLException {
+        try (Statement statement = duck.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public static String literal(Path path) {
+        return "'" + path.toAbsolutePath().toString().replace("'", "''") + "'";
+    }
+
+
+    private static void append(DuckDBAppender appender, ResultSet rs) throws SQLException {
+        appender.beginRow();
+        int columns = rs.getMetaData().getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            Object value = rs.getObject(i);
+            if (value instanceof Long number) {
+                appender.append(number.longValue());
+            } else if (value instanceof Integer number) {
+                appender.append(number.intValue());
+            } else if (value instanceof Timestamp timestamp) {
+                appender.appendLocalDateTime(timestamp.toLocalDateTime());
+            } else {
+                // Nulls and dates go in as text and are cast to the column type
+                appender.append(value != null ? value.toString() : null);
+            }
+        }
+        appender.endRow();
+    }
+
+}
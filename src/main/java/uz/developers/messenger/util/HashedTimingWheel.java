@@ -0,0 +1,105 @@
+package uz.developers.messenger.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hashed timing wheel for expiring large numbers of short-lived entries.
+ *
+ * Every entry sits in exactly one bucket at a time. Refreshing an entry only
+ * moves its deadline forward; the wheel notices the new deadline when the
+ * bucket is reached and re-files the entry, so a refresh is O(1) and never
+ * touches a bucket once the entry is scheduled. The wheel has no thread of
+ * its own, the owner calls {@link #advance(long)} periodically.
+ */
+public class HashedTimingWheel {
+
+    private final long tickMillis;
+
+    private final int mask;
+
+    private final List<Entry>[] buckets;
+
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(int wheelSize, long tickMillis, long startMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two");
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.mask = wheelSize - 1;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+
+    // Set a new deadline and make sure the entry is on the wheel
+    public void schedule(Entry entry, long deadlineMillis) {
+        entry.deadline = deadlineMillis;
+        if (entry.scheduled.compareAndSet(false, true)) {
+            file(entry, deadlineMillis);
+        }
+    }
+
+
+    // Process every bucket between the last call and now, expiring due entries
+    public void advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            while (currentTick < targetTick) {
+                currentTick++;
+                List<Entry> bucket = buckets[(int) (currentTick & mask)];
+                due.addAll(bucket);
+                bucket.clear();
+            }
+        }
+        for (Entry entry : due) {
+            entry.scheduled.set(false);
+            // Re-read the deadline after clearing the flag so a concurrent refresh is never lost
+            long deadline = entry.deadline;
+            if (deadline > nowMillis) {
+                if (entry.scheduled.compareAndSet(false, true)) {
+                    file(entry, deadline);
+                }
+            } else {
+                entry.expire();
+            }
+        }
+    }
+
+
+    // Entries further away than one rotation are simply re-filed when their bucket comes round
+    private synchronized void file(Entry entry, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick + 1);
+        buckets[(int) (tick & mask)].add(entry);
+    }
+
+
+    /**
+     * Something that can be placed on the wheel. Subclasses decide what
+     * expiring means; the deadline may have been refreshed concurrently, so
+     * {@link #expire()} implementations should re-check it before removing state.
+     */
+    public abstract static class Entry {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile long deadline;
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        protected abstract void expire();
+    }
+
+}
@@ -0,0 +1,159 @@
+package uz.developers.messenger.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct counter with one byte per register.
+ *
+ * With the default precision of 12 the sketch has 4096 registers, a
+ * standard error of about 1.6% and a fixed size of 4 KB no matter how many
+ * values are added. Sketches of the same precision merge by taking the
+ * register-wise maximum, so counts from several nodes can be combined.
+ * Adds and merges are lock-free and may run concurrently.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final VarHandle REGISTER = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits, capped by their count
+        raise(index, (byte) (Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1));
+    }
+
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            raise(i, other.registers[i]);
+        }
+    }
+
+
+    /**
+     * Estimate using Ertl's improved estimator ("New cardinality estimation
+     * algorithms for HyperLogLog sketches", 2017), which stays unbiased across
+     * the whole range without empirical bias-correction tables.
+     */
+    public long cardinality() {
+        int m = registers.length;
+        int q = 64 - precision;
+        int[] histogram = new int[q + 2];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        double z = m * tau(1.0 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m * (m / (2.0 * Math.log(2))) / z);
+    }
+
+
+    // Lock-free max, so adds and merges may run concurrently
+    private void raise(int index, byte value) {
+        byte current = (byte) REGISTER.getVolatile(registers, index);
+        while (value > current) {
+            byte witness = (byte) REGISTER.compareAndExchange(registers, index, current, value);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+    }
+
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    // First byte holds the precision, the rest are the registers
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < 4 || precision > 16 || bytes.length != (1 << precision) + 1) {
+            throw new IllegalArgumentException("Not a serialized HyperLogLog");
+        }
+        return new HyperLogLog(precision, Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1.0 - x) * (1.0 - x) * y;
+        } while (z != previous);
+        return z / 3.0;
+    }
+
+    // MurmurHash3 finalizer, spreads sequential IDs over all bits
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
@@ -0,0 +1,44 @@
+package uz.developers.messenger.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Helpers for sorted primitive long arrays.
+ */
+public final class LongArrays {
+
+    private LongArrays() {
+    }
+
+
+    /**
+     * K-way merge of arrays that are each sorted in descending order.
+     * Duplicates across arrays are emitted once.
+     */
+    public static long[] mergeDescending(List<long[]> runs, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> Long.compare(runs.get(b[0])[b[1]], runs.get(a[0])[a[1]]));
+        for (int i = 0; i < runs.size(); i++) {
+            if (runs.get(i).length > 0) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        long[] merged = new long[limit];
+        int count = 0;
+        while (count < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            long[] run = runs.get(head[0]);
+            long value = run[head[1]];
+            if (count == 0 || merged[count - 1] != value) {
+                merged[count++] = value;
+            }
+            if (++head[1] < run.length) {
+                heads.add(head);
+            }
+        }
+        return count == limit ? merged : Arrays.copyOf(merged, count);
+    }
+
+}
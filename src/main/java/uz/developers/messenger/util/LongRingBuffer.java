@@ -0,0 +1,43 @@
+package uz.developers.messenger.util;
+
+/**
+ * Fixed-capacity buffer of primitive longs that overwrites the oldest value
+ * when full. Used for bounded per-user timelines of post IDs.
+ */
+public class LongRingBuffer {
+
+    private final long[] values;
+
+    private int next;
+
+    private int size;
+
+    public LongRingBuffer(int capacity) {
+        this.values = new long[capacity];
+    }
+
+    public synchronized void add(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length) {
+            size++;
+        }
+    }
+
+    // Values in reverse insertion order, at most limit of them
+    public synchronized long[] newestFirst(int limit) {
+        int count = Math.min(limit, size);
+        long[] result = new long[count];
+        int index = next;
+        for (int i = 0; i < count; i++) {
+            index = (index - 1 + values.length) % values.length;
+            result[i] = values[index];
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+}
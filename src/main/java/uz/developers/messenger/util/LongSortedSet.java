@@ -0,0 +1,194 @@
+package uz.developers.messenger.util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of primitive longs stored as sorted blocks.
+ *
+ * Values are kept in ascending order across a list of {@code long[]} blocks
+ * of at most {@link #MAX_BLOCK} entries. Adding or removing a value copies
+ * only the affected block and the small array of block references, so even
+ * very large sets stay cheap to update while readers never need a lock.
+ */
+public final class LongSortedSet {
+
+    public static final LongSortedSet EMPTY = new LongSortedSet(new long[0][], 0);
+
+    private static final int MAX_BLOCK = 1024;
+
+    // Below this size ratio a linear merge beats binary searching the larger set
+    private static final int GALLOP_RATIO = 32;
+
+    private final long[][] blocks;
+
+    private final int size;
+
+    private LongSortedSet(long[][] blocks, int size) {
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+
+    // Build from values that are already sorted ascending and free of duplicates
+    public static LongSortedSet ofSorted(long[] values, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        int blockCount = (length + MAX_BLOCK - 1) / MAX_BLOCK;
+        long[][] blocks = new long[blockCount][];
+        for (int i = 0; i < blockCount; i++) {
+            int from = i * MAX_BLOCK;
+            blocks[i] = Arrays.copyOfRange(values, from, Math.min(length, from + MAX_BLOCK));
+        }
+        return new LongSortedSet(blocks, length);
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long value) {
+        int b = blockFor(value);
+        return b >= 0 && Arrays.binarySearch(blocks[b], value) >= 0;
+    }
+
+
+    public LongSortedSet with(long value) {
+        if (blocks.length == 0) {
+            return new LongSortedSet(new long[][]{{value}}, 1);
+        }
+        int b = Math.max(0, blockFor(value));
+        long[] block = blocks[b];
+        int pos = Arrays.binarySearch(block, value);
+        if (pos >= 0) {
+            return this;
+        }
+        pos = -pos - 1;
+        long[] grown = new long[block.length + 1];
+        System.arraycopy(block, 0, grown, 0, pos);
+        grown[pos] = value;
+        System.arraycopy(block, pos, grown, pos + 1, block.length - pos);
+
+        long[][] newBlocks;
+        if (grown.length <= MAX_BLOCK) {
+            newBlocks = blocks.clone();
+            newBlocks[b] = grown;
+        } else {
+            int half = grown.length / 2;
+            newBlocks = new long[blocks.length + 1][];
+            System.arraycopy(blocks, 0, newBlocks, 0, b);
+            newBlocks[b] = Arrays.copyOfRange(grown, 0, half);
+            newBlocks[b + 1] = Arrays.copyOfRange(grown, half, grown.length);
+            System.arraycopy(blocks, b + 1, newBlocks, b + 2, blocks.length - b - 1);
+        }
+        return new LongSortedSet(newBlocks, size + 1);
+    }
+
+
+    public LongSortedSet without(long value) {
+        int b = blockFor(value);
+        if (b < 0) {
+            return this;
+        }
+        long[] block = blocks[b];
+        int pos = Arrays.binarySearch(block, value);
+        if (pos < 0) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+
+        long[][] newBlocks;
+        if (block.length == 1) {
+            newBlocks = new long[blocks.length - 1][];
+            System.arraycopy(blocks, 0, newBlocks, 0, b);
+            System.arraycopy(blocks, b + 1, newBlocks, b, blocks.length - b - 1);
+        } else {
+            long[] shrunk = new long[block.length - 1];
+            System.arraycopy(block, 0, shrunk, 0, pos);
+            System.arraycopy(block, pos + 1, shrunk, pos, block.length - pos - 1);
+            newBlocks = blocks.clone();
+            newBlocks[b] = shrunk;
+        }
+        return new LongSortedSet(newBlocks, size - 1);
+    }
+
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int offset = 0;
+        for (long[] block : blocks) {
+            System.arraycopy(block, 0, result, offset, block.length);
+            offset += block.length;
+        }
+        return result;
+    }
+
+
+    /**
+     * Values present in both sets, ascending. Uses a linear merge when the
+     * sets have similar sizes and binary search into the larger one otherwise.
+     */
+    public long[] intersect(LongSortedSet other) {
+        LongSortedSet small = size <= other.size ? this : other;
+        LongSortedSet large = small == this ? other : this;
+        long[] result = new long[small.size];
+        int count = 0;
+
+        if (small.size == 0) {
+            return result;
+        }
+        if ((long) small.size * GALLOP_RATIO < large.size) {
+            for (long[] block : small.blocks) {
+                for (long value : block) {
+                    if (large.contains(value)) {
+                        result[count++] = value;
+                    }
+                }
+            }
+        } else {
+            int sb = 0, si = 0, lb = 0, li = 0;
+            while (sb < small.blocks.length && lb < large.blocks.length) {
+                long a = small.blocks[sb][si];
+                long b = large.blocks[lb][li];
+                if (a == b) {
+                    result[count++] = a;
+                }
+                if (a <= b && ++si == small.blocks[sb].length) {
+                    sb++;
+                    si = 0;
+                }
+                if (b <= a && ++li == large.blocks[lb].length) {
+                    lb++;
+                    li = 0;
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+
+    // Index of the last block whose first value is <= value, or -1
+    private int blockFor(long value) {
+        int low = 0;
+        int high = blocks.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid][0] <= value) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+}
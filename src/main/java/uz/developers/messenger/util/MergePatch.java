@@ -0,0 +1,215 @@
+package uz.developers.messenger.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpHeaders;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.exceptions.VersionConflictException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A JSON merge patch (RFC 7396) turned into one conditional UPDATE.
+ *
+ * A member of the patch sets a property, a member set to null removes it, and an absent
+ * member leaves it alone; nested objects merge member by member, so {@code {"categoryDto":
+ * {"id": 2}}} moves a post to category 2. Only the listed properties may appear, each
+ * stored in its own column, so the statement sets exactly the columns the patch names
+ * and bumps the version:
+ * <pre>
+ * update posts set post_title = ?, version = version + 1
+ *     where id = ? and date = (select date from posts where id = ?) and version = ? returning ...
+ * </pre>
+ * Without an expected version the last writer wins, as with a full update. The partition
+ * key of the row, when named, is looked up within the statement; the executor keeps the
+ * update to the row's partition once the lookup is done, without a round trip of its own.
+ */
+public final class MergePatch {
+
+    // A patchable property: its column, String or Long values, whether it may be removed, and its maximum length
+    public record Field(String column, Class<?> type, boolean nullable, int maxLength) {
+
+        public static Field text(String column, int maxLength) {
+            return new Field(column, String.class, false, maxLength);
+        }
+
+        public static Field optionalText(String column, int maxLength) {
+            return new Field(column, String.class, true, maxLength);
+        }
+
+        public static Field id(String column) {
+            return new Field(column, Long.class, false, 0);
+        }
+    }
+
+    // Column to new value, in the order of the patch
+    private final Map<String, Object> assignments = new LinkedHashMap<>();
+
+    // Property to new value, for validation
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+
+    // Column of the row's partition key and the query finding it by the row's ID; no bound while null
+    private String partitionColumn;
+
+    private String partitionKeyQuery;
+
+    private MergePatch() {
+    }
+
+
+    public static MergePatch of(JsonNode patch, Map<String, Field> fields, Function<String, RuntimeException> invalid) {
+        if (patch == null || !patch.isObject()) {
+            throw invalid.apply("A merge patch must be a JSON object");
+        }
+        MergePatch mergePatch = new MergePatch();
+        mergePatch.merge(patch, "", fields, invalid);
+        return mergePatch;
+    }
+
+    // Version from an If-Match header: "3", W/"3" or 3; null when there is none or it is *
+    public static Long parseVersion(String ifMatch, Function<String, RuntimeException> invalid) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw invalid.apply("If-Match must hold the version to patch, such as \"3\"");
+        }
+    }
+
+    // The version as ETag, for the client's next If-Match; no header when the version is unknown
+    public static HttpHeaders etagHeaders(Long version) {
+        HttpHeaders headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag("\"" + version + "\"");
+        }
+        return headers;
+    }
+
+    // Why a patch updated nothing: the row is gone, or its version moved on
+    public static RuntimeException failure(String resource, long id, Long expected, Optional<Long> current) {
+        return current.filter(version -> expected != null)
+                .<RuntimeException>map(version -> new VersionConflictException(resource, id, expected, version))
+                .orElseGet(() -> new ResourceNotFoundException(resource, "id", id));
+    }
+
+    // An empty patch changes nothing, but fails on a stale or missing row all the same when a version is expected
+    public static void checkVersion(String resource, long id, Long expected, Supplier<Optional<Long>> current) {
+        if (expected == null) {
+            return;
+        }
+        Optional<Long> version = current.get();
+        if (!version.equals(Optional.of(expected))) {
+            throw failure(resource, id, expected, version);
+        }
+    }
+
+
+    // Keep the UPDATE to the partition holding the row, whose key the query selects given the row's ID
+    public MergePatch partition(String column, String keyQuery) {
+        partitionColumn = column;
+        partitionKeyQuery = keyQuery;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return assignments.isEmpty();
+    }
+
+    // The Bean Validation constraints of the DTO's properties, checked on the values the patch sets
+    public <T> void validate(Validator validator, Class<T> type, Function<String, RuntimeException> invalid) {
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            if (property.getKey().contains(".")) {
+                continue;
+            }
+            Set<ConstraintViolation<T>> violations = validator.validateValue(type, property.getKey(), property.getValue());
+            if (!violations.isEmpty()) {
+                throw invalid.apply(violations.iterator().next().getMessage());
+            }
+        }
+    }
+
+    // The UPDATE of a patch; the version is only compared when one is expected
+    public String updateSql(String table, boolean conditional, String returning) {
+        StringBuilder sql = new StringBuilder("update ").append(table).append(" set ");
+        for (String column : assignments.keySet()) {
+            sql.append(column).append(" = ?, ");
+        }
+        sql.append("version = version + 1 where id = ?");
+        if (partitionColumn != null) {
+            sql.append(" and ").append(partitionColumn).append(" = (").append(partitionKeyQuery).append(")");
+        }
+        if (conditional) {
+            sql.append(" and version = ?");
+        }
+        return sql.append(" returning ").append(returning).toString();
+    }
+
+    public Object[] arguments(long id, Long version) {
+        List<Object> arguments = new ArrayList<>(assignments.values());
+        arguments.add(id);
+        if (partitionColumn != null) {
+            arguments.add(id);
+        }
+        if (version != null) {
+            arguments.add(version);
+        }
+        return arguments.toArray();
+    }
+
+
+    private void merge(JsonNode patch, String prefix, Map<String, Field> fields,
+                       Function<String, RuntimeException> invalid) {
+        Iterator<Map.Entry<String, JsonNode>> members = patch.fields();
+        while (members.hasNext()) {
+            Map.Entry<String, JsonNode> member = members.next();
+            String name = prefix + member.getKey();
+            JsonNode value = member.getValue();
+            Field field = fields.get(name);
+            if (field == null && value.isObject()) {
+                merge(value, name + ".", fields, invalid);
+                continue;
+            }
+            if (field == null) {
+                throw invalid.apply("Property " + name + " cannot be patched");
+            }
+            if (value.isNull()) {
+                if (!field.nullable()) {
+                    throw invalid.apply("Property " + name + " cannot be removed");
+                }
+                assignments.put(field.column(), null);
+                properties.put(name, null);
+            } else if (field.type() == String.class && value.isTextual()) {
+                if (value.textValue().length() > field.maxLength()) {
+                    throw invalid.apply("Property " + name + " is longer than " + field.maxLength() + " characters");
+                }
+                assignments.put(field.column(), value.textValue());
+                properties.put(name, value.textValue());
+            } else if (field.type() == Long.class && value.canConvertToLong() && value.isIntegralNumber()) {
+                assignments.put(field.column(), value.longValue());
+                properties.put(name, value.longValue());
+            } else {
+                throw invalid.apply("Property " + name + " must be " +
+                        (field.type() == String.class ? "a string" : "an integer"));
+            }
+        }
+    }
+
+}
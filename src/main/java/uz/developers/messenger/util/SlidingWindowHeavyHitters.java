@@ -0,0 +1,168 @@
+package uz.developers.messenger.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate top-K over a sliding time window with exponential decay.
+ *
+ * Time is cut into fixed buckets kept in a ring; each bucket counts with its
+ * own {@link CountMinSketch} and keeps its top-K candidates in a size-K
+ * min-heap, so a newcomer only has to beat the weakest one. A ranking takes
+ * the union of the candidates of the live buckets, scores each key by its
+ * per-bucket estimates, halved every {@code halfLifeMillis} of bucket age,
+ * and keeps the best through a heap of the requested size. Expired buckets
+ * are replaced lazily when time reaches them.
+ */
+public class SlidingWindowHeavyHitters<K> {
+
+    private final long bucketMillis;
+
+    private final int sketchWidth;
+
+    private final int sketchDepth;
+
+    private final int capacity;
+
+    private final double halfLifeMillis;
+
+    private final ToLongFunction<K> hasher;
+
+    private final AtomicReferenceArray<Bucket<K>> buckets;
+
+    public SlidingWindowHeavyHitters(int bucketCount, long bucketMillis, int sketchWidth, int sketchDepth,
+                                     int capacity, long halfLifeMillis, ToLongFunction<K> hasher) {
+        this.bucketMillis = bucketMillis;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.capacity = capacity;
+        this.halfLifeMillis = halfLifeMillis;
+        this.hasher = hasher;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+
+    public void add(K key, long weight, long nowMillis) {
+        bucketFor(nowMillis / bucketMillis).add(key, hasher.applyAsLong(key), weight, capacity);
+    }
+
+
+    // Highest decayed scores first
+    public List<Map.Entry<K, Double>> top(int limit, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        List<Bucket<K>> live = new ArrayList<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket<K> bucket = buckets.get(i);
+            if (bucket != null && epoch - bucket.epoch < buckets.length()) {
+                live.add(bucket);
+            }
+        }
+
+        Map<K, Double> scores = new HashMap<>();
+        for (Bucket<K> bucket : live) {
+            for (K key : bucket.candidates.keySet()) {
+                scores.computeIfAbsent(key, k -> score(k, live, epoch));
+            }
+        }
+        PriorityQueue<Map.Entry<K, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<K, Double> entry : scores.entrySet()) {
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (limit > 0 && entry.getValue() > best.peek().getValue()) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+        List<Map.Entry<K, Double>> ranked = new ArrayList<>(best);
+        ranked.sort(Map.Entry.<K, Double>comparingByValue(Comparator.reverseOrder()));
+        return ranked;
+    }
+
+
+    private double score(K key, List<Bucket<K>> live, long epoch) {
+        long hash = hasher.applyAsLong(key);
+        double score = 0;
+        for (Bucket<K> bucket : live) {
+            double age = (epoch - bucket.epoch) * (double) bucketMillis;
+            score += bucket.sketch.estimate(hash) * Math.pow(0.5, age / halfLifeMillis);
+        }
+        return score;
+    }
+
+    private Bucket<K> bucketFor(long epoch) {
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            Bucket<K> bucket = buckets.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                return bucket;
+            }
+            Bucket<K> fresh = new Bucket<>(epoch, new CountMinSketch(sketchWidth, sketchDepth));
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+
+    private static final class Bucket<K> {
+
+        private final long epoch;
+
+        private final CountMinSketch sketch;
+
+        // key -> estimate when last seen; bounded by capacity
+        private final Map<K, Long> candidates = new ConcurrentHashMap<>();
+
+        // The same keys, weakest first; an entry's estimate may lag behind the map, never lead it
+        private final PriorityQueue<Candidate<K>> weakest = new PriorityQueue<>();
+
+        private volatile long floor;
+
+        private Bucket(long epoch, CountMinSketch sketch) {
+            this.epoch = epoch;
+            this.sketch = sketch;
+        }
+
+        private void add(K key, long hash, long weight, int capacity) {
+            long estimate = sketch.add(hash, weight);
+            // Known candidates update without locking; newcomers must beat the current floor
+            if (candidates.replace(key, estimate) != null || estimate <= floor) {
+                return;
+            }
+            synchronized (this) {
+                if (candidates.putIfAbsent(key, estimate) != null) {
+                    return;
+                }
+                weakest.add(new Candidate<>(key, estimate));
+                while (candidates.size() > capacity) {
+                    Candidate<K> candidate = weakest.poll();
+                    long current = candidates.get(candidate.key());
+                    if (current > candidate.estimate()) {
+                        // Grew since it was filed, file it again at its current estimate
+                        weakest.add(new Candidate<>(candidate.key(), current));
+                    } else {
+                        candidates.remove(candidate.key());
+                        floor = current;
+                    }
+                }
+            }
+        }
+    }
+
+
+    private record Candidate<K>(K key, long estimate) implements Comparable<Candidate<K>> {
+
+        @Override
+        public int compareTo(Candidate<K> other) {
+            return Long.compare(estimate, other.estimate);
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+-- Posts by date and comments by the date of their post, range partitioned by month, so
+-- queries about one post only read its month and old months can be archived (see
+-- ArchiveServiceImpl). A comment always lives in the month of its post.
+--
+-- The existing tables are not copied. They stay online while their new columns and keys
+-- are filled in and checked, then become the first partition of the new tables, posts_legacy
+-- and comment_legacy, holding everything before next month. Only that cut-over takes
+-- exclusive locks, and only for catalog changes. Months after it get partitions of their
+-- own; there is no default partition, so DETACH PARTITION CONCURRENTLY can archive them.
+--
+-- A primary key on a partitioned table has to include the partition key, so the keys become
+-- (id, date) and (id, post_date), and the foreign keys of comment follow them:
+-- comment (post_id, post_date) references posts (id, date), and within each comment
+-- partition (parent_id, post_date) references (id, post_date). Replies share the month of
+-- the comment they answer, so the parent key never has to cross partitions, which would stop
+-- a month from being detached.
+--
+-- Runs outside a transaction: the batches commit as they go and the indexes are built
+-- concurrently. A run that fails half-way is finished by hand before re-running.
+
+set lock_timeout = '10s';
+
+-- Every post gets a date, no later than today and no later than its first comment
+update posts p
+set date = least(current_date, (select min(c.created_at)::date from comment c where c.post_id = p.id))
+where p.date is null or p.date > current_date;
+
+alter table comment add column if not exists post_date date;
+
+-- Comments written while the column is filled in take it from their post
+create or replace function comment_post_date() returns trigger
+language plpgsql as $$
+begin
+    if new.post_date is null then
+        select p.date into new.post_date from posts p where p.id = new.post_id;
+    end if;
+    new.created_at := greatest(new.created_at, new.post_date);
+    return new;
+end
+$$;
+
+create or replace trigger comment_post_date before insert on comment
+    for each row execute function comment_post_date();
+
+-- In batches of 10000 comments, each committed on its own; a comment is never older than its post
+do $$
+declare
+    last_id  bigint := 0;
+    batch_id bigint;
+begin
+    loop
+        select max(id) into batch_id from (select id from comment where id > last_id order by id limit 10000) b;
+        exit when batch_id is null;
+        update comment c
+        set post_date  = p.date,
+            created_at = greatest(c.created_at, p.date)
+        from posts p
+        where p.id = c.post_id and c.id > last_id and c.id <= batch_id;
+        last_id := batch_id;
+        commit;
+    end loop;
+end
+$$;
+
+-- Checked without blocking writes, the checks let SET NOT NULL and ATTACH PARTITION skip their scans
+do $$
+declare
+    boundary date := (date_trunc('month', current_date) + interval '1 month')::date;
+begin
+    execute format('alter table posts add constraint posts_legacy_range ' ||
+                   'check (date is not null and date < %L) not valid', boundary);
+    execute format('alter table comment add constraint comment_legacy_range ' ||
+                   'check (post_date is not null and post_date < %L) not valid', boundary);
+end
+$$;
+
+alter table comment add constraint comment_created_after_post check (created_at >= post_date) not valid;
+
+alter table posts validate constraint posts_legacy_range;
+
+alter table comment validate constraint comment_legacy_range;
+
+alter table comment validate constraint comment_created_after_post;
+
+alter table posts alter column date set not null;
+
+alter table comment alter column post_date set not null;
+
+-- The primary keys to be
+create unique index concurrently if not exists posts_id_date_key on posts (id, date);
+
+create unique index concurrently if not exists comment_id_post_date_key on comment (id, post_date);
+
+-- A month of posts or comments; a month already covered by the legacy partition needs none
+create or replace function create_monthly_partition(parent regclass, month date) returns text
+language plpgsql as $$
+declare
+    name text := parent::text || '_y' || to_char(month, 'YYYY') || 'm' || to_char(month, 'MM');
+begin
+    if to_regclass(name) is not null then
+        return name;
+    end if;
+    execute format('create table %I partition of %s for values from (%L) to (%L)',
+                   name, parent, month, (month + interval '1 month')::date);
+    if parent = 'comment'::regclass then
+        execute format('alter table %I add constraint comment_parent_fkey foreign key (parent_id, post_date) ' ||
+                       'references %I (id, post_date)', name, name);
+    end if;
+    return name;
+exception
+    when invalid_object_definition then
+        return null;
+end
+$$;
+
+-- The cut-over, retried while other sessions hold the tables
+do $$
+declare
+    boundary     date;
+    old          record;
+    next_id      bigint;
+    next_post    bigint;
+    next_comment bigint;
+    legacy_index record;
+    month        date;
+begin
+    for attempt in 1..30 loop
+        begin
+            boundary := (date_trunc('month', current_date) + interval '1 month')::date;
+            lock table comment, posts in access exclusive mode;
+
+            alter table comment drop constraint if exists comment_post_id_fkey;
+            alter table comment drop constraint if exists comment_parent_id_fkey;
+            drop trigger comment_post_date on comment;
+
+            for old in select * from (values ('posts', 'date'), ('comment', 'post_date')) t (name, key) loop
+                execute format('select greatest(nextval(%L), coalesce(max(id), 0) + 1) from %I',
+                               pg_get_serial_sequence(old.name, 'id'), old.name) into next_id;
+                execute format('alter table %I drop constraint %I', old.name,
+                               (select conname from pg_constraint where conrelid = old.name::regclass and contype = 'p'));
+                execute format('alter table %I add constraint %I primary key using index %I',
+                               old.name, old.name || '_legacy_pkey', old.name || '_id_' || old.key || '_key');
+                execute format('alter table %I alter column id drop identity', old.name);
+                for legacy_index in select c.relname from pg_index i join pg_class c on c.oid = i.indexrelid
+                        where i.indrelid = old.name::regclass and c.relname like 'idx\_%' loop
+                    execute format('alter index %I rename to %I', legacy_index.relname,
+                                   regexp_replace(legacy_index.relname, '^idx_' || old.name, old.name || '_legacy'));
+                end loop;
+                execute format('alter table %I rename to %I', old.name, old.name || '_legacy');
+                if old.name = 'posts' then
+                    next_post := next_id;
+                else
+                    next_comment := next_id;
+                end if;
+            end loop;
+
+            create table posts (
+                id          bigint generated by default as identity,
+                post_title  varchar(100)  not null,
+                content     varchar(1000) not null,
+                image       varchar(255),
+                date        date          not null default current_date,
+                category_id bigint        not null references category (id),
+                user_id     bigint        not null references users (id),
+                primary key (id, date)
+            ) partition by range (date);
+
+            create table comment (
+                id         bigint       generated by default as identity,
+                user_name  varchar(20)  not null,
+                user_id    bigint       not null references users (id),
+                post_id    bigint       not null,
+                parent_id  bigint,
+                root_id    bigint,
+                path       varchar(192),
+                depth      integer      not null default 0,
+                created_at timestamp(6) not null default now(),
+                post_date  date         not null,
+                primary key (id, post_date),
+                constraint comment_created_after_post check (created_at >= post_date)
+            ) partition by range (post_date);
+
+            execute format('alter table posts attach partition posts_legacy for values from (minvalue) to (%L)', boundary);
+            execute format('alter table comment attach partition comment_legacy for values from (minvalue) to (%L)', boundary);
+            alter table posts_legacy drop constraint posts_legacy_range;
+            alter table comment_legacy drop constraint comment_legacy_range;
+
+            perform setval(pg_get_serial_sequence('posts', 'id'), next_post, false);
+            perform setval(pg_get_serial_sequence('comment', 'id'), next_comment, false);
+
+            -- Up to three months ahead; ArchiveServiceImpl keeps adding months
+            for month in select generate_series(boundary, date_trunc('month', current_date) + interval '3 months',
+                                                interval '1 month')::date loop
+                perform create_monthly_partition('posts', month);
+                perform create_monthly_partition('comment', month);
+            end loop;
+            return;
+        exception
+            when lock_not_available then
+                if attempt = 30 then
+                    raise;
+                end if;
+                perform pg_sleep(1);
+        end;
+    end loop;
+end
+$$;
+
+drop function comment_post_date();
+
+-- The indexes of V4 and V7 on the new tables; the legacy partitions already have them
+create index if not exists idx_posts_category_id on posts (category_id, id);
+create index if not exists idx_posts_user_id on posts (user_id, id);
+create index if not exists idx_posts_post_title on posts (post_title);
+create index if not exists idx_posts_content on posts (content);
+create index if not exists idx_posts_post_title_trgm on posts using gin (post_title gin_trgm_ops);
+create index if not exists idx_posts_content_trgm on posts using gin (content gin_trgm_ops);
+create index if not exists idx_posts_date on posts (date);
+
+create index if not exists idx_comment_post_id on comment (post_id, id);
+create index if not exists idx_comment_post_depth on comment (post_id, depth, id);
+create index if not exists idx_comment_post_path on comment (post_id, path);
+create index if not exists idx_comment_root_path on comment (root_id, path);
+create index if not exists idx_comment_parent_id on comment (parent_id);
+create index if not exists idx_comment_user_id on comment (user_id);
+create index if not exists idx_comment_user_name on comment (user_name);
+create index if not exists idx_comment_created_at on comment (created_at);
+
+-- Foreign keys, checked on the legacy partition without blocking writes first; on the
+-- partitioned table they then take over that check and only look at the new months
+alter table comment_legacy add constraint comment_post_fkey
+    foreign key (post_id, post_date) references posts (id, date) not valid;
+
+alter table comment_legacy validate constraint comment_post_fkey;
+
+alter table comment add constraint comment_post_fkey
+    foreign key (post_id, post_date) references posts (id, date);
+
+alter table comment_legacy add constraint comment_parent_fkey
+    foreign key (parent_id, post_date) references comment_legacy (id, post_date) not valid;
+
+alter table comment_legacy validate constraint comment_parent_fkey;
+
+reset lock_timeout;
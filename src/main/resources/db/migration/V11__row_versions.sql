@@ -0,0 +1,11 @@
+-- Row versions for optimistic concurrency. JPA bumps them through @Version and merge
+-- patches bump them in their UPDATE, which only applies to the version the client read.
+-- A constant default only touches the catalog, so existing rows are not rewritten.
+
+alter table posts add column if not exists version bigint not null default 0;
+
+alter table comment add column if not exists version bigint not null default 0;
+
+alter table users add column if not exists version bigint not null default 0;
+
+alter table category add column if not exists version bigint not null default 0;
@@ -0,0 +1,21 @@
+-- Materialized paths are compared byte by byte. Under a linguistic default collation the
+-- order of the paths, and of the prefix ranges that select a subtree, is up to the locale,
+-- so the path indexes and the queries on them use COLLATE "C". The column keeps its
+-- collation; changing it would rebuild every partition's indexes under an exclusive lock.
+
+set lock_timeout = '10s';
+
+-- Built on the legacy partition without blocking writes, then attached by the indexes on comment
+create index concurrently if not exists comment_legacy_post_path_c on comment_legacy (post_id, path collate "C");
+create index concurrently if not exists comment_legacy_root_path_c on comment_legacy (root_id, path collate "C");
+
+-- CommentRepository.findByPostId
+create index if not exists idx_comment_post_path_c on comment (post_id, path collate "C");
+
+-- CommentRepository.findSubtree, findThreads, lockSubtree, deleteSubtree
+create index if not exists idx_comment_root_path_c on comment (root_id, path collate "C");
+
+drop index if exists idx_comment_post_path;
+drop index if exists idx_comment_root_path;
+
+reset lock_timeout;
@@ -0,0 +1,16 @@
+-- An index entry has to fit in a third of a page, about 2700 bytes, and content holds up to
+-- 1000 characters of up to 4 bytes each, so a btree on content turns long posts away.
+-- Equality checks go through the MD5 of the content instead and compare the content itself
+-- only on the rows it finds.
+
+set lock_timeout = '10s';
+
+-- Built on the legacy partition without blocking writes, then attached by the index on posts
+create index concurrently if not exists posts_legacy_content_md5 on posts_legacy (md5(content));
+
+-- PostRepository.existsByContent, existsByTitleOrContent
+create index if not exists idx_posts_content_md5 on posts (md5(content));
+
+drop index if exists idx_posts_content;
+
+reset lock_timeout;
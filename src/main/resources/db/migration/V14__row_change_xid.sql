@@ -0,0 +1,35 @@
+-- The transaction that last wrote each post and comment, so the analytics export can find
+-- the days that changed since its previous run (see AnalyticsExportServiceImpl). Row
+-- versions count per row and cannot tell that. A default of pg_current_xact_id() would
+-- rewrite both tables; a trigger fills the column in instead, and rows written before this
+-- migration are left without one, for the first full export to cover.
+
+set lock_timeout = '10s';
+
+alter table posts add column if not exists changed_xid xid8;
+
+alter table comment add column if not exists changed_xid xid8;
+
+create or replace function set_changed_xid() returns trigger
+language plpgsql as $$
+begin
+    new.changed_xid := pg_current_xact_id();
+    return new;
+end
+$$;
+
+create or replace trigger posts_changed_xid before insert or update on posts
+    for each row execute function set_changed_xid();
+
+create or replace trigger comment_changed_xid before insert or update on comment
+    for each row execute function set_changed_xid();
+
+-- Built on the legacy partitions without blocking writes, then attached by the indexes on the tables
+create index concurrently if not exists posts_legacy_changed_xid on posts_legacy (changed_xid);
+create index concurrently if not exists comment_legacy_changed_xid on comment_legacy (changed_xid);
+
+-- AnalyticsExportServiceImpl, the days changed since the previous export
+create index if not exists idx_posts_changed_xid on posts (changed_xid);
+create index if not exists idx_comment_changed_xid on comment (changed_xid);
+
+reset lock_timeout;
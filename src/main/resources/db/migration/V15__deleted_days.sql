@@ -0,0 +1,44 @@
+-- Days that lost posts or comments, with the transaction that removed them, so the analytics
+-- export rewrites those days as well (see AnalyticsExportServiceImpl): a deleted row leaves no
+-- changed_xid behind. Posts count under their date and comments under the day they were
+-- created, as the export lays them out. An update counts too, since it may move a post to
+-- another date. Statement-level triggers record each day once per statement, however many
+-- rows it touches. Partitions that are archived are dropped or emptied directly, which no
+-- trigger on the tables sees; the archive records their days itself.
+
+set lock_timeout = '10s';
+
+create table if not exists deleted_days (
+    table_name  varchar(16) not null,
+    day         date,
+    deleted_xid xid8        not null default pg_current_xact_id()
+);
+
+create index if not exists deleted_days_deleted_xid_idx on deleted_days (deleted_xid);
+
+create or replace function record_post_days() returns trigger
+language plpgsql as $$
+begin
+    insert into deleted_days (table_name, day) select distinct 'posts', date from old_rows;
+    return null;
+end
+$$;
+
+create or replace function record_comment_days() returns trigger
+language plpgsql as $$
+begin
+    insert into deleted_days (table_name, day) select distinct 'comment', created_at::date from old_rows;
+    return null;
+end
+$$;
+
+create or replace trigger posts_deleted_days after delete on posts
+    referencing old table as old_rows for each statement execute function record_post_days();
+
+create or replace trigger posts_updated_days after update on posts
+    referencing old table as old_rows for each statement execute function record_post_days();
+
+create or replace trigger comment_deleted_days after delete on comment
+    referencing old table as old_rows for each statement execute function record_comment_days();
+
+reset lock_timeout;
@@ -0,0 +1,33 @@
+-- Baseline schema, matching what hibernate ddl-auto=update used to create.
+-- Existing databases are baselined at this version and skip this script.
+
+create table if not exists users (
+    id            bigint generated by default as identity primary key,
+    user_name     varchar(20)  not null,
+    user_email    varchar(30)  not null unique,
+    user_password varchar(50)  not null,
+    about         varchar(100)
+);
+
+create table if not exists category (
+    id          bigint generated by default as identity primary key,
+    name        varchar(20) not null,
+    description varchar(40) not null
+);
+
+create table if not exists posts (
+    id          bigint generated by default as identity primary key,
+    post_title  varchar(100)  not null,
+    content     varchar(1000) not null,
+    image       varchar(255),
+    date        date,
+    category_id bigint not null references category (id),
+    user_id     bigint not null references users (id)
+);
+
+create table if not exists comment (
+    id        bigint generated by default as identity primary key,
+    user_name varchar(20) not null,
+    user_id   bigint not null references users (id),
+    post_id   bigint not null references posts (id)
+);
@@ -0,0 +1,55 @@
+-- Comments form threads: every comment knows its parent, the top-level comment of its
+-- thread, and its materialized path (see CommentServiceImpl).
+alter table comment add column if not exists parent_id bigint references comment (id);
+alter table comment add column if not exists root_id bigint;
+alter table comment add column if not exists path varchar(192);
+alter table comment add column if not exists depth integer default 0 not null;
+
+create table if not exists user_follows (
+    id          bigint generated by default as identity primary key,
+    follower_id bigint not null references users (id),
+    followee_id bigint not null references users (id),
+    unique (follower_id, followee_id)
+);
+
+create table if not exists reaction_snapshot (
+    id             bigint generated by default as identity primary key,
+    target_type    varchar(10) not null check (target_type in ('POST', 'COMMENT')),
+    target_id      bigint not null,
+    reaction_type  varchar(10) not null check (reaction_type in ('LIKE', 'LOVE', 'HAHA', 'WOW', 'SAD', 'ANGRY')),
+    user_bitmap    bytea not null,
+    reaction_count bigint not null,
+    updated_at     timestamp(6) not null,
+    unique (target_type, target_id, reaction_type)
+);
+
+create table if not exists post_stats (
+    post_id           bigint primary key,
+    view_count        bigint not null,
+    comment_count     bigint not null,
+    reaction_count    bigint not null,
+    unique_viewers    bytea,
+    unique_commenters bytea,
+    updated_at        timestamp(6) not null
+);
+
+-- Comments written before threading become top-level comments of their own thread.
+update comment
+set root_id = id,
+    path    = lpad(to_hex(id), 12, '0'),
+    depth   = 0
+where path is null;
+
+-- Counters kept in post_stats start from the rows that already exist.
+insert into post_stats (post_id, view_count, comment_count, reaction_count, updated_at)
+select p.id,
+       0,
+       (select count(*) from comment c where c.post_id = p.id),
+       coalesce((select sum(r.reaction_count) from reaction_snapshot r
+                 where r.target_type = 'POST' and r.target_id = p.id), 0),
+       now()
+from posts p
+on conflict (post_id) do update set
+    comment_count  = excluded.comment_count,
+    reaction_count = excluded.reaction_count,
+    updated_at     = excluded.updated_at;
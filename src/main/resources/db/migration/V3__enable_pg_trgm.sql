@@ -0,0 +1,2 @@
+-- Trigram indexes back the '%keyword%' post search.
+create extension if not exists pg_trgm;
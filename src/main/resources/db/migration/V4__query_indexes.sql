@@ -0,0 +1,47 @@
+-- One index per repository query shape. Built concurrently so the tables stay
+-- writable while a large production table is indexed; a build that fails half-way
+-- leaves an INVALID index behind that must be dropped before re-running.
+
+-- PostRepository.findByCategoryId, trending per category
+create index concurrently if not exists idx_posts_category_id on posts (category_id, id);
+
+-- PostRepository.findByUserId, findRecentIdsByUserId, findRecentIdsFollowedBy
+create index concurrently if not exists idx_posts_user_id on posts (user_id, id);
+
+-- PostRepository.existsByTitle, existsByTitleOrContent
+create index concurrently if not exists idx_posts_post_title on posts (post_title);
+
+-- PostRepository.existsByContent, existsByTitleOrContent
+create index concurrently if not exists idx_posts_content on posts (content);
+
+-- PostRepository.searchByTitleOrContent
+create index concurrently if not exists idx_posts_post_title_trgm on posts using gin (post_title gin_trgm_ops);
+create index concurrently if not exists idx_posts_content_trgm on posts using gin (content gin_trgm_ops);
+
+-- CommentRepository.findPageAfter, findPageBefore
+create index concurrently if not exists idx_comment_post_id on comment (post_id, id);
+
+-- CommentRepository.findThreads (top-level comments of a post)
+create index concurrently if not exists idx_comment_post_depth on comment (post_id, depth, id);
+
+-- CommentRepository.findByPostId (whole post in reading order)
+create index concurrently if not exists idx_comment_post_path on comment (post_id, path);
+
+-- CommentRepository.findSubtree, findThreads, deleteSubtree
+create index concurrently if not exists idx_comment_root_path on comment (root_id, path);
+
+-- Foreign key checks when a comment or a user is deleted
+create index concurrently if not exists idx_comment_parent_id on comment (parent_id);
+create index concurrently if not exists idx_comment_user_id on comment (user_id);
+
+-- CommentRepository.existsByContent
+create index concurrently if not exists idx_comment_user_name on comment (user_name);
+
+-- UserRepository.existsByName (existsByEmail uses the unique constraint on user_email)
+create index concurrently if not exists idx_users_user_name on users (user_name);
+
+-- CategoryRepository.existsByTitle
+create index concurrently if not exists idx_category_name on category (name);
+
+-- Follower lists (existsByFollowerIdAndFolloweeId uses the unique constraint)
+create index concurrently if not exists idx_user_follows_followee_id on user_follows (followee_id, follower_id);
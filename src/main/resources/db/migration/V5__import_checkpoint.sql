@@ -0,0 +1,10 @@
+-- Chunks loaded by the bulk import, written in the same transaction as the chunk
+-- itself so a resumed job skips exactly the chunks that were committed.
+create table if not exists import_checkpoint (
+    job_id        varchar(100) not null,
+    target        varchar(20)  not null,
+    chunk_no      integer      not null,
+    rows_imported integer      not null,
+    created_at    timestamp(6) not null default now(),
+    primary key (job_id, target, chunk_no)
+);
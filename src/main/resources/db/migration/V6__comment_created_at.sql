@@ -0,0 +1,11 @@
+-- Comments had no timestamp of their own; older ones take the date of their post.
+alter table comment add column if not exists created_at timestamp(6);
+
+update comment c
+set created_at = coalesce(p.date, now())
+from posts p
+where p.id = c.post_id
+  and c.created_at is null;
+
+alter table comment alter column created_at set default now();
+alter table comment alter column created_at set not null;
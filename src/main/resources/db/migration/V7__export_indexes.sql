@@ -0,0 +1,4 @@
+-- Day-by-day reads of the analytics export.
+create index concurrently if not exists idx_posts_date on posts (date);
+create index concurrently if not exists idx_comment_created_at on comment (created_at);
+create index concurrently if not exists idx_post_stats_updated_at on post_stats (updated_at);
@@ -0,0 +1,15 @@
+-- Changes to posts, comments, users and categories, written in the same transaction as
+-- the change itself. Every node reads them to keep its local caches up to date; tx is the
+-- writing transaction, so readers can tell which rows may still be about to appear.
+create table if not exists outbox (
+    id           bigint generated by default as identity primary key,
+    tx           xid8         not null default pg_current_xact_id(),
+    event_type   varchar(30)  not null,
+    aggregate_id bigint       not null,
+    user_id      bigint,
+    created_at   timestamp(6) not null default now()
+);
+
+create index if not exists outbox_tx_idx on outbox (tx);
+
+create index if not exists outbox_created_at_idx on outbox (created_at);
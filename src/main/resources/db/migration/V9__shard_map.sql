@@ -0,0 +1,8 @@
+-- Which shard database holds each bucket of posts and comments (see ShardRouter).
+-- Filled on first start with sharding enabled and changed by the rebalance tool;
+-- writes to a bucket are refused while it is moving.
+create table if not exists shard_map (
+    bucket integer primary key,
+    shard  integer not null,
+    moving boolean not null default false
+);
@@ -0,0 +1,59 @@
+-- Schema of a shard database. Posts live on the shard of their author's bucket and
+-- comments next to their post; users and categories stay in the main database, so
+-- their IDs are plain columns here.
+--
+-- IDs are handed out by the application as sequence * buckets + bucket. The sequences
+-- of all shards step by the same amount from different starts, so IDs never collide,
+-- not even after a bucket moves to another shard.
+create sequence if not exists post_seq start with ${sequence_start} increment by ${sequence_step};
+
+create sequence if not exists comment_seq start with ${sequence_start} increment by ${sequence_step};
+
+create extension if not exists pg_trgm;
+
+create table if not exists posts (
+    id          bigint primary key,
+    bucket      integer not null,
+    post_title  varchar(100)  not null,
+    content     varchar(1000) not null,
+    image       varchar(255),
+    date        date,
+    category_id bigint not null,
+    user_id     bigint not null
+);
+
+create table if not exists comment (
+    id         bigint primary key,
+    bucket     integer not null,
+    user_name  varchar(20) not null,
+    user_id    bigint not null,
+    post_id    bigint not null references posts (id) on delete cascade,
+    parent_id  bigint references comment (id) on delete cascade,
+    root_id    bigint,
+    path       varchar(192),
+    depth      integer default 0 not null,
+    created_at timestamp(6) not null default now()
+);
+
+-- Rows of one bucket, for the rebalance tool
+create index if not exists idx_posts_bucket on posts (bucket, id);
+
+create index if not exists idx_comment_bucket on comment (bucket, depth, id);
+
+create index if not exists idx_posts_user_id on posts (user_id, id);
+
+create index if not exists idx_posts_category_date on posts (category_id, date desc, id desc);
+
+create index if not exists idx_posts_date on posts (date desc, id desc);
+
+create index if not exists idx_posts_post_title_trgm on posts using gin (post_title gin_trgm_ops);
+
+create index if not exists idx_posts_content_trgm on posts using gin (content gin_trgm_ops);
+
+create index if not exists idx_comment_post_path on comment (post_id, path);
+
+create index if not exists idx_comment_root_path on comment (root_id, path);
+
+create index if not exists idx_comment_parent_id on comment (parent_id);
+
+create index if not exists idx_comment_user_id on comment (user_id, id);
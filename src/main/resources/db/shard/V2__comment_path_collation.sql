@@ -0,0 +1,3 @@
+-- Materialized paths are compared byte by byte, whatever the collation of the shard's
+-- database. Only the path indexes are rebuilt; the rows keep their place.
+alter table comment alter column path type varchar(192) collate "C";
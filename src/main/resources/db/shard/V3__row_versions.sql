@@ -0,0 +1,8 @@
+-- Versions for conditional patches (If-Match), as in the main database. Existing rows
+-- start at 0; a constant default does not rewrite the tables.
+alter table posts add column if not exists version bigint not null default 0;
+
+alter table comment add column if not exists version bigint not null default 0;
+
+-- Pages of a post's comments, by ID
+create index if not exists idx_comment_post_id on comment (post_id, id);
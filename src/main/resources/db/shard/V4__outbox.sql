@@ -0,0 +1,14 @@
+-- Changes to the posts and comments of this shard, written in the same transaction as the
+-- change itself and read by every node like the outbox of the main database (see OutboxRelay).
+create table if not exists outbox (
+    id           bigint generated by default as identity primary key,
+    tx           xid8         not null default pg_current_xact_id(),
+    event_type   varchar(30)  not null,
+    aggregate_id bigint       not null,
+    user_id      bigint,
+    created_at   timestamp(6) not null default now()
+);
+
+create index if not exists outbox_tx_idx on outbox (tx);
+
+create index if not exists outbox_created_at_idx on outbox (created_at);
@@ -0,0 +1,156 @@
+package uz.developers.messenger.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares throughput and tail latency of running instances of the application,
+ * typically one started normally and one with the {@code virtual} profile:
+ * <pre>
+ * java -jar app.jar --server.port=8080
+ * java -jar app.jar --server.port=8081 --spring.profiles.active=virtual
+ * mvn test -Dtest=RequestLoadTest -Dloadtest.targets=platform=http://localhost:8080,virtual=http://localhost:8081
+ * </pre>
+ * The reactive read API of the {@code reactive} profile is compared the same way, against
+ * its own port: {@code -Dloadtest.targets=servlet=http://localhost:8080,reactive=http://localhost:8081}.
+ * Both instances should use the same, seeded database (see the datagen profile) and are
+ * measured one after the other. Each concurrency level runs a closed loop: every client sends
+ * its next request as soon as the previous one is answered, picking a random path from
+ * {@code loadtest.paths}. Paths may contain {@code {id}}, replaced by a random ID up to
+ * {@code loadtest.max-id}. Results are printed as a table per concurrency level.
+ */
+@EnabledIfSystemProperty(named = "loadtest.targets", matches = ".+")
+class RequestLoadTest {
+
+    private static final String PATHS = System.getProperty("loadtest.paths",
+            "/api/posts/{id},/api/comments/posts/{id}?limit=20,/api/comments/{id}/thread,/api/users/{id}");
+
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("loadtest.concurrency", "50,200,1000")
+            .split(",")).mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+
+    private static final long MAX_ID = Long.getLong("loadtest.max-id", 10_000);
+
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10));
+
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30));
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("loadtest.timeout-seconds", 30));
+
+
+    @Test
+    void compareTargets() throws Exception {
+        Map<String, URI> targets = targets(System.getProperty("loadtest.targets"));
+        List<String> paths = Arrays.stream(PATHS.split(",")).map(String::trim).toList();
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        for (int concurrency : CONCURRENCY) {
+            System.out.printf("%nconcurrency %d, %d s after %d s warmup%n", concurrency,
+                    DURATION.toSeconds(), WARMUP.toSeconds());
+            System.out.printf("%-12s %10s %8s %9s %9s %9s %9s %9s%n",
+                    "target", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Map.Entry<String, URI> target : targets.entrySet()) {
+                run(client, target.getValue(), paths, concurrency, WARMUP);
+                Result result = run(client, target.getValue(), paths, concurrency, DURATION);
+                System.out.printf("%-12s %10.1f %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", target.getKey(),
+                        result.throughput(), result.errors(), result.percentile(0.50), result.percentile(0.90),
+                        result.percentile(0.99), result.percentile(0.999), result.percentile(1.0));
+                assertTrue(result.latencies().length > 0, "No request to " + target.getKey() + " completed");
+            }
+        }
+    }
+
+
+    private static Result run(HttpClient client, URI base, List<String> paths, int concurrency, Duration duration)
+            throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> clients = new ArrayList<>(concurrency);
+
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                clients.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        String path = paths.get(random.nextInt(paths.size()))
+                                .replace("{id}", Long.toString(random.nextLong(1, MAX_ID + 1)));
+                        HttpRequest request = HttpRequest.newBuilder(base.resolve(path)).timeout(TIMEOUT).GET().build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            // Not found is an answer too; random IDs may point at missing rows
+                            if (response.statusCode() >= 500) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - sent;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        List<long[]> perClient = new ArrayList<>(concurrency);
+        for (Future<long[]> future : clients) {
+            perClient.add(future.get());
+        }
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, errors.get(), all.length / seconds);
+    }
+
+    private static Map<String, URI> targets(String value) {
+        Map<String, URI> targets = new LinkedHashMap<>();
+        for (String target : value.split(",")) {
+            String[] parts = target.trim().split("=", 2);
+            String url = parts.length == 2 ? parts[1] : parts[0];
+            targets.put(parts.length == 2 ? parts[0] : url, URI.create(url));
+        }
+        return targets;
+    }
+
+
+    private record Result(long[] latencies, long errors, double throughput) {
+
+        double percentile(double p) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+}
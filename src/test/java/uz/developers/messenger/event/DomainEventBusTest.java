@@ -0,0 +1,223 @@
+package uz.developers.messenger.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class DomainEventBusTest {
+
+    private DomainEventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null && bus.isRunning()) {
+            bus.stop();
+        }
+    }
+
+    @Test
+    void aFullRingHoldsTheProducerBackUntilTheHandlerCatchesUp() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(sequence -> {
+            if (sequence == 0) {
+                entered.countDown();
+                release.await();
+            }
+        });
+        bus = start(4, handler);
+
+        Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 1; i <= 10; i++) {
+                publish(i, 0);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        producer.join(200);
+
+        // The handler holds sequence 0, so the producer waits to reuse its slot
+        assertTrue(producer.isAlive());
+        assertEquals(1, handler.entityIds().size());
+
+        release.countDown();
+        producer.join(5_000);
+        handler.awaitEvents(10);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), handler.entityIds());
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), handler.sequences());
+    }
+
+    @Test
+    void everyProducerKeepsItsOwnOrder() throws Exception {
+        RecordingHandler handler = new RecordingHandler(sequence -> {
+        });
+        bus = start(64, handler);
+
+        int producers = 4;
+        int perProducer = 2_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 1; p <= producers; p++) {
+            long userId = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    publish(i, userId);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        handler.awaitEvents(producers * perProducer);
+
+        long[] last = new long[producers + 1];
+        List<DomainEventCopy> events = handler.events();
+        for (int i = 0; i < events.size(); i++) {
+            DomainEventCopy event = events.get(i);
+            assertEquals(i, event.sequence());
+            assertEquals(last[(int) event.userId()] + 1, event.entityId());
+            last[(int) event.userId()] = event.entityId();
+        }
+        for (int p = 1; p <= producers; p++) {
+            assertEquals(perProducer, last[p]);
+        }
+    }
+
+    @Test
+    void eventsPublishedWhileTheHandlerIsBusyArriveAsOneBatch() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(sequence -> {
+            if (sequence == 0) {
+                entered.countDown();
+                release.await();
+            }
+        });
+        bus = start(16, handler);
+
+        publish(1, 0);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 6; i++) {
+            publish(i, 0);
+        }
+        release.countDown();
+        handler.awaitEvents(6);
+
+        assertEquals(List.of(true, false, false, false, false, true), handler.endsOfBatch());
+    }
+
+    @Test
+    void aHandlerThatThrowsAnErrorMovesOnToTheNextEvent() throws Exception {
+        RecordingHandler handler = new RecordingHandler(sequence -> {
+            if (sequence == 0) {
+                throw new StackOverflowError();
+            }
+        });
+        bus = start(4, handler);
+
+        for (int i = 1; i <= 8; i++) {
+            publish(i, 0);
+        }
+        handler.awaitEvents(8);
+        bus.stop();
+
+        assertEquals(0, bus.getBacklog());
+    }
+
+    @Test
+    void stopDrainsWhatWasPublishedAndDropsTheRest() throws Exception {
+        RecordingHandler handler = new RecordingHandler(sequence -> Thread.sleep(1));
+        bus = start(128, handler);
+
+        for (int i = 1; i <= 100; i++) {
+            publish(i, 0);
+        }
+        bus.stop();
+
+        assertFalse(bus.isRunning());
+        assertEquals(100, handler.entityIds().size());
+
+        publish(101, 0);
+        assertEquals(100, handler.entityIds().size());
+    }
+
+
+    private DomainEventBus start(int ringSize, DomainEventHandler handler) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<DomainEventHandler> handlers = Mockito.mock(ObjectProvider.class);
+        when(handlers.orderedStream()).thenAnswer(invocation -> Stream.of(handler));
+        DomainEventBus eventBus = new DomainEventBus(handlers, ringSize, 10);
+        eventBus.start();
+        return eventBus;
+    }
+
+    private void publish(long entityId, long userId) {
+        bus.publish(DomainEventType.POST_CREATED, entityId, entityId, userId, 0, 0, null, null);
+    }
+
+
+    private interface Step {
+
+        void run(long sequence) throws Exception;
+    }
+
+    private record DomainEventCopy(long sequence, long entityId, long userId, boolean endOfBatch) {
+    }
+
+    // Copies what it sees, since the ring reuses its slots
+    private static class RecordingHandler implements DomainEventHandler {
+
+        private final Step step;
+
+        private final List<DomainEventCopy> events = new ArrayList<>();
+
+        private RecordingHandler(Step step) {
+            this.step = step;
+        }
+
+        @Override
+        public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) throws Exception {
+            synchronized (this) {
+                events.add(new DomainEventCopy(sequence, event.getEntityId(), event.getUserId(), endOfBatch));
+                notifyAll();
+            }
+            step.run(sequence);
+        }
+
+        synchronized void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                wait(100);
+            }
+            assertEquals(count, events.size());
+        }
+
+        synchronized List<DomainEventCopy> events() {
+            return List.copyOf(events);
+        }
+
+        List<Long> entityIds() {
+            return events().stream().map(DomainEventCopy::entityId).toList();
+        }
+
+        List<Long> sequences() {
+            return events().stream().map(DomainEventCopy::sequence).toList();
+        }
+
+        List<Boolean> endsOfBatch() {
+            return events().stream().map(DomainEventCopy::endOfBatch).toList();
+        }
+    }
+
+}
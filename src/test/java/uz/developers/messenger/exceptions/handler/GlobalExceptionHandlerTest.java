@@ -0,0 +1,45 @@
+package uz.developers.messenger.exceptions.handler;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import uz.developers.messenger.payload.CustomApiResponse;
+import uz.developers.messenger.payload.UserDto;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @Test
+    void invalidRequestBodyIsABadRequestWithTheMessageOfEachField() throws Exception {
+        UserDto user = new UserDto(null, "Name", "not an email", "x", null, null);
+        BeanPropertyBindingResult result = new BeanPropertyBindingResult(user, "userDto");
+        new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator()).validate(user, result);
+        MethodParameter parameter = new MethodParameter(
+                GlobalExceptionHandlerTest.class.getDeclaredMethod("createUser", UserDto.class), 0);
+
+        ResponseEntity<CustomApiResponse<Map<String, String>>> response =
+                handler.handleMethodArgsNotValidException(new MethodArgumentNotValidException(parameter, result));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertFalse(response.getBody().isSuccess());
+        assertEquals(Map.of("email", "Email should be valid",
+                        "password", "Password must be min of 3 chars and max of 10 chars !!"),
+                response.getBody().getData());
+    }
+
+    @SuppressWarnings("unused")
+    private void createUser(UserDto userDto) {
+    }
+
+}
@@ -0,0 +1,101 @@
+package uz.developers.messenger.outbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.developers.messenger.event.DomainEventType;
+import uz.developers.messenger.sharding.Shard;
+import uz.developers.messenger.sharding.ShardRouter;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OutboxWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    private final OutboxWriter outboxWriter = new OutboxWriter(jdbcTemplate, Mockito.mock(ObjectProvider.class));
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void aTransactionNotifiesOnceBeforeItCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        for (long id = 1; id <= 3; id++) {
+            outboxWriter.record(DomainEventType.COMMENTS_DELETED, id, 0);
+        }
+        verify(jdbcTemplate, times(3)).update(anyString(), any(), any(), any());
+        verify(jdbcTemplate, never()).execute(anyString());
+
+        complete();
+        verify(jdbcTemplate, times(1)).execute("notify outbox");
+
+        // The next transaction gets a notification of its own
+        TransactionSynchronizationManager.initSynchronization();
+        outboxWriter.record(DomainEventType.USER_DELETED, 1, 1);
+        complete();
+        verify(jdbcTemplate, times(2)).execute("notify outbox");
+    }
+
+    @Test
+    void withoutATransactionEveryChangeNotifies() {
+        outboxWriter.record(DomainEventType.USER_DELETED, 1, 1);
+        outboxWriter.record(DomainEventType.USER_DELETED, 2, 2);
+
+        verify(jdbcTemplate, times(2)).execute("notify outbox");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aChangeWrittenOnAShardIsRecordedInItsOutbox() {
+        DataSource shardDataSource = Mockito.mock(DataSource.class);
+        JdbcTemplate shardTemplate = Mockito.mock(JdbcTemplate.class);
+        Mockito.when(shardTemplate.getDataSource()).thenReturn(shardDataSource);
+        ShardRouter router = Mockito.mock(ShardRouter.class);
+        Mockito.when(router.getShards()).thenReturn(List.of(new Shard(0, "jdbc:shard0", shardTemplate, null)));
+        ObjectProvider<ShardRouter> routerProvider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(routerProvider.getIfAvailable()).thenReturn(router);
+        OutboxWriter shardedWriter = new OutboxWriter(jdbcTemplate, routerProvider);
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.bindResource(shardDataSource, new Object());
+        try {
+            shardedWriter.record(DomainEventType.POST_CREATED, 7, 1);
+            complete();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(shardDataSource);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        verify(shardTemplate).update(anyString(), any(), any(), any());
+        verify(shardTemplate).execute("notify outbox");
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any());
+    }
+
+    private static void complete() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+}
@@ -0,0 +1,28 @@
+package uz.developers.messenger.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.server.ServerWebInputException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ServerResponsesTest {
+
+    @Test
+    void queryIntFallsBackToItsDefault() {
+        assertEquals(20, ServerResponses.queryInt(MockServerRequest.builder().build(), "limit", 20));
+        assertEquals(5, ServerResponses.queryInt(MockServerRequest.builder().queryParam("limit", "5").build(), "limit", 20));
+    }
+
+    // A value beyond int is a bad request, not an ArithmeticException answered with 500
+    @Test
+    void queryIntRejectsValuesOutOfRange() {
+        MockServerRequest request = MockServerRequest.builder().queryParam("limit", "99999999999").build();
+
+        assertThrows(ServerWebInputException.class, () -> ServerResponses.queryInt(request, "limit", 20));
+        assertThrows(ServerWebInputException.class, () -> ServerResponses.queryInt(
+                MockServerRequest.builder().queryParam("limit", "ten").build(), "limit", 20));
+    }
+
+}
@@ -0,0 +1,477 @@
+package uz.developers.messenger.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Entity;
+import org.flywaydb.core.Flyway;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs every {@link Query} of the repositories through {@code EXPLAIN (ANALYZE, BUFFERS)}
+ * against a seeded PostgreSQL database and fails when a plan scans a large table
+ * sequentially or touches more buffers than its budget. Native queries are explained as
+ * written; JPQL queries are handed to Hibernate, and the SQL it prepares for them is
+ * explained in place of being run.
+ *
+ * The test needs a dedicated, disposable database and only runs when one is given:
+ * <pre>
+ * mvn test -Dtest=QueryPlanTest -Dqueryplan.url=jdbc:postgresql://localhost:5432/queryplan
+ * </pre>
+ * The schema is created with the Flyway migrations and seeded once; later runs reuse the data.
+ * Sizes and budgets can be changed with the {@code queryplan.*} system properties read below.
+ */
+@EnabledIfSystemProperty(named = "queryplan.url", matches = ".+")
+class QueryPlanTest {
+
+    private static final String REPOSITORY_PACKAGE = "uz.developers.messenger.repository";
+    private static final String ENTITY_PACKAGE = "uz.developers.messenger.entity";
+
+    private static final int USERS = Integer.getInteger("queryplan.users", 100_000);
+    private static final int CATEGORIES = Integer.getInteger("queryplan.categories", 50);
+    private static final int POSTS = Integer.getInteger("queryplan.posts", 300_000);
+    private static final int COMMENTS = Integer.getInteger("queryplan.comments", 1_000_000);
+    private static final int FOLLOWS = Integer.getInteger("queryplan.follows", 1_000_000);
+
+    // Tables estimated at or below this many rows may be scanned sequentially
+    private static final long SEQ_SCAN_ROWS = Long.getLong("queryplan.seq-scan-rows", 1_000);
+
+    private static final long DEFAULT_BUFFER_BUDGET = Long.getLong("queryplan.buffer-budget", 1_000);
+
+    // Full-table exports read every row by design; their plans only have to run
+    private static final Set<String> FULL_SCANS = Set.of(
+            "CommentRepository.streamAllForExport",
+            "PostRepository.streamAll"
+    );
+
+    // Queries that return every row of a post, user or category, or search the text
+    private static final Map<String, Long> BUFFER_BUDGETS = Map.of(
+            "PostRepository.findByCategoryId", 20_000L,
+            "PostRepository.findByUserId", 5_000L,
+            "PostRepository.searchByTitleOrContent", 5_000L,
+            "PostRepository.findRecentIdsFollowedBy", 5_000L,
+            "CommentRepository.findByPostId", 5_000L
+    );
+
+    private static final Pattern LIKE_PARAMETER = Pattern.compile("%:(\\w+)%");
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<!:):(\\w+)");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static Connection connection;
+
+    private static SessionFactory sessionFactory;
+
+    // The plan of the last statement Hibernate prepared
+    private static final AtomicReference<JsonNode> EXPLAINED = new AtomicReference<>();
+
+    private static final Map<String, Object> SAMPLES = new HashMap<>();
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        String url = System.getProperty("queryplan.url");
+        String user = System.getProperty("queryplan.user", "postgres");
+        String password = System.getProperty("queryplan.password", "1234");
+
+        Flyway.configure().dataSource(url, user, password).load().migrate();
+
+        connection = DriverManager.getConnection(url, user, password);
+        if (count("select count(*) from posts") == 0) {
+            seed();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("analyze");
+        }
+        loadSamples();
+        connection.setAutoCommit(false);
+        sessionFactory = buildSessionFactory(url, user, password);
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> everyRepositoryQueryHasAnIndexedPlan() {
+        return repositoryQueries().stream()
+                .map(method -> DynamicTest.dynamicTest(name(method), () -> checkPlan(method)));
+    }
+
+    private void checkPlan(Method method) throws Exception {
+        Query query = method.getAnnotation(Query.class);
+        JsonNode plan = query.nativeQuery() ? explainNative(method, query.value()) : explainJpql(method, query.value());
+        if (FULL_SCANS.contains(name(method))) {
+            return;
+        }
+
+        List<String> problems = new ArrayList<>();
+        checkNode(plan, problems);
+
+        long buffers = plan.path("Shared Hit Blocks").asLong() + plan.path("Shared Read Blocks").asLong();
+        long budget = BUFFER_BUDGETS.getOrDefault(name(method), DEFAULT_BUFFER_BUDGET);
+        if (buffers > budget) {
+            problems.add("touched " + buffers + " buffers, budget is " + budget);
+        }
+
+        if (!problems.isEmpty()) {
+            fail(name(method) + ": " + String.join("; ", problems) + "\n" + plan.toPrettyString());
+        }
+    }
+
+    private static JsonNode explainNative(Method method, String jpaSql) throws Exception {
+        List<Object> arguments = new ArrayList<>();
+        String sql = bind(jpaSql, method, arguments);
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "explain (analyze, buffers, format json) " + sql)) {
+            for (int i = 0; i < arguments.size(); i++) {
+                statement.setObject(i + 1, arguments.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return OBJECT_MAPPER.readTree(resultSet.getString(1)).get(0).get("Plan");
+            }
+        } finally {
+            // EXPLAIN ANALYZE executes the statement; deletes must not change the data set
+            connection.rollback();
+        }
+    }
+
+    // Hibernate translates the query and binds its parameters; the explaining connection stops it there
+    private static JsonNode explainJpql(Method method, String jpql) {
+        EXPLAINED.set(null);
+        try (Session session = sessionFactory.openSession()) {
+            org.hibernate.query.Query<Object> query = session.createQuery(jpql, Object.class);
+            for (Parameter parameter : method.getParameters()) {
+                Param param = parameter.getAnnotation(Param.class);
+                String name = param != null ? param.value() : parameter.getName();
+                query.setParameter(name, sample(method, name));
+            }
+            query.getResultList();
+        } catch (RuntimeException e) {
+            if (EXPLAINED.get() == null) {
+                throw e;
+            }
+        }
+        if (EXPLAINED.get() == null) {
+            throw new IllegalStateException(name(method) + " prepared no statement");
+        }
+        return EXPLAINED.get();
+    }
+
+    private void checkNode(JsonNode node, List<String> problems) throws SQLException {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            String relation = node.path("Relation Name").asText();
+            long rows = estimatedRows(relation);
+            if (rows > SEQ_SCAN_ROWS) {
+                problems.add("sequential scan on " + relation + " (~" + rows + " rows)");
+            }
+        }
+        for (JsonNode child : node.path("Plans")) {
+            checkNode(child, problems);
+        }
+    }
+
+    // Spring Data named parameters become JDBC placeholders, LIKE %:x% becomes a concatenation
+    private static String bind(String sql, Method method, List<Object> arguments) {
+        Map<String, Object> values = new HashMap<>();
+        for (Parameter parameter : method.getParameters()) {
+            Param param = parameter.getAnnotation(Param.class);
+            String name = param != null ? param.value() : parameter.getName();
+            values.put(name, sample(method, name));
+        }
+
+        StringBuilder converted = new StringBuilder();
+        Matcher like = LIKE_PARAMETER.matcher(sql);
+        while (like.find()) {
+            like.appendReplacement(converted, Matcher.quoteReplacement("('%' || :" + like.group(1) + " || '%')"));
+        }
+        like.appendTail(converted);
+
+        StringBuilder result = new StringBuilder();
+        Matcher named = NAMED_PARAMETER.matcher(converted);
+        while (named.find()) {
+            String name = named.group(1);
+            if (!values.containsKey(name)) {
+                throw new IllegalStateException(name(method) + " has no @Param for :" + name);
+            }
+            arguments.add(values.get(name));
+            named.appendReplacement(result, "?");
+        }
+        named.appendTail(result);
+        return result.toString();
+    }
+
+    private static Object sample(Method method, String name) {
+        Object value = SAMPLES.get(method.getName() + "." + name);
+        if (value == null) {
+            value = SAMPLES.get(name);
+        }
+        if (value == null) {
+            throw new IllegalStateException("No sample value for parameter " + name + " of " + name(method));
+        }
+        return value;
+    }
+
+    private static List<Method> repositoryQueries() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(BaseRepository.class));
+
+        List<Method> methods = new ArrayList<>();
+        for (BeanDefinition definition : scanner.findCandidateComponents(REPOSITORY_PACKAGE)) {
+            try {
+                Class<?> repository = Class.forName(definition.getBeanClassName());
+                for (Method method : repository.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(Query.class)) {
+                        methods.add(method);
+                    }
+                }
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        methods.sort(Comparator.comparing(QueryPlanTest::name));
+        return methods;
+    }
+
+    private static String name(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    // The entities mapped the way Spring Boot maps them, over connections that explain what Hibernate prepares
+    private static SessionFactory buildSessionFactory(String url, String user, String password) {
+        Configuration configuration = new Configuration()
+                .setProperty(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .setProperty(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .setProperty(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName());
+        DataSource dataSource = proxy(DataSource.class, (proxy, method, arguments) -> method.getName().equals("getConnection")
+                ? explainingConnection(DriverManager.getConnection(url, user, password))
+                : invoke(method, null, arguments));
+        configuration.getProperties().put(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource);
+
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+        for (BeanDefinition definition : scanner.findCandidateComponents(ENTITY_PACKAGE)) {
+            try {
+                configuration.addAnnotatedClass(Class.forName(definition.getBeanClassName()));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return configuration.buildSessionFactory();
+    }
+
+    private static Connection explainingConnection(Connection target) throws SQLException {
+        target.setAutoCommit(false);
+        return proxy(Connection.class, (proxy, method, arguments) -> {
+            Object result = invoke(method, target, arguments);
+            return method.getName().equals("prepareStatement")
+                    ? explainingStatement(target, (String) arguments[0], (PreparedStatement) result)
+                    : result;
+        });
+    }
+
+    // Records the parameters bound to the statement and runs EXPLAIN with them when it is executed
+    private static PreparedStatement explainingStatement(Connection target, String sql, PreparedStatement statement) {
+        List<Object[]> bindings = new ArrayList<>();
+        return proxy(PreparedStatement.class, (proxy, method, arguments) -> {
+            if (method.getName().startsWith("execute")) {
+                try (PreparedStatement explain = target.prepareStatement("explain (analyze, buffers, format json) " + sql)) {
+                    for (Object[] binding : bindings) {
+                        invoke((Method) binding[0], explain, (Object[]) binding[1]);
+                    }
+                    try (ResultSet resultSet = explain.executeQuery()) {
+                        resultSet.next();
+                        EXPLAINED.set(OBJECT_MAPPER.readTree(resultSet.getString(1)).get(0).get("Plan"));
+                    }
+                } finally {
+                    target.rollback();
+                }
+                throw new SQLException("Explained instead of executed: " + sql);
+            }
+            if (method.getName().startsWith("set") && arguments != null && arguments.length >= 2
+                    && arguments[0] instanceof Integer) {
+                bindings.add(new Object[]{method, arguments});
+            }
+            return invoke(method, statement, arguments);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryPlanTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] arguments) throws Throwable {
+        if (target == null) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long estimatedRows(String relation) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select reltuples::bigint from pg_class where relname = ?")) {
+            statement.setString(1, relation);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    // Sample values are taken from the seeded data so every query has something to find
+    private static void loadSamples() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet reply = statement.executeQuery(
+                    "select r.post_id, r.root_id, t.path, r.post_date from comment r join comment t on t.id = r.root_id " +
+                            "where r.depth > 0 order by r.id limit 1")) {
+                reply.next();
+                SAMPLES.put("postId", reply.getLong(1));
+                SAMPLES.put("rootId", reply.getLong(2));
+                SAMPLES.put("commentId", reply.getLong(2));
+                SAMPLES.put("path", reply.getString(3));
+                SAMPLES.put("postDate", reply.getDate(4));
+                SAMPLES.put("date", reply.getDate(4));
+            }
+            try (ResultSet post = statement.executeQuery(
+                    "select post_title, content, category_id from posts order by id limit 1")) {
+                post.next();
+                SAMPLES.put("title", post.getString(1));
+                SAMPLES.put("content", post.getString(2));
+                SAMPLES.put("keyword", post.getString(1).substring(post.getString(1).length() - 8));
+                SAMPLES.put("categoryId", post.getLong(3));
+            }
+            try (ResultSet follow = statement.executeQuery(
+                    "select follower_id, followee_id from user_follows order by id limit 1")) {
+                follow.next();
+                SAMPLES.put("userId", follow.getLong(1));
+                SAMPLES.put("followerId", follow.getLong(1));
+                SAMPLES.put("followeeId", follow.getLong(2));
+            }
+            try (ResultSet user = statement.executeQuery(
+                    "select user_name, user_email from users order by id limit 1")) {
+                user.next();
+                SAMPLES.put("name", user.getString(1));
+                SAMPLES.put("email", user.getString(2));
+            }
+        }
+        SAMPLES.put("targetType", "POST");
+        SAMPLES.put("targetIds", SAMPLES.get("postId"));
+        SAMPLES.put("limit", 20);
+        SAMPLES.put("threads", 20);
+        SAMPLES.put("replies", 3);
+        SAMPLES.put("findPageAfter.cursor", 0L);
+        SAMPLES.put("findPageBefore.cursor", Long.MAX_VALUE);
+        // Lower bound of the posts' dates, so plans show the older months pruned
+        SAMPLES.put("since", java.sql.Date.valueOf(LocalDate.now().minusDays(365)));
+    }
+
+    private static void seed() throws SQLException {
+        String[] statements = {
+                "insert into users (user_name, user_email, user_password) " +
+                        "select 'user' || g, 'u' || g || '@example.com', md5(g::text) " +
+                        "from generate_series(1, " + USERS + ") g",
+                "insert into category (name, description) " +
+                        "select 'category' || g, 'Category number ' || g from generate_series(1, " + CATEGORIES + ") g",
+                // posts are spread over categories and authors with a skew towards low IDs
+                "insert into posts (post_title, content, date, category_id, user_id) " +
+                        "select 'Post ' || g || ' ' || md5(g::text), repeat(md5((-g)::text), 8), " +
+                        "now() - (g || ' minutes')::interval, " +
+                        "1 + floor(" + CATEGORIES + " * power(random(), 2))::int, " +
+                        "1 + floor(" + USERS + " * power(random(), 3))::int " +
+                        "from generate_series(1, " + POSTS + ") g",
+                // top-level comments first, then replies to some of them
+                "insert into comment (user_name, user_id, post_id, post_date, depth) " +
+                        "select left(md5(t.g::text), 20), t.user_id, p.id, p.date, 0 " +
+                        "from (select g, 1 + floor(" + USERS + " * random())::int as user_id, " +
+                        "1 + floor(" + POSTS + " * power(random(), 2))::int as post_id " +
+                        "from generate_series(1, " + COMMENTS * 3 / 4 + ") g) t join posts p on p.id = t.post_id",
+                "update comment set root_id = id, path = lpad(to_hex(id), 12, '0') where path is null",
+                "insert into comment (user_name, user_id, post_id, post_date, parent_id, root_id, depth) " +
+                        "select left(md5(p.id::text), 20), 1 + floor(" + USERS + " * random())::int, " +
+                        "p.post_id, p.post_date, p.id, p.root_id, 1 " +
+                        "from comment p order by random() limit " + COMMENTS / 4,
+                "update comment c set path = p.path || lpad(to_hex(c.id), 12, '0') " +
+                        "from comment p where c.parent_id = p.id and c.path is null",
+                "insert into user_follows (follower_id, followee_id) " +
+                        "select 1 + floor(" + USERS + " * random())::int, 1 + floor(" + USERS + " * power(random(), 3))::int " +
+                        "from generate_series(1, " + FOLLOWS + ") g " +
+                        "on conflict do nothing",
+                "insert into post_stats (post_id, view_count, comment_count, reaction_count, updated_at) " +
+                        "select id, 0, 0, 0, now() from posts",
+                "insert into reaction_snapshot (target_type, target_id, reaction_type, user_bitmap, reaction_count, updated_at) " +
+                        "select 'POST', id, 'LIKE', '\\x'::bytea, 0, now() from posts"
+        };
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package uz.developers.messenger.service;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import uz.developers.messenger.service.impl.AnalyticsExportServiceImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exports analytics data from a real PostgreSQL database, which only runs when one is given:
+ * <pre>
+ * mvn test -Dtest=AnalyticsExportServiceImplTest -Danalytics.url=jdbc:postgresql://localhost:5432/analytics
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "analytics.url", matches = ".+")
+class AnalyticsExportServiceImplTest {
+
+    private static DriverManagerDataSource dataSource;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() {
+        String url = System.getProperty("analytics.url");
+        String user = System.getProperty("analytics.user", "postgres");
+        String password = System.getProperty("analytics.password", "1234");
+
+        Flyway.configure().dataSource(url, user, password).load().migrate();
+        dataSource = new DriverManagerDataSource(url, user, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // After the first full run, only the days of the changed and the deleted post are written again
+    @Test
+    void laterRunsWriteOnlyTheChangedDays() {
+        long userId = jdbcTemplate.queryForObject("insert into users (user_name, user_email, user_password) " +
+                "values ('analyst', 'analyst' || nextval(pg_get_serial_sequence('users', 'id')) || '@example.com', 'x') " +
+                "returning id", Long.class);
+        long categoryId = jdbcTemplate.queryForObject(
+                "insert into category (name, description) values ('analytics', 'Exported posts') returning id", Long.class);
+        LocalDate changed = LocalDate.now().minusDays(40);
+        LocalDate unchanged = LocalDate.now().minusDays(41);
+        LocalDate emptied = LocalDate.now().minusDays(42);
+        long postId = insertPost(userId, categoryId, changed);
+        insertPost(userId, categoryId, unchanged);
+        insertPost(userId, categoryId, emptied);
+
+        AnalyticsExportServiceImpl exportService = new AnalyticsExportServiceImpl(jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), directory.toString(), 100);
+        assertTrue(exportService.exportIncrement() >= 3);
+        Path changedFile = directory.resolve("posts").resolve("date=" + changed).resolve("part-0.parquet");
+        Path unchangedFile = directory.resolve("posts").resolve("date=" + unchanged).resolve("part-0.parquet");
+        Path emptiedFile = directory.resolve("posts").resolve("date=" + emptied).resolve("part-0.parquet");
+        assertTrue(Files.exists(changedFile));
+        assertTrue(Files.exists(unchangedFile));
+        assertTrue(Files.exists(emptiedFile));
+
+        jdbcTemplate.update("update posts set post_title = 'Changed' where id = ?", postId);
+        jdbcTemplate.update("delete from posts where date = ?", Date.valueOf(emptied));
+
+        assertEquals(2, exportService.exportIncrement());
+        assertTrue(Files.exists(changedFile));
+        assertTrue(Files.exists(unchangedFile));
+        assertFalse(Files.exists(emptiedFile));
+        assertFalse(Files.exists(changedFile.resolveSibling("part-0.parquet.tmp")));
+        // Picked up once; the next run has nothing left to rewrite
+        assertEquals(0, exportService.exportIncrement());
+    }
+
+    private static long insertPost(long userId, long categoryId, LocalDate date) {
+        return jdbcTemplate.queryForObject("insert into posts (post_title, content, date, category_id, user_id) " +
+                "values ('Analytics', 'Analytics content', ?, ?, ?) returning id", Long.class, Date.valueOf(date), categoryId, userId);
+    }
+
+}
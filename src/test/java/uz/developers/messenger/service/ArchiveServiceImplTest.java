@@ -0,0 +1,101 @@
+package uz.developers.messenger.service;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import uz.developers.messenger.service.impl.ArchiveServiceImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archives a month of the legacy partitions and a monthly partition of a real PostgreSQL
+ * database. Every legacy month and next month are older than the cutoff here, so the test
+ * needs a dedicated, disposable database and only runs when one is given:
+ * <pre>
+ * mvn test -Dtest=ArchiveServiceImplTest -Darchive.url=jdbc:postgresql://localhost:5432/archive
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "archive.url", matches = ".+")
+class ArchiveServiceImplTest {
+
+    private static DriverManagerDataSource dataSource;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() {
+        String url = System.getProperty("archive.url");
+        String user = System.getProperty("archive.user", "postgres");
+        String password = System.getProperty("archive.password", "1234");
+
+        Flyway.configure().dataSource(url, user, password).load().migrate();
+        dataSource = new DriverManagerDataSource(url, user, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void archivesLegacyAndPartitionedMonthsWithTheirComments() throws Exception {
+        long userId = jdbcTemplate.queryForObject("insert into users (user_name, user_email, user_password) " +
+                "values ('archiver', 'archiver' || nextval(pg_get_serial_sequence('users', 'id')) || '@example.com', 'x') " +
+                "returning id", Long.class);
+        long categoryId = jdbcTemplate.queryForObject(
+                "insert into category (name, description) values ('archive', 'Archived posts') returning id", Long.class);
+        // This month is still in the legacy partitions, next month has partitions of its own
+        YearMonth legacyMonth = YearMonth.now();
+        YearMonth nextMonth = legacyMonth.plusMonths(1);
+        long legacyPost = insertPostWithThread(userId, categoryId, legacyMonth.atDay(1));
+        long partitionedPost = insertPostWithThread(userId, categoryId, nextMonth.atDay(1));
+
+        ArchiveServiceImpl archiveService = new ArchiveServiceImpl(jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), directory.toString(), -2, 3, 1);
+        archiveService.createPartitions();
+
+        assertTrue(archiveService.archivePartitions() >= 3);
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from posts where id in (?, ?)", Integer.class, legacyPost, partitionedPost));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from comment where post_id in (?, ?)", Integer.class, legacyPost, partitionedPost));
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject("select to_regclass(?) is null", Boolean.class,
+                String.format("posts_y%04dm%02d", nextMonth.getYear(), nextMonth.getMonthValue())));
+        assertTrue(Files.exists(directory.resolve("comment").resolve(nextMonth + ".parquet")));
+        assertTrue(Files.exists(directory.resolve("comment").resolve(legacyMonth + ".parquet")));
+        assertEquals(Date.valueOf(legacyMonth.atDay(1)), archiveService.findArchivedPost(legacyPost).orElseThrow().getDate());
+        assertEquals(Date.valueOf(nextMonth.atDay(1)), archiveService.findArchivedPost(partitionedPost).orElseThrow().getDate());
+
+        // The archived month gets its partitions back, empty
+        archiveService.createPartitions();
+    }
+
+    // A post with a comment and a reply to it, both written the day of the post
+    private static long insertPostWithThread(long userId, long categoryId, LocalDate date) {
+        long postId = jdbcTemplate.queryForObject("insert into posts (post_title, content, date, category_id, user_id) " +
+                "values ('Archived', 'Archived content', ?, ?, ?) returning id", Long.class, Date.valueOf(date), categoryId, userId);
+        Timestamp createdAt = Timestamp.valueOf(date.atTime(12, 0));
+        long commentId = jdbcTemplate.queryForObject("insert into comment (user_name, user_id, post_id, post_date, depth, created_at) " +
+                "values ('first', ?, ?, ?, 0, ?) returning id", Long.class, userId, postId, Date.valueOf(date), createdAt);
+        jdbcTemplate.update("update comment set root_id = id, path = lpad(to_hex(id), 12, '0') where id = ?", commentId);
+        jdbcTemplate.update("insert into comment (user_name, user_id, post_id, post_date, parent_id, root_id, path, depth, created_at) " +
+                        "values ('reply', ?, ?, ?, ?, ?, (select path from comment where id = ?) || lpad(to_hex(currval(" +
+                        "pg_get_serial_sequence('comment', 'id'))), 12, '0'), 1, ?)",
+                userId, postId, Date.valueOf(date), commentId, commentId, commentId, createdAt);
+        return postId;
+    }
+
+}
@@ -0,0 +1,57 @@
+package uz.developers.messenger.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uz.developers.messenger.entity.Category;
+import uz.developers.messenger.entity.Post;
+import uz.developers.messenger.entity.User;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.repository.CommentRepository;
+import uz.developers.messenger.repository.PostRepository;
+import uz.developers.messenger.service.impl.ExportServiceImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+class ExportServiceImplTest {
+
+    private final PostRepository postRepository = Mockito.mock(PostRepository.class);
+
+    private final ExportServiceImpl exportService = new ExportServiceImpl(postRepository,
+            Mockito.mock(CommentRepository.class), new ObjectMapper());
+
+    // Post dates are java.sql.Date, which has no time and cannot become an Instant
+    @Test
+    void exportsPostDatesAsIsoDates() throws Exception {
+        when(postRepository.streamAll()).thenAnswer(invocation -> Stream.of(post(Date.valueOf("2024-01-31")), post(null)));
+
+        assertEquals("""
+                {"id":1,"title":"Title","content":"Content, quoted \\"here\\"","image":null,"date":"2024-01-31","categoryId":2,"userId":3}
+                {"id":1,"title":"Title","content":"Content, quoted \\"here\\"","image":null,"date":null,"categoryId":2,"userId":3}
+                """, export(DataFormat.NDJSON));
+        assertEquals("id,title,content,image,date,categoryId,userId\r\n" +
+                "1,Title,\"Content, quoted \"\"here\"\"\",,2024-01-31,2,3\r\n" +
+                "1,Title,\"Content, quoted \"\"here\"\"\",,,2,3\r\n", export(DataFormat.CSV));
+    }
+
+    private String export(DataFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportPosts(out, format);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Post post(Date date) {
+        Category category = new Category();
+        category.setId(2L);
+        User user = new User();
+        user.setId(3L);
+        return new Post(1L, "Title", "Content, quoted \"here\"", null, date, category, user, 0L);
+    }
+
+}
@@ -0,0 +1,90 @@
+package uz.developers.messenger.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import uz.developers.messenger.payload.DataFormat;
+import uz.developers.messenger.payload.ImportResultDto;
+import uz.developers.messenger.service.impl.ImportServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Imports users and posts into a real PostgreSQL database, which only runs when one is given:
+ * <pre>
+ * mvn test -Dtest=ImportServiceImplTest -Dimport.url=jdbc:postgresql://localhost:5432/import
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "import.url", matches = ".+")
+class ImportServiceImplTest {
+
+    private static ImportServiceImpl importService;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        String url = System.getProperty("import.url");
+        String user = System.getProperty("import.user", "postgres");
+        String password = System.getProperty("import.password", "1234");
+
+        Flyway.configure().dataSource(url, user, password).load().migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, user, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        importService = new ImportServiceImpl(dataSource, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 2, 2);
+    }
+
+    // Chunks of two, loaded in parallel: the duplicate email of the second chunk loses to the first
+    @Test
+    void registeredEmailsAreRejectedNotFailed() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        jdbcTemplate.update("insert into users (user_name, user_email, user_password) values ('taken', ?, 'secret')",
+                "taken" + suffix + "@example.com");
+
+        ImportResultDto result = importService.importUsers(ndjson(
+                user("a" + suffix), user("taken" + suffix), user("b" + suffix), user("a" + suffix)), DataFormat.NDJSON, null);
+
+        assertEquals(0, result.getChunksFailed());
+        assertEquals(2, result.getRowsImported());
+        assertEquals(2, result.getRowsRejected());
+        assertTrue(result.getErrors().stream().allMatch(error -> error.endsWith("is already registered")));
+    }
+
+    @Test
+    void postsAreNeverDatedAfterToday() throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        String email = "author" + suffix + "@example.com";
+        jdbcTemplate.update("insert into users (user_name, user_email, user_password) values ('author', ?, 'secret')", email);
+        jdbcTemplate.update("insert into category (name, description) values (?, 'Imported posts')", suffix);
+
+        ImportResultDto result = importService.importPosts(ndjson(
+                "{\"title\":\"Future " + suffix + "\",\"content\":\"Content\",\"date\":\"2999-01-01\"," +
+                        "\"category\":\"" + suffix + "\",\"userEmail\":\"" + email + "\"}"), DataFormat.NDJSON, null);
+
+        assertEquals(1, result.getRowsImported());
+        assertEquals(Date.valueOf(LocalDate.now()), jdbcTemplate.queryForObject(
+                "select date from posts where post_title = ?", Date.class, "Future " + suffix));
+    }
+
+    private static String user(String name) {
+        return "{\"name\":\"" + name + "\",\"email\":\"" + name + "@example.com\",\"password\":\"secret\"}";
+    }
+
+    private static ByteArrayInputStream ndjson(String... records) {
+        return new ByteArrayInputStream(String.join("\n", records).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
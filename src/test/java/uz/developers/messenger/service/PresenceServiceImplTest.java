@@ -0,0 +1,107 @@
+package uz.developers.messenger.service;
+
+import org.junit.jupiter.api.Test;
+import uz.developers.messenger.service.impl.PresenceServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceServiceImplTest {
+
+    private static final long TTL_MILLIS = 40;
+
+    private final PresenceServiceImpl presenceService = new PresenceServiceImpl(TTL_MILLIS, TTL_MILLIS, 4, 64, 1);
+
+    @Test
+    void heartbeatKeepsUserOnlineUntilTheTtlPasses() throws InterruptedException {
+        presenceService.heartbeat(1L);
+        assertTrue(presenceService.isOnline(1L));
+
+        expireAll();
+
+        assertFalse(presenceService.isOnline(1L));
+    }
+
+    @Test
+    void disconnectTakesUserOfflineAtOnce() {
+        presenceService.heartbeat(1L);
+        presenceService.disconnect(1L);
+
+        assertFalse(presenceService.isOnline(1L));
+    }
+
+    @Test
+    void onlineUsersSkipsNullIds() {
+        presenceService.heartbeat(1L);
+
+        assertEquals(List.of(1L), presenceService.getOnlineUsers(Arrays.asList(null, 1L, 2L)));
+    }
+
+    @Test
+    void typingExpiresAndImpliesPresence() throws InterruptedException {
+        presenceService.typing(10L, 1L);
+        assertEquals(List.of(1L), presenceService.getTypingUsers(10L));
+        assertTrue(presenceService.isOnline(1L));
+
+        expireAll();
+
+        assertEquals(List.of(), presenceService.getTypingUsers(10L));
+        presenceService.typing(10L, 1L);
+        assertEquals(List.of(1L), presenceService.getTypingUsers(10L));
+    }
+
+    // A refresh racing with expiry must never leave the user out while their deadline lies ahead
+    @Test
+    void typingIsNeverLostToConcurrentExpiry() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> ticker = executor.submit(() -> {
+                while (running.get()) {
+                    presenceService.tick();
+                }
+            });
+            List<Future<?>> typists = new ArrayList<>();
+            for (long user = 1; user <= 4; user++) {
+                long userId = user;
+                typists.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        long before = System.currentTimeMillis();
+                        presenceService.typing(10L, userId);
+                        boolean listed = presenceService.getTypingUsers(10L).contains(userId);
+                        if (!listed && System.currentTimeMillis() < before + TTL_MILLIS) {
+                            throw new AssertionError("User " + userId + " lost after typing");
+                        }
+                        if (i % 1_000 == 0) {
+                            Thread.sleep(TTL_MILLIS + 5);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> typist : typists) {
+                typist.get();
+            }
+            running.set(false);
+            ticker.get();
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    private void expireAll() throws InterruptedException {
+        Thread.sleep(3 * TTL_MILLIS);
+        presenceService.tick();
+    }
+
+}
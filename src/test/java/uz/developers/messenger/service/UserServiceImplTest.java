@@ -1,7 +1,25 @@
 package uz.developers.messenger.service;
 
+import jakarta.validation.Validation;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import uz.developers.messenger.event.DomainEventPublisher;
 import uz.developers.messenger.repository.UserRepository;
+import uz.developers.messenger.service.impl.UserServiceImpl;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
 
 public class UserServiceImplTest {
 
@@ -12,5 +30,52 @@ public class UserServiceImplTest {
 
 
 
+    /**
+     * Deletes a user from a real PostgreSQL database, which only runs when one is given:
+     * <pre>
+     * mvn test -Dtest=UserServiceImplTest -Ddeletion.url=jdbc:postgresql://localhost:5432/deletion
+     * </pre>
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "deletion.url", matches = ".+")
+    void deletesCommentsFromBeforeThreadingWithTheirReplies() {
+        String url = System.getProperty("deletion.url");
+        String user = System.getProperty("deletion.user", "postgres");
+        String password = System.getProperty("deletion.password", "1234");
+        Flyway.configure().dataSource(url, user, password).load().migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, user, password);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        long leaving = insertUser(jdbcTemplate, "leaving");
+        long author = insertUser(jdbcTemplate, "author");
+        long categoryId = jdbcTemplate.queryForObject(
+                "insert into category (name, description) values ('deletion', 'Deleted comments') returning id", Long.class);
+        Date date = Date.valueOf(LocalDate.now());
+        long postId = jdbcTemplate.queryForObject("insert into posts (post_title, content, date, category_id, user_id) " +
+                "values ('Kept', 'Kept content', ?, ?, ?) returning id", Long.class, date, categoryId, author);
+        // A comment and a reply by someone else, both without path or root, as before threading
+        long legacy = jdbcTemplate.queryForObject("insert into comment (user_name, user_id, post_id, post_date, depth) " +
+                "values ('legacy', ?, ?, ?, 0) returning id", Long.class, leaving, postId, date);
+        jdbcTemplate.update("insert into comment (user_name, user_id, post_id, post_date, parent_id, depth) " +
+                "values ('reply', ?, ?, ?, ?, 1)", author, postId, date, legacy);
+
+        UserRepository users = Mockito.mock(UserRepository.class);
+        when(users.existsById(leaving)).thenReturn(true);
+        UserServiceImpl userService = new UserServiceImpl(new ModelMapper(), users, Mockito.mock(DomainEventPublisher.class),
+                Mockito.mock(FollowGraphService.class), jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                Mockito.mock(ObjectProvider.class), Mockito.mock(ObjectProvider.class), 1000, 1000);
+
+        assertEquals(2, userService.deleteUser(leaving).getCommentsDeleted());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from users where id = ?", Integer.class, leaving));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from comment where post_id = ?", Integer.class, postId));
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from posts where id = ?", Integer.class, postId));
+    }
+
+    private static long insertUser(JdbcTemplate jdbcTemplate, String name) {
+        return jdbcTemplate.queryForObject("insert into users (user_name, user_email, user_password) " +
+                "values (?, ? || nextval(pg_get_serial_sequence('users', 'id')) || '@example.com', 'x') returning id",
+                Long.class, name, name);
+    }
 
 }
@@ -0,0 +1,66 @@
+package uz.developers.messenger.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardRebalancerTest {
+
+    @Test
+    void aNewShardTakesItsShareFromTheOthers() {
+        // Eight buckets round robin on two shards, then a third shard is added
+        int[] shardOfBucket = {0, 1, 0, 1, 0, 1, 0, 1};
+
+        List<int[]> moves = ShardRebalancer.plan(shardOfBucket, 3);
+
+        assertEquals(2, moves.size());
+        int[] balanced = apply(shardOfBucket, moves);
+        assertEquals(2, count(balanced, 2));
+        assertTrue(count(balanced, 0) == 3 && count(balanced, 1) == 3);
+        for (int[] move : moves) {
+            assertEquals(shardOfBucket[move[0]], move[1]);
+            assertEquals(2, move[2]);
+        }
+    }
+
+    @Test
+    void aBalancedMapNeedsNoMoves() {
+        assertEquals(0, ShardRebalancer.plan(new int[]{0, 1, 2, 0, 1, 2, 0}, 3).size());
+    }
+
+    @Test
+    void unevenShardsEndWithinOneBucketOfEachOther() {
+        int[] shardOfBucket = new int[10];
+
+        int[] balanced = apply(shardOfBucket, ShardRebalancer.plan(shardOfBucket, 4));
+
+        for (int shard = 0; shard < 4; shard++) {
+            assertTrue(count(balanced, shard) == 2 || count(balanced, shard) == 3);
+        }
+        // Shard 0 keeps the extra bucket, so only seven buckets move
+        assertEquals(3, count(balanced, 0));
+        assertEquals(7, ShardRebalancer.plan(shardOfBucket, 4).size());
+    }
+
+    private static int[] apply(int[] shardOfBucket, List<int[]> moves) {
+        int[] result = shardOfBucket.clone();
+        for (int[] move : moves) {
+            result[move[0]] = move[2];
+        }
+        return result;
+    }
+
+    private static int count(int[] shardOfBucket, int shard) {
+        int count = 0;
+        for (int owner : shardOfBucket) {
+            if (owner == shard) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
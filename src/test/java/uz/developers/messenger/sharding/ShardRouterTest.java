@@ -0,0 +1,93 @@
+package uz.developers.messenger.sharding;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import uz.developers.messenger.exceptions.ShardMovingException;
+
+import java.sql.ResultSet;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class ShardRouterTest {
+
+    private static final int BUCKETS = 8;
+
+    private final List<Shard> shards = List.of(new Shard(0, "shard-0", null, null), new Shard(1, "shard-1", null, null));
+
+    private final JdbcTemplate mainJdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    // Buckets 0-3 on shard 0, 4-7 on shard 1, bucket 5 moving
+    private ShardRouter router() {
+        when(mainJdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[0]);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = Mockito.mock(ResultSet.class);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                when(rs.getInt(1)).thenReturn(bucket);
+                when(rs.getInt(2)).thenReturn(bucket < 4 ? 0 : 1);
+                when(rs.getBoolean(3)).thenReturn(bucket == 5);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(mainJdbcTemplate).query(anyString(), any(RowCallbackHandler.class), Mockito.<Object>any());
+        return new ShardRouter(shards, BUCKETS, mainJdbcTemplate);
+    }
+
+    @Test
+    void idsCarryTheirBucket() {
+        ShardRouter router = router();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long id = router.composeId(41, bucket);
+            assertEquals(bucket, router.bucketOfId(id));
+        }
+        assertEquals(41 * BUCKETS + 3, router.composeId(41, 3));
+    }
+
+    @Test
+    void usersSpreadOverAllBuckets() {
+        ShardRouter router = router();
+        int[] users = new int[BUCKETS];
+        for (long userId = 1; userId <= 800; userId++) {
+            int bucket = router.bucketOfUser(userId);
+            assertEquals(bucket, router.bucketOfUser(userId));
+            users[bucket]++;
+        }
+        for (int count : users) {
+            assertTrue(count > 50, "every bucket gets a share of consecutive user IDs");
+        }
+    }
+
+    @Test
+    void bucketsGoToTheirMappedShardAndMovingOnesRefuseWrites() {
+        ShardRouter router = router();
+        assertSame(shards.get(0), router.shardOfBucket(3));
+        assertSame(shards.get(1), router.shardOfBucket(4));
+        assertSame(shards.get(1), router.shardForWrite(4));
+
+        // Reads keep going to the old shard while the bucket moves
+        assertSame(shards.get(1), router.shardOfBucket(5));
+        assertThrows(ShardMovingException.class, () -> router.shardForWrite(5));
+    }
+
+    @Test
+    void mergeKeepsTheOrderAndStopsAtTheLimit() {
+        List<List<Integer>> sorted = List.of(List.of(9, 5, 1), List.of(), List.of(8, 7, 2), List.of(6));
+
+        assertEquals(List.of(9, 8, 7, 6, 5), ShardRouter.mergeSorted(sorted, Comparator.reverseOrder(), 5));
+        assertEquals(List.of(9, 8, 7, 6, 5, 2, 1), ShardRouter.mergeSorted(sorted, Comparator.reverseOrder(), 100));
+        assertEquals(List.of(), ShardRouter.mergeSorted(List.<List<Integer>>of(), Comparator.reverseOrder(), 5));
+    }
+
+}
@@ -0,0 +1,65 @@
+package uz.developers.messenger.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTest {
+
+    @Test
+    void aQuotedCommaStaysInItsField() throws IOException {
+        assertEquals(List.of(List.of("1", "Hello, world", "x")), read("1,\"Hello, world\",x\n"));
+    }
+
+    @Test
+    void doubledQuotesReadAsOne() throws IOException {
+        assertEquals(List.of(List.of("She said \"hi\"", "\"")), read("\"She said \"\"hi\"\"\",\"\"\"\"\n"));
+    }
+
+    @Test
+    void aQuotedFieldMaySpanLines() throws IOException {
+        assertEquals(List.of(List.of("1", "first line\nsecond line"), List.of("2", "x")),
+                read("1,\"first line\nsecond line\"\n2,x\n"));
+    }
+
+    @Test
+    void recordsEndInCrlfOrLf() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", ""), List.of("d", "e")),
+                read("a,b\r\nc,\r\nd,e"));
+        // Inside quotes the line break is part of the value
+        assertEquals(List.of(List.of("one\r\ntwo")), read("\"one\r\ntwo\"\r\n"));
+    }
+
+    @Test
+    void anUnterminatedQuoteIsAnError() {
+        assertThrows(IOException.class, () -> read("1,\"never closed\n2,x\n"));
+    }
+
+    @Test
+    void recordsLongerThanTheBufferAreReadWhole() throws IOException {
+        String text = "y".repeat(100_000);
+
+        assertEquals(List.of(List.of("x", text), List.of("z")), read("x,\"" + text + "\"\nz\n"));
+    }
+
+
+    private static List<List<String>> read(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(csv))) {
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+            assertNull(reader.next());
+        }
+        return records;
+    }
+
+}
@@ -0,0 +1,94 @@
+package uz.developers.messenger.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    // Three standard errors of the default precision
+    private static final double ERROR_BOUND = 3 * 1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION);
+
+    @Test
+    void estimatesStayWithinTheErrorBound() {
+        assertEquals(0, new HyperLogLog().cardinality());
+        for (int distinct : new int[]{10, 1_000, 50_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (long id = 1; id <= distinct; id++) {
+                sketch.add(id);
+                // Repeats do not count
+                sketch.add(id);
+            }
+
+            long estimate = sketch.cardinality();
+
+            assertTrue(Math.abs(estimate - distinct) <= Math.max(1, distinct * ERROR_BOUND),
+                    distinct + " distinct values estimated as " + estimate);
+        }
+    }
+
+    @Test
+    void mergedSketchesCountTheUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (long id = 0; id < 60_000; id++) {
+            all.add(id);
+            if (id < 40_000) {
+                first.add(id);
+            }
+            if (id >= 20_000) {
+                second.add(id);
+            }
+        }
+
+        HyperLogLog merged = first.copy();
+        merged.merge(second);
+
+        // The register-wise maximum is what one sketch of every value holds
+        assertArrayEquals(all.toBytes(), merged.toBytes());
+        assertTrue(Math.abs(merged.cardinality() - 60_000) <= 60_000 * ERROR_BOUND);
+        // The copy was merged, not the original
+        assertTrue(first.cardinality() < merged.cardinality());
+    }
+
+    @Test
+    void sketchesOfDifferentPrecisionDoNotMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (long id = 0; id < 5_000; id++) {
+            sketch.add(id * 7919);
+        }
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertEquals((1 << 10) + 1, bytes.length);
+        assertArrayEquals(bytes, restored.toBytes());
+        assertEquals(sketch.cardinality(), restored.cardinality());
+
+        // The restored sketch keeps counting on its own copy of the registers
+        restored.add(-1);
+        restored.add(-2);
+        assertArrayEquals(bytes, sketch.toBytes());
+    }
+
+    @Test
+    void bytesThatAreNotASketchAreRejected() {
+        byte[] bytes = new HyperLogLog(10).toBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[0] = 3;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(bytes));
+    }
+
+}
@@ -0,0 +1,121 @@
+package uz.developers.messenger.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongSortedSetTest {
+
+    @Test
+    void insertsAndRemovalsAcrossBlocksMatchASortedSet() {
+        Random random = new Random(42);
+        TreeSet<Long> expected = new TreeSet<>();
+        LongSortedSet set = LongSortedSet.EMPTY;
+
+        // Enough values to split blocks several times, some of them repeated
+        for (int i = 0; i < 5_000; i++) {
+            long value = random.nextInt(8_000);
+            expected.add(value);
+            set = set.with(value);
+        }
+        assertContents(expected, set);
+
+        // Remove all but a few values, emptying whole blocks on the way
+        for (long value = 0; value < 8_000; value++) {
+            if (value % 1_000 != 0) {
+                expected.remove(value);
+                set = set.without(value);
+            }
+        }
+        assertContents(expected, set);
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+        }
+    }
+
+    @Test
+    void valuesBeforeTheFirstBlockAndAfterTheLastLandInOrder() {
+        long[] values = new long[3_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i + 1) * 10L;
+        }
+        LongSortedSet set = LongSortedSet.ofSorted(values, values.length)
+                .with(Long.MIN_VALUE)
+                .with(5)
+                .with(1_025 * 10L + 5)
+                .with(Long.MAX_VALUE);
+
+        long[] array = set.toArray();
+        assertEquals(values.length + 4, set.size());
+        assertEquals(Long.MIN_VALUE, array[0]);
+        assertEquals(5, array[1]);
+        assertEquals(Long.MAX_VALUE, array[array.length - 1]);
+        for (int i = 1; i < array.length; i++) {
+            assertTrue(array[i - 1] < array[i]);
+        }
+
+        // Removing what is not there leaves the set as it was
+        assertSame(set, set.without(7));
+        assertSame(set, set.without(Long.MIN_VALUE + 1));
+        assertSame(set, set.with(10));
+    }
+
+    @Test
+    void intersectMergesSetsOfSimilarSize() {
+        LongSortedSet evens = range(0, 6_000, 2);
+        LongSortedSet threes = range(0, 6_000, 3);
+
+        long[] both = evens.intersect(threes);
+
+        assertArrayEquals(range(0, 6_000, 6).toArray(), both);
+        assertArrayEquals(both, threes.intersect(evens));
+    }
+
+    @Test
+    void intersectLooksUpASmallSetInALargeOne() {
+        LongSortedSet large = range(0, 100_000, 1);
+        LongSortedSet small = LongSortedSet.EMPTY.with(-1).with(7).with(4_096).with(99_999).with(100_000);
+
+        assertArrayEquals(new long[]{7, 4_096, 99_999}, small.intersect(large));
+        assertArrayEquals(new long[]{7, 4_096, 99_999}, large.intersect(small));
+    }
+
+    @Test
+    void anEmptySetHasNothingInCommonWithAnything() {
+        LongSortedSet empty = LongSortedSet.ofSorted(new long[0], 0);
+
+        assertSame(LongSortedSet.EMPTY, empty);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.contains(0));
+        assertArrayEquals(new long[0], empty.toArray());
+        assertSame(empty, empty.without(1));
+        assertArrayEquals(new long[0], empty.intersect(range(0, 10, 1)));
+        assertArrayEquals(new long[0], range(0, 10, 1).intersect(empty));
+
+        LongSortedSet one = empty.with(3);
+        assertEquals(1, one.size());
+        assertSame(LongSortedSet.EMPTY, one.without(3));
+    }
+
+
+    private static LongSortedSet range(long from, long to, long step) {
+        long[] values = new long[(int) ((to - from + step - 1) / step)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i * step;
+        }
+        return LongSortedSet.ofSorted(values, values.length);
+    }
+
+    private static void assertContents(TreeSet<Long> expected, LongSortedSet set) {
+        assertEquals(expected.size(), set.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toArray());
+    }
+
+}
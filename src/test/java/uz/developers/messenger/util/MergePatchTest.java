@@ -0,0 +1,101 @@
+package uz.developers.messenger.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uz.developers.messenger.exceptions.PostException;
+import uz.developers.messenger.exceptions.ResourceNotFoundException;
+import uz.developers.messenger.exceptions.VersionConflictException;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergePatchTest {
+
+    private static final Map<String, MergePatch.Field> FIELDS = Map.of(
+            "title", MergePatch.Field.text("post_title", 10),
+            "image", MergePatch.Field.optionalText("image", 255),
+            "categoryDto.id", MergePatch.Field.id("category_id"));
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void nestedObjectsMergeMemberByMember() throws Exception {
+        MergePatch patch = patch("{\"title\":\"New\",\"categoryDto\":{\"id\":2}}");
+
+        assertEquals("update posts set post_title = ?, category_id = ?, version = version + 1 where id = ? " +
+                "and version = ? returning *", patch.updateSql("posts", true, "*"));
+        assertArrayEquals(new Object[]{"New", 2L, 7L, 3L}, patch.arguments(7, 3L));
+    }
+
+    @Test
+    void nullRemovesOnlyOptionalProperties() throws Exception {
+        MergePatch patch = patch("{\"image\":null}");
+
+        assertEquals("update posts set image = ?, version = version + 1 where id = ? returning id",
+                patch.updateSql("posts", false, "id"));
+        assertArrayEquals(new Object[]{null, 7L}, patch.arguments(7, null));
+        assertMessage("Property title cannot be removed", "{\"title\":null}");
+        assertMessage("Property categoryDto.id cannot be removed", "{\"categoryDto\":{\"id\":null}}");
+    }
+
+    @Test
+    void unknownOrMistypedPropertiesAreRejected() {
+        assertMessage("Property version cannot be patched", "{\"version\":4}");
+        assertMessage("Property categoryDto.name cannot be patched", "{\"categoryDto\":{\"name\":\"News\"}}");
+        assertMessage("Property title must be a string", "{\"title\":5}");
+        assertMessage("Property categoryDto.id must be an integer", "{\"categoryDto\":{\"id\":\"2\"}}");
+        assertMessage("Property title is longer than 10 characters", "{\"title\":\"Far too long\"}");
+        assertMessage("A merge patch must be a JSON object", "[]");
+    }
+
+    @Test
+    void thePartitionKeyBoundsTheUpdate() throws Exception {
+        MergePatch patch = patch("{\"title\":\"New\"}").partition("date", "select date from posts where id = ?");
+
+        assertEquals("update posts set post_title = ?, version = version + 1 where id = ? " +
+                "and date = (select date from posts where id = ?) and version = ? returning *",
+                patch.updateSql("posts", true, "*"));
+        assertArrayEquals(new Object[]{"New", 7L, 7L, 3L}, patch.arguments(7, 3L));
+    }
+
+    @Test
+    void aMissingRowIsNotFoundAndAMovedVersionConflicts() {
+        assertInstanceOf(ResourceNotFoundException.class, MergePatch.failure("Post", 7, 3L, Optional.empty()));
+        assertInstanceOf(ResourceNotFoundException.class, MergePatch.failure("Post", 7, null, Optional.empty()));
+        assertInstanceOf(VersionConflictException.class, MergePatch.failure("Post", 7, 3L, Optional.of(4L)));
+    }
+
+    @Test
+    void anEmptyPatchStillChecksTheVersion() throws Exception {
+        assertTrue(patch("{}").isEmpty());
+        assertTrue(patch("{\"categoryDto\":{}}").isEmpty());
+
+        assertDoesNotThrow(() -> MergePatch.checkVersion("Post", 7, 3L, () -> Optional.of(3L)));
+        assertDoesNotThrow(() -> MergePatch.checkVersion("Post", 7, null, () -> {
+            throw new AssertionError("no version lookup without If-Match");
+        }));
+        assertThrows(VersionConflictException.class,
+                () -> MergePatch.checkVersion("Post", 7, 3L, () -> Optional.of(4L)));
+        assertThrows(ResourceNotFoundException.class,
+                () -> MergePatch.checkVersion("Post", 7, 3L, Optional::empty));
+    }
+
+    private static MergePatch patch(String json) throws Exception {
+        return MergePatch.of(MAPPER.readTree(json), FIELDS, PostException::new);
+    }
+
+    private static void assertMessage(String message, String json) {
+        JsonNode node = assertDoesNotThrow(() -> MAPPER.readTree(json));
+        assertEquals(message, assertThrows(PostException.class, () -> MergePatch.of(node, FIELDS, PostException::new))
+                .getMessage());
+    }
+
+}
@@ -0,0 +1,56 @@
+package uz.developers.messenger.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SlidingWindowHeavyHittersTest {
+
+    private static final long BUCKET_MILLIS = 1_000;
+
+    @Test
+    void heavyKeysSurviveAFloodOfOneOffKeys() {
+        SlidingWindowHeavyHitters<Long> window = new SlidingWindowHeavyHitters<>(4, BUCKET_MILLIS,
+                CountMinSketch.widthFor(0.01), CountMinSketch.depthFor(0.02), 10, 60_000, Long::longValue);
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            window.add(1_000_000L + random.nextInt(1_000_000), 1, 0);
+            if (i % 50 == 0) {
+                window.add(1L, 10, 0);
+                window.add(2L, 5, 0);
+                window.add(3L, 2, 0);
+            }
+        }
+
+        List<Map.Entry<Long, Double>> top = window.top(3, 0);
+
+        assertEquals(List.of(1L, 2L, 3L), top.stream().map(Map.Entry::getKey).toList());
+    }
+
+    @Test
+    void olderBucketsDecay() {
+        SlidingWindowHeavyHitters<Long> window = new SlidingWindowHeavyHitters<>(4, BUCKET_MILLIS,
+                64, 2, 10, BUCKET_MILLIS, Long::longValue);
+        window.add(1L, 10, 0);
+        window.add(2L, 8, BUCKET_MILLIS);
+
+        List<Map.Entry<Long, Double>> top = window.top(5, BUCKET_MILLIS);
+
+        assertEquals(2L, top.get(0).getKey());
+        assertEquals(5.0, top.get(1).getValue());
+        assertEquals(List.of(), window.top(5, 10 * BUCKET_MILLIS));
+    }
+
+    @Test
+    void sketchIsSizedFromItsErrorBounds() {
+        assertEquals(512, CountMinSketch.widthFor(0.01));
+        assertEquals(4, CountMinSketch.depthFor(0.02));
+        assertThrows(IllegalArgumentException.class, () -> CountMinSketch.depthFor(1e-6));
+    }
+
+}